@@ -0,0 +1,207 @@
+package de.rheinwolf.iam.connid.connectors.passwd;
+
+import de.rheinwolf.iam.connid.connectors.passwd.method.passwd.BatchOperation;
+import de.rheinwolf.iam.connid.connectors.passwd.method.passwd.BatchResult;
+
+import org.identityconnectors.common.security.GuardedString;
+import org.identityconnectors.framework.common.exceptions.InvalidAttributeValueException;
+import org.identityconnectors.framework.common.objects.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Converting between the arguments and result of a batch script and batch operations.
+ *
+ * The script arguments contain a list of operations under the key "operations".
+ * Each operation is a map with the keys "operation" ("create", "update" or
+ * "delete"), "objectClass" (default: __ACCOUNT__), "uid" (for update and
+ * delete) and "attributes" (for create and update, values replace the current
+ * ones). The result is a list of maps with the keys "uid", "success" and
+ * "error", one per operation.
+ */
+final class BatchScript {
+    /**
+     * The script language for running batches with runScriptOnResource.
+     */
+    static final String SCRIPT_LANGUAGE = "batch";
+
+    private static final String ARGUMENT_ATTRIBUTES   = "attributes";
+    private static final String ARGUMENT_OBJECT_CLASS = "objectClass";
+    private static final String ARGUMENT_OPERATION    = "operation";
+    private static final String ARGUMENT_OPERATIONS   = "operations";
+    private static final String ARGUMENT_UID          = "uid";
+
+    private static final String OPERATION_CREATE = "create";
+    private static final String OPERATION_DELETE = "delete";
+    private static final String OPERATION_UPDATE = "update";
+
+    private static final String RESULT_ERROR   = "error";
+    private static final String RESULT_SUCCESS = "success";
+    private static final String RESULT_UID     = "uid";
+
+    /**
+     * Hiding the constructor of the utility class.
+     */
+    private BatchScript() {
+    }
+
+    /**
+     * Converting the script arguments into batch operations.
+     *
+     * @param scriptArguments   The script arguments.
+     *
+     * @return Returns the operations in the given order.
+     */
+    static List<BatchOperation> toOperations(Map<String, Object> scriptArguments) {
+        Object operations = (scriptArguments == null) ? null : scriptArguments.get(ARGUMENT_OPERATIONS);
+
+        if (!(operations instanceof Collection))
+            throw new InvalidAttributeValueException("The script argument " + ARGUMENT_OPERATIONS + " must be a list of operations");
+
+        List<BatchOperation> result = new ArrayList<>(((Collection<?>) operations).size());
+
+        for (Object operation : (Collection<?>) operations) {
+            if (!(operation instanceof Map))
+                throw new InvalidAttributeValueException("Each batch operation must be a map");
+
+            result.add(toOperation((Map<?, ?>) operation));
+        }
+
+        return result;
+    }
+
+    /**
+     * Converting the batch results into the script result.
+     *
+     * @param results           The batch results.
+     *
+     * @return Returns a list of maps, one per operation.
+     */
+    static List<Map<String, Object>> toScriptResult(List<BatchResult> results) {
+        List<Map<String, Object>> scriptResult = new ArrayList<>(results.size());
+
+        for (BatchResult result : results) {
+            Map<String, Object> item = new LinkedHashMap<>();
+
+            item.put(RESULT_UID, (result.getUid() == null) ? null : result.getUid().getUidValue());
+            item.put(RESULT_SUCCESS, result.isSuccess());
+            item.put(RESULT_ERROR, result.isSuccess() ? null : String.valueOf(result.getError()));
+
+            scriptResult.add(item);
+        }
+
+        return scriptResult;
+    }
+
+    /**
+     * Converting a single operation.
+     *
+     * @param operation         The operation map.
+     *
+     * @return Returns a BatchOperation instance.
+     */
+    private static BatchOperation toOperation(Map<?, ?> operation) {
+        Object      type        = operation.get(ARGUMENT_OPERATION);
+        Object      uid         = operation.get(ARGUMENT_UID);
+        Object      className   = operation.get(ARGUMENT_OBJECT_CLASS);
+        ObjectClass objectClass = new ObjectClass((className == null) ? ObjectClass.ACCOUNT_NAME : className.toString());
+
+        if ((!OPERATION_CREATE.equals(type)) && (uid == null))
+            throw new InvalidAttributeValueException("Missing " + ARGUMENT_UID + " for batch operation " + type);
+
+        if (OPERATION_CREATE.equals(type))
+            return BatchOperation.create(objectClass, toAttributes(operation.get(ARGUMENT_ATTRIBUTES)));
+
+        if (OPERATION_UPDATE.equals(type))
+            return BatchOperation.update(objectClass, new Uid(uid.toString()), toAttributeDeltas(operation.get(ARGUMENT_ATTRIBUTES)));
+
+        if (OPERATION_DELETE.equals(type))
+            return BatchOperation.delete(objectClass, new Uid(uid.toString()));
+
+        throw new InvalidAttributeValueException("Unsupported batch operation " + type);
+    }
+
+    /**
+     * Converting the attributes of a create operation.
+     *
+     * @param attributes        The attribute map.
+     *
+     * @return Returns the set of attributes.
+     */
+    private static Set<Attribute> toAttributes(Object attributes) {
+        Set<Attribute> result = new HashSet<>();
+
+        for (Map.Entry<?, ?> entry : toAttributeMap(attributes).entrySet())
+            result.add(AttributeBuilder.build(entry.getKey().toString(), toValues(entry.getKey().toString(), entry.getValue())));
+
+        return result;
+    }
+
+    /**
+     * Converting the attributes of an update operation, replacing the current values.
+     *
+     * @param attributes        The attribute map.
+     *
+     * @return Returns the set of attribute deltas.
+     */
+    private static Set<AttributeDelta> toAttributeDeltas(Object attributes) {
+        Set<AttributeDelta> result = new HashSet<>();
+
+        for (Map.Entry<?, ?> entry : toAttributeMap(attributes).entrySet())
+            result.add(AttributeDeltaBuilder.build(entry.getKey().toString(), toValues(entry.getKey().toString(), entry.getValue())));
+
+        return result;
+    }
+
+    /**
+     * Checking the type of the attribute map.
+     *
+     * @param attributes        The attribute map. Can be null.
+     *
+     * @return Returns the attribute map.
+     */
+    private static Map<?, ?> toAttributeMap(Object attributes) {
+        if (attributes == null)
+            return Collections.emptyMap();
+
+        if (!(attributes instanceof Map))
+            throw new InvalidAttributeValueException("The " + ARGUMENT_ATTRIBUTES + " of a batch operation must be a map");
+
+        return (Map<?, ?>) attributes;
+    }
+
+    /**
+     * Converting an attribute value into a list of values. Plain passwords are
+     * converted to GuardedString instances.
+     *
+     * @param name              The attribute name.
+     * @param value             The value, either a single value or a collection.
+     *
+     * @return Returns the values as list.
+     */
+    private static List<Object> toValues(String name, Object value) {
+        List<Object> values = new ArrayList<>();
+
+        if (value instanceof Collection) {
+            values.addAll((Collection<?>) value);
+        } else if (value != null) {
+            values.add(value);
+        }
+
+        if (OperationalAttributeInfos.PASSWORD.is(name)) {
+            for (int i = 0; i < values.size(); ++i) {
+                if (values.get(i) instanceof String)
+                    values.set(i, new GuardedString(((String) values.get(i)).toCharArray()));
+            }
+        }
+
+        return values;
+    }
+}
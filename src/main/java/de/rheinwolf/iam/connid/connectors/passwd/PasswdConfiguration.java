@@ -21,27 +21,55 @@ public class PasswdConfiguration extends AbstractConfiguration {
     private String connectionType = CONNECTION_TYPE_LOCAL;
 
     /**
-     * The SSH connection information.
+     * How commands are run over SSH connections.
      */
-    private static final int SSH_DEFAULT_PORT = 22;
+    public static final String CHANNEL_MODE_EXEC  = "exec";
+    public static final String CHANNEL_MODE_SHELL = "shell";
 
-    private String        hostKey    = null;
-    private String        hostName   = null;
-    private GuardedString password   = null;
-    private String        privateKey = null;
-    private int           port       = SSH_DEFAULT_PORT;
-    private String        userName   = null;
+    private String channelMode = CHANNEL_MODE_EXEC;
+
+    /**
+     * How the output of commands is transferred over SSH connections.
+     */
+    public static final String REMOTE_COMPRESSION_GZIP = "gzip";
+    public static final String REMOTE_COMPRESSION_NONE = "none";
+
+    public static final String TRANSFER_PROFILE_DEFAULT = "default";
+    public static final String TRANSFER_PROFILE_WAN     = "wan";
+
+    private String ciphers           = null;
+    private String remoteCompression = REMOTE_COMPRESSION_NONE;
+    private String transferProfile   = TRANSFER_PROFILE_DEFAULT;
+
+    /**
+     * The SSH connection information.
+     */
+    private static final int SSH_DEFAULT_IDLE_TIMEOUT    = 300000;
+    private static final int SSH_DEFAULT_MAX_CONNECTIONS = 4;
+    private static final int SSH_DEFAULT_MAX_SESSIONS    = 10;
+    private static final int SSH_DEFAULT_PORT            = 22;
+
+    private int           connectionIdleTimeout = SSH_DEFAULT_IDLE_TIMEOUT;
+    private String        hostKey               = null;
+    private String        hostName              = null;
+    private int           maxConnections        = SSH_DEFAULT_MAX_CONNECTIONS;
+    private int           maxSessions           = SSH_DEFAULT_MAX_SESSIONS;
+    private GuardedString password              = null;
+    private String        privateKey            = null;
+    private int           port                  = SSH_DEFAULT_PORT;
+    private String        userName              = null;
 
     /**
      * The method used for updating users and groups.
      */
+    public static final String METHOD_AUTO    = "auto";
     public static final String METHOD_PW      = "pw";
     public static final String METHOD_USERADD = "useradd";
 
     public static final String SUBMETHOD_BSD   = "bsd";
     public static final String SUBMETHOD_LINUX = "linux";
 
-    private String method = null;
+    private String method = METHOD_AUTO;
 
     /**
      * The method used for gaining the necessary permissions.
@@ -50,15 +78,46 @@ public class PasswdConfiguration extends AbstractConfiguration {
     public static final String BECOME_METHOD_NONE = "none";
     public static final String BECOME_METHOD_SUDO = "sudo";
 
+    public static final String BECOME_MODE_COMMAND = "command";
+    public static final String BECOME_MODE_SESSION = "session";
+
     private String        becomeMethod   = BECOME_METHOD_NONE;
+    private String        becomeMode     = BECOME_MODE_COMMAND;
     private GuardedString becomePassword = null;
 
     /**
      * Behavior.
      */
+    public static final String WRITE_MODE_FILES = "files";
+    public static final String WRITE_MODE_TOOLS = "tools";
+
     private boolean createHomeDirectory      = false;
     private boolean deleteHomeDirectory      = false;
     private String  homeDirectoryPermissions = null;
+    private String  writeMode                = WRITE_MODE_TOOLS;
+
+    /**
+     * Caching.
+     */
+    private boolean snapshotCache    = true;
+    private boolean snapshotChecksum = false;
+
+    /**
+     * Paged searches.
+     */
+    private static final int PAGED_RESULTS_DEFAULT_TIMEOUT = 300000;
+
+    private int pagedResultsTimeout = PAGED_RESULTS_DEFAULT_TIMEOUT;
+
+    /**
+     * Batches.
+     */
+    private static final int BATCH_DEFAULT_LATENCY_TARGET = 5000;
+    private static final int BATCH_DEFAULT_MAX_BYTES      = 128 * 1024;
+    private static final int BATCH_MIN_MAX_BYTES          = 1024;
+
+    private int batchLatencyTarget = BATCH_DEFAULT_LATENCY_TARGET;
+    private int batchMaxBytes      = BATCH_DEFAULT_MAX_BYTES;
 
     /**
      * Validating the passwd configuration settings.
@@ -74,17 +133,46 @@ public class PasswdConfiguration extends AbstractConfiguration {
                 throw new ConfigurationException("The userName configuration property is mandatory for SSH connections");
             if ((StringUtil.isBlank(privateKey)) && (password == null))
                 throw new ConfigurationException("The password configuration property is mandatory for SSH connections if no private key is set");
+            if (maxSessions < 1)
+                throw new ConfigurationException("The maxSessions configuration property must be at least 1");
+            if (maxConnections < 1)
+                throw new ConfigurationException("The maxConnections configuration property must be at least 1");
+            if (connectionIdleTimeout < 1)
+                throw new ConfigurationException("The connectionIdleTimeout configuration property must be at least 1");
+            if (!Arrays.asList(TRANSFER_PROFILE_DEFAULT, TRANSFER_PROFILE_WAN).contains(transferProfile))
+                throw new ConfigurationException("Unsupported value in configuration property transferProfile");
+            if (!Arrays.asList(REMOTE_COMPRESSION_GZIP, REMOTE_COMPRESSION_NONE).contains(remoteCompression))
+                throw new ConfigurationException("Unsupported value in configuration property remoteCompression");
+            if (!Arrays.asList(CHANNEL_MODE_EXEC, CHANNEL_MODE_SHELL).contains(channelMode))
+                throw new ConfigurationException("Unsupported value in configuration property channelMode");
         }
 
         if (StringUtil.isBlank(method)) {
             throw new ConfigurationException("The method configuration property is mandatory");
-        } else if (!Arrays.asList(METHOD_PW, METHOD_USERADD + ":" + SUBMETHOD_BSD, METHOD_USERADD + ":" + SUBMETHOD_LINUX).contains(method)) {
+        } else if (!Arrays.asList(METHOD_AUTO, METHOD_PW, METHOD_USERADD + ":" + SUBMETHOD_BSD, METHOD_USERADD + ":" + SUBMETHOD_LINUX).contains(method)) {
             throw new ConfigurationException("Unsupported value in configuration property method");
         }
 
         if (!Arrays.asList(BECOME_METHOD_DOAS, BECOME_METHOD_NONE, BECOME_METHOD_SUDO).contains(becomeMethod)) {
             throw new ConfigurationException("Unsupported value in configuration property becomeMethod");
         }
+
+        if (!Arrays.asList(BECOME_MODE_COMMAND, BECOME_MODE_SESSION).contains(becomeMode)) {
+            throw new ConfigurationException("Unsupported value in configuration property becomeMode");
+        } else if ((BECOME_MODE_SESSION.equals(becomeMode)) && (!CONNECTION_TYPE_SSH.equals(connectionType))) {
+            throw new ConfigurationException("The become mode session is only supported for SSH connections");
+        }
+
+        if (!Arrays.asList(WRITE_MODE_FILES, WRITE_MODE_TOOLS).contains(writeMode))
+            throw new ConfigurationException("Unsupported value in configuration property writeMode");
+
+        if (pagedResultsTimeout < 1)
+            throw new ConfigurationException("The pagedResultsTimeout configuration property must be at least 1");
+
+        if (batchLatencyTarget < 1)
+            throw new ConfigurationException("The batchLatencyTarget configuration property must be at least 1");
+        if (batchMaxBytes < BATCH_MIN_MAX_BYTES)
+            throw new ConfigurationException("The batchMaxBytes configuration property must be at least " + BATCH_MIN_MAX_BYTES);
     }
 
     /**
@@ -96,17 +184,31 @@ public class PasswdConfiguration extends AbstractConfiguration {
     public String toString() {
         return getClass().getSimpleName() + "{" +
                 "connectionType=" + connectionType + ", " +
+                "channelMode=" + channelMode + ", " +
                 "hostKey=" + hostKey + ", " +
                 "hostName=" + hostName + ", " +
                 "port=" + port + ", " +
                 "userName=" + userName + ", " +
                 "password=" + password + ", " +
+                "maxSessions=" + maxSessions + ", " +
+                "maxConnections=" + maxConnections + ", " +
+                "connectionIdleTimeout=" + connectionIdleTimeout + ", " +
+                "transferProfile=" + transferProfile + ", " +
+                "ciphers=" + ciphers + ", " +
+                "remoteCompression=" + remoteCompression + ", " +
                 "method=" + method + ", " +
                 "becomeMethod=" + becomeMethod + ", " +
+                "becomeMode=" + becomeMode + ", " +
                 "becomePassword=" + becomePassword + ", " +
                 "createHomeDirectory=" + createHomeDirectory + ", " +
                 "deleteHomeDirectory=" + deleteHomeDirectory + ", " +
-                "homeDirectoryPermissions=" + homeDirectoryPermissions +
+                "homeDirectoryPermissions=" + homeDirectoryPermissions + ", " +
+                "writeMode=" + writeMode + ", " +
+                "snapshotCache=" + snapshotCache + ", " +
+                "snapshotChecksum=" + snapshotChecksum + ", " +
+                "pagedResultsTimeout=" + pagedResultsTimeout + ", " +
+                "batchLatencyTarget=" + batchLatencyTarget + ", " +
+                "batchMaxBytes=" + batchMaxBytes +
                 "}";
     }
 
@@ -119,6 +221,16 @@ public class PasswdConfiguration extends AbstractConfiguration {
         this.connectionType = connectionType;
     }
 
+    @ConfigurationProperty(order = 180, displayMessageKey = "passwd.config.channelMode", helpMessageKey = "passwd.config.channelMode.help")
+    public String getChannelMode() {
+        return channelMode;
+    }
+
+    @SuppressWarnings("unused")
+    public void setChannelMode(String channelMode) {
+        this.channelMode = channelMode;
+    }
+
     @ConfigurationProperty(order = 130, displayMessageKey = "passwd.config.hostKey", helpMessageKey = "passwd.config.hostKey.help")
     public String getHostKey() {
         return hostKey;
@@ -149,6 +261,66 @@ public class PasswdConfiguration extends AbstractConfiguration {
         this.password = password;
     }
 
+    @ConfigurationProperty(order = 170, displayMessageKey = "passwd.config.maxSessions", helpMessageKey = "passwd.config.maxSessions.help")
+    public int getMaxSessions() {
+        return maxSessions;
+    }
+
+    @SuppressWarnings("unused")
+    public void setMaxSessions(int maxSessions) {
+        this.maxSessions = maxSessions;
+    }
+
+    @ConfigurationProperty(order = 172, displayMessageKey = "passwd.config.maxConnections", helpMessageKey = "passwd.config.maxConnections.help")
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    @SuppressWarnings("unused")
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    @ConfigurationProperty(order = 174, displayMessageKey = "passwd.config.connectionIdleTimeout", helpMessageKey = "passwd.config.connectionIdleTimeout.help")
+    public int getConnectionIdleTimeout() {
+        return connectionIdleTimeout;
+    }
+
+    @SuppressWarnings("unused")
+    public void setConnectionIdleTimeout(int connectionIdleTimeout) {
+        this.connectionIdleTimeout = connectionIdleTimeout;
+    }
+
+    @ConfigurationProperty(order = 190, displayMessageKey = "passwd.config.transferProfile", helpMessageKey = "passwd.config.transferProfile.help")
+    public String getTransferProfile() {
+        return transferProfile;
+    }
+
+    @SuppressWarnings("unused")
+    public void setTransferProfile(String transferProfile) {
+        this.transferProfile = transferProfile;
+    }
+
+    @ConfigurationProperty(order = 192, displayMessageKey = "passwd.config.ciphers", helpMessageKey = "passwd.config.ciphers.help")
+    public String getCiphers() {
+        return ciphers;
+    }
+
+    @SuppressWarnings("unused")
+    public void setCiphers(String ciphers) {
+        this.ciphers = ciphers;
+    }
+
+    @ConfigurationProperty(order = 194, displayMessageKey = "passwd.config.remoteCompression", helpMessageKey = "passwd.config.remoteCompression.help")
+    public String getRemoteCompression() {
+        return remoteCompression;
+    }
+
+    @SuppressWarnings("unused")
+    public void setRemoteCompression(String remoteCompression) {
+        this.remoteCompression = remoteCompression;
+    }
+
     @ConfigurationProperty(order = 150, displayMessageKey = "passwd.config.privateKey", helpMessageKey = "passwd.config.privateKey.help")
     public String getPrivateKey() {
         return privateKey;
@@ -197,6 +369,16 @@ public class PasswdConfiguration extends AbstractConfiguration {
         this.becomeMethod = becomeMethod;
     }
 
+    @ConfigurationProperty(order = 220, displayMessageKey = "passwd.config.becomeMode", helpMessageKey = "passwd.config.becomeMode.help")
+    public String getBecomeMode() {
+        return becomeMode;
+    }
+
+    @SuppressWarnings("unused")
+    public void setBecomeMode(String becomeMode) {
+        this.becomeMode = becomeMode;
+    }
+
     @ConfigurationProperty(order = 210, displayMessageKey = "passwd.config.becomePassword", helpMessageKey = "passwd.config.becomePassword.help")
     public GuardedString getBecomePassword() {
         return becomePassword;
@@ -236,4 +418,64 @@ public class PasswdConfiguration extends AbstractConfiguration {
     public void setHomeDirectoryPermissions(String homeDirectoryPermissions) {
         this.homeDirectoryPermissions = homeDirectoryPermissions;
     }
+
+    @ConfigurationProperty(order = 430, displayMessageKey = "passwd.config.writeMode", helpMessageKey = "passwd.config.writeMode.help")
+    public String getWriteMode() {
+        return writeMode;
+    }
+
+    @SuppressWarnings("unused")
+    public void setWriteMode(String writeMode) {
+        this.writeMode = writeMode;
+    }
+
+    @ConfigurationProperty(order = 500, displayMessageKey = "passwd.config.snapshotCache", helpMessageKey = "passwd.config.snapshotCache.help")
+    public boolean getSnapshotCache() {
+        return snapshotCache;
+    }
+
+    @SuppressWarnings("unused")
+    public void setSnapshotCache(boolean snapshotCache) {
+        this.snapshotCache = snapshotCache;
+    }
+
+    @ConfigurationProperty(order = 510, displayMessageKey = "passwd.config.snapshotChecksum", helpMessageKey = "passwd.config.snapshotChecksum.help")
+    public boolean getSnapshotChecksum() {
+        return snapshotChecksum;
+    }
+
+    @SuppressWarnings("unused")
+    public void setSnapshotChecksum(boolean snapshotChecksum) {
+        this.snapshotChecksum = snapshotChecksum;
+    }
+
+    @ConfigurationProperty(order = 520, displayMessageKey = "passwd.config.pagedResultsTimeout", helpMessageKey = "passwd.config.pagedResultsTimeout.help")
+    public int getPagedResultsTimeout() {
+        return pagedResultsTimeout;
+    }
+
+    @SuppressWarnings("unused")
+    public void setPagedResultsTimeout(int pagedResultsTimeout) {
+        this.pagedResultsTimeout = pagedResultsTimeout;
+    }
+
+    @ConfigurationProperty(order = 600, displayMessageKey = "passwd.config.batchLatencyTarget", helpMessageKey = "passwd.config.batchLatencyTarget.help")
+    public int getBatchLatencyTarget() {
+        return batchLatencyTarget;
+    }
+
+    @SuppressWarnings("unused")
+    public void setBatchLatencyTarget(int batchLatencyTarget) {
+        this.batchLatencyTarget = batchLatencyTarget;
+    }
+
+    @ConfigurationProperty(order = 610, displayMessageKey = "passwd.config.batchMaxBytes", helpMessageKey = "passwd.config.batchMaxBytes.help")
+    public int getBatchMaxBytes() {
+        return batchMaxBytes;
+    }
+
+    @SuppressWarnings("unused")
+    public void setBatchMaxBytes(int batchMaxBytes) {
+        this.batchMaxBytes = batchMaxBytes;
+    }
 }
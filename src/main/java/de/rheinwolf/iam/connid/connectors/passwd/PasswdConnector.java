@@ -2,6 +2,7 @@ package de.rheinwolf.iam.connid.connectors.passwd;
 
 import de.rheinwolf.iam.connid.connectors.passwd.connection.Connection;
 import de.rheinwolf.iam.connid.connectors.passwd.connection.ConnectionFactory;
+import de.rheinwolf.iam.connid.connectors.passwd.method.passwd.BatchOperation;
 import de.rheinwolf.iam.connid.connectors.passwd.method.passwd.PasswdMethod;
 import de.rheinwolf.iam.connid.connectors.passwd.method.MethodFactory;
 import de.rheinwolf.iam.connid.connectors.passwd.model.PasswdAccount;
@@ -9,15 +10,18 @@ import de.rheinwolf.iam.connid.connectors.passwd.model.PasswdGroup;
 
 import org.identityconnectors.common.security.GuardedString;
 import org.identityconnectors.framework.common.exceptions.ConnectionFailedException;
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
 import org.identityconnectors.framework.common.objects.*;
 import org.identityconnectors.framework.common.objects.filter.FilterTranslator;
 import org.identityconnectors.framework.spi.Configuration;
 import org.identityconnectors.framework.spi.ConnectorClass;
 import org.identityconnectors.framework.spi.PoolableConnector;
+import org.identityconnectors.framework.spi.SearchResultsHandler;
 import org.identityconnectors.framework.spi.operations.*;
 
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -32,6 +36,7 @@ public class PasswdConnector implements
         SchemaOp,
         ScriptOnResourceOp,
         SearchOp<PasswdQuery>,
+        SyncOp,
         TestOp,
         UpdateAttributeValuesOp,
         UpdateDeltaOp {
@@ -79,7 +84,7 @@ public class PasswdConnector implements
         if (!objectClass.is(ObjectClass.ACCOUNT_NAME))
             throw new ConnectionFailedException("Invalid object class " + objectClass.getObjectClassValue());
 
-        connection.authenticate(username, password);
+        connection.authenticate(configuration, username, password);
 
         return new Uid(username);
     }
@@ -153,7 +158,22 @@ public class PasswdConnector implements
         if (query == null)
             query = new PasswdQuery();
 
-        method.search(objectClass, query).forEach(resultsHandler::handle);
+        SearchResult searchResult = method.search(objectClass, query, operationOptions, resultsHandler);
+
+        if ((searchResult != null) && (resultsHandler instanceof SearchResultsHandler))
+            ((SearchResultsHandler) resultsHandler).handleResult(searchResult);
+    }
+
+    /**
+     * Retrieving the token for the current state of the resource.
+     *
+     * @param objectClass           The object class.
+     *
+     * @return Returns a SyncToken instance.
+     */
+    @Override
+    public SyncToken getLatestSyncToken(ObjectClass objectClass) {
+        return method.getLatestSyncToken(objectClass);
     }
 
     /**
@@ -206,7 +226,9 @@ public class PasswdConnector implements
     }
 
     /**
-     * Runs a custom script on the resource.
+     * Runs a custom script on the resource. The script language "batch" runs
+     * a list of create, update and delete operations in as few round trips
+     * as possible, see BatchScript for the format of arguments and result.
      *
      * @param scriptContext         The script context.
      * @param operationOptions      The operation options.
@@ -215,7 +237,12 @@ public class PasswdConnector implements
      */
     @Override
     public Object runScriptOnResource(ScriptContext scriptContext, OperationOptions operationOptions) {
-        return null;
+        if (!BatchScript.SCRIPT_LANGUAGE.equals(scriptContext.getScriptLanguage()))
+            throw new ConnectorException("Unsupported script language " + scriptContext.getScriptLanguage());
+
+        List<BatchOperation> operations = BatchScript.toOperations(scriptContext.getScriptArguments());
+
+        return BatchScript.toScriptResult(method.execute(operations));
     }
 
     /**
@@ -227,12 +254,30 @@ public class PasswdConnector implements
     public Schema schema() {
         SchemaBuilder schemaBuilder = new SchemaBuilder(getClass());
 
-        PasswdAccount.schema(configuration, schemaBuilder);
+        PasswdAccount.schema(method.getMethodName(), schemaBuilder);
         PasswdGroup.schema(schemaBuilder);
 
+        schemaBuilder.defineOperationOption(OperationOptionInfoBuilder.buildPageSize(), SearchOp.class);
+        schemaBuilder.defineOperationOption(OperationOptionInfoBuilder.buildPagedResultsOffset(), SearchOp.class);
+        schemaBuilder.defineOperationOption(OperationOptionInfoBuilder.buildPagedResultsCookie(), SearchOp.class);
+        schemaBuilder.defineOperationOption(OperationOptionInfoBuilder.buildSortKeys(), SearchOp.class);
+
         return schemaBuilder.build();
     }
 
+    /**
+     * Reporting the changes on the resource since the state identified by a token.
+     *
+     * @param objectClass           The object class.
+     * @param token                 The token from the last sync. Can be null.
+     * @param syncResultsHandler    The handler for the deltas.
+     * @param operationOptions      The operation options.
+     */
+    @Override
+    public void sync(ObjectClass objectClass, SyncToken token, SyncResultsHandler syncResultsHandler, OperationOptions operationOptions) {
+        method.sync(objectClass, token, syncResultsHandler);
+    }
+
     /**
      * Testing the connection.
      */
@@ -1,11 +1,156 @@
 package de.rheinwolf.iam.connid.connectors.passwd;
 
-import org.identityconnectors.framework.common.objects.filter.AbstractFilterTranslator;
+import org.identityconnectors.framework.common.objects.filter.*;
+
+import static de.rheinwolf.iam.connid.connectors.passwd.PasswdQuery.Operator.*;
 
 /**
- * Pseudo filter-translator.
+ * Translating ConnID filters into passwd queries.
  *
- * ToDo: Implement.
+ * Negations are pushed down to the attribute conditions by the
+ * AbstractFilterTranslator, so only AND and OR need to be combined here.
  */
 class PasswdFilterTranslator extends AbstractFilterTranslator<PasswdQuery> {
+    /**
+     * Combining two queries with AND.
+     *
+     * @param leftExpression         The left query.
+     * @param rightExpression        The right query.
+     *
+     * @return Returns a PasswdQuery instance.
+     */
+    @Override
+    protected PasswdQuery createAndExpression(PasswdQuery leftExpression, PasswdQuery rightExpression) {
+        return PasswdQuery.and(leftExpression, rightExpression);
+    }
+
+    /**
+     * Combining two queries with OR.
+     *
+     * @param leftExpression         The left query.
+     * @param rightExpression        The right query.
+     *
+     * @return Returns a PasswdQuery instance.
+     */
+    @Override
+    protected PasswdQuery createOrExpression(PasswdQuery leftExpression, PasswdQuery rightExpression) {
+        return PasswdQuery.or(leftExpression, rightExpression);
+    }
+
+    /**
+     * Translating a contains-all-values filter.
+     *
+     * @param filter        The filter.
+     * @param not           Whether the condition is negated.
+     *
+     * @return Returns a PasswdQuery instance.
+     */
+    @Override
+    protected PasswdQuery createContainsAllValuesExpression(ContainsAllValuesFilter filter, boolean not) {
+        return PasswdQuery.attribute(CONTAINS_ALL_VALUES, filter.getAttribute(), not);
+    }
+
+    /**
+     * Translating a contains filter.
+     *
+     * @param filter        The filter.
+     * @param not           Whether the condition is negated.
+     *
+     * @return Returns a PasswdQuery instance.
+     */
+    @Override
+    protected PasswdQuery createContainsExpression(ContainsFilter filter, boolean not) {
+        return PasswdQuery.attribute(CONTAINS, filter.getAttribute(), not);
+    }
+
+    /**
+     * Translating an ends-with filter.
+     *
+     * @param filter        The filter.
+     * @param not           Whether the condition is negated.
+     *
+     * @return Returns a PasswdQuery instance.
+     */
+    @Override
+    protected PasswdQuery createEndsWithExpression(EndsWithFilter filter, boolean not) {
+        return PasswdQuery.attribute(ENDS_WITH, filter.getAttribute(), not);
+    }
+
+    /**
+     * Translating an equals filter.
+     *
+     * @param filter        The filter.
+     * @param not           Whether the condition is negated.
+     *
+     * @return Returns a PasswdQuery instance.
+     */
+    @Override
+    protected PasswdQuery createEqualsExpression(EqualsFilter filter, boolean not) {
+        return PasswdQuery.attribute(EQUALS, filter.getAttribute(), not);
+    }
+
+    /**
+     * Translating a greater-than filter.
+     *
+     * @param filter        The filter.
+     * @param not           Whether the condition is negated.
+     *
+     * @return Returns a PasswdQuery instance.
+     */
+    @Override
+    protected PasswdQuery createGreaterThanExpression(GreaterThanFilter filter, boolean not) {
+        return PasswdQuery.attribute(GREATER_THAN, filter.getAttribute(), not);
+    }
+
+    /**
+     * Translating a greater-than-or-equal filter.
+     *
+     * @param filter        The filter.
+     * @param not           Whether the condition is negated.
+     *
+     * @return Returns a PasswdQuery instance.
+     */
+    @Override
+    protected PasswdQuery createGreaterThanOrEqualExpression(GreaterThanOrEqualFilter filter, boolean not) {
+        return PasswdQuery.attribute(GREATER_THAN_OR_EQUAL, filter.getAttribute(), not);
+    }
+
+    /**
+     * Translating a less-than filter.
+     *
+     * @param filter        The filter.
+     * @param not           Whether the condition is negated.
+     *
+     * @return Returns a PasswdQuery instance.
+     */
+    @Override
+    protected PasswdQuery createLessThanExpression(LessThanFilter filter, boolean not) {
+        return PasswdQuery.attribute(LESS_THAN, filter.getAttribute(), not);
+    }
+
+    /**
+     * Translating a less-than-or-equal filter.
+     *
+     * @param filter        The filter.
+     * @param not           Whether the condition is negated.
+     *
+     * @return Returns a PasswdQuery instance.
+     */
+    @Override
+    protected PasswdQuery createLessThanOrEqualExpression(LessThanOrEqualFilter filter, boolean not) {
+        return PasswdQuery.attribute(LESS_THAN_OR_EQUAL, filter.getAttribute(), not);
+    }
+
+    /**
+     * Translating a starts-with filter.
+     *
+     * @param filter        The filter.
+     * @param not           Whether the condition is negated.
+     *
+     * @return Returns a PasswdQuery instance.
+     */
+    @Override
+    protected PasswdQuery createStartsWithExpression(StartsWithFilter filter, boolean not) {
+        return PasswdQuery.attribute(STARTS_WITH, filter.getAttribute(), not);
+    }
 }
@@ -1,14 +1,238 @@
 package de.rheinwolf.iam.connid.connectors.passwd;
 
-import org.identityconnectors.framework.common.objects.ConnectorObject;
+import de.rheinwolf.iam.connid.connectors.passwd.file.PasswdRow;
+import de.rheinwolf.iam.connid.connectors.passwd.model.FieldLayout;
+import de.rheinwolf.iam.connid.connectors.passwd.model.SchemaUtil;
+
+import org.identityconnectors.common.security.GuardedString;
+import org.identityconnectors.framework.common.objects.Attribute;
+
+import java.util.Collection;
+import java.util.List;
 
 /**
  * Queries to the passwd database.
  *
- * ToDo: Implement.
+ * A query is the tree of conditions translated from a ConnID filter. Before
+ * it is evaluated, the tree is compiled into a predicate for the field layout
+ * of the searched object class, so rows can be matched on their raw fields
+ * before any ConnectorObject is built.
  */
 public class PasswdQuery {
-    public boolean matches(@SuppressWarnings("unused") ConnectorObject input) {
-        return true;
+    /**
+     * The operators of the query tree.
+     */
+    enum Operator {
+        ALL,
+        AND,
+        OR,
+        CONTAINS,
+        CONTAINS_ALL_VALUES,
+        ENDS_WITH,
+        EQUALS,
+        GREATER_THAN,
+        GREATER_THAN_OR_EQUAL,
+        LESS_THAN,
+        LESS_THAN_OR_EQUAL,
+        STARTS_WITH
+    }
+
+    private final String       attributeName;
+    private final PasswdQuery  left;
+    private final boolean      not;
+    private final Operator     operator;
+    private final PasswdQuery  right;
+    private final List<Object> values;
+
+    private FieldLayout  compiledLayout    = null;
+    private RowPredicate compiledPredicate = null;
+
+    /**
+     * Constructing a query matching all entries.
+     */
+    public PasswdQuery() {
+        this(Operator.ALL, null, null, false, null, null);
+    }
+
+    /**
+     * Constructing a query node.
+     *
+     * @param operator          The operator.
+     * @param attributeName     The attribute name for attribute conditions.
+     * @param values            The values for attribute conditions.
+     * @param not               Whether an attribute condition is negated.
+     * @param left              The left operand for AND and OR.
+     * @param right             The right operand for AND and OR.
+     */
+    private PasswdQuery(Operator operator, String attributeName, List<Object> values, boolean not, PasswdQuery left, PasswdQuery right) {
+        this.attributeName = attributeName;
+        this.left          = left;
+        this.not           = not;
+        this.operator      = operator;
+        this.right         = right;
+        this.values        = values;
+    }
+
+    /**
+     * Creating a query that matches if both operands match.
+     *
+     * @param left              The left operand.
+     * @param right             The right operand.
+     *
+     * @return Returns a PasswdQuery instance.
+     */
+    static PasswdQuery and(PasswdQuery left, PasswdQuery right) {
+        return new PasswdQuery(Operator.AND, null, null, false, left, right);
+    }
+
+    /**
+     * Creating a query that matches if one of the operands matches.
+     *
+     * @param left              The left operand.
+     * @param right             The right operand.
+     *
+     * @return Returns a PasswdQuery instance.
+     */
+    static PasswdQuery or(PasswdQuery left, PasswdQuery right) {
+        return new PasswdQuery(Operator.OR, null, null, false, left, right);
+    }
+
+    /**
+     * Creating an attribute condition.
+     *
+     * @param operator          The operator.
+     * @param attribute         The attribute from the filter.
+     * @param not               Whether the condition is negated.
+     *
+     * @return Returns a PasswdQuery instance, or null if the condition cannot be translated.
+     */
+    static PasswdQuery attribute(Operator operator, Attribute attribute, boolean not) {
+        List<Object> values = attribute.getValue();
+
+        if ((values == null) || (values.isEmpty()) || (values.contains(null)))
+            return null;
+
+        return new PasswdQuery(operator, attribute.getName(), values, not, null, null);
+    }
+
+    /**
+     * Retrieving a condition every matching row must fulfill, which compares
+     * an attribute with a single value for equality. Such a condition lets a
+     * search read only the rows with that value instead of all rows.
+     *
+     * @return Returns the condition, or null if there is none.
+     */
+    public PasswdQuery getEqualityCondition() {
+        switch (operator) {
+            case AND:
+                PasswdQuery condition = left.getEqualityCondition();
+
+                return (condition != null) ? condition : right.getEqualityCondition();
+
+            case EQUALS:
+                return ((!not) && (values.size() == 1)) ? this : null;
+
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Collecting the names of all attributes the query refers to.
+     *
+     * @param attributeNames    The collection the names are added to.
+     *
+     * @return Returns the collection.
+     */
+    public Collection<String> collectAttributeNames(Collection<String> attributeNames) {
+        if (left != null)
+            left.collectAttributeNames(attributeNames);
+        if (right != null)
+            right.collectAttributeNames(attributeNames);
+        if (attributeName != null)
+            attributeNames.add(attributeName);
+
+        return attributeNames;
+    }
+
+    /**
+     * Retrieving the attribute name of an attribute condition.
+     *
+     * @return Returns the attribute name, or null for other nodes.
+     */
+    public String getAttributeName() {
+        return attributeName;
+    }
+
+    /**
+     * Retrieving the first value of an attribute condition.
+     *
+     * @return Returns the value, or null for other nodes.
+     */
+    public Object getValue() {
+        return (values == null) ? null : values.get(0);
+    }
+
+    /**
+     * Checking whether a passwd row matches the query.
+     *
+     * @param layout            The field layout of the searched object class.
+     * @param row               The passwd row.
+     *
+     * @return Returns whether the row matches.
+     */
+    public boolean matches(FieldLayout layout, PasswdRow row) {
+        if (compiledLayout != layout) {
+            compiledPredicate = compile(layout);
+            compiledLayout    = layout;
+        }
+
+        return compiledPredicate.test(row);
+    }
+
+    /**
+     * Compiling the query into a predicate.
+     *
+     * @param layout            The field layout of the searched object class.
+     *
+     * @return Returns a RowPredicate instance.
+     */
+    private RowPredicate compile(FieldLayout layout) {
+        switch (operator) {
+            case ALL:
+                return RowPredicates.all();
+
+            case AND:
+                return RowPredicates.and(left.compile(layout), right.compile(layout));
+
+            case OR:
+                return RowPredicates.or(left.compile(layout), right.compile(layout));
+
+            default:
+                break;
+        }
+
+        RowPredicate predicate = RowPredicates.none();
+        int          position  = layout.find(attributeName);
+
+        if (position >= 0) {
+            SchemaUtil.SchemaFieldAttributes attributes = layout.getSchemaField(position).getAttributes();
+
+            // Passwords are never returned, so there is nothing to match against
+            if (!GuardedString.class.equals(attributes.getClazz())) {
+                predicate = RowPredicates.field(
+                        layout.getFieldIndex(position),
+                        attributes.getClazz(),
+                        attributes.isMultiValued(),
+                        operator,
+                        values
+                );
+            }
+        }
+
+        if (not)
+            return RowPredicates.not(predicate);
+
+        return predicate;
     }
 }
@@ -0,0 +1,17 @@
+package de.rheinwolf.iam.connid.connectors.passwd;
+
+import de.rheinwolf.iam.connid.connectors.passwd.file.PasswdRow;
+
+/**
+ * A compiled query condition that is evaluated on the raw fields of a passwd row.
+ */
+interface RowPredicate {
+    /**
+     * Evaluating the condition.
+     *
+     * @param row           The passwd row.
+     *
+     * @return Returns whether the row matches the condition.
+     */
+    boolean test(PasswdRow row);
+}
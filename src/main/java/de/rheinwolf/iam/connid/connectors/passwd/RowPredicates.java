@@ -0,0 +1,375 @@
+package de.rheinwolf.iam.connid.connectors.passwd;
+
+import de.rheinwolf.iam.connid.connectors.passwd.file.PasswdRow;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Factory for the predicates a PasswdQuery is compiled into.
+ *
+ * The predicates follow the semantics of the ConnID filters on the connector
+ * objects that would be built from the row: missing or empty fields are absent
+ * attributes, numeric fields are compared numerically and a zero in a Long
+ * field is treated like an absent value.
+ */
+final class RowPredicates {
+    private static final RowPredicate ALL  = row -> true;
+    private static final RowPredicate NONE = row -> false;
+
+    private RowPredicates() {
+    }
+
+    /**
+     * Retrieving a predicate matching all rows.
+     *
+     * @return Returns a RowPredicate instance.
+     */
+    static RowPredicate all() {
+        return ALL;
+    }
+
+    /**
+     * Retrieving a predicate matching no rows.
+     *
+     * @return Returns a RowPredicate instance.
+     */
+    static RowPredicate none() {
+        return NONE;
+    }
+
+    /**
+     * Combining two predicates with AND.
+     *
+     * @param left          The left predicate.
+     * @param right         The right predicate.
+     *
+     * @return Returns a RowPredicate instance.
+     */
+    static RowPredicate and(RowPredicate left, RowPredicate right) {
+        if ((left == NONE) || (right == NONE))
+            return NONE;
+
+        if (left == ALL)
+            return right;
+
+        if (right == ALL)
+            return left;
+
+        return row -> left.test(row) && right.test(row);
+    }
+
+    /**
+     * Combining two predicates with OR.
+     *
+     * @param left          The left predicate.
+     * @param right         The right predicate.
+     *
+     * @return Returns a RowPredicate instance.
+     */
+    static RowPredicate or(RowPredicate left, RowPredicate right) {
+        if ((left == ALL) || (right == ALL))
+            return ALL;
+
+        if (left == NONE)
+            return right;
+
+        if (right == NONE)
+            return left;
+
+        return row -> left.test(row) || right.test(row);
+    }
+
+    /**
+     * Negating a predicate.
+     *
+     * @param predicate     The predicate.
+     *
+     * @return Returns a RowPredicate instance.
+     */
+    static RowPredicate not(RowPredicate predicate) {
+        if (predicate == ALL)
+            return NONE;
+
+        if (predicate == NONE)
+            return ALL;
+
+        return row -> !predicate.test(row);
+    }
+
+    /**
+     * Creating a predicate for a single field.
+     *
+     * @param index         The index of the field in the row.
+     * @param clazz         The Java class of the attribute.
+     * @param multiValued   Whether the field holds a comma separated list of values.
+     * @param operator      The operator.
+     * @param values        The values from the filter.
+     *
+     * @return Returns a RowPredicate instance.
+     */
+    static RowPredicate field(int index, Class<?> clazz, boolean multiValued, PasswdQuery.Operator operator, List<Object> values) {
+        FieldPredicate predicate = new FieldPredicate(index, clazz, multiValued, operator, values);
+
+        if (!predicate.isSatisfiable())
+            return NONE;
+
+        return predicate;
+    }
+
+    /**
+     * Predicate comparing a single field with constant values.
+     */
+    private static class FieldPredicate implements RowPredicate {
+        private final int                  index;
+        private final boolean              multiValued;
+        private final boolean              numeric;
+        private final long[]               numericValues;
+        private final PasswdQuery.Operator operator;
+        private final String[]             stringValues;
+        private final boolean              zeroIsAbsent;
+
+        /**
+         * Constructing the predicate, converting the filter values to the field type once.
+         *
+         * @param index         The index of the field in the row.
+         * @param clazz         The Java class of the attribute.
+         * @param multiValued   Whether the field holds a comma separated list of values.
+         * @param operator      The operator.
+         * @param values        The values from the filter.
+         */
+        FieldPredicate(int index, Class<?> clazz, boolean multiValued, PasswdQuery.Operator operator, List<Object> values) {
+            this.index        = index;
+            this.multiValued  = multiValued;
+            this.numeric      = (Integer.class.equals(clazz)) || (Long.class.equals(clazz));
+            this.operator     = operator;
+            this.zeroIsAbsent = Long.class.equals(clazz);
+
+            if (numeric) {
+                List<Long> converted = new ArrayList<>(values.size());
+
+                for (Object value : values) {
+                    Long longValue = toLong(value);
+
+                    if (longValue != null)
+                        converted.add(longValue);
+                }
+
+                this.numericValues = converted.size() == values.size()
+                        ? converted.stream().mapToLong(Long::longValue).toArray()
+                        : null;
+                this.stringValues  = null;
+            } else {
+                this.numericValues = null;
+                this.stringValues  = values.stream().map(Objects::toString).toArray(String[]::new);
+            }
+        }
+
+        /**
+         * Checking whether the predicate can match any row at all.
+         *
+         * @return Returns false if the filter values cannot be represented in the field type.
+         */
+        boolean isSatisfiable() {
+            // The string operators only apply to string attributes
+            if ((numeric) && ((operator == PasswdQuery.Operator.CONTAINS)
+                    || (operator == PasswdQuery.Operator.ENDS_WITH)
+                    || (operator == PasswdQuery.Operator.STARTS_WITH)))
+                return false;
+
+            return (!numeric) || (numericValues != null);
+        }
+
+        /**
+         * Evaluating the condition.
+         *
+         * @param row           The passwd row.
+         *
+         * @return Returns whether the row matches the condition.
+         */
+        @Override
+        public boolean test(PasswdRow row) {
+            String rawValue = row.getField(index);
+
+            if (rawValue == null)
+                return false;
+
+            rawValue = rawValue.trim();
+
+            if (rawValue.isEmpty())
+                return false;
+
+            if (!multiValued)
+                return testValues(new String[]{rawValue});
+
+            List<String> fieldValues = new ArrayList<>();
+
+            for (String fieldValue : rawValue.split(",")) {
+                fieldValue = fieldValue.trim();
+
+                if (!fieldValue.isEmpty())
+                    fieldValues.add(fieldValue);
+            }
+
+            return testValues(fieldValues.toArray(new String[0]));
+        }
+
+        /**
+         * Evaluating the condition on the values of the field.
+         *
+         * @param fieldValues   The non-empty values of the field.
+         *
+         * @return Returns whether the values match the condition.
+         */
+        private boolean testValues(String[] fieldValues) {
+            int constantCount = numeric ? numericValues.length : stringValues.length;
+
+            switch (operator) {
+                case EQUALS:
+                    if (fieldValues.length != constantCount)
+                        return false;
+
+                    for (int i = 0; i < fieldValues.length; ++i) {
+                        if (!isEqual(fieldValues[i], i))
+                            return false;
+                    }
+
+                    return true;
+
+                case CONTAINS_ALL_VALUES:
+                    for (int constant = 0; constant < constantCount; ++constant) {
+                        boolean found = false;
+
+                        for (String fieldValue : fieldValues) {
+                            if (isEqual(fieldValue, constant)) {
+                                found = true;
+                                break;
+                            }
+                        }
+
+                        if (!found)
+                            return false;
+                    }
+
+                    return true;
+
+                default:
+                    for (String fieldValue : fieldValues) {
+                        if (testValue(fieldValue))
+                            return true;
+                    }
+
+                    return false;
+            }
+        }
+
+        /**
+         * Evaluating a single-valued operator on a field value.
+         *
+         * @param fieldValue    The field value.
+         *
+         * @return Returns whether the value matches the condition.
+         */
+        private boolean testValue(String fieldValue) {
+            switch (operator) {
+                case CONTAINS:
+                    return fieldValue.contains(stringValues[0]);
+
+                case ENDS_WITH:
+                    return fieldValue.endsWith(stringValues[0]);
+
+                case STARTS_WITH:
+                    return fieldValue.startsWith(stringValues[0]);
+
+                default:
+                    break;
+            }
+
+            int comparison;
+
+            if (numeric) {
+                Long longValue = parse(fieldValue);
+
+                if (longValue == null)
+                    return false;
+
+                comparison = Long.compare(longValue, numericValues[0]);
+            } else {
+                comparison = fieldValue.compareTo(stringValues[0]);
+            }
+
+            switch (operator) {
+                case GREATER_THAN:
+                    return comparison > 0;
+
+                case GREATER_THAN_OR_EQUAL:
+                    return comparison >= 0;
+
+                case LESS_THAN:
+                    return comparison < 0;
+
+                case LESS_THAN_OR_EQUAL:
+                    return comparison <= 0;
+
+                default:
+                    return false;
+            }
+        }
+
+        /**
+         * Comparing a field value with one of the filter values.
+         *
+         * @param fieldValue    The field value.
+         * @param constant      The index of the filter value.
+         *
+         * @return Returns whether both are equal.
+         */
+        private boolean isEqual(String fieldValue, int constant) {
+            if (!numeric)
+                return fieldValue.equals(stringValues[constant]);
+
+            Long longValue = parse(fieldValue);
+
+            return (longValue != null) && (longValue == numericValues[constant]);
+        }
+
+        /**
+         * Parsing a numeric field value.
+         *
+         * @param fieldValue    The field value.
+         *
+         * @return Returns the value, or null if it is not numeric or absent.
+         */
+        private Long parse(String fieldValue) {
+            try {
+                long result = Long.parseLong(fieldValue);
+
+                if ((zeroIsAbsent) && (result == 0L))
+                    return null;
+
+                return result;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Converting a filter value to a long.
+         *
+         * @param value         The filter value.
+         *
+         * @return Returns the value as Long, or null if it is not numeric.
+         */
+        private static Long toLong(Object value) {
+            if (value instanceof Number)
+                return ((Number) value).longValue();
+
+            try {
+                return Long.valueOf(Objects.toString(value).trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
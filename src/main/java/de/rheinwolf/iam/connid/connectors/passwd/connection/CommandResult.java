@@ -3,63 +3,80 @@ package de.rheinwolf.iam.connid.connectors.passwd.connection;
 import org.identityconnectors.common.logging.Log;
 import org.identityconnectors.framework.common.exceptions.ConnectionBrokenException;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.function.Consumer;
 
 /**
  * Representing the result of a command that was executed
  * over a Connection instance.
+ *
+ * The output is kept in OutputBuffer instances, which spill large outputs
+ * to disk. Consumers should prefer forEachStdOut() over getStdOut(), and
+ * close the result once the output has been processed.
  */
-public class CommandResult {
+public class CommandResult implements AutoCloseable {
     private static final Log LOG = Log.getLog(CommandResult.class);
 
-    private final List<String> stdErr = new ArrayList<>(0);
-    private final List<String> stdOut = new ArrayList<>(0);
+    private final OutputBuffer stdErr = new OutputBuffer();
+    private final OutputBuffer stdOut = new OutputBuffer();
 
-    private int exitCode = -1;
+    private boolean aborted  = false;
+    private int     exitCode = -1;
 
     /**
-     * Reading the output from a command and storing it in a consumer.
+     * Appending a line to the stderr.
      *
-     * @param inputStream       The input stream for the command.
-     * @param consumer          The consumer.
+     * @param line          The line from the stderr stream.
      *
-     * @throws IOException if an I/O error occurs.
+     * @return Returns true, as all lines should be read.
      */
-    static void readCommandOutput(InputStream inputStream, Consumer<String> consumer) throws IOException {
-        InputStreamReader inputStreamReader = new InputStreamReader(inputStream);
-        BufferedReader    bufferedReader    = new BufferedReader(inputStreamReader);
-        String            line;
-
-        while ((line = bufferedReader.readLine()) != null) {
-            consumer.accept(line);
-        }
+    boolean appendStdErr(String line) {
+        if (LOG.isOk())
+            LOG.ok("stderr: {0}", line);
+
+        return stdErr.handle(line);
     }
 
     /**
-     * Appending a line to the stderr.
+     * Appending a line to the stdout.
      *
-     * @param line          The line from the stderr stream.
+     * Note: The lines are not logged, as they may contain password hashes.
+     *
+     * @param line          The line from the stdout stream.
+     *
+     * @return Returns true, as all lines should be read.
      */
-    void appendStdErr(String line) {
-        LOG.ok("stderr: {0}", line);
-        stdErr.add(line);
+    boolean appendStdOut(String line) {
+        return stdOut.handle(line);
     }
 
     /**
-     * Appending a line to the stdout.
+     * Releasing the resources held by the buffered output.
+     */
+    @Override
+    public void close() {
+        stdErr.close();
+        stdOut.close();
+    }
+
+    /**
+     * Passing the lines of the stdout to a handler.
      *
-     * @param line          The line from the stdout stream.
+     * @param handler       The handler.
+     *
+     * @return Returns false if the handler stopped reading, true otherwise.
      */
-    void appendStdOut(String line) {
-        LOG.ok("stdout: {0}", line);
-        stdOut.add(line);
+    public boolean forEachStdOut(LineHandler handler) {
+        return stdOut.forEach(handler);
+    }
+
+    /**
+     * Checking whether the command was aborted because the output handler stopped reading.
+     *
+     * @return Returns whether the command was aborted.
+     */
+    public boolean isAborted() {
+        return aborted;
     }
 
     /**
@@ -74,27 +91,40 @@ public class CommandResult {
     /**
      * Retrieving the stderr of the command.
      *
-     * @return Returns the output as a list of String.
+     * @return Returns the output as an unmodifiable list of String.
      */
     public List<String> getStdErr() {
-        return stdErr;
+        return stdErr.toList();
     }
 
     /**
      * Retrieving the stdout of the command.
      *
-     * @return Returns the output as a list of String.
+     * Note: This materializes the whole output on the heap, use forEachStdOut() for large outputs.
+     *
+     * @return Returns the output as an unmodifiable list of String.
      */
     public List<String> getStdOut() {
-        return stdOut;
+        return stdOut.toList();
+    }
+
+    /**
+     * Removing the first line from the stderr, e.g. a password prompt.
+     */
+    public void removeFirstStdErrLine() {
+        stdErr.removeFirst();
     }
 
     /**
      * Checking whether the command exited with the correct exit code.
+     * Aborted commands have no exit code and always pass.
      *
      * @param exitCodes     The expected exit codes.
      */
     public CommandResult expect(int... exitCodes) {
+        if (aborted)
+            return this;
+
         if (Arrays.stream(exitCodes).noneMatch(Integer.valueOf(exitCode)::equals))
             throw new ConnectionBrokenException("Expected exit codes " + Arrays.toString(exitCodes) + ", got " + exitCode);
 
@@ -103,14 +133,22 @@ public class CommandResult {
 
     /**
      * Checking whether the stderr stream is empty.
+     * Aborted commands always pass.
      */
     public CommandResult expectStdErrIsEmpty() {
-        if (!stdErr.isEmpty())
-            throw new ConnectionBrokenException("Expected empty stderr stream, got: " + stdErr);
+        if ((!aborted) && (!stdErr.isEmpty()))
+            throw new ConnectionBrokenException("Expected empty stderr stream, got: " + stdErr.toList());
 
         return this;
     }
 
+    /**
+     * Marking the command as aborted.
+     */
+    void setAborted() {
+        this.aborted = true;
+    }
+
     /**
      * Setting the exit code for the command.
      *
@@ -33,6 +33,32 @@ public interface Connection extends AutoCloseable {
      */
     CommandResult execute(byte[] stdin, String... args);
 
+    /**
+     * Executing a command and passing its output to a handler while it is being received.
+     *
+     * @param stdin             The input for the command. Can be null.
+     * @param stdOutHandler     The handler for the lines on stdout. The command is aborted
+     *                          as soon as the handler returns false.
+     * @param args              The arguments for the command.
+     *
+     * @return Returns a CommandResult instance without stdout lines.
+     */
+    CommandResult stream(byte[] stdin, LineHandler stdOutHandler, String... args);
+
+    /**
+     * Executing a bulk read and passing its output to a handler while it is being received.
+     * Unlike stream(), the output may be compressed on the target system, so this is meant
+     * for reads of the database and not for commands changing it.
+     *
+     * @param stdin             The input for the command. Can be null.
+     * @param stdOutHandler     The handler for the lines on stdout. The command is aborted
+     *                          as soon as the handler returns false.
+     * @param args              The arguments for the command.
+     *
+     * @return Returns a CommandResult instance without stdout lines.
+     */
+    CommandResult read(byte[] stdin, LineHandler stdOutHandler, String... args);
+
     /**
      * Initializing the connection.
      *
@@ -0,0 +1,32 @@
+package de.rheinwolf.iam.connid.connectors.passwd.connection;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Callback for processing the output of a command line by line.
+ */
+public interface LineHandler {
+    /**
+     * Handling a line of output.
+     *
+     * @param line          The line without line terminator.
+     *
+     * @return Returns whether more lines should be read. Returning false aborts the command.
+     */
+    boolean handle(String line);
+
+    /**
+     * Handling a line of output as raw bytes. The buffer is reused for the next
+     * line, so handlers must copy the bytes they keep. The default implementation
+     * decodes the line as UTF-8 and passes it to handle(String).
+     *
+     * @param buffer        The buffer containing the line.
+     * @param offset        The offset of the line in the buffer.
+     * @param length        The length of the line without line terminator.
+     *
+     * @return Returns whether more lines should be read. Returning false aborts the command.
+     */
+    default boolean handle(byte[] buffer, int offset, int length) {
+        return handle(new String(buffer, offset, length, StandardCharsets.UTF_8));
+    }
+}
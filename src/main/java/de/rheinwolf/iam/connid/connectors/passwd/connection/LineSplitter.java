@@ -0,0 +1,147 @@
+package de.rheinwolf.iam.connid.connectors.passwd.connection;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Splitting a byte stream into lines with reusable buffers.
+ *
+ * Lines are terminated by LF, a preceding CR is removed. Lines are passed
+ * to the handler as raw bytes, so handlers tokenizing the bytes directly
+ * do not need to decode every line. Bytes that were read but not yet passed
+ * to a handler are kept, so a stream can be read in several portions, e.g.
+ * one per command of a persistent shell.
+ */
+final class LineSplitter {
+    private static final int BUFFER_SIZE = 32 * 1024;
+
+    private final byte[] readBuffer = new byte[BUFFER_SIZE];
+
+    private boolean inUse        = false;
+    private byte[]  lineBuffer   = new byte[256];
+    private int     lineLength   = 0;
+    private int     readCount    = 0;
+    private int     readPosition = 0;
+
+    /**
+     * Reading all lines of a new stream and passing them to a handler.
+     *
+     * @param inputStream   The stream.
+     * @param handler       The handler.
+     *
+     * @return Returns false if the handler stopped reading, true otherwise.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    boolean drain(InputStream inputStream, LineHandler handler) throws IOException {
+        lineLength   = 0;
+        readCount    = 0;
+        readPosition = 0;
+
+        return resume(inputStream, handler);
+    }
+
+    /**
+     * Continuing to read lines from the stream until the handler stops reading
+     * or the end of the stream is reached. Bytes after the last handled line
+     * are kept for the next call.
+     *
+     * @param inputStream   The stream.
+     * @param handler       The handler.
+     *
+     * @return Returns false if the handler stopped reading, true if the end of the stream was reached.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    boolean resume(InputStream inputStream, LineHandler handler) throws IOException {
+        while (true) {
+            while (readPosition < readCount) {
+                int end = readPosition;
+
+                while ((end < readCount) && (readBuffer[end] != '\n'))
+                    ++end;
+
+                append(readPosition, end - readPosition);
+
+                if (end == readCount) {
+                    readPosition = readCount;
+                    break;
+                }
+
+                readPosition = end + 1;
+
+                if (!handleLine(handler))
+                    return false;
+            }
+
+            readCount    = inputStream.read(readBuffer);
+            readPosition = 0;
+
+            if (readCount < 0) {
+                readCount = 0;
+
+                if (lineLength > 0)
+                    return handleLine(handler);
+
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Marking the splitter as used by the current thread.
+     *
+     * @return Returns false if the splitter is already in use.
+     */
+    boolean acquire() {
+        if (inUse)
+            return false;
+
+        inUse = true;
+
+        return true;
+    }
+
+    /**
+     * Marking the splitter as no longer used.
+     */
+    void release() {
+        inUse = false;
+    }
+
+    /**
+     * Appending a range of the read buffer to the current line.
+     *
+     * @param offset        The offset in the read buffer.
+     * @param length        The number of bytes.
+     */
+    private void append(int offset, int length) {
+        if (length == 0)
+            return;
+
+        if (lineLength + length > lineBuffer.length)
+            lineBuffer = Arrays.copyOf(lineBuffer, Math.max(lineBuffer.length * 2, lineLength + length));
+
+        System.arraycopy(readBuffer, offset, lineBuffer, lineLength, length);
+        lineLength += length;
+    }
+
+    /**
+     * Passing the current line to a handler and resetting the line buffer.
+     *
+     * @param handler       The handler.
+     *
+     * @return Returns whether more lines should be read.
+     */
+    private boolean handleLine(LineHandler handler) {
+        int length = lineLength;
+
+        if ((length > 0) && (lineBuffer[length - 1] == '\r'))
+            --length;
+
+        lineLength = 0;
+
+        return handler.handle(lineBuffer, 0, length);
+    }
+}
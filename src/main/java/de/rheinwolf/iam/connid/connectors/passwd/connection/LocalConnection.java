@@ -9,8 +9,8 @@ import org.identityconnectors.framework.common.exceptions.ConnectionBrokenExcept
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.util.Arrays;
+import java.util.concurrent.Future;
 
 /**
  * Pseudo-connection to the local system.
@@ -49,9 +49,54 @@ public class LocalConnection implements Connection {
     @Override
     public CommandResult execute(byte[] stdin, String... args) {
         CommandResult result = new CommandResult();
-        Process       process;
 
-        LOG.ok("Starting process: {0}", Arrays.toString(args));
+        return execute(stdin, result, result::appendStdOut, args);
+    }
+
+    /**
+     * Executing a command and passing its output to a handler while it is being received.
+     *
+     * @param stdin             The input for the command. Can be null.
+     * @param stdOutHandler     The handler for the lines on stdout.
+     * @param args              The arguments for the command.
+     *
+     * @return Returns a CommandResult instance without stdout lines.
+     */
+    @Override
+    public CommandResult stream(byte[] stdin, LineHandler stdOutHandler, String... args) {
+        return execute(stdin, new CommandResult(), stdOutHandler, args);
+    }
+
+    /**
+     * Executing a bulk read and passing its output to a handler while it is being received.
+     * Local output is never compressed.
+     *
+     * @param stdin             The input for the command. Can be null.
+     * @param stdOutHandler     The handler for the lines on stdout.
+     * @param args              The arguments for the command.
+     *
+     * @return Returns a CommandResult instance without stdout lines.
+     */
+    @Override
+    public CommandResult read(byte[] stdin, LineHandler stdOutHandler, String... args) {
+        return stream(stdin, stdOutHandler, args);
+    }
+
+    /**
+     * Executing a command.
+     *
+     * @param stdin             The input for the command. Can be null.
+     * @param result            The result that should be filled.
+     * @param stdOutHandler     The handler for the lines on stdout.
+     * @param args              The arguments for the command.
+     *
+     * @return Returns the CommandResult instance.
+     */
+    private CommandResult execute(byte[] stdin, CommandResult result, LineHandler stdOutHandler, String... args) {
+        Process process;
+
+        if (LOG.isOk())
+            LOG.ok("Starting process: {0}", Arrays.toString(args));
 
         try {
             process = new ProcessBuilder(CommandBuilder.asStringArray(args)).start();
@@ -59,34 +104,35 @@ public class LocalConnection implements Connection {
             throw new ConnectionBrokenException("Could not execute command: " + Arrays.toString(args));
         }
 
-        if ((stdin != null) && (stdin.length > 0)) {
-            try (OutputStream outputStream = process.getOutputStream()) {
-                outputStream.write(stdin);
-            } catch (IOException e) {
-                throw new ConnectionBrokenException("Could not write data to command: " + Arrays.toString(args));
-            }
-        }
+        // All three pipes are serviced at once, so none of them can fill up and stall the process
+        Future<Boolean> stdErrFuture = StreamPump.drainAsync(process.getErrorStream(), result::appendStdErr);
+        Future<Boolean> stdInFuture  = StreamPump.writeAsync(process.getOutputStream(), stdin);
 
         try (InputStream inputStream = process.getInputStream()) {
-            CommandResult.readCommandOutput(inputStream, result::appendStdOut);
+            if (!StreamPump.drain(inputStream, stdOutHandler)) {
+                LOG.ok("Output handler stopped reading, aborting process");
+                process.destroy();
+                result.setAborted();
+
+                return result;
+            }
         } catch (IOException e) {
+            process.destroy();
             throw new ConnectionBrokenException("Could not read output of command: " + Arrays.toString(args));
         }
 
-        try (InputStream inputStream = process.getErrorStream()) {
-            CommandResult.readCommandOutput(inputStream, result::appendStdErr);
-        } catch (IOException e) {
-            throw new ConnectionBrokenException("Could not read error output of command: " + Arrays.toString(args));
-        }
+        StreamPump.await(stdErrFuture, "read error output of command: " + Arrays.toString(args));
+
+        StreamPump.await(stdInFuture, "write data to command: " + Arrays.toString(args));
 
         try {
-            process.waitFor();
+            result.setExitCode(process.waitFor());
         } catch (InterruptedException e) {
+            process.destroy();
             Thread.currentThread().interrupt();
             throw new ConnectionBrokenException("Interrupted while trying to execute command", e);
         }
 
-        result.setExitCode(process.exitValue());
         LOG.ok("Process exited with exit code {0}", result.getExitCode());
 
         return result;
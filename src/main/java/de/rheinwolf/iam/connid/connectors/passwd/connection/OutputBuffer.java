@@ -0,0 +1,206 @@
+package de.rheinwolf.iam.connid.connectors.passwd.connection;
+
+import org.identityconnectors.common.logging.Log;
+import org.identityconnectors.framework.common.exceptions.ConnectionBrokenException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Line buffer for the output of a command with bounded memory usage.
+ *
+ * Lines are kept in memory until the buffered characters exceed a threshold.
+ * From then on, all lines are spilled to a temporary file which is read back
+ * when the lines are consumed, so large outputs do not stay on the heap.
+ */
+class OutputBuffer implements LineHandler, AutoCloseable {
+    private static final Log LOG = Log.getLog(OutputBuffer.class);
+
+    /**
+     * The number of characters kept in memory before spilling to disk.
+     */
+    static final int MEMORY_THRESHOLD = 1024 * 1024;
+
+    private final List<String> lines = new ArrayList<>(0);
+
+    private long           characterCount = 0;
+    private long           lineCount      = 0;
+    private int            skippedLines   = 0;
+    private Path           spillFile      = null;
+    private BufferedWriter spillWriter    = null;
+
+    /**
+     * Appending a line to the buffer.
+     *
+     * @param line          The line without line terminator.
+     *
+     * @return Returns true, as all lines should be read.
+     */
+    @Override
+    public boolean handle(String line) {
+        ++lineCount;
+        characterCount += line.length();
+
+        try {
+            if (spillWriter != null) {
+                spillWriter.write(line);
+                spillWriter.write('\n');
+            } else {
+                lines.add(line);
+
+                if (characterCount > MEMORY_THRESHOLD)
+                    spill();
+            }
+        } catch (IOException e) {
+            throw new ConnectionBrokenException("Could not write command output to temporary file", e);
+        }
+
+        return true;
+    }
+
+    /**
+     * Passing all buffered lines to a handler.
+     *
+     * @param handler       The handler.
+     *
+     * @return Returns false if the handler stopped reading, true otherwise.
+     */
+    boolean forEach(LineHandler handler) {
+        if (spillFile == null) {
+            for (int i = skippedLines; i < lines.size(); ++i) {
+                if (!handler.handle(lines.get(i)))
+                    return false;
+            }
+
+            return true;
+        }
+
+        try {
+            spillWriter.flush();
+
+            try (BufferedReader reader = Files.newBufferedReader(spillFile, StandardCharsets.UTF_8)) {
+                String line;
+                int    skip = skippedLines;
+
+                while ((line = reader.readLine()) != null) {
+                    if (skip > 0) {
+                        --skip;
+                        continue;
+                    }
+
+                    if (!handler.handle(line))
+                        return false;
+                }
+            }
+        } catch (IOException e) {
+            throw new ConnectionBrokenException("Could not read command output from temporary file", e);
+        }
+
+        return true;
+    }
+
+    /**
+     * Retrieving the temporary file the lines were spilled to.
+     *
+     * @return Returns the path of the file, or null if the lines are kept in memory.
+     */
+    Path getSpillFile() {
+        return spillFile;
+    }
+
+    /**
+     * Checking whether the buffer holds no lines.
+     *
+     * @return Returns whether the buffer is empty.
+     */
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Discarding the first line of the buffer.
+     */
+    void removeFirst() {
+        if (!isEmpty())
+            ++skippedLines;
+    }
+
+    /**
+     * Retrieving the number of lines in the buffer.
+     *
+     * @return Returns the number of lines.
+     */
+    long size() {
+        return lineCount - skippedLines;
+    }
+
+    /**
+     * Retrieving all lines of the buffer.
+     *
+     * Note: This materializes spilled output on the heap and should only be used for small outputs.
+     *
+     * @return Returns an unmodifiable list of lines.
+     */
+    List<String> toList() {
+        if ((spillFile == null) && (skippedLines == 0))
+            return Collections.unmodifiableList(lines);
+
+        List<String> result = new ArrayList<>();
+
+        forEach(result::add);
+
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Releasing the temporary file, if any.
+     */
+    @Override
+    public void close() {
+        if (spillFile == null)
+            return;
+
+        try {
+            spillWriter.close();
+        } catch (IOException e) {
+            LOG.warn(e, "Could not close temporary file {0}", spillFile);
+        }
+
+        try {
+            Files.deleteIfExists(spillFile);
+        } catch (IOException e) {
+            LOG.warn(e, "Could not delete temporary file {0}", spillFile);
+        }
+
+        spillFile   = null;
+        spillWriter = null;
+    }
+
+    /**
+     * Moving the lines kept in memory to a temporary file. The file is
+     * only readable by the owner, as the output may contain password hashes.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    private void spill() throws IOException {
+        spillFile   = Files.createTempFile("connector-passwd-", ".out");
+        spillWriter = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8);
+
+        if (LOG.isOk())
+            LOG.ok("Output exceeds {0} characters, spilling to {1}", MEMORY_THRESHOLD, spillFile);
+
+        for (String line : lines) {
+            spillWriter.write(line);
+            spillWriter.write('\n');
+        }
+
+        lines.clear();
+    }
+}
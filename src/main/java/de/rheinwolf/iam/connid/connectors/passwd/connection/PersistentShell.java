@@ -0,0 +1,492 @@
+package de.rheinwolf.iam.connid.connectors.passwd.connection;
+
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+
+import de.rheinwolf.iam.connid.connectors.passwd.util.CommandBuilder;
+
+import org.identityconnectors.common.logging.Log;
+import org.identityconnectors.framework.common.exceptions.ConnectionBrokenException;
+import org.identityconnectors.framework.common.exceptions.ConnectionFailedException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A long-lived /bin/sh on an SSH session which runs commands back to back,
+ * so the commands do not pay for opening and closing an exec channel.
+ *
+ * Every command is followed by statements printing a unique sentinel to
+ * stdout (together with the exit code) and to stderr. Both streams are read
+ * up to their sentinel, which demultiplexes the output into the result of
+ * the command. The input of a command is passed as a quoted here-document,
+ * which always ends with a line break. Commands are serialized by a fair lock.
+ *
+ * The shell may be started through sudo or doas, so all commands run with
+ * administrative privileges and the authentication happens only once. If a
+ * password has to be typed on a terminal, the channel gets a PTY, which is
+ * switched to raw mode without echo. As a PTY merges stdout and stderr, the
+ * stderr of each command then goes to a temporary file which is printed
+ * after the stdout sentinel and framed by a second sentinel.
+ */
+final class PersistentShell implements AutoCloseable {
+    private static final Log LOG = Log.getLog(PersistentShell.class);
+
+    private static final String SENTINEL_PREFIX = "__connector_passwd_";
+
+    private final ChannelExec   channel;
+    private final ReentrantLock lock           = new ReentrantLock(true);
+    private final boolean       merged;
+    private final InputStream   stdErr;
+    private final LineSplitter  stdErrSplitter = new LineSplitter();
+    private final OutputStream  stdIn;
+    private final InputStream   stdOut;
+    private final LineSplitter  stdOutSplitter = new LineSplitter();
+
+    private volatile boolean broken = false;
+
+    /**
+     * Constructing the shell.
+     *
+     * @param channel           The connected channel running the shell.
+     * @param merged            Whether stdout and stderr are merged by a PTY.
+     * @param stdErr            The stderr stream of the channel.
+     * @param stdIn             The stdin stream of the channel.
+     * @param stdOut            The stdout stream of the channel.
+     */
+    private PersistentShell(ChannelExec channel, boolean merged, InputStream stdErr, OutputStream stdIn, InputStream stdOut) {
+        this.channel = channel;
+        this.merged  = merged;
+        this.stdErr  = stdErr;
+        this.stdIn   = stdIn;
+        this.stdOut  = stdOut;
+    }
+
+    /**
+     * Starting a shell on a session.
+     *
+     * @param session           The connected session.
+     * @param command           The command starting the shell, e.g. "exec /bin/sh".
+     * @param pty               Whether a PTY should be allocated, e.g. for typing a password.
+     * @param password          The password that should be sent before the shell starts. Can be null.
+     *
+     * @return Returns a PersistentShell instance.
+     */
+    static PersistentShell open(Session session, String command, boolean pty, byte[] password) {
+        ChannelExec channel;
+
+        try {
+            channel = (ChannelExec) session.openChannel("exec");
+        } catch (JSchException e) {
+            throw new ConnectionBrokenException("Failed to open shell channel", e);
+        }
+
+        try {
+            InputStream  stdOut = channel.getInputStream();
+            InputStream  stdErr = channel.getErrStream();
+            OutputStream stdIn  = channel.getOutputStream();
+
+            LOG.ok("Starting persistent shell on {0}: {1}", session.getHost(), command);
+
+            channel.setPty(pty);
+            channel.setCommand(command);
+            channel.connect(SessionPool.CONNECT_TIMEOUT);
+
+            PersistentShell shell = new PersistentShell(channel, pty, stdErr, stdIn, stdOut);
+
+            shell.start(password);
+
+            return shell;
+        } catch (IOException e) {
+            channel.disconnect();
+            throw new ConnectionBrokenException("Failed to open streams of shell channel", e);
+        } catch (JSchException e) {
+            channel.disconnect();
+            throw new ConnectionBrokenException("Failed to connect to shell channel", e);
+        } catch (RuntimeException e) {
+            channel.disconnect();
+            throw e;
+        } finally {
+            if (password != null)
+                Arrays.fill(password, (byte) 0);
+        }
+    }
+
+    /**
+     * Authenticating, preparing the shell and waiting until it accepts commands.
+     *
+     * @param password          The password that should be sent before the shell starts. Can be null.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    private void start(byte[] password) throws IOException {
+        String readyToken = SENTINEL_PREFIX + UUID.randomUUID().toString().replace("-", "");
+
+        if (password != null) {
+            // A terminal prompt flushes pending input, so the password is sent once the prompt appeared
+            if (merged)
+                awaitPasswordPrompt();
+
+            stdIn.write(password);
+            stdIn.write('\n');
+            stdIn.flush();
+        }
+
+        StringBuilder script = new StringBuilder();
+
+        if (merged) {
+            script.append("stty raw -echo 2>/dev/null\n");
+            script.append("__connector_passwd_err=$(mktemp) || exit 1\n");
+            script.append("trap 'rm -f \"$__connector_passwd_err\"' EXIT\n");
+        }
+
+        // The token is split, so the echo of this line is not mistaken for it
+        String readyStatement = "printf '%s%s\\n' '"
+                + readyToken.substring(0, SENTINEL_PREFIX.length())
+                + "' '"
+                + readyToken.substring(SENTINEL_PREFIX.length())
+                + "'";
+
+        script.append(readyStatement).append("\n");
+
+        if (!merged)
+            script.append(readyStatement).append(" >&2\n");
+
+        // A rejected password ends the become method, so the script may not be accepted anymore
+        try {
+            stdIn.write(script.toString().getBytes(StandardCharsets.UTF_8));
+            stdIn.flush();
+        } catch (IOException e) {
+            throw new ConnectionFailedException("The persistent shell exited during startup, check the become configuration", e);
+        }
+
+        // Messages of sudo or doas, e.g. the lecture, must not end up in the output of the first command
+        Future<Boolean> stdErrFuture = merged ? null : StreamPump.submit(() -> stdErrSplitter.resume(stdErr, line -> {
+            if (line.endsWith(readyToken))
+                return false;
+
+            LOG.info("Persistent shell startup: {0}", line);
+
+            return true;
+        }));
+
+        boolean stdOutEnded = stdOutSplitter.resume(stdOut, line -> !line.endsWith(readyToken));
+        boolean stdErrEnded = (stdErrFuture != null) && (StreamPump.await(stdErrFuture, "read error output of persistent shell"));
+
+        if ((stdOutEnded) || (stdErrEnded))
+            throw new ConnectionFailedException("The persistent shell exited during startup, check the become configuration");
+
+        LOG.ok("Persistent shell is ready");
+    }
+
+    /**
+     * Reading the terminal output until a password prompt appeared.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    private void awaitPasswordPrompt() throws IOException {
+        StringBuilder output = new StringBuilder();
+        int           character;
+
+        while ((character = stdOut.read()) >= 0) {
+            output.append((char) character);
+
+            if ((character == ':') && (output.toString().toLowerCase().contains("password")))
+                return;
+        }
+
+        throw new ConnectionFailedException("The persistent shell exited before asking for a password");
+    }
+
+    /**
+     * Closing the shell.
+     */
+    @Override
+    public void close() {
+        broken = true;
+
+        if (channel.isConnected()) {
+            LOG.ok("Closing persistent shell");
+            channel.disconnect();
+        }
+    }
+
+    /**
+     * Executing a command in the shell.
+     *
+     * @param stdin             The input for the command. Can be null.
+     * @param result            The result that should be filled.
+     * @param stdOutHandler     The handler for the lines on stdout.
+     * @param args              The arguments for the command.
+     *
+     * @return Returns the CommandResult instance.
+     */
+    CommandResult execute(byte[] stdin, CommandResult result, LineHandler stdOutHandler, String... args) {
+        lock.lock();
+
+        try {
+            if (!isOpen())
+                throw new ConnectionBrokenException("The persistent shell is closed");
+
+            String          sentinel      = SENTINEL_PREFIX + UUID.randomUUID().toString().replace("-", "");
+            byte[]          script        = buildScript(sentinel, stdin, args);
+            SentinelHandler stdErrHandler = new SentinelHandler(sentinel, result::appendStdErr);
+            SentinelHandler stdOutHandlerWrapper;
+
+            // The command cannot be aborted without losing the shell, so its remaining output is skipped
+            stdOutHandlerWrapper = new SentinelHandler(sentinel, new LineHandler() {
+                /**
+                 * Passing a line to the output handler unless the command was aborted.
+                 *
+                 * @param line              The line.
+                 *
+                 * @return Returns true, the output is read up to the sentinel.
+                 */
+                @Override
+                public boolean handle(String line) {
+                    if (!result.isAborted())
+                        skipIfStopped(stdOutHandler.handle(line));
+
+                    return true;
+                }
+
+                /**
+                 * Passing a raw line to the output handler unless the command was aborted.
+                 *
+                 * @param buffer            The buffer containing the line.
+                 * @param offset            The offset of the line in the buffer.
+                 * @param length            The length of the line.
+                 *
+                 * @return Returns true, the output is read up to the sentinel.
+                 */
+                @Override
+                public boolean handle(byte[] buffer, int offset, int length) {
+                    if (!result.isAborted())
+                        skipIfStopped(stdOutHandler.handle(buffer, offset, length));
+
+                    return true;
+                }
+
+                /**
+                 * Aborting the command if the output handler stopped reading.
+                 *
+                 * @param handled           The result of the output handler.
+                 */
+                private void skipIfStopped(boolean handled) {
+                    if (!handled) {
+                        LOG.ok("Output handler stopped reading, skipping remaining output");
+                        result.setAborted();
+                    }
+                }
+            });
+
+            if (LOG.isOk())
+                LOG.ok("Starting process in persistent shell: {0}", Arrays.toString(args));
+
+            Future<Boolean> stdInFuture  = StreamPump.submit(() -> {
+                stdIn.write(script);
+                stdIn.flush();
+
+                return true;
+            });
+            Future<Boolean> stdErrFuture = merged ? null : StreamPump.submit(() -> stdErrSplitter.resume(stdErr, stdErrHandler));
+
+            boolean stdOutEnded = stdOutSplitter.resume(stdOut, stdOutHandlerWrapper);
+            boolean stdErrEnded;
+
+            // With a PTY, the stderr of the command follows its stdout sentinel
+            if (merged) {
+                stdErrEnded = (!stdOutEnded) && (stdOutSplitter.resume(stdOut, stdErrHandler));
+            } else {
+                stdErrEnded = StreamPump.await(stdErrFuture, "read error output of persistent shell");
+            }
+
+            StreamPump.await(stdInFuture, "write command to persistent shell");
+
+            if ((stdOutEnded) || (stdErrEnded) || (stdOutHandlerWrapper.exitCode == null))
+                throw new ConnectionBrokenException("The persistent shell exited unexpectedly");
+
+            result.setExitCode(stdOutHandlerWrapper.exitCode);
+            LOG.ok("Process exited with exit code {0}", result.getExitCode());
+
+            return result;
+        } catch (IOException e) {
+            close();
+            throw new ConnectionBrokenException("Failed to read output of persistent shell", e);
+        } catch (RuntimeException e) {
+            // The position in the output streams is unknown, so the shell cannot be used anymore
+            close();
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checking whether the shell can run commands.
+     *
+     * @return Returns whether the shell is open.
+     */
+    boolean isOpen() {
+        return (!broken) && (!channel.isClosed());
+    }
+
+    /**
+     * Building the script for a command.
+     *
+     * @param sentinel          The sentinel for the command.
+     * @param stdin             The input for the command. Can be null.
+     * @param args              The arguments for the command.
+     *
+     * @return Returns the script as bytes.
+     */
+    private byte[] buildScript(String sentinel, byte[] stdin, String... args) {
+        ByteArrayOutputStream script = new ByteArrayOutputStream();
+
+        write(script, CommandBuilder.asString(args));
+
+        if (merged)
+            write(script, " 2>\"$__connector_passwd_err\"");
+
+        if ((stdin == null) || (stdin.length == 0)) {
+            write(script, " </dev/null\n");
+        } else {
+            write(script, " <<'" + sentinel + "'\n");
+            script.write(stdin, 0, stdin.length);
+
+            if (stdin[stdin.length - 1] != '\n')
+                write(script, "\n");
+
+            write(script, sentinel + "\n");
+        }
+
+        write(script, "__connector_passwd_rc=$?\n");
+        write(script, "printf '%s:%s\\n' '" + sentinel + "' \"$__connector_passwd_rc\"\n");
+
+        if (merged) {
+            write(script, "cat \"$__connector_passwd_err\"\n");
+            write(script, "printf '%s\\n' '" + sentinel + "'\n");
+        } else {
+            write(script, "printf '%s\\n' '" + sentinel + "' >&2\n");
+        }
+
+        return script.toByteArray();
+    }
+
+    /**
+     * Writing a string to the script.
+     *
+     * @param script            The script.
+     * @param value             The string.
+     */
+    private static void write(ByteArrayOutputStream script, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+        script.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Passing lines to a handler until the sentinel of a command is found.
+     */
+    private static class SentinelHandler implements LineHandler {
+        private final LineHandler handler;
+        private final String      sentinel;
+        private final byte[]      sentinelBytes;
+
+        private Integer exitCode = null;
+
+        /**
+         * Constructing the handler.
+         *
+         * @param sentinel          The sentinel of the command.
+         * @param handler           The handler for the lines of the command.
+         */
+        SentinelHandler(String sentinel, LineHandler handler) {
+            this.handler       = handler;
+            this.sentinel      = sentinel;
+            this.sentinelBytes = sentinel.getBytes(StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Handling a line of the shell output as raw bytes. Lines of the command
+         * are passed on without decoding, lines with the sentinel are decoded.
+         *
+         * @param buffer            The buffer containing the line.
+         * @param offset            The offset of the line in the buffer.
+         * @param length            The length of the line.
+         *
+         * @return Returns false once the sentinel was found.
+         */
+        @Override
+        public boolean handle(byte[] buffer, int offset, int length) {
+            if (containsSentinel(buffer, offset, length))
+                return handle(new String(buffer, offset, length, StandardCharsets.UTF_8));
+
+            return handler.handle(buffer, offset, length);
+        }
+
+        /**
+         * Checking whether a line contains the sentinel.
+         *
+         * @param buffer            The buffer containing the line.
+         * @param offset            The offset of the line in the buffer.
+         * @param length            The length of the line.
+         *
+         * @return Returns true if the sentinel was found.
+         */
+        private boolean containsSentinel(byte[] buffer, int offset, int length) {
+            int last = offset + length - sentinelBytes.length;
+
+            for (int i = offset; i <= last; ++i) {
+                int j = 0;
+
+                while ((j < sentinelBytes.length) && (buffer[i + j] == sentinelBytes[j]))
+                    ++j;
+
+                if (j == sentinelBytes.length)
+                    return true;
+            }
+
+            return false;
+        }
+
+        /**
+         * Handling a line of the shell output.
+         *
+         * @param line              The line.
+         *
+         * @return Returns false once the sentinel was found.
+         */
+        @Override
+        public boolean handle(String line) {
+            int index = line.indexOf(sentinel);
+
+            if (index < 0)
+                return handler.handle(line);
+
+            // Output of the command without a final line break
+            if (index > 0)
+                handler.handle(line.substring(0, index));
+
+            String rest = line.substring(index + sentinel.length());
+
+            if (rest.startsWith(":")) {
+                try {
+                    exitCode = Integer.valueOf(rest.substring(1).trim());
+                } catch (NumberFormatException e) {
+                    throw new ConnectionBrokenException("Invalid exit code from persistent shell: " + rest);
+                }
+            }
+
+            return false;
+        }
+    }
+}
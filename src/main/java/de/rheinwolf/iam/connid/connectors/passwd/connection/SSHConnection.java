@@ -7,27 +7,77 @@ import de.rheinwolf.iam.connid.connectors.passwd.util.CommandBuilder;
 import de.rheinwolf.iam.connid.connectors.passwd.util.ConnIdJSchLogger;
 import de.rheinwolf.iam.connid.connectors.passwd.util.GuardedStringAccessor;
 
-import org.identityconnectors.common.StringUtil;
 import org.identityconnectors.common.logging.Log;
 import org.identityconnectors.common.security.GuardedString;
 import org.identityconnectors.framework.common.exceptions.ConnectionBrokenException;
 import org.identityconnectors.framework.common.exceptions.ConnectionFailedException;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Arrays;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.GZIPInputStream;
+
+import static de.rheinwolf.iam.connid.connectors.passwd.PasswdConfiguration.BECOME_METHOD_NONE;
+import static de.rheinwolf.iam.connid.connectors.passwd.PasswdConfiguration.BECOME_METHOD_SUDO;
+import static de.rheinwolf.iam.connid.connectors.passwd.PasswdConfiguration.BECOME_MODE_SESSION;
+import static de.rheinwolf.iam.connid.connectors.passwd.PasswdConfiguration.CHANNEL_MODE_SHELL;
+import static de.rheinwolf.iam.connid.connectors.passwd.PasswdConfiguration.REMOTE_COMPRESSION_GZIP;
 
 /**
  * Connecting to target systems using SSH.
+ *
+ * The connection is thread-safe: every command runs in its own exec channel
+ * of a session leased from the JVM-wide SessionPool, so all connector
+ * instances of a target system share their sessions. The number of
+ * concurrently open channels per session is limited by a fair semaphore,
+ * so the server's MaxSessions is never exceeded and waiting commands are
+ * served in order.
+ *
+ * In the shell channel mode, all commands are run back to back in a single
+ * PersistentShell instead, which is reopened if it breaks. In the session
+ * become mode, this shell is started through sudo or doas, so the privileges
+ * are gained only once per shell.
+ *
+ * Sessions are established lazily by the first command. If a channel
+ * cannot be opened, e.g. because a firewall dropped the idle session, it
+ * is retried with jittered exponential backoff, discarding the session if
+ * it is down or does not take a keep alive message. No command was started
+ * in that case, so the retry is transparent for every command.
  */
 public class SSHConnection implements Connection {
     private static final Log LOG = Log.getLog(SSHConnection.class);
 
-    private final JSch jSch = new JSch();
+    /**
+     * The time in milliseconds to wait for the exit status after the output ended.
+     */
+    private static final long EXIT_STATUS_TIMEOUT = 30000;
+
+    /**
+     * The number of attempts for opening a channel, reconnecting the session in between.
+     */
+    private static final int CONNECT_ATTEMPTS = 4;
+
+    /**
+     * The bounds in milliseconds of the delay before reconnecting, doubled on every attempt.
+     */
+    private static final long BACKOFF_INITIAL = 250;
+    private static final long BACKOFF_MAX     = 8000;
 
-    private Session session = null;
+    /**
+     * The size in bytes of the buffer for decompressing streamed output.
+     */
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    private volatile String                    becomeMethod   = null;
+    private volatile GuardedString             becomePassword = null;
+    private volatile boolean                   compressOutput = false;
+    private volatile SessionPool.Host          host           = null;
+    private volatile PersistentShell           shell          = null;
+    private volatile SessionPool.PooledSession shellSession   = null;
+    private volatile boolean                   useShell       = false;
 
     /**
      * Trying to authenticate using a username/password pair.
@@ -39,18 +89,15 @@ public class SSHConnection implements Connection {
     @Override
     public void authenticate(PasswdConfiguration configuration, String username, GuardedString password) {
         try {
-            Session authSession = jSch.getSession(configuration.getUserName(), configuration.getHostName(), configuration.getPort());
+            Session authSession = SessionPool.newJSch(configuration).getSession(configuration.getUserName(), configuration.getHostName(), configuration.getPort());
 
-            if (StringUtil.isBlank(configuration.getHostKey())) {
-                LOG.info("Using known hosts from default location - consider setting host key explicitly");
-            } else if ("*".equals(configuration.getHostKey())) {
+            if ("*".equals(configuration.getHostKey()))
                 authSession.setConfig("StrictHostKeyChecking", "no");
-            }
 
             authSession.setConfig("PreferredAuthentications", "password");
             authSession.setPassword(GuardedStringAccessor.asByteArray(password));
 
-            authSession.connect();
+            authSession.connect(SessionPool.CONNECT_TIMEOUT);
             authSession.disconnect();
         } catch (JSchException e) {
             throw new ConnectionFailedException("Could not connect to " + configuration.getHostName(), e);
@@ -58,16 +105,19 @@ public class SSHConnection implements Connection {
     }
 
     /**
-     * Closing the connection.
+     * Closing the connection. The shared sessions stay connected for other
+     * connections until they exceed the idle timeout.
      */
     @Override
-    public void close() {
-        if ((session != null) && (session.isConnected())) {
-            LOG.ok("close() -> Disconnecting from {0}", session.getHost());
-            session.disconnect();
+    public synchronized void close() {
+        closeShell();
+
+        if (host != null) {
+            LOG.ok("close() -> Releasing sessions to {0}", host.getHostName());
+            SessionPool.release(host);
         }
 
-        session = null;
+        host = null;
     }
 
     /**
@@ -81,108 +131,528 @@ public class SSHConnection implements Connection {
     @Override
     public CommandResult execute(byte[] stdin, String... args) {
         CommandResult result = new CommandResult();
-        ChannelExec   channel;
 
-        try {
-            channel = (ChannelExec) session.openChannel("exec");
-        } catch (JSchException e) {
-            throw new ConnectionBrokenException("Failed to open execute channel", e);
-        }
+        return execute(stdin, result, result::appendStdOut, false, args);
+    }
+
+    /**
+     * Executing a command and passing its output to a handler while it is being received.
+     *
+     * @param stdin             The input for the command. Can be null.
+     * @param stdOutHandler     The handler for the lines on stdout.
+     * @param args              The arguments for the command.
+     *
+     * @return Returns a CommandResult instance without stdout lines.
+     */
+    @Override
+    public CommandResult stream(byte[] stdin, LineHandler stdOutHandler, String... args) {
+        return execute(stdin, new CommandResult(), stdOutHandler, false, args);
+    }
+
+    /**
+     * Executing a bulk read and passing its output to a handler while it is being received.
+     * The output is compressed on the target system if remote compression is configured.
+     *
+     * @param stdin             The input for the command. Can be null.
+     * @param stdOutHandler     The handler for the lines on stdout.
+     * @param args              The arguments for the command.
+     *
+     * @return Returns a CommandResult instance without stdout lines.
+     */
+    @Override
+    public CommandResult read(byte[] stdin, LineHandler stdOutHandler, String... args) {
+        return execute(stdin, new CommandResult(), stdOutHandler, compressOutput, args);
+    }
+
+    /**
+     * Executing a command.
+     *
+     * @param stdin             The input for the command. Can be null.
+     * @param result            The result that should be filled.
+     * @param stdOutHandler     The handler for the lines on stdout.
+     * @param compress          Whether stdout should be compressed on the target system.
+     *                          Not supported by the persistent shell.
+     * @param args              The arguments for the command.
+     *
+     * @return Returns the CommandResult instance.
+     */
+    private CommandResult execute(byte[] stdin, CommandResult result, LineHandler stdOutHandler, boolean compress, String... args) {
+        if (useShell)
+            return getShell().execute(stdin, result, stdOutHandler, args);
+
+        return executeInChannel(stdin, result, stdOutHandler, compress, args);
+    }
+
+    /**
+     * Executing a command in a new exec channel.
+     *
+     * @param stdin             The input for the command. Can be null.
+     * @param result            The result that should be filled.
+     * @param stdOutHandler     The handler for the lines on stdout.
+     * @param compress          Whether stdout should be compressed on the target system.
+     * @param args              The arguments for the command.
+     *
+     * @return Returns the CommandResult instance.
+     */
+    private CommandResult executeInChannel(byte[] stdin, CommandResult result, LineHandler stdOutHandler, boolean compress, String... args) {
+        String           command     = compress ? withCompressedOutput(CommandBuilder.asString(args)) : CommandBuilder.asString(args);
+        SessionPool.Host currentHost = getHost();
+        ExecChannel      exec        = withSession(currentHost, "open execute channel", pooledSession -> ExecChannel.open(pooledSession, command, args));
+        ChannelExec      channel     = exec.channel;
+
+        if (LOG.isOk())
+            LOG.ok("Opened execute channel, {0} further channels available", exec.session.getAvailableChannels());
 
         try {
-            InputStream  commandOutput = channel.getInputStream();
-            InputStream  commandErrOut = channel.getErrStream();
-            OutputStream commandInput  = channel.getOutputStream();
+            // The streams share the channel window, so they are serviced at once
+            Future<Boolean> stdErrFuture = StreamPump.drainAsync(exec.stdErr, result::appendStdErr);
+            Future<Boolean> stdInFuture  = StreamPump.writeAsync(exec.stdIn, stdin);
 
-            LOG.ok("Starting process: {0}", Arrays.toString(args));
+            // The header is read here, so the other streams have to be serviced already
+            InputStream output = compress ? openCompressedOutput(exec, result, stdErrFuture) : exec.stdOut;
 
-            channel.setCommand(CommandBuilder.asString(args));
-            channel.connect();
+            if (!StreamPump.drain(output, stdOutHandler)) {
+                LOG.ok("Output handler stopped reading, closing execute channel");
+                result.setAborted();
 
-            if ((stdin != null) && (stdin.length > 0)) {
-                commandInput.write(stdin);
-                commandInput.close();
+                return result;
             }
 
-            CommandResult.readCommandOutput(commandOutput, result::appendStdOut);
-            CommandResult.readCommandOutput(commandErrOut, result::appendStdErr);
+            StreamPump.await(stdErrFuture, "read error output of execute channel");
+            StreamPump.await(stdInFuture, "write data to execute channel");
 
-            if (channel.isClosed()) {
-                result.setExitCode(channel.getExitStatus());
-                LOG.ok("Process exited with exit code {0}", result.getExitCode());
-            }
+            result.setExitCode(waitForExitStatus(channel));
+            LOG.ok("Process exited with exit code {0}", result.getExitCode());
         } catch (IOException e) {
-            throw new ConnectionBrokenException("Failed open output stream of execute channel", e);
-        } catch (JSchException e) {
-            throw new ConnectionBrokenException("Failed to connect to execute channel", e);
+            throw new ConnectionBrokenException("Failed to read output of execute channel", e);
         } finally {
             channel.disconnect();
+            currentHost.release(exec.session);
         }
 
         return result;
     }
 
+    /**
+     * Opening the compressed output of a command. If there is no gzip header, e.g. as
+     * gzip is missing on the target system, the command failed and is not worth a retry,
+     * so the exit code and error output are reported instead of a broken connection.
+     *
+     * @param exec              The execute channel.
+     * @param result            The result that receives the error output.
+     * @param stdErrFuture      The task reading the error output.
+     *
+     * @return Returns the decompressed output.
+     *
+     * @throws IOException      If the connection broke while reading the header.
+     */
+    private InputStream openCompressedOutput(ExecChannel exec, CommandResult result, Future<Boolean> stdErrFuture) throws IOException {
+        try {
+            return new GZIPInputStream(exec.stdOut, GZIP_BUFFER_SIZE);
+        } catch (IOException e) {
+            StreamPump.await(stdErrFuture, "read error output of execute channel");
+
+            int exitCode = waitForExitStatus(exec.channel);
+
+            if ((exitCode == 0) && (result.getStdErr().isEmpty()))
+                throw e;
+
+            throw new ConnectionFailedException("The compressed output could not be read, check that gzip is installed on the target system."
+                    + " Exit code " + exitCode + ": " + String.join(" ", result.getStdErr()), e);
+        }
+    }
+
+    /**
+     * Wrapping a command, so its output is compressed by gzip on the target system.
+     * The exit code of the command is passed through fd 4, as a plain pipeline would
+     * report the exit code of gzip. A missing exit code, e.g. if the shell was killed,
+     * is reported as 1.
+     *
+     * @param command           The command line.
+     *
+     * @return Returns the wrapped command line.
+     */
+    static String withCompressedOutput(String command) {
+        String script = "{ s=$( { { ( " + command + " ); printf '%s' \"$?\" >&4; } | gzip -c >&3; } 4>&1 ); exit \"${s:-1}\"; } 3>&1";
+
+        return "sh -c " + CommandBuilder.asShellLine(new String[] {script});
+    }
+
+    /**
+     * Running a task on a channel of a leased session. If the task fails to open the
+     * channel, it is retried after a delay. The leased session is discarded if it is
+     * disconnected or fails a keep alive probe, so the retry connects a new one.
+     * The channel stays leased if the task succeeds and has to be released by the caller.
+     *
+     * @param currentHost       The sessions of the target system.
+     * @param description       The description of the task, for error messages.
+     * @param task              The task.
+     *
+     * @return Returns the result of the task.
+     */
+    private static <T> T withSession(SessionPool.Host currentHost, String description, SessionTask<T> task) {
+        for (int attempt = 1; ; ++attempt) {
+            SessionPool.PooledSession pooledSession = null;
+
+            try {
+                pooledSession = currentHost.lease();
+
+                return task.run(pooledSession);
+            } catch (IOException | JSchException e) {
+                if (pooledSession != null) {
+                    currentHost.release(pooledSession);
+
+                    // Other channels may still use a session that is up
+                    if (!isResponsive(pooledSession.getSession()))
+                        currentHost.discard(pooledSession);
+                }
+
+                if ((attempt >= CONNECT_ATTEMPTS) && (pooledSession == null))
+                    throw new ConnectionFailedException("Could not connect to " + currentHost.getHostName(), e);
+                if (attempt >= CONNECT_ATTEMPTS)
+                    throw new ConnectionBrokenException("Failed to " + description, e);
+
+                LOG.warn("Failed to {0}, reconnecting (attempt {1} of {2}): {3}", description, attempt + 1, CONNECT_ATTEMPTS, e.getMessage());
+                backoff(attempt);
+            } catch (RuntimeException e) {
+                if (pooledSession != null)
+                    currentHost.release(pooledSession);
+
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Checking whether a session still works after a channel could not be opened on it.
+     *
+     * @param session           The session.
+     *
+     * @return Returns false if the session is disconnected or a keep alive message cannot be sent.
+     */
+    private static boolean isResponsive(Session session) {
+        if (!session.isConnected())
+            return false;
+
+        try {
+            session.sendKeepAliveMsg();
+        } catch (Exception e) {
+            LOG.info("Session failed keep alive probe: {0}", e.getMessage());
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Waiting before the next connection attempt.
+     *
+     * @param attempt           The number of the failed attempt, starting at 1.
+     */
+    private static void backoff(int attempt) {
+        try {
+            Thread.sleep(getBackoffDelay(attempt));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConnectionBrokenException("Interrupted while waiting to reconnect", e);
+        }
+    }
+
+    /**
+     * Computing the delay before the next connection attempt. The delay is doubled on every
+     * attempt up to a maximum and randomized, so pooled connections do not reconnect in lockstep.
+     *
+     * @param attempt           The number of the failed attempt, starting at 1.
+     *
+     * @return Returns the delay in milliseconds, between half of the ceiling of the attempt and the ceiling.
+     */
+    static long getBackoffDelay(int attempt) {
+        long ceiling = Math.min(BACKOFF_MAX, BACKOFF_INITIAL << Math.min(Math.max(attempt, 1) - 1, 16));
+
+        return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+    }
+
+    /**
+     * Retrieving the sessions of the target system.
+     *
+     * @return Returns the sessions of the host.
+     */
+    private SessionPool.Host getHost() {
+        SessionPool.Host currentHost = host;
+
+        if (currentHost == null)
+            throw new ConnectionBrokenException("The connection is closed");
+
+        return currentHost;
+    }
+
+    /**
+     * Retrieving the persistent shell, starting a new one if there is no usable shell.
+     *
+     * @return Returns a PersistentShell instance.
+     */
+    private PersistentShell getShell() {
+        PersistentShell currentShell = shell;
+
+        if ((currentShell != null) && (currentShell.isOpen()))
+            return currentShell;
+
+        synchronized (this) {
+            if ((shell != null) && (shell.isOpen()))
+                return shell;
+
+            closeShell();
+
+            shell = openShell();
+
+            return shell;
+        }
+    }
+
+    /**
+     * Closing the persistent shell and returning its channel to the pool.
+     */
+    private synchronized void closeShell() {
+        if (shell != null) {
+            shell.close();
+            shell = null;
+        }
+
+        if (shellSession != null) {
+            host.release(shellSession);
+            shellSession = null;
+        }
+    }
+
+    /**
+     * Starting a persistent shell, gaining privileges if the become mode is session.
+     *
+     * The become method is asked non-interactively first, so the password is only
+     * sent if it is actually requested and never ends up as input of the shell.
+     * The shell keeps its channel leased until it is closed.
+     *
+     * @return Returns a PersistentShell instance.
+     */
+    private PersistentShell openShell() {
+        // The probe releases its channel before the shell leases one, so a single channel per session suffices
+        boolean passwordless = (becomeMethod == null) || (isPasswordless());
+
+        if (!passwordless) {
+            if (becomePassword == null)
+                throw new ConnectionFailedException("The become method " + becomeMethod + " requires a become password");
+
+            LOG.ok("Authenticating persistent shell using {0}", becomeMethod);
+        }
+
+        // sudo reads the password from stdin, doas only from a terminal
+        SessionPool.Host currentHost   = getHost();
+        String           shellCommand  = getShellCommand(becomeMethod, passwordless);
+        boolean          shellPty      = (!passwordless) && (!BECOME_METHOD_SUDO.equals(becomeMethod));
+        boolean          shellPassword = !passwordless;
+
+        return withSession(currentHost, "start persistent shell", pooledSession -> {
+            try {
+                PersistentShell newShell = PersistentShell.open(pooledSession.getSession(), shellCommand, shellPty,
+                        shellPassword ? GuardedStringAccessor.asByteArray(becomePassword) : null);
+
+                shellSession = pooledSession;
+
+                return newShell;
+            } catch (ConnectionBrokenException e) {
+                // Only a dropped session is worth reconnecting for
+                if (pooledSession.getSession().isConnected())
+                    throw e;
+
+                throw new JSchException("Session dropped while starting persistent shell", e);
+            }
+        });
+    }
+
+    /**
+     * Building the command starting the persistent shell.
+     *
+     * @param becomeMethod      The become method, or null to start the shell as the login user.
+     * @param passwordless      Whether the become method grants privileges without a password.
+     *
+     * @return Returns the command line.
+     */
+    static String getShellCommand(String becomeMethod, boolean passwordless) {
+        if (becomeMethod == null)
+            return "exec /bin/sh";
+
+        if (passwordless)
+            return "exec " + becomeMethod + " -n /bin/sh";
+
+        return BECOME_METHOD_SUDO.equals(becomeMethod) ? "exec sudo -k -S -p '' /bin/sh" : "exec doas /bin/sh";
+    }
+
+    /**
+     * Checking whether the become method grants privileges without a password.
+     *
+     * @return Returns true if no password is requested.
+     */
+    private boolean isPasswordless() {
+        String[] probe = BECOME_METHOD_SUDO.equals(becomeMethod)
+                ? new String[]{"sudo", "-k", "-n", "true"}
+                : new String[]{"doas", "-n", "true"};
+
+        try (CommandResult result = new CommandResult()) {
+            return executeInChannel(null, result, result::appendStdOut, false, probe).getExitCode() == 0;
+        }
+    }
+
+    /**
+     * Waiting for the exit status of a command.
+     *
+     * The end of the output arrives before the exit status, so the channel
+     * is polled with an increasing interval until the server closed it.
+     *
+     * @param channel           The execute channel.
+     *
+     * @return Returns the exit status.
+     */
+    private int waitForExitStatus(ChannelExec channel) {
+        long deadline = System.currentTimeMillis() + EXIT_STATUS_TIMEOUT;
+        long interval = 1;
+
+        while (!channel.isClosed()) {
+            if (System.currentTimeMillis() > deadline)
+                throw new ConnectionBrokenException("Timed out waiting for the exit status of execute channel");
+
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ConnectionBrokenException("Interrupted while waiting for the exit status of execute channel", e);
+            }
+
+            interval = Math.min(interval * 2, 50);
+        }
+
+        return channel.getExitStatus();
+    }
+
     /**
      * Initializing the connection.
      *
      * @param configuration     The configuration instance.
      */
     @Override
-    public void init(PasswdConfiguration configuration) {
+    public synchronized void init(PasswdConfiguration configuration) {
         JSch.setLogger(ConnIdJSchLogger.newInstance(SSHConnection.class));
 
-        try {
-            LOG.ok("Connecting to {0}@{1}:{2}",
-                    configuration.getUserName(),
-                    configuration.getHostName(),
-                    configuration.getPort());
-
-            session = jSch.getSession(configuration.getUserName(), configuration.getHostName(), configuration.getPort());
-
-            if (StringUtil.isBlank(configuration.getHostKey())) {
-                LOG.info("Using known hosts from default location - consider setting host key explicitly");
-            } else if ("*".equals(configuration.getHostKey())) {
-                session.setConfig("StrictHostKeyChecking", "no");
-            } else {
-                jSch.setKnownHosts(new ByteArrayInputStream(
-                        (configuration.getHostName() + " " + configuration.getHostKey()).getBytes()
-                ));
-            }
+        // The sessions are connected by the first command
+        if (host != null)
+            SessionPool.release(host);
 
-            if (!StringUtil.isBlank(configuration.getPrivateKey())) {
-                session.setConfig("PreferredAuthentications", "publickey");
-                jSch.addIdentity(
-                        configuration.getPrivateKey(),
-                        GuardedStringAccessor.asByteArray(configuration.getPassword())
-                );
-            } else {
-                session.setConfig("PreferredAuthentications", "password");
-                session.setPassword(GuardedStringAccessor.asByteArray(configuration.getPassword()));
-            }
+        host = SessionPool.acquire(configuration);
 
-            session.connect();
-        } catch (JSchException e) {
-            throw new ConnectionFailedException("Could not connect to " + configuration.getHostName(), e);
+        if ((BECOME_MODE_SESSION.equals(configuration.getBecomeMode())) && (!BECOME_METHOD_NONE.equals(configuration.getBecomeMethod()))) {
+            becomeMethod   = configuration.getBecomeMethod();
+            becomePassword = configuration.getBecomePassword();
         }
+
+        compressOutput = REMOTE_COMPRESSION_GZIP.equals(configuration.getRemoteCompression());
+        useShell       = (CHANNEL_MODE_SHELL.equals(configuration.getChannelMode())) || (becomeMethod != null);
     }
 
     /**
-     * Checking whether the connection is alive.
+     * Checking whether the connection is alive. Missing or dropped sessions do not
+     * make the connection unusable, as the next command reconnects.
      *
      * @return Returns whether the connection is alive.
      */
     @Override
     public boolean isAlive() {
-        if ((session == null) || (!session.isConnected()))
-            return false;
+        SessionPool.Host currentHost = host;
 
-        try {
-            session.sendKeepAliveMsg();
-        } catch (Exception e) {
-            LOG.error(e, "isAlive() -> Could not send keep alive message to {0}", session.getHost());
+        if (currentHost == null)
             return false;
-        }
+
+        currentHost.keepAlive();
 
         return true;
     }
+
+    /**
+     * A task using a leased session, e.g. opening a channel.
+     *
+     * @param <T>               The type of the result.
+     */
+    @FunctionalInterface
+    private interface SessionTask<T> {
+        /**
+         * Running the task.
+         *
+         * @param session           The leased session.
+         *
+         * @return Returns the result of the task.
+         *
+         * @throws IOException      If the streams of a channel could not be opened.
+         * @throws JSchException    If a channel could not be opened.
+         */
+        T run(SessionPool.PooledSession session) throws IOException, JSchException;
+    }
+
+    /**
+     * A connected execute channel and its streams.
+     */
+    private static final class ExecChannel {
+        private final ChannelExec               channel;
+        private final SessionPool.PooledSession session;
+        private final InputStream               stdErr;
+        private final OutputStream              stdIn;
+        private final InputStream               stdOut;
+
+        /**
+         * Constructing the channel.
+         *
+         * @param channel           The channel.
+         * @param session           The leased session of the channel.
+         * @param stdErr            The error output of the command.
+         * @param stdIn             The input of the command.
+         * @param stdOut            The output of the command.
+         */
+        private ExecChannel(ChannelExec channel, SessionPool.PooledSession session, InputStream stdErr, OutputStream stdIn, InputStream stdOut) {
+            this.channel = channel;
+            this.session = session;
+            this.stdErr  = stdErr;
+            this.stdIn   = stdIn;
+            this.stdOut  = stdOut;
+        }
+
+        /**
+         * Opening an execute channel and starting a command. The streams are retrieved
+         * before connecting, so no output is lost.
+         *
+         * @param session           The leased session.
+         * @param command           The command line.
+         * @param args              The arguments for the command, for logging.
+         *
+         * @return Returns the connected channel.
+         *
+         * @throws IOException      If the streams of the channel could not be opened.
+         * @throws JSchException    If the channel could not be opened.
+         */
+        private static ExecChannel open(SessionPool.PooledSession session, String command, String... args) throws IOException, JSchException {
+            ChannelExec channel = (ChannelExec) session.getSession().openChannel("exec");
+
+            try {
+                InputStream  stdOut = channel.getInputStream();
+                InputStream  stdErr = channel.getErrStream();
+                OutputStream stdIn  = channel.getOutputStream();
+
+                if (LOG.isOk())
+                    LOG.ok("Starting process: {0}", Arrays.toString(args));
+
+                channel.setCommand(command);
+                channel.connect(SessionPool.CONNECT_TIMEOUT);
+
+                return new ExecChannel(channel, session, stdErr, stdIn, stdOut);
+            } catch (IOException | JSchException | RuntimeException e) {
+                channel.disconnect();
+                throw e;
+            }
+        }
+    }
 }
@@ -0,0 +1,574 @@
+package de.rheinwolf.iam.connid.connectors.passwd.connection;
+
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+
+import de.rheinwolf.iam.connid.connectors.passwd.PasswdConfiguration;
+import de.rheinwolf.iam.connid.connectors.passwd.util.GuardedStringAccessor;
+
+import org.identityconnectors.common.StringUtil;
+import org.identityconnectors.common.logging.Log;
+import org.identityconnectors.framework.common.exceptions.ConnectionBrokenException;
+import org.identityconnectors.framework.common.exceptions.ConnectionFailedException;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JVM-wide pool of SSH sessions, shared by all connector instances of a
+ * target system, so the connection setup happens once per host instead of
+ * once per pooled connector instance.
+ *
+ * The sessions are keyed by host, port, user and a fingerprint of the
+ * credentials. Each session limits its concurrently open channels, and a
+ * new session is only connected if all sessions of a host are busy and the
+ * host has less than maxConnections sessions. New sessions are connected
+ * outside the lock of the host, so a slow handshake does not block commands
+ * on the other sessions. Sessions without channels are disconnected when
+ * they were not used within the idle timeout, and hosts are dropped when no
+ * connection references them anymore. A daemon thread checks for idle
+ * sessions while the pool has hosts, so they are disconnected even if the
+ * pool is not used anymore.
+ */
+final class SessionPool {
+    private static final Log LOG = Log.getLog(SessionPool.class);
+
+    private static final Map<String, Host> HOSTS = new HashMap<>();
+
+    private static final ScheduledExecutorService REAPER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "connector-passwd-session-reaper");
+
+        thread.setDaemon(true);
+
+        return thread;
+    });
+
+    private static ScheduledFuture<?> reaping = null;
+
+    /**
+     * The interval in milliseconds of checking for idle sessions.
+     */
+    private static final long REAP_INTERVAL = 10000;
+
+    /**
+     * The compression offered in the WAN transfer profile, preferring the delayed
+     * compression of OpenSSH that starts after the authentication.
+     */
+    private static final String WAN_COMPRESSION = "zlib@openssh.com,zlib,none";
+
+    /**
+     * The size in bytes up to which received data is buffered in the WAN transfer
+     * profile, so the channel window is not throttled by a slow consumer.
+     */
+    private static final int WAN_INPUT_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * The time in milliseconds to wait for the connection setup of a session or channel.
+     */
+    static final int CONNECT_TIMEOUT = 30000;
+
+    /**
+     * The time in milliseconds to wait for a free channel. Persistent shells keep their
+     * channel for the lifetime of a connection, so with few channels per session and
+     * shared pools, a lease could otherwise block forever.
+     */
+    static final long LEASE_TIMEOUT = 60000;
+
+    /**
+     * The interval in milliseconds of server alive messages on a silent session, and the
+     * number of unanswered messages after which the session is disconnected. Sessions
+     * dropped by a firewall are noticed this way, instead of waiting for TCP.
+     */
+    private static final int SERVER_ALIVE_INTERVAL  = 15000;
+    private static final int SERVER_ALIVE_COUNT_MAX = 3;
+
+    private SessionPool() {
+    }
+
+    /**
+     * Referencing the sessions of a target system.
+     *
+     * @param configuration     The configuration, identifying host and credentials.
+     *
+     * @return Returns the sessions of the host, to be released by the connection.
+     */
+    static synchronized Host acquire(PasswdConfiguration configuration) {
+        String key  = getKey(configuration);
+        Host   host = HOSTS.get(key);
+
+        expire(System.currentTimeMillis());
+
+        if (host == null) {
+            host = new Host(key, configuration);
+            HOSTS.put(key, host);
+        }
+
+        if (reaping == null)
+            reaping = REAPER.scheduleWithFixedDelay(SessionPool::reap, REAP_INTERVAL, REAP_INTERVAL, TimeUnit.MILLISECONDS);
+
+        host.references++;
+
+        return host;
+    }
+
+    /**
+     * Releasing the reference of a connection to the sessions of a target system.
+     *
+     * @param host              The sessions of the host.
+     */
+    static synchronized void release(Host host) {
+        host.references--;
+
+        expire(System.currentTimeMillis());
+    }
+
+    /**
+     * Disconnecting idle sessions in the background, stopping once the pool has no hosts left.
+     */
+    private static synchronized void reap() {
+        try {
+            expire(System.currentTimeMillis());
+        } catch (RuntimeException e) {
+            LOG.warn(e, "Could not disconnect idle sessions");
+        }
+
+        if ((HOSTS.isEmpty()) && (reaping != null)) {
+            reaping.cancel(false);
+            reaping = null;
+        }
+    }
+
+    /**
+     * Disconnecting idle sessions and dropping unreferenced hosts without sessions.
+     *
+     * @param now               The current time.
+     */
+    private static void expire(long now) {
+        Iterator<Host> iterator = HOSTS.values().iterator();
+
+        while (iterator.hasNext()) {
+            Host host = iterator.next();
+
+            if ((host.expire(now)) && (host.references <= 0))
+                iterator.remove();
+        }
+    }
+
+    /**
+     * Setting up host key and identity for new sessions of a target system. Used for the
+     * pooled sessions as well as for authenticating other users, so both check the host key.
+     *
+     * @param configuration     The configuration.
+     *
+     * @return Returns the JSch instance.
+     */
+    static JSch newJSch(PasswdConfiguration configuration) {
+        JSch jSch = new JSch();
+
+        try {
+            if (StringUtil.isBlank(configuration.getHostKey())) {
+                LOG.info("Using known hosts from default location - consider setting host key explicitly");
+            } else if (!"*".equals(configuration.getHostKey())) {
+                jSch.setKnownHosts(new ByteArrayInputStream(
+                        (configuration.getHostName() + " " + configuration.getHostKey()).getBytes()
+                ));
+            }
+
+            if (!StringUtil.isBlank(configuration.getPrivateKey())) {
+                jSch.addIdentity(
+                        configuration.getPrivateKey(),
+                        GuardedStringAccessor.asByteArray(configuration.getPassword())
+                );
+            }
+        } catch (JSchException e) {
+            throw new ConnectionFailedException("Could not connect to " + configuration.getHostName(), e);
+        }
+
+        return jSch;
+    }
+
+    /**
+     * Building the key of a target system, including the transfer settings of the
+     * sessions. The credentials are hashed, so they are not kept as plain text.
+     *
+     * @param configuration     The configuration.
+     *
+     * @return Returns the key.
+     */
+    static String getKey(PasswdConfiguration configuration) {
+        MessageDigest digest;
+
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new ConnectionFailedException("SHA-256 is not available", e);
+        }
+
+        byte[] password = GuardedStringAccessor.asByteArray(configuration.getPassword());
+
+        for (String value : new String[] {configuration.getHostKey(), configuration.getPrivateKey(), configuration.getTransferProfile(), configuration.getCiphers()}) {
+            if (value != null)
+                digest.update(value.getBytes(StandardCharsets.UTF_8));
+
+            digest.update((byte) 0);
+        }
+
+        if (password != null) {
+            digest.update(password);
+            Arrays.fill(password, (byte) 0);
+        }
+
+        StringBuilder fingerprint = new StringBuilder();
+
+        for (byte value : Arrays.copyOf(digest.digest(), 8))
+            fingerprint.append(String.format("%02x", value));
+
+        return configuration.getUserName() + "@" + configuration.getHostName() + ":" + configuration.getPort() + "#" + fingerprint;
+    }
+
+    /**
+     * The sessions of a single target system.
+     *
+     * The limits are taken from the first configuration referencing the host.
+     */
+    static final class Host {
+        private final PasswdConfiguration configuration;
+        private final SessionFactory      factory;
+        private final long                idleTimeout;
+        private final JSch                jSch;
+        private final String              key;
+        private final long                leaseTimeout;
+        private final int                 maxChannels;
+        private final int                 maxConnections;
+        private final List<PooledSession> sessions = new ArrayList<>();
+
+        private int connecting = 0;
+        private int next       = 0;
+        private int references = 0;
+
+        /**
+         * Setting up host key and identity for the sessions of a host.
+         *
+         * @param key               The key of the host.
+         * @param configuration     The configuration.
+         */
+        private Host(String key, PasswdConfiguration configuration) {
+            this(key, configuration, null, LEASE_TIMEOUT);
+        }
+
+        /**
+         * Setting up host key and identity for the sessions of a host.
+         *
+         * @param key               The key of the host.
+         * @param configuration     The configuration.
+         * @param factory           The factory for new sessions, or null to connect to the configured host.
+         * @param leaseTimeout      The time in milliseconds to wait for a free channel.
+         */
+        Host(String key, PasswdConfiguration configuration, SessionFactory factory, long leaseTimeout) {
+            this.configuration  = configuration;
+            this.factory        = (factory == null) ? this::connect : factory;
+            this.idleTimeout    = configuration.getConnectionIdleTimeout();
+            this.jSch           = newJSch(configuration);
+            this.key            = key;
+            this.leaseTimeout   = leaseTimeout;
+            this.maxChannels    = configuration.getMaxSessions();
+            this.maxConnections = configuration.getMaxConnections();
+        }
+
+        /**
+         * Retrieving the name of the host, for messages.
+         *
+         * @return Returns the host name.
+         */
+        String getHostName() {
+            return configuration.getHostName();
+        }
+
+        /**
+         * Leasing a channel of a session. Sessions with a free channel are preferred,
+         * a new session is connected if there is none and the host has capacity left.
+         * Otherwise the sessions are used in turn, waiting for a free channel.
+         *
+         * The slot of a new session is reserved under the lock, but the session is
+         * connected outside of it. If all slots are reserved by sessions that are
+         * still connecting, the lease waits for one of them. Waiting is bounded by
+         * the lease timeout, after which a ConnectionBrokenException is thrown.
+         *
+         * @return Returns the session, the channel has to be returned by release().
+         *
+         * @throws JSchException    If a new session could not be connected.
+         */
+        PooledSession lease() throws JSchException {
+            PooledSession session  = null;
+            long          deadline = System.currentTimeMillis() + leaseTimeout;
+
+            synchronized (this) {
+                while (true) {
+                    expire(System.currentTimeMillis());
+                    sessions.removeIf(candidate -> !candidate.session.isConnected());
+
+                    for (PooledSession candidate : sessions) {
+                        if (candidate.channels.tryAcquire()) {
+                            candidate.lastUsed = System.currentTimeMillis();
+                            return candidate;
+                        }
+                    }
+
+                    if (sessions.size() + connecting < maxConnections) {
+                        ++connecting;
+                        break;
+                    }
+
+                    if (!sessions.isEmpty()) {
+                        session = sessions.get(Math.floorMod(next++, sessions.size()));
+                        break;
+                    }
+
+                    long remaining = deadline - System.currentTimeMillis();
+
+                    if (remaining <= 0)
+                        throw new ConnectionBrokenException("Timed out waiting for a session to " + key);
+
+                    try {
+                        wait(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new ConnectionBrokenException("Interrupted while waiting for a session", e);
+                    }
+                }
+            }
+
+            if (session == null)
+                return leaseNewSession();
+
+            try {
+                if (!session.channels.tryAcquire(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS))
+                    throw new ConnectionBrokenException("Timed out waiting for a free channel to " + key + ", all channels are in use");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ConnectionBrokenException("Interrupted while waiting for a free channel", e);
+            }
+
+            session.lastUsed = System.currentTimeMillis();
+
+            return session;
+        }
+
+        /**
+         * Connecting a new session in a reserved slot and leasing its first channel.
+         *
+         * @return Returns the session, the channel has to be returned by release().
+         *
+         * @throws JSchException    If the session could not be connected.
+         */
+        private PooledSession leaseNewSession() throws JSchException {
+            PooledSession session = null;
+
+            try {
+                session = new PooledSession(factory.connect(), maxChannels);
+                session.channels.acquireUninterruptibly();
+            } finally {
+                synchronized (this) {
+                    --connecting;
+
+                    if (session != null)
+                        sessions.add(session);
+
+                    notifyAll();
+                }
+            }
+
+            LOG.ok("Connected session to {0}, {1} of {2} sessions connected", key, size(), maxConnections);
+
+            return session;
+        }
+
+        /**
+         * Returning a leased channel.
+         *
+         * @param session           The session of the channel.
+         */
+        void release(PooledSession session) {
+            session.lastUsed = System.currentTimeMillis();
+            session.channels.release();
+        }
+
+        /**
+         * Disconnecting a broken session, so no further channels are leased from it.
+         *
+         * @param session           The session.
+         */
+        synchronized void discard(PooledSession session) {
+            if (sessions.remove(session)) {
+                LOG.info("Discarding broken session to {0}", key);
+                session.session.disconnect();
+            }
+        }
+
+        /**
+         * Disconnecting idle sessions and sending a keep alive message on the others,
+         * discarding sessions that are broken. The messages are sent outside the lock,
+         * as writing to a dead connection may block.
+         */
+        void keepAlive() {
+            List<PooledSession> current;
+
+            synchronized (this) {
+                expire(System.currentTimeMillis());
+                current = new ArrayList<>(sessions);
+            }
+
+            for (PooledSession session : current) {
+                try {
+                    session.session.sendKeepAliveMsg();
+                } catch (Exception e) {
+                    LOG.warn(e, "Could not send keep alive message to {0}, reconnecting on demand", key);
+                    discard(session);
+                }
+            }
+        }
+
+        /**
+         * Disconnecting sessions without open channels that exceeded the idle timeout.
+         *
+         * @param now               The current time.
+         *
+         * @return Returns true if the host has no sessions left.
+         */
+        synchronized boolean expire(long now) {
+            Iterator<PooledSession> iterator = sessions.iterator();
+
+            while (iterator.hasNext()) {
+                PooledSession session = iterator.next();
+
+                if ((session.channels.availablePermits() == maxChannels) && (now - session.lastUsed > idleTimeout)) {
+                    LOG.ok("Disconnecting idle session to {0}", key);
+                    session.session.disconnect();
+                    iterator.remove();
+                }
+            }
+
+            return sessions.isEmpty();
+        }
+
+        /**
+         * Connecting a new session.
+         *
+         * @return Returns the connected session.
+         *
+         * @throws JSchException    If the connection could not be established.
+         */
+        private Session connect() throws JSchException {
+            LOG.ok("Connecting to {0}@{1}:{2}",
+                    configuration.getUserName(),
+                    configuration.getHostName(),
+                    configuration.getPort());
+
+            Session session = jSch.getSession(configuration.getUserName(), configuration.getHostName(), configuration.getPort());
+
+            if ("*".equals(configuration.getHostKey()))
+                session.setConfig("StrictHostKeyChecking", "no");
+
+            if (PasswdConfiguration.TRANSFER_PROFILE_WAN.equals(configuration.getTransferProfile())) {
+                session.setConfig("compression.c2s", WAN_COMPRESSION);
+                session.setConfig("compression.s2c", WAN_COMPRESSION);
+                session.setConfig("max_input_buffer_size", String.valueOf(WAN_INPUT_BUFFER_SIZE));
+            }
+
+            if (!StringUtil.isBlank(configuration.getCiphers())) {
+                session.setConfig("cipher.c2s", configuration.getCiphers().replace(" ", ""));
+                session.setConfig("cipher.s2c", configuration.getCiphers().replace(" ", ""));
+            }
+
+            if (!StringUtil.isBlank(configuration.getPrivateKey())) {
+                session.setConfig("PreferredAuthentications", "publickey");
+            } else {
+                session.setConfig("PreferredAuthentications", "password");
+                session.setPassword(GuardedStringAccessor.asByteArray(configuration.getPassword()));
+            }
+
+            session.setServerAliveInterval(SERVER_ALIVE_INTERVAL);
+            session.setServerAliveCountMax(SERVER_ALIVE_COUNT_MAX);
+            session.connect(CONNECT_TIMEOUT);
+
+            return session;
+        }
+
+        /**
+         * Retrieving the number of connected sessions.
+         *
+         * @return Returns the number of sessions.
+         */
+        synchronized int size() {
+            return sessions.size();
+        }
+    }
+
+    /**
+     * Connecting new sessions of a host.
+     */
+    @FunctionalInterface
+    interface SessionFactory {
+        /**
+         * Connecting a new session.
+         *
+         * @return Returns the connected session.
+         *
+         * @throws JSchException    If the connection could not be established.
+         */
+        Session connect() throws JSchException;
+    }
+
+    /**
+     * A shared session and its channel permits.
+     */
+    static final class PooledSession {
+        private final Semaphore channels;
+        private final Session   session;
+
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        /**
+         * Constructing the pooled session.
+         *
+         * @param session           The connected session.
+         * @param maxChannels       The maximum number of concurrently open channels.
+         */
+        private PooledSession(Session session, int maxChannels) {
+            this.channels = new Semaphore(maxChannels, true);
+            this.session  = session;
+        }
+
+        /**
+         * Retrieving the session.
+         *
+         * @return Returns the JSch session.
+         */
+        Session getSession() {
+            return session;
+        }
+
+        /**
+         * Retrieving the number of channels that can still be opened, for logging.
+         *
+         * @return Returns the number of free channels.
+         */
+        int getAvailableChannels() {
+            return channels.availablePermits();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package de.rheinwolf.iam.connid.connectors.passwd.connection;
+
+import org.identityconnectors.common.logging.Log;
+import org.identityconnectors.framework.common.exceptions.ConnectionBrokenException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Moving data between a command and the connector.
+ *
+ * The streams of a command have to be serviced concurrently: a command that
+ * fills its stderr pipe (or SSH window) while the connector still waits for
+ * stdout would otherwise stall forever. The blocking streams of Process and
+ * JSch cannot be selected on, so the secondary streams are pumped by pooled
+ * daemon threads while the calling thread reads stdout.
+ *
+ * Lines are split on the raw bytes using a per-thread LineSplitter, so no
+ * Reader and no per-call buffers are allocated.
+ */
+final class StreamPump {
+    private static final Log LOG = Log.getLog(StreamPump.class);
+
+    private static final AtomicInteger             THREAD_COUNT = new AtomicInteger();
+    private static final ThreadLocal<LineSplitter> SPLITTER     = ThreadLocal.withInitial(LineSplitter::new);
+
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "connector-passwd-pump-" + THREAD_COUNT.incrementAndGet());
+
+        thread.setDaemon(true);
+
+        return thread;
+    });
+
+    private StreamPump() {
+    }
+
+    /**
+     * Reading the lines of a stream and passing them to a handler.
+     *
+     * @param inputStream   The stream.
+     * @param handler       The handler.
+     *
+     * @return Returns false if the handler stopped reading, true otherwise.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    static boolean drain(InputStream inputStream, LineHandler handler) throws IOException {
+        LineSplitter splitter = SPLITTER.get();
+
+        // A handler may run another command on the same thread
+        if (!splitter.acquire())
+            return new LineSplitter().drain(inputStream, handler);
+
+        try {
+            return splitter.drain(inputStream, handler);
+        } finally {
+            splitter.release();
+        }
+    }
+
+    /**
+     * Reading the lines of a stream on a pooled thread.
+     *
+     * @param inputStream   The stream.
+     * @param handler       The handler.
+     *
+     * @return Returns a Future for the result of drain().
+     */
+    static Future<Boolean> drainAsync(InputStream inputStream, LineHandler handler) {
+        return EXECUTOR.submit(() -> {
+            try (InputStream stream = inputStream) {
+                return drain(stream, handler);
+            }
+        });
+    }
+
+    /**
+     * Running a pumping task on a pooled thread.
+     *
+     * @param task          The task.
+     *
+     * @return Returns a Future for the result of the task.
+     */
+    static Future<Boolean> submit(Callable<Boolean> task) {
+        return EXECUTOR.submit(task);
+    }
+
+    /**
+     * Writing data to a stream on a pooled thread and closing it afterwards.
+     *
+     * A command may exit without consuming all of its input, which closes
+     * the stream. This is not treated as an error, as the exit code of the
+     * command tells the caller whether it succeeded.
+     *
+     * @param outputStream  The stream.
+     * @param data          The data. Can be null.
+     *
+     * @return Returns a Future which yields whether all data was written.
+     */
+    static Future<Boolean> writeAsync(OutputStream outputStream, byte[] data) {
+        return EXECUTOR.submit(() -> {
+            try (OutputStream stream = outputStream) {
+                if (data != null)
+                    stream.write(data);
+            } catch (IOException e) {
+                LOG.ok("Command closed its input: {0}", e.getMessage());
+                return false;
+            }
+
+            return true;
+        });
+    }
+
+    /**
+     * Waiting for a pumping task to finish.
+     *
+     * @param future        The Future returned by drainAsync() or writeAsync().
+     * @param description   The description of the task for error messages.
+     *
+     * @return Returns the result of the task.
+     */
+    static boolean await(Future<Boolean> future, String description) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ConnectionBrokenException("Interrupted while trying to " + description, e);
+        } catch (ExecutionException e) {
+            throw new ConnectionBrokenException("Could not " + description, e.getCause());
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package de.rheinwolf.iam.connid.connectors.passwd.file;
+
+/**
+ * A passwd row backed by an array of already split fields.
+ */
+public class ArrayRow implements PasswdRow {
+    private final String[] fields;
+
+    /**
+     * Constructing the row.
+     *
+     * @param fields        The fields of the row.
+     */
+    public ArrayRow(String[] fields) {
+        this.fields = fields;
+    }
+
+    /**
+     * Retrieving a raw field of the row.
+     *
+     * @param index         The index of the field.
+     *
+     * @return Returns the raw field value, or null if the row has no such field.
+     */
+    @Override
+    public String getField(int index) {
+        if (index >= fields.length)
+            return null;
+
+        return fields[index];
+    }
+
+    /**
+     * Retrieving the number of fields in the row.
+     *
+     * @return Returns the number of fields as integer.
+     */
+    @Override
+    public int getFieldCount() {
+        return fields.length;
+    }
+}
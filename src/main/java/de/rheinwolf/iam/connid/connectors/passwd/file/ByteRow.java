@@ -0,0 +1,51 @@
+package de.rheinwolf.iam.connid.connectors.passwd.file;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A passwd row backed by the raw bytes of its line and the end offsets of
+ * its fields. Fields are decoded when they are retrieved, so fields that are
+ * neither matched nor emitted never become Strings.
+ */
+public class ByteRow implements PasswdRow {
+    private final byte[] bytes;
+    private final int[]  fieldEnds;
+
+    /**
+     * Constructing the row.
+     *
+     * @param bytes         The bytes of the line, owned by the row.
+     * @param fieldEnds     The end offset of each field in the bytes, owned by the row.
+     */
+    public ByteRow(byte[] bytes, int[] fieldEnds) {
+        this.bytes     = bytes;
+        this.fieldEnds = fieldEnds;
+    }
+
+    /**
+     * Retrieving a raw field of the row.
+     *
+     * @param index         The index of the field.
+     *
+     * @return Returns the raw field value, or null if the row has no such field.
+     */
+    @Override
+    public String getField(int index) {
+        if (index >= fieldEnds.length)
+            return null;
+
+        int start = (index == 0) ? 0 : fieldEnds[index - 1] + 1;
+
+        return new String(bytes, start, fieldEnds[index] - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Retrieving the number of fields in the row.
+     *
+     * @return Returns the number of fields as integer.
+     */
+    @Override
+    public int getFieldCount() {
+        return fieldEnds.length;
+    }
+}
@@ -0,0 +1,230 @@
+package de.rheinwolf.iam.connid.connectors.passwd.file;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * The lines of a colon separated database file, e.g. /etc/passwd, editable
+ * by the name in the first field. Comments, empty lines and the order of
+ * the entries are kept.
+ */
+public class DatabaseFile {
+    private final String       fileName;
+    private final int          fieldCount;
+    private final List<String> lines = new ArrayList<>();
+
+    private final Map<String, Integer> index = new HashMap<>();
+
+    private boolean changed  = false;
+    private String  checksum = null;
+
+    /**
+     * Constructing an empty file.
+     *
+     * @param fileName          The absolute file name.
+     * @param fieldCount        The number of fields of a row.
+     */
+    public DatabaseFile(String fileName, int fieldCount) {
+        this.fileName   = fileName;
+        this.fieldCount = fieldCount;
+    }
+
+    /**
+     * Appending a line as read from the target system.
+     *
+     * @param line              The line without terminator.
+     */
+    public void addLine(String line) {
+        String name = getName(line);
+
+        if ((name != null) && (!index.containsKey(name)))
+            index.put(name, lines.size());
+
+        lines.add(line);
+    }
+
+    /**
+     * Adding a new entry at the end of the file.
+     *
+     * @param fields            The fields of the entry.
+     */
+    public void add(String[] fields) {
+        index.put(fields[0], lines.size());
+        lines.add(String.join(":", fields));
+
+        changed = true;
+    }
+
+    /**
+     * Checking whether an entry exists.
+     *
+     * @param name              The name of the entry.
+     *
+     * @return Returns true if the file contains the entry.
+     */
+    public boolean contains(String name) {
+        return index.containsKey(name);
+    }
+
+    /**
+     * Retrieving the fields of an entry.
+     *
+     * @param name              The name of the entry.
+     *
+     * @return Returns the fields, padded to the field count, or null if there is no such entry.
+     */
+    public String[] get(String name) {
+        Integer position = index.get(name);
+
+        if (position == null)
+            return null;
+
+        String[] fields = lines.get(position).split(":", -1);
+
+        if (fields.length >= fieldCount)
+            return fields;
+
+        String[] padded = new String[fieldCount];
+
+        for (int i = 0; i < fieldCount; ++i)
+            padded[i] = (i < fields.length) ? fields[i] : "";
+
+        return padded;
+    }
+
+    /**
+     * Replacing the fields of an entry. If the name in the first field
+     * differs from the given name, the entry is renamed.
+     *
+     * @param name              The current name of the entry.
+     * @param fields            The new fields of the entry.
+     */
+    public void set(String name, String[] fields) {
+        Integer position = index.remove(name);
+
+        if (position == null)
+            throw new IllegalStateException("No entry " + name + " in " + fileName);
+
+        index.put(fields[0], position);
+        lines.set(position, String.join(":", fields));
+
+        changed = true;
+    }
+
+    /**
+     * Removing an entry.
+     *
+     * @param name              The name of the entry.
+     *
+     * @return Returns true if the entry existed.
+     */
+    public boolean remove(String name) {
+        Integer position = index.remove(name);
+
+        if (position == null)
+            return false;
+
+        // Keeping the positions of the other entries valid
+        lines.set(position, null);
+        changed = true;
+
+        return true;
+    }
+
+    /**
+     * Passing the fields of all entries to a function and storing the changed ones.
+     *
+     * @param function          The function, returning the new fields or the same array if unchanged.
+     */
+    public void replaceAll(UnaryOperator<String[]> function) {
+        for (String name : new ArrayList<>(index.keySet())) {
+            String[] fields  = get(name);
+            String[] updated = function.apply(fields.clone());
+
+            if (!String.join(":", updated).equals(String.join(":", fields)))
+                set(name, updated);
+        }
+    }
+
+    /**
+     * Retrieving the names of all entries.
+     *
+     * @return Returns the names in no particular order.
+     */
+    public Iterable<String> getNames() {
+        return index.keySet();
+    }
+
+    /**
+     * Retrieving the content of the file.
+     *
+     * @return Returns the lines without removed entries.
+     */
+    public List<String> getLines() {
+        List<String> result = new ArrayList<>(lines.size());
+
+        for (String line : lines) {
+            if (line != null)
+                result.add(line);
+        }
+
+        return result;
+    }
+
+    /**
+     * Retrieving the absolute file name.
+     *
+     * @return Returns the file name.
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Checking whether the file was changed since it was read.
+     *
+     * @return Returns true if entries were added, changed or removed.
+     */
+    public boolean isChanged() {
+        return changed;
+    }
+
+    /**
+     * Retrieving the checksum of the file as read from the target system.
+     *
+     * @return Returns the cksum output, or null if unknown.
+     */
+    public String getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * Setting the checksum of the file as read from the target system.
+     *
+     * @param checksum          The cksum output.
+     */
+    public void setChecksum(String checksum) {
+        this.checksum = checksum;
+    }
+
+    /**
+     * Retrieving the name of the entry in a line.
+     *
+     * @param line              The line.
+     *
+     * @return Returns the name, or null for empty lines and comments.
+     */
+    private static String getName(String line) {
+        String trimmedLine = line.trim();
+
+        if ((trimmedLine.isEmpty()) || (trimmedLine.startsWith("#")))
+            return null;
+
+        int separator = line.indexOf(':');
+
+        return (separator < 0) ? line : line.substring(0, separator);
+    }
+}
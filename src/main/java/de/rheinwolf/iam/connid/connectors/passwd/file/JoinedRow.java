@@ -0,0 +1,57 @@
+package de.rheinwolf.iam.connid.connectors.passwd.file;
+
+/**
+ * Two passwd rows joined into a single row, e.g. a passwd entry and its shadow entry.
+ *
+ * The fields of the right row are addressed behind the fields of the left row,
+ * starting at the given width.
+ */
+public class JoinedRow implements PasswdRow {
+    private final PasswdRow left;
+    private final PasswdRow right;
+    private final int       width;
+
+    /**
+     * Constructing the row.
+     *
+     * @param left          The left row.
+     * @param width         The index at which the fields of the right row start.
+     * @param right         The right row. Can be null if there is no matching row.
+     */
+    public JoinedRow(PasswdRow left, int width, PasswdRow right) {
+        this.left  = left;
+        this.right = right;
+        this.width = width;
+    }
+
+    /**
+     * Retrieving a raw field of the row.
+     *
+     * @param index         The index of the field.
+     *
+     * @return Returns the raw field value, or null if the row has no such field.
+     */
+    @Override
+    public String getField(int index) {
+        if (index < width)
+            return left.getField(index);
+
+        if (right == null)
+            return null;
+
+        return right.getField(index - width);
+    }
+
+    /**
+     * Retrieving the number of fields in the row.
+     *
+     * @return Returns the number of fields as integer.
+     */
+    @Override
+    public int getFieldCount() {
+        if (right == null)
+            return Math.min(left.getFieldCount(), width);
+
+        return width + right.getFieldCount();
+    }
+}
@@ -1,5 +1,7 @@
 package de.rheinwolf.iam.connid.connectors.passwd.file;
 
+import de.rheinwolf.iam.connid.connectors.passwd.connection.LineHandler;
+import de.rheinwolf.iam.connid.connectors.passwd.model.FieldLayout;
 import de.rheinwolf.iam.connid.connectors.passwd.model.PasswdGroup;
 import de.rheinwolf.iam.connid.connectors.passwd.model.SchemaUtil;
 
@@ -8,34 +10,143 @@ import org.identityconnectors.framework.common.objects.ConnectorObject;
 import org.identityconnectors.framework.common.objects.ObjectClass;
 
 import java.util.Arrays;
-import java.util.List;
+import java.util.function.Predicate;
 
 /**
  * Utility methods for the passwd files.
  */
 public class PasswdFile {
+    private static final ThreadLocal<int[]> FIELD_ENDS = ThreadLocal.withInitial(() -> new int[16]);
+
     /**
-     * Converting a passwd entry to a connector object.
+     * Splitting a passwd entry into its raw fields.
      *
-     * @param objectClass       The object class.
      * @param input             The input line.
-     * @param schemaFieldHint   The hint which schema fields should be used for accounts.
      *
-     * @return Returns a ConnectorObject instance.
+     * @return Returns a PasswdRow instance, or null if the line is empty or a comment.
      */
-    public static ConnectorObject toConnectorObject(ObjectClass objectClass, String input, SchemaUtil.SchemaField[] schemaFieldHint) {
+    public static PasswdRow tokenize(String input) {
         String trimmedInput = input.trim();
 
         if ((trimmedInput.isEmpty()) || (trimmedInput.startsWith("#")))
             return null;
 
-        List<String> fields = Arrays.asList(input.split(":"));
+        return new ArrayRow(input.split(":"));
+    }
 
+    /**
+     * Splitting a passwd entry into its raw fields without decoding it. The
+     * field offsets are collected in a reusable array, the row only keeps
+     * a copy of the line and of the offsets. Like tokenize(String), trailing
+     * empty fields are dropped, so both produce rows with the same fields.
+     *
+     * @param buffer            The buffer containing the line.
+     * @param offset            The offset of the line in the buffer.
+     * @param length            The length of the line.
+     *
+     * @return Returns a PasswdRow instance, or null if the line is empty or a comment.
+     */
+    public static PasswdRow tokenize(byte[] buffer, int offset, int length) {
+        int end   = offset + length;
+        int first = offset;
+
+        // Same as String.trim(), which treats all control characters as white space
+        while ((first < end) && ((buffer[first] & 0xff) <= ' '))
+            ++first;
+
+        if ((first == end) || (buffer[first] == '#'))
+            return null;
+
+        int[] fieldEnds  = FIELD_ENDS.get();
+        int   fieldCount = 0;
+
+        for (int i = offset; i <= end; ++i) {
+            if ((i < end) && (buffer[i] != ':'))
+                continue;
+
+            if (fieldCount == fieldEnds.length) {
+                fieldEnds = Arrays.copyOf(fieldEnds, fieldEnds.length * 2);
+                FIELD_ENDS.set(fieldEnds);
+            }
+
+            fieldEnds[fieldCount++] = i - offset;
+        }
+
+        while ((fieldCount > 0) && (fieldEnds[fieldCount - 1] == ((fieldCount == 1) ? 0 : fieldEnds[fieldCount - 2] + 1)))
+            --fieldCount;
+
+        int rowLength = (fieldCount == 0) ? 0 : fieldEnds[fieldCount - 1];
+
+        return new ByteRow(Arrays.copyOfRange(buffer, offset, offset + rowLength), Arrays.copyOf(fieldEnds, fieldCount));
+    }
+
+    /**
+     * Creating a line handler which tokenizes the lines and passes the rows to
+     * a handler. Raw lines are tokenized without decoding them first.
+     *
+     * @param rowHandler        The handler for the rows, rows are null for empty lines and comments.
+     *
+     * @return Returns a LineHandler instance.
+     */
+    public static LineHandler lineHandler(Predicate<PasswdRow> rowHandler) {
+        return new LineHandler() {
+            /**
+             * Handling a decoded line.
+             *
+             * @param line              The line.
+             *
+             * @return Returns the result of the row handler.
+             */
+            @Override
+            public boolean handle(String line) {
+                return rowHandler.test(tokenize(line));
+            }
+
+            /**
+             * Handling a raw line.
+             *
+             * @param buffer            The buffer containing the line.
+             * @param offset            The offset of the line in the buffer.
+             * @param length            The length of the line.
+             *
+             * @return Returns the result of the row handler.
+             */
+            @Override
+            public boolean handle(byte[] buffer, int offset, int length) {
+                return rowHandler.test(tokenize(buffer, offset, length));
+            }
+        };
+    }
+
+    /**
+     * Converting a passwd row to a connector object.
+     *
+     * @param objectClass       The object class.
+     * @param row               The passwd row.
+     * @param accountLayout     The field layout that should be used for accounts.
+     *
+     * @return Returns a ConnectorObject instance.
+     */
+    public static ConnectorObject toConnectorObject(ObjectClass objectClass, PasswdRow row, FieldLayout accountLayout) {
+        return toConnectorObject(objectClass, row, accountLayout, null);
+    }
+
+    /**
+     * Converting a passwd row to a connector object with the selected attributes only.
+     *
+     * @param objectClass       The object class.
+     * @param row               The passwd row.
+     * @param accountLayout     The field layout that should be used for accounts.
+     * @param selection         The selection flags by layout position. Can be null for all attributes.
+     *
+     * @return Returns a ConnectorObject instance.
+     */
+    public static ConnectorObject toConnectorObject(ObjectClass objectClass, PasswdRow row, FieldLayout accountLayout, boolean[] selection) {
         if (objectClass.is(ObjectClass.ACCOUNT_NAME))
-            return SchemaUtil.toConnectorObject(objectClass, schemaFieldHint, fields);
+            return SchemaUtil.toConnectorObject(objectClass, accountLayout, row, selection);
 
         if (objectClass.is(ObjectClass.GROUP_NAME))
-            return PasswdGroup.toConnectorObject(objectClass, fields);
+            return PasswdGroup.toConnectorObject(objectClass, row, selection);
 
         throw new ConnectionBrokenException("Invalid object class: " + objectClass);
     }
@@ -0,0 +1,22 @@
+package de.rheinwolf.iam.connid.connectors.passwd.file;
+
+/**
+ * A single tokenized line of a passwd database file.
+ */
+public interface PasswdRow {
+    /**
+     * Retrieving a raw field of the row.
+     *
+     * @param index         The index of the field.
+     *
+     * @return Returns the raw field value, or null if the row has no such field.
+     */
+    String getField(int index);
+
+    /**
+     * Retrieving the number of fields in the row.
+     *
+     * @return Returns the number of fields as integer.
+     */
+    int getFieldCount();
+}
@@ -20,7 +20,8 @@ import static de.rheinwolf.iam.connid.connectors.passwd.PasswdConfiguration.*;
  */
 public class MethodFactory {
     /**
-     * Creating a new PasswdMethod instance.
+     * Creating a new PasswdMethod instance. In auto mode, the target system is
+     * probed once and the method is chosen from its capabilities.
      *
      * @param connection        The current target system connection.
      * @param configuration     The current connector configuration.
@@ -28,7 +29,8 @@ public class MethodFactory {
      * @return Returns the PasswdMethod instance for the configuration.
      */
     public static PasswdMethod newInstance(Connection connection, PasswdConfiguration configuration) {
-        String               methodName = configuration.getMethod();
+        SystemProbe          probe      = METHOD_AUTO.equals(configuration.getMethod()) ? SystemProbe.run(connection) : null;
+        String               methodName = (probe != null) ? probe.getMethod() : configuration.getMethod();
         AbstractPasswdMethod method;
 
         if (METHOD_PW.equals(methodName)) {
@@ -36,10 +38,14 @@ public class MethodFactory {
         } else if (methodName.startsWith(METHOD_USERADD)) {
             method = new UserAddPasswdMethod();
         } else {
-            throw new ConnectionFailedException("Invalid passwd method: " + configuration.getMethod());
+            throw new ConnectionFailedException("Invalid passwd method: " + methodName);
         }
 
-        method.init(connection, configuration, newBecomeMethodInstance(configuration));
+        // Without gzip, every compressed read would fail
+        if ((probe != null) && (REMOTE_COMPRESSION_GZIP.equals(configuration.getRemoteCompression())))
+            probe.requireTool("gzip");
+
+        method.init(connection, configuration, newBecomeMethodInstance(configuration, probe), methodName, probe);
 
         return method;
     }
@@ -48,13 +54,18 @@ public class MethodFactory {
      * Creating a new BecomeMethod instance.
      *
      * @param configuration     The current connector configuration.
+     * @param probe             The capabilities of the target system. Can be null if not probed.
      *
      * @return Returns the BecomeMethod instance for the configuration.
      */
-    private static BecomeMethod newBecomeMethodInstance(PasswdConfiguration configuration) {
+    private static BecomeMethod newBecomeMethodInstance(PasswdConfiguration configuration, SystemProbe probe) {
         String       methodName = configuration.getBecomeMethod();
         BecomeMethod method;
 
+        // The connection runs all commands in a privileged shell already
+        if (BECOME_MODE_SESSION.equals(configuration.getBecomeMode()))
+            methodName = BECOME_METHOD_NONE;
+
         if (BECOME_METHOD_DOAS.equals(methodName)) {
             method = new DoAsBecomeMethod();
         } else if (BECOME_METHOD_NONE.equals(methodName)) {
@@ -65,6 +76,9 @@ public class MethodFactory {
             throw new ConnectionFailedException("Invalid become method: " + configuration.getBecomeMethod());
         }
 
+        if ((probe != null) && (!BECOME_METHOD_NONE.equals(configuration.getBecomeMethod())))
+            probe.requireTool(configuration.getBecomeMethod());
+
         method.init(configuration);
 
         return method;
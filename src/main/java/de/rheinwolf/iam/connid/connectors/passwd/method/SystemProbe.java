@@ -0,0 +1,193 @@
+package de.rheinwolf.iam.connid.connectors.passwd.method;
+
+import de.rheinwolf.iam.connid.connectors.passwd.PasswdConfiguration;
+import de.rheinwolf.iam.connid.connectors.passwd.connection.CommandResult;
+import de.rheinwolf.iam.connid.connectors.passwd.connection.Connection;
+
+import org.identityconnectors.common.logging.Log;
+import org.identityconnectors.framework.common.exceptions.ConnectionFailedException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The capabilities of a target system, detected by a single probe script.
+ *
+ * The script reports the operating system, the locations of the tools, the
+ * presence and stat of the database files and ARG_MAX as key=value lines.
+ * The result is kept by the method for the lifetime of the connector, so the
+ * target system is probed once per connector instance.
+ */
+public class SystemProbe {
+    private static final Log LOG = Log.getLog(SystemProbe.class);
+
+    private static final String COMMAND_SH = "sh";
+
+    private static final String[] FILES = {"/etc/group", "/etc/master.passwd", "/etc/passwd", "/etc/shadow"};
+    private static final String[] TOOLS = {"chpasswd", "doas", "getent", "gzip", "pw", "pwd_mkdb", "sudo", "useradd"};
+
+    private static final String FILE_MASTERPASSWD = "/etc/master.passwd";
+    private static final String FILE_SHADOW       = "/etc/shadow";
+
+    private final Map<String, String> files = new HashMap<>();
+    private final Map<String, String> tools = new HashMap<>();
+
+    private long    argMax          = -1;
+    private boolean gnuStat         = false;
+    private String  operatingSystem = null;
+
+    /**
+     * Probing a target system.
+     *
+     * @param connection        The connection to the target system.
+     *
+     * @return Returns the detected capabilities.
+     */
+    public static SystemProbe run(Connection connection) {
+        StringBuilder script = new StringBuilder();
+        SystemProbe   probe  = new SystemProbe();
+
+        // The administrative tools are often not in the PATH of unprivileged users
+        script.append("PATH=$PATH:/usr/local/sbin:/usr/sbin:/sbin\n")
+                .append("echo \"os=$(uname -s)\"\n")
+                .append("echo \"argMax=$(getconf ARG_MAX 2>/dev/null)\"\n")
+                .append("stat --version >/dev/null 2>&1 && echo 'gnuStat=true'\n")
+                .append("for t in ").append(String.join(" ", TOOLS)).append("; do\n")
+                .append("    echo \"tool.$t=$(command -v \"$t\" 2>/dev/null)\"\n")
+                .append("done\n")
+                .append("for f in ").append(String.join(" ", FILES)).append("; do\n")
+                .append("    [ -e \"$f\" ] && echo \"file.$f=$(stat -c '%Y:%s:%i' -- \"$f\" 2>/dev/null || stat -f '%m:%z:%i' -- \"$f\" 2>/dev/null)\"\n")
+                .append("done\n")
+                .append("exit 0\n");
+
+        try (CommandResult result = connection.execute(script.toString().getBytes(StandardCharsets.UTF_8), COMMAND_SH, "-s")) {
+            result.expect(0);
+
+            for (String line : result.getStdOut())
+                probe.parse(line);
+        }
+
+        LOG.ok("Probed target system: os={0}, tools={1}, files={2}, argMax={3}", probe.operatingSystem, probe.tools, probe.files, probe.argMax);
+
+        return probe;
+    }
+
+    /**
+     * Parsing a line of the probe output.
+     *
+     * @param line              The line.
+     */
+    private void parse(String line) {
+        int separator = line.indexOf('=');
+
+        if (separator < 0)
+            return;
+
+        String key   = line.substring(0, separator);
+        String value = line.substring(separator + 1).trim();
+
+        if (key.startsWith("tool.")) {
+            if (!value.isEmpty())
+                tools.put(key.substring(5), value);
+        } else if (key.startsWith("file.")) {
+            files.put(key.substring(5), value);
+        } else if ("os".equals(key)) {
+            operatingSystem = value;
+        } else if (("argMax".equals(key)) && (value.matches("[0-9]{1,18}"))) {
+            argMax = Long.parseLong(value);
+        } else if ("gnuStat".equals(key)) {
+            gnuStat = true;
+        }
+    }
+
+    /**
+     * Detecting the passwd method. The pw tool is preferred where it exists, as it
+     * maintains the databases of FreeBSD and DragonFly. Otherwise useradd is used,
+     * on the shadow suite of GNU/Linux or on master.passwd of the other BSDs.
+     *
+     * @return Returns the method, e.g. "useradd:linux".
+     */
+    public String getMethod() {
+        if ((hasTool("pw")) && (hasFile(FILE_MASTERPASSWD)))
+            return PasswdConfiguration.METHOD_PW;
+
+        if ((hasTool("useradd")) && (hasFile(FILE_SHADOW)))
+            return PasswdConfiguration.METHOD_USERADD + ":" + PasswdConfiguration.SUBMETHOD_LINUX;
+
+        if ((hasTool("useradd")) && (hasFile(FILE_MASTERPASSWD)))
+            return PasswdConfiguration.METHOD_USERADD + ":" + PasswdConfiguration.SUBMETHOD_BSD;
+
+        throw new ConnectionFailedException("Cannot detect the passwd method of the target system: os=" + operatingSystem + ", tools=" + tools + ", files=" + files.keySet());
+    }
+
+    /**
+     * Retrieving ARG_MAX of the target system.
+     *
+     * @return Returns the maximum length of the arguments of a command in bytes, or -1 if unknown.
+     */
+    public long getArgMax() {
+        return argMax;
+    }
+
+    /**
+     * Retrieving the name of the operating system.
+     *
+     * @return Returns the output of uname -s.
+     */
+    public String getOperatingSystem() {
+        return operatingSystem;
+    }
+
+    /**
+     * Retrieving the location of a tool.
+     *
+     * @param tool              The name of the tool.
+     *
+     * @return Returns the absolute path, or null if the tool was not found.
+     */
+    public String getToolPath(String tool) {
+        return tools.get(tool);
+    }
+
+    /**
+     * Checking whether the target system has the GNU version of stat.
+     *
+     * @return Returns true for GNU stat.
+     */
+    public boolean hasGnuStat() {
+        return gnuStat;
+    }
+
+    /**
+     * Checking whether a database file exists.
+     *
+     * @param fileName          The absolute file name.
+     *
+     * @return Returns true if the file exists.
+     */
+    public boolean hasFile(String fileName) {
+        return files.containsKey(fileName);
+    }
+
+    /**
+     * Checking whether a tool exists.
+     *
+     * @param tool              The name of the tool.
+     *
+     * @return Returns true if the tool was found.
+     */
+    public boolean hasTool(String tool) {
+        return tools.containsKey(tool);
+    }
+
+    /**
+     * Requiring a tool, e.g. for testing the connection without another round trip.
+     *
+     * @param tool              The name of the tool.
+     */
+    public void requireTool(String tool) {
+        if (!hasTool(tool))
+            throw new ConnectionFailedException("The tool " + tool + " was not found on the target system");
+    }
+}
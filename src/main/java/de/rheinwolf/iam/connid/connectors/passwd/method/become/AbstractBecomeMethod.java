@@ -6,8 +6,6 @@ import de.rheinwolf.iam.connid.connectors.passwd.util.GuardedStringAccessor;
 
 import org.identityconnectors.common.security.GuardedString;
 
-import java.util.List;
-
 /**
  * Base implementation for a become method using the password stored in the configuration.
  */
@@ -61,12 +59,8 @@ public abstract class AbstractBecomeMethod implements BecomeMethod {
      * @return The command result without password prompt.
      */
     CommandResult removePasswordPrompt(CommandResult result) {
-        if (encrypedPassword != null) {
-            List<String> stderr = result.getStdErr();
-
-            if (!stderr.isEmpty())
-                stderr.remove(0);
-        }
+        if (encrypedPassword != null)
+            result.removeFirstStdErrLine();
 
         return result;
     }
@@ -3,6 +3,7 @@ package de.rheinwolf.iam.connid.connectors.passwd.method.become;
 import de.rheinwolf.iam.connid.connectors.passwd.PasswdConfiguration;
 import de.rheinwolf.iam.connid.connectors.passwd.connection.CommandResult;
 import de.rheinwolf.iam.connid.connectors.passwd.connection.Connection;
+import de.rheinwolf.iam.connid.connectors.passwd.connection.LineHandler;
 
 /**
  * Executing commands as administrative user.
@@ -20,6 +21,33 @@ public interface BecomeMethod {
      */
     CommandResult execute(Connection connection, byte[] stdin, String command, String... args);
 
+    /**
+     * Executing a command and passing its output to a handler while it is being received.
+     *
+     * @param connection        The connection where the command should be executed.
+     * @param stdin             The input for the command. Can be null.
+     * @param stdOutHandler     The handler for the lines on stdout.
+     * @param command           The command that should be executed.
+     * @param args              The arguments for the command.
+     *
+     * @return Returns a CommandResult instance without stdout lines.
+     */
+    CommandResult stream(Connection connection, byte[] stdin, LineHandler stdOutHandler, String command, String... args);
+
+    /**
+     * Executing a bulk read and passing its output to a handler while it is being received.
+     * The output may be compressed by the connection, see Connection.read().
+     *
+     * @param connection        The connection where the command should be executed.
+     * @param stdin             The input for the command. Can be null.
+     * @param stdOutHandler     The handler for the lines on stdout.
+     * @param command           The command that should be executed.
+     * @param args              The arguments for the command.
+     *
+     * @return Returns a CommandResult instance without stdout lines.
+     */
+    CommandResult read(Connection connection, byte[] stdin, LineHandler stdOutHandler, String command, String... args);
+
     /**
      * Initializing the method.
      *
@@ -3,6 +3,7 @@ package de.rheinwolf.iam.connid.connectors.passwd.method.become;
 import de.rheinwolf.iam.connid.connectors.passwd.PasswdConfiguration;
 import de.rheinwolf.iam.connid.connectors.passwd.connection.CommandResult;
 import de.rheinwolf.iam.connid.connectors.passwd.connection.Connection;
+import de.rheinwolf.iam.connid.connectors.passwd.connection.LineHandler;
 
 import java.util.Arrays;
 import java.util.stream.Stream;
@@ -26,10 +27,39 @@ public class DoAsBecomeMethod implements BecomeMethod {
      */
     @Override
     public CommandResult execute(Connection connection, byte[] stdin, String command, String... args) {
-        return connection.execute(stdin, Stream.concat(
-                Arrays.stream(new String[]{"doas", command}),
-                Arrays.stream(args)
-        ).toArray(String[]::new));
+        return connection.execute(stdin, getArgs(command, args));
+    }
+
+    /**
+     * Executing a command and passing its output to a handler while it is being received.
+     *
+     * @param connection        The connection where the command should be executed.
+     * @param stdin             The input for the command. Can be null.
+     * @param stdOutHandler     The handler for the lines on stdout.
+     * @param command           The command that should be executed.
+     * @param args              The arguments for the command.
+     *
+     * @return Returns a CommandResult instance without stdout lines.
+     */
+    @Override
+    public CommandResult stream(Connection connection, byte[] stdin, LineHandler stdOutHandler, String command, String... args) {
+        return connection.stream(stdin, stdOutHandler, getArgs(command, args));
+    }
+
+    /**
+     * Executing a bulk read and passing its output to a handler while it is being received.
+     *
+     * @param connection        The connection where the command should be executed.
+     * @param stdin             The input for the command. Can be null.
+     * @param stdOutHandler     The handler for the lines on stdout.
+     * @param command           The command that should be executed.
+     * @param args              The arguments for the command.
+     *
+     * @return Returns a CommandResult instance without stdout lines.
+     */
+    @Override
+    public CommandResult read(Connection connection, byte[] stdin, LineHandler stdOutHandler, String command, String... args) {
+        return connection.read(stdin, stdOutHandler, getArgs(command, args));
     }
 
     /**
@@ -41,4 +71,19 @@ public class DoAsBecomeMethod implements BecomeMethod {
     public void init(PasswdConfiguration configuration) {
         //
     }
+
+    /**
+     * Retrieving the arguments for the connection.
+     *
+     * @param command           The command that should be executed.
+     * @param args              The arguments for the command.
+     *
+     * @return Returns the full command line as string array.
+     */
+    private String[] getArgs(String command, String... args) {
+        return Stream.concat(
+                Arrays.stream(new String[]{"doas", command}),
+                Arrays.stream(args)
+        ).toArray(String[]::new);
+    }
 }
@@ -2,6 +2,7 @@ package de.rheinwolf.iam.connid.connectors.passwd.method.become;
 
 import de.rheinwolf.iam.connid.connectors.passwd.connection.CommandResult;
 import de.rheinwolf.iam.connid.connectors.passwd.connection.Connection;
+import de.rheinwolf.iam.connid.connectors.passwd.connection.LineHandler;
 
 import java.util.Arrays;
 import java.util.stream.Stream;
@@ -22,11 +23,59 @@ public class SuDoBecomeMethod extends AbstractBecomeMethod {
      */
     @Override
     public CommandResult execute(Connection connection, byte[] stdin, String command, String... args) {
-        CommandResult result = connection.execute(injectPassword(stdin), Stream.concat(
-                Arrays.stream(new String[]{"sudo", "-k", "-S", command}),
-                Arrays.stream(args)
-        ).toArray(String[]::new));
+        CommandResult result = connection.execute(injectPassword(stdin), getArgs(command, args));
+
+        return removePasswordPrompt(result);
+    }
+
+    /**
+     * Executing a command and passing its output to a handler while it is being received.
+     *
+     * @param connection        The connection where the command should be executed.
+     * @param stdin             The input for the command. Can be null.
+     * @param stdOutHandler     The handler for the lines on stdout.
+     * @param command           The command that should be executed.
+     * @param args              The arguments for the command.
+     *
+     * @return Returns a CommandResult instance without stdout lines.
+     */
+    @Override
+    public CommandResult stream(Connection connection, byte[] stdin, LineHandler stdOutHandler, String command, String... args) {
+        CommandResult result = connection.stream(injectPassword(stdin), stdOutHandler, getArgs(command, args));
+
+        return removePasswordPrompt(result);
+    }
+
+    /**
+     * Executing a bulk read and passing its output to a handler while it is being received.
+     *
+     * @param connection        The connection where the command should be executed.
+     * @param stdin             The input for the command. Can be null.
+     * @param stdOutHandler     The handler for the lines on stdout.
+     * @param command           The command that should be executed.
+     * @param args              The arguments for the command.
+     *
+     * @return Returns a CommandResult instance without stdout lines.
+     */
+    @Override
+    public CommandResult read(Connection connection, byte[] stdin, LineHandler stdOutHandler, String command, String... args) {
+        CommandResult result = connection.read(injectPassword(stdin), stdOutHandler, getArgs(command, args));
 
         return removePasswordPrompt(result);
     }
+
+    /**
+     * Retrieving the arguments for the connection.
+     *
+     * @param command           The command that should be executed.
+     * @param args              The arguments for the command.
+     *
+     * @return Returns the full command line as string array.
+     */
+    private String[] getArgs(String command, String... args) {
+        return Stream.concat(
+                Arrays.stream(new String[]{"sudo", "-k", "-S", command}),
+                Arrays.stream(args)
+        ).toArray(String[]::new);
+    }
 }
@@ -1,16 +1,77 @@
 package de.rheinwolf.iam.connid.connectors.passwd.method.passwd;
 
 import de.rheinwolf.iam.connid.connectors.passwd.PasswdConfiguration;
+import de.rheinwolf.iam.connid.connectors.passwd.PasswdQuery;
+import de.rheinwolf.iam.connid.connectors.passwd.connection.CommandResult;
 import de.rheinwolf.iam.connid.connectors.passwd.connection.Connection;
+import de.rheinwolf.iam.connid.connectors.passwd.connection.LineHandler;
+import de.rheinwolf.iam.connid.connectors.passwd.file.PasswdFile;
+import de.rheinwolf.iam.connid.connectors.passwd.file.PasswdRow;
+import de.rheinwolf.iam.connid.connectors.passwd.method.SystemProbe;
 import de.rheinwolf.iam.connid.connectors.passwd.method.become.BecomeMethod;
+import de.rheinwolf.iam.connid.connectors.passwd.model.FieldLayout;
+import de.rheinwolf.iam.connid.connectors.passwd.model.RowDecoder;
+import de.rheinwolf.iam.connid.connectors.passwd.util.CommandBuilder;
+
+import org.identityconnectors.common.logging.Log;
+import org.identityconnectors.framework.common.exceptions.ConnectionBrokenException;
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
+import org.identityconnectors.framework.common.objects.ConnectorObject;
+import org.identityconnectors.framework.common.objects.ObjectClass;
+import org.identityconnectors.framework.common.objects.OperationOptions;
+import org.identityconnectors.framework.common.objects.ResultsHandler;
+import org.identityconnectors.framework.common.objects.SearchResult;
+import org.identityconnectors.framework.common.objects.SortKey;
+import org.identityconnectors.framework.common.objects.SyncDelta;
+import org.identityconnectors.framework.common.objects.SyncDeltaBuilder;
+import org.identityconnectors.framework.common.objects.SyncDeltaType;
+import org.identityconnectors.framework.common.objects.SyncResultsHandler;
+import org.identityconnectors.framework.common.objects.SyncToken;
+import org.identityconnectors.framework.common.objects.Uid;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 /**
  * Base class for the supported passwd methods.
+ *
+ * Searches are served from a snapshot of the parsed rows as long as the
+ * database files did not change. Changes are detected by a single probe
+ * command (stat, or cksum if configured) before each search.
  */
 public abstract class AbstractPasswdMethod implements PasswdMethod {
+    private static final Log LOG = Log.getLog(AbstractPasswdMethod.class);
+
+    private static final String COMMAND_CKSUM = "cksum";
+    private static final String COMMAND_SH    = "sh";
+    private static final String COMMAND_STAT  = "stat";
+
+    private static final String SENTINEL_PREFIX = "__connector_passwd_";
+
+    /**
+     * The number of attempts for reading rows, a broken connection is reopened in between.
+     */
+    static final int READ_ATTEMPTS = 3;
+
     protected BecomeMethod        becomeMethod;
     protected PasswdConfiguration configuration;
     protected Connection          connection;
+    protected String              methodName;
+    protected SystemProbe         probe;
+
+    private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    private BatchSizer batchSizer = null;
 
     /**
      * Initializing the method instance.
@@ -18,10 +79,791 @@ public abstract class AbstractPasswdMethod implements PasswdMethod {
      * @param connection        The current target system connection.
      * @param configuration     The current configuration.
      * @param becomeMethod      The current become method.
+     * @param methodName        The name of the method, e.g. "useradd:linux".
+     * @param probe             The capabilities of the target system. Can be null if not probed.
      */
-    public void init(Connection connection, PasswdConfiguration configuration, BecomeMethod becomeMethod) {
+    public void init(Connection connection, PasswdConfiguration configuration, BecomeMethod becomeMethod, String methodName, SystemProbe probe) {
+        long maxBytes = configuration.getBatchMaxBytes();
+
         this.becomeMethod  = becomeMethod;
         this.configuration = configuration;
         this.connection    = connection;
+        this.methodName    = methodName;
+        this.probe         = probe;
+
+        // The script is passed to sh -s on stdin, so ARG_MAX does not apply to it. Half of
+        // it is only used as a conservative cap on the size a single script is kept to.
+        if ((probe != null) && (probe.getArgMax() > 0))
+            maxBytes = Math.min(maxBytes, probe.getArgMax() / 2);
+
+        batchSizer = new BatchSizer(maxBytes, configuration.getBatchLatencyTarget());
+    }
+
+    /**
+     * Retrieving the name of the method.
+     *
+     * @return Returns the configured or detected method, e.g. "useradd:linux".
+     */
+    @Override
+    public String getMethodName() {
+        return methodName;
+    }
+
+    /**
+     * Retrieving the database files the objects are read from.
+     *
+     * @return Returns the absolute file names.
+     */
+    protected abstract String[] getDatabaseFiles();
+
+    /**
+     * Checking whether the target system has the GNU version of stat.
+     *
+     * @return Returns true for GNU stat, false for BSD stat.
+     */
+    protected boolean hasGnuStat() {
+        return false;
+    }
+
+    /**
+     * Discarding all snapshots, e.g. after the database was changed.
+     */
+    protected void invalidateSnapshots() {
+        snapshots.clear();
+    }
+
+    /**
+     * Retrieving the field layout of the rows of an object class.
+     *
+     * @param objectClass       The object class.
+     *
+     * @return Returns a FieldLayout instance.
+     */
+    protected abstract FieldLayout getLayout(ObjectClass objectClass);
+
+    /**
+     * Fetching all rows of an object class from the target system.
+     *
+     * @param objectClass       The object class.
+     * @param rowHandler        The handler for the rows, rows can be null for empty lines.
+     *                          Fetching stops as soon as the handler returns false.
+     */
+    protected abstract void fetchRows(ObjectClass objectClass, Predicate<PasswdRow> rowHandler);
+
+    /**
+     * Fetching all rows of an object class from the first source only, e.g.
+     * /etc/passwd without /etc/shadow. The fields of the other sources are null.
+     *
+     * @param objectClass       The object class.
+     * @param rowHandler        The handler for the rows, rows can be null for empty lines.
+     *                          Fetching stops as soon as the handler returns false.
+     */
+    protected void fetchPrimaryRows(ObjectClass objectClass, Predicate<PasswdRow> rowHandler) {
+        fetchRows(objectClass, rowHandler);
+    }
+
+    /**
+     * Fetching only the rows of an object class with a key field equal to a
+     * value, without reading all rows. Additional rows are allowed, as they
+     * are matched against the query anyway.
+     *
+     * @param objectClass       The object class.
+     * @param fieldIndex        The index of the key field in the row.
+     * @param value             The value of the key field.
+     * @param rowHandler        The handler for the rows, rows can be null for empty lines.
+     *                          Fetching stops as soon as the handler returns false.
+     *
+     * @return Returns false if the method cannot look up rows by the field.
+     */
+    protected boolean lookupRows(ObjectClass objectClass, int fieldIndex, String value, Predicate<PasswdRow> rowHandler) {
+        return false;
+    }
+
+    /**
+     * Fetching the rows of all object classes from the target system in a single transfer.
+     *
+     * @return Returns the rows by object class, or null if each object class is read separately.
+     */
+    protected Map<ObjectClass, List<PasswdRow>> fetchAllRows() {
+        return null;
+    }
+
+    /**
+     * Executing a list of create, update and delete operations one after another.
+     *
+     * @param operations        The operations, executed in the given order.
+     *
+     * @return Returns one result per operation, in the same order.
+     */
+    @Override
+    public List<BatchResult> execute(List<BatchOperation> operations) {
+        List<BatchResult> results = new ArrayList<>(operations.size());
+
+        for (BatchOperation operation : operations) {
+            try {
+                switch (operation.getType()) {
+                    case CREATE:
+                        results.add(BatchResult.success(create(operation.getObjectClass(), operation.getAttributes())));
+                        break;
+                    case UPDATE:
+                        results.add(BatchResult.success(update(operation.getObjectClass(), operation.getUid(), operation.getAttributeDeltas())));
+                        break;
+                    default:
+                        delete(operation.getObjectClass(), operation.getUid());
+                        results.add(BatchResult.success(operation.getUid()));
+                }
+            } catch (RuntimeException e) {
+                results.add(BatchResult.failure(operation.getUid(), e));
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Retrieving the commands implementing an operation, for running it with executeScripts.
+     *
+     * @param operation         The operation.
+     *
+     * @return Returns a CommandScript instance.
+     */
+    protected CommandScript getScript(BatchOperation operation) {
+        throw new ConnectorException("Scripted operations are not supported by " + methodName);
+    }
+
+    /**
+     * Mapping the exit code of a scripted operation to a result. Any output is treated
+     * as error, as the tools do not print anything on success.
+     *
+     * @param operation         The operation.
+     * @param script            The commands of the operation.
+     * @param exitCode          The exit code.
+     * @param output            The output of the commands.
+     *
+     * @return Returns a BatchResult instance.
+     */
+    protected BatchResult getScriptResult(BatchOperation operation, CommandScript script, int exitCode, List<String> output) {
+        if (exitCode == CommandScript.EXIT_CODE_FOLLOW_UP)
+            return BatchResult.failure(script.getUid(), new ConnectionBrokenException("Operation was only partially applied: " + output));
+
+        if (exitCode != 0)
+            return BatchResult.failure(script.getUid(), new ConnectionBrokenException("Expected exit codes [0], got " + exitCode + ": " + output));
+
+        if (!output.isEmpty())
+            return BatchResult.failure(script.getUid(), new ConnectionBrokenException("Expected empty stderr stream, got: " + output));
+
+        return BatchResult.success(script.getUid());
+    }
+
+    /**
+     * Running operations as command scripts. The scripts of many operations are
+     * combined into one shell script, so a batch takes a single round trip. The
+     * size of the batches is adapted to the configured byte limit and latency target.
+     *
+     * @param operations        The operations, executed in the given order.
+     *
+     * @return Returns one result per operation, in the same order.
+     */
+    protected List<BatchResult> executeScripts(List<BatchOperation> operations) {
+        BatchResult[] results  = new BatchResult[operations.size()];
+        int           position = 0;
+
+        while (position < operations.size()) {
+            String                      sentinel = SENTINEL_PREFIX + UUID.randomUUID().toString().replace("-", "");
+            ByteArrayOutputStream       script   = new ByteArrayOutputStream();
+            Map<Integer, CommandScript> scripts  = new LinkedHashMap<>();
+
+            for (; position < operations.size(); ++position) {
+                BatchOperation operation = operations.get(position);
+                CommandScript  commandScript;
+
+                try {
+                    commandScript = getScript(operation);
+                } catch (RuntimeException e) {
+                    results[position] = BatchResult.failure(operation.getUid(), e);
+                    continue;
+                }
+
+                if (commandScript.isEmpty()) {
+                    results[position] = BatchResult.success(commandScript.getUid());
+                    continue;
+                }
+
+                byte[] fragment = commandScript.render(sentinel, position);
+
+                if (!batchSizer.fits(scripts.size(), script.size() + fragment.length))
+                    break;
+
+                script.write(fragment, 0, fragment.length);
+                scripts.put(position, commandScript);
+            }
+
+            if (!scripts.isEmpty())
+                executeScript(operations, sentinel, script.toByteArray(), scripts, results);
+        }
+
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Running a rendered batch script and mapping the status lines back to the operations.
+     *
+     * @param operations        All operations.
+     * @param sentinel          The prefix of the status lines.
+     * @param script            The rendered script.
+     * @param scripts           The commands in the script, by position in the list of operations.
+     * @param results           The results of all operations, filled for the commands in the script.
+     */
+    private void executeScript(List<BatchOperation> operations, String sentinel, byte[] script, Map<Integer, CommandScript> scripts, BatchResult[] results) {
+        List<String> output    = new ArrayList<>();
+        String       prefix    = sentinel + " ";
+        String       failure   = "Batch failed before reporting the status";
+        long         startTime = System.currentTimeMillis();
+
+        LineHandler lineHandler = line -> {
+            if (!line.startsWith(prefix)) {
+                output.add(line);
+                return true;
+            }
+
+            String[] status   = line.substring(prefix.length()).split(" ");
+            int      position = Integer.parseInt(status[0]);
+
+            results[position] = getScriptResult(operations.get(position), scripts.get(position), Integer.parseInt(status[1]), new ArrayList<>(output));
+            output.clear();
+
+            return true;
+        };
+
+        invalidateSnapshots();
+
+        try (CommandResult result = becomeMethod.stream(connection, script, lineHandler, COMMAND_SH, "-s")) {
+            failure = "Batch exited with code " + result.getExitCode() + " before reporting the status: " + result.getStdErr();
+        } catch (RuntimeException e) {
+            LOG.error(e, "Batch of {0} operations failed", scripts.size());
+        }
+
+        long duration = System.currentTimeMillis() - startTime;
+
+        batchSizer.record(scripts.size(), duration);
+
+        LOG.ok("Executed batch of {0} operations in {1} ms, next batch size {2}", scripts.size(), duration, batchSizer.getSize());
+
+        // Operations without a status line were not run, or their outcome is unknown
+        for (Map.Entry<Integer, CommandScript> entry : scripts.entrySet()) {
+            if (results[entry.getKey()] != null)
+                continue;
+
+            results[entry.getKey()] = BatchResult.failure(entry.getValue().getUid(), new ConnectionBrokenException(failure));
+        }
+    }
+
+    /**
+     * Searching for objects. Unsorted and unpaged searches pass each match to
+     * the handler as soon as it is received. Sorted searches collect the
+     * matching rows first, and only decode them after sorting.
+     *
+     * @param objectClass       The object class.
+     * @param query             The search filter.
+     * @param options           The operation options, honoring ATTRS_TO_GET, SORT_KEYS, PAGE_SIZE,
+     *                          PAGED_RESULTS_OFFSET and PAGED_RESULTS_COOKIE. Can be null.
+     * @param handler           The handler for the found objects.
+     *
+     * @return Returns a SearchResult for paged searches, null otherwise.
+     */
+    @Override
+    public SearchResult search(ObjectClass objectClass, PasswdQuery query, OperationOptions options, ResultsHandler handler) {
+        FieldLayout layout          = getLayout(objectClass);
+        String[]    attributesToGet = (options == null) ? null : options.getAttributesToGet();
+        SortKey[]   sortKeys        = (options == null) ? null : options.getSortKeys();
+        Integer     pageSize        = (options == null) ? null : options.getPageSize();
+        RowDecoder  decoder         = layout.getDecoder(select(layout, attributesToGet));
+
+        if ((pageSize != null) && (pageSize > 0))
+            return searchPage(objectClass, layout, query, options, handler);
+
+        if ((sortKeys == null) || (sortKeys.length == 0)) {
+            forEachMatch(objectClass, layout, query, attributesToGet, sortKeys, false, row -> {
+                ConnectorObject connectorObject = decoder.decode(objectClass, row);
+
+                return (connectorObject == null) || (handler.handle(connectorObject));
+            });
+
+            return null;
+        }
+
+        List<PasswdRow> rows = new ArrayList<>();
+
+        forEachMatch(objectClass, layout, query, attributesToGet, sortKeys, false, rows::add);
+
+        for (PasswdRow row : RowSorter.sort(rows, layout, sortKeys)) {
+            ConnectorObject connectorObject = decoder.decode(objectClass, row);
+
+            if ((connectorObject != null) && (!handler.handle(connectorObject)))
+                break;
+        }
+
+        return null;
+    }
+
+    /**
+     * Searching for objects page by page. The first page collects and sorts
+     * the matching rows, which are kept in the PagedSearchStore. The cookie
+     * consists of the ID of the search and the position of the next row.
+     *
+     * Later pages may ask for other attributes than the first one, so the kept
+     * rows are read from all sources and carry the group membership.
+     *
+     * @param objectClass       The object class.
+     * @param layout            The field layout of the rows.
+     * @param query             The search filter.
+     * @param options           The operation options with a page size.
+     * @param handler           The handler for the found objects.
+     *
+     * @return Returns a SearchResult with the cookie for the next page, which is null after the last page.
+     */
+    private SearchResult searchPage(ObjectClass objectClass, FieldLayout layout, PasswdQuery query, OperationOptions options, ResultsHandler handler) {
+        RowDecoder      decoder   = layout.getDecoder(select(layout, options.getAttributesToGet()));
+        String          cookie    = options.getPagedResultsCookie();
+        Integer         offset    = options.getPagedResultsOffset();
+        String          scope     = getScope(objectClass);
+        List<PasswdRow> rows;
+        String          searchId;
+        int             position;
+
+        if (cookie == null) {
+            List<PasswdRow> matches = new ArrayList<>();
+
+            forEachMatch(objectClass, layout, query, options.getAttributesToGet(), options.getSortKeys(), true, matches::add);
+
+            rows     = RowSorter.sort(matches, layout, options.getSortKeys());
+            position = (offset == null) ? 0 : Math.max(offset - 1, 0);
+            searchId = PagedSearchStore.put(scope, rows, configuration.getPagedResultsTimeout());
+        } else {
+            int separator = cookie.indexOf(':');
+
+            searchId = (separator < 0) ? cookie : cookie.substring(0, separator);
+            rows     = PagedSearchStore.get(scope, searchId);
+
+            if ((rows == null) || (separator < 0) || (!cookie.substring(separator + 1).matches("[0-9]+")))
+                throw new ConnectorException("The paged results cookie is unknown or expired");
+
+            position = Integer.parseInt(cookie.substring(separator + 1));
+        }
+
+        int end = Math.min(position + options.getPageSize(), rows.size());
+
+        while (position < end) {
+            ConnectorObject connectorObject = decoder.decode(objectClass, rows.get(position++));
+
+            if ((connectorObject != null) && (!handler.handle(connectorObject)))
+                break;
+        }
+
+        int remaining = rows.size() - position;
+
+        if (remaining <= 0)
+            PagedSearchStore.remove(searchId);
+
+        return new SearchResult(
+                (remaining > 0) ? searchId + ":" + position : null,
+                SearchResult.CountPolicy.EXACT,
+                rows.size(),
+                remaining
+        );
+    }
+
+    /**
+     * Selecting the attributes to decode for ATTRS_TO_GET.
+     *
+     * @param layout            The field layout of the rows.
+     * @param attributesToGet   The attributes to return. Can be null for all attributes.
+     *
+     * @return Returns the selection flags by position, or null for all attributes.
+     */
+    private static boolean[] select(FieldLayout layout, String[] attributesToGet) {
+        return layout.select((attributesToGet == null) ? null : Arrays.asList(attributesToGet));
+    }
+
+    /**
+     * Passing the rows matching a query to a handler. Queries with an equality
+     * condition on a key field only read the matching rows. Joined sources and
+     * the group membership are only read if the query, the sort keys or the
+     * returned attributes need them, unless complete rows are requested.
+     *
+     * @param objectClass       The object class.
+     * @param layout            The field layout of the rows.
+     * @param query             The search filter.
+     * @param attributesToGet   The attributes to return. Can be null for all attributes.
+     * @param sortKeys          The attributes to sort by. Can be null.
+     * @param complete          Whether all sources and the membership are read regardless of the attributes.
+     * @param rowHandler        The handler for the matching rows. The iteration stops as soon
+     *                          as the handler returns false.
+     */
+    private void forEachMatch(ObjectClass objectClass, FieldLayout layout, PasswdQuery query, String[] attributesToGet, SortKey[] sortKeys, boolean complete, Predicate<PasswdRow> rowHandler) {
+        Collection<String> attributeNames = query.collectAttributeNames(new ArrayList<>((attributesToGet == null) ? Collections.emptyList() : Arrays.asList(attributesToGet)));
+
+        if (sortKeys != null) {
+            for (SortKey sortKey : sortKeys)
+                attributeNames.add(sortKey.getField());
+        }
+
+        boolean[] needed = layout.select(attributeNames);
+
+        if (complete)
+            Arrays.fill(needed, true);
+
+        Predicate<PasswdRow> matchHandler = row -> (row == null) || (!query.matches(layout, row)) || (rowHandler.test(row));
+        Predicate<PasswdRow> joinHandler  = layout.needsMembership(needed) ? withMembership(layout, matchHandler) : matchHandler;
+        PasswdQuery          condition    = query.getEqualityCondition();
+        int                  position     = (condition != null) ? layout.find(condition.getAttributeName()) : -1;
+
+        if ((position >= 0) && (!layout.isComputed(position))) {
+            String value = CommandBuilder.toCommandValue(condition.getValue());
+
+            if (retryRead(joinHandler, handler -> lookupRows(objectClass, layout.getFieldIndex(position), value, handler)))
+                return;
+        }
+
+        forEachRow(objectClass, layout.getSourceCount((attributesToGet == null) ? null : needed), joinHandler);
+    }
+
+    /**
+     * Appending the computed group membership to the rows passed to a handler.
+     * The group rows are read once per search, before the first account row.
+     *
+     * @param layout            The field layout of the account rows.
+     * @param rowHandler        The handler for the joined rows.
+     *
+     * @return Returns the handler for the account rows.
+     */
+    private Predicate<PasswdRow> withMembership(FieldLayout layout, Predicate<PasswdRow> rowHandler) {
+        MembershipIndex membershipIndex = new MembershipIndex(layout, getLayout(ObjectClass.GROUP));
+
+        forEachRow(ObjectClass.GROUP, row -> {
+            if (row != null)
+                membershipIndex.add(row);
+
+            return true;
+        });
+
+        return row -> rowHandler.test((row == null) ? null : membershipIndex.join(row));
+    }
+
+    /**
+     * Reporting the changes since the state identified by a sync token.
+     *
+     * The deltas are computed by comparing the fingerprints of the current
+     * rows with the fingerprints stored for the token. All deltas but the last
+     * carry the old token, so an interrupted sync is repeated from the start.
+     * If the state of the token is unknown, e.g. after a restart, all objects
+     * are reported as CREATE_OR_UPDATE and deletions cannot be detected.
+     *
+     * @param objectClass       The object class.
+     * @param token             The token from the last sync. Can be null.
+     * @param handler           The handler for the deltas.
+     */
+    @Override
+    public void sync(ObjectClass objectClass, SyncToken token, SyncResultsHandler handler) {
+        requireSyncObjectClass(objectClass);
+
+        FieldLayout     layout  = getLayout(objectClass);
+        String          scope   = getScope(objectClass);
+        List<PasswdRow> rows    = new ArrayList<>();
+        Fingerprints    current = new Fingerprints();
+
+        forEachRow(objectClass, row -> {
+            if ((row != null) && (current.add(row)))
+                rows.add(row);
+
+            return true;
+        });
+
+        Fingerprints previous = (token == null) ? null : SyncStateStore.get(scope, String.valueOf(token.getValue()));
+        SyncToken    newToken = new SyncToken(current.getIdentity());
+
+        SyncStateStore.put(scope, current);
+
+        if ((token != null) && (previous == null))
+            LOG.warn("Unknown sync token {0} for {1}, reporting all objects", token.getValue(), scope);
+
+        boolean         known       = previous != null;
+        SyncToken       resumeToken = known ? token : new SyncToken(Fingerprints.EMPTY.getIdentity());
+        List<PasswdRow> changed     = new ArrayList<>();
+        List<String>    deleted     = new ArrayList<>();
+
+        if (!known)
+            previous = Fingerprints.EMPTY;
+
+        for (PasswdRow row : rows) {
+            if (!Long.valueOf(Fingerprints.hash(row)).equals(previous.get(row.getField(0))))
+                changed.add(row);
+        }
+
+        for (String name : previous.getNames()) {
+            if (current.get(name) == null)
+                deleted.add(name);
+        }
+
+        LOG.ok("Sync of {0}: {1} changed, {2} deleted", scope, changed.size(), deleted.size());
+
+        int remaining = changed.size() + deleted.size();
+
+        for (PasswdRow row : changed) {
+            SyncDeltaType   deltaType       = SyncDeltaType.CREATE_OR_UPDATE;
+            ConnectorObject connectorObject = PasswdFile.toConnectorObject(objectClass, row, layout);
+
+            if (known)
+                deltaType = (previous.get(row.getField(0)) == null) ? SyncDeltaType.CREATE : SyncDeltaType.UPDATE;
+
+            SyncDelta syncDelta = new SyncDeltaBuilder()
+                    .setDeltaType(deltaType)
+                    .setObject(connectorObject)
+                    .setObjectClass(objectClass)
+                    .setToken((--remaining == 0) ? newToken : resumeToken)
+                    .setUid(connectorObject.getUid())
+                    .build();
+
+            if (!handler.handle(syncDelta))
+                return;
+        }
+
+        for (String name : deleted) {
+            SyncDelta syncDelta = new SyncDeltaBuilder()
+                    .setDeltaType(SyncDeltaType.DELETE)
+                    .setObjectClass(objectClass)
+                    .setToken((--remaining == 0) ? newToken : resumeToken)
+                    .setUid(new Uid(name))
+                    .build();
+
+            if (!handler.handle(syncDelta))
+                return;
+        }
+    }
+
+    /**
+     * Retrieving the token for the current state of an object class.
+     *
+     * @param objectClass       The object class.
+     *
+     * @return Returns a SyncToken instance.
+     */
+    @Override
+    public SyncToken getLatestSyncToken(ObjectClass objectClass) {
+        Fingerprints current = new Fingerprints();
+
+        requireSyncObjectClass(objectClass);
+
+        forEachRow(objectClass, row -> {
+            if (row != null)
+                current.add(row);
+
+            return true;
+        });
+
+        SyncStateStore.put(getScope(objectClass), current);
+
+        return new SyncToken(current.getIdentity());
+    }
+
+    /**
+     * Rejecting a sync of all object classes. The tokens are kept per object class,
+     * so accounts and groups have to be synchronized separately.
+     *
+     * @param objectClass       The object class.
+     */
+    private void requireSyncObjectClass(ObjectClass objectClass) {
+        if (ObjectClass.ALL.equals(objectClass))
+            throw new ConnectorException("Sync of " + ObjectClass.ALL_NAME + " is not supported, synchronize " + ObjectClass.ACCOUNT_NAME + " and " + ObjectClass.GROUP_NAME + " separately");
+    }
+
+    /**
+     * Retrieving the scope of sync tokens and paged searches, identifying the target system and object class.
+     *
+     * @param objectClass       The object class.
+     *
+     * @return Returns the scope as string.
+     */
+    private String getScope(ObjectClass objectClass) {
+        return configuration.getConnectionType() + "://"
+                + configuration.getUserName() + "@"
+                + configuration.getHostName() + ":"
+                + configuration.getPort() + "/"
+                + methodName + "/"
+                + objectClass.getObjectClassValue();
+    }
+
+    /**
+     * Passing all rows of an object class to a handler, using the snapshot if the database did not change.
+     *
+     * @param objectClass       The object class.
+     * @param rowHandler        The handler for the rows, rows can be null for empty lines.
+     *                          The iteration stops as soon as the handler returns false.
+     */
+    protected void forEachRow(ObjectClass objectClass, Predicate<PasswdRow> rowHandler) {
+        forEachRow(objectClass, getLayout(objectClass).getSourceCount(null), rowHandler);
+    }
+
+    /**
+     * Passing all rows of an object class to a handler, using the snapshot if the database did not change.
+     * If not all joined sources are needed, the rows are fetched without them and not kept as snapshot.
+     * The read is repeated if the connection broke before the first row was passed on.
+     *
+     * @param objectClass       The object class.
+     * @param sources           The number of leading joined sources needed.
+     * @param rowHandler        The handler for the rows, rows can be null for empty lines.
+     *                          The iteration stops as soon as the handler returns false.
+     */
+    protected void forEachRow(ObjectClass objectClass, int sources, Predicate<PasswdRow> rowHandler) {
+        retryRead(rowHandler, handler -> {
+            forEachRowOnce(objectClass, sources, handler);
+            return true;
+        });
+    }
+
+    /**
+     * Running an idempotent read of rows. It is repeated if the connection broke
+     * before a row was passed on, so the handler never sees a row twice.
+     *
+     * @param rowHandler        The handler for the rows.
+     * @param read              The read, passing the rows to the given handler.
+     *
+     * @return Returns the result of the read.
+     */
+    static boolean retryRead(Predicate<PasswdRow> rowHandler, Predicate<Predicate<PasswdRow>> read) {
+        boolean[]            delivered = {false};
+        Predicate<PasswdRow> tracking  = row -> {
+            delivered[0] = true;
+            return rowHandler.test(row);
+        };
+
+        for (int attempt = 1; ; ++attempt) {
+            try {
+                return read.test(tracking);
+            } catch (ConnectionBrokenException e) {
+                if ((delivered[0]) || (attempt >= READ_ATTEMPTS))
+                    throw e;
+
+                LOG.warn("Read failed before any row was passed on, retrying: {0}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Passing the rows of an object class to a handler in a single attempt.
+     *
+     * @param objectClass       The object class.
+     * @param sources           The number of leading joined sources needed.
+     * @param rowHandler        The handler for the rows, rows can be null for empty lines.
+     *                          The iteration stops as soon as the handler returns false.
+     */
+    private void forEachRowOnce(ObjectClass objectClass, int sources, Predicate<PasswdRow> rowHandler) {
+        boolean partial = sources < getLayout(objectClass).getSourceCount(null);
+
+        if (!configuration.getSnapshotCache()) {
+            if (partial) {
+                fetchPrimaryRows(objectClass, rowHandler);
+            } else {
+                fetchRows(objectClass, rowHandler);
+            }
+
+            return;
+        }
+
+        String   key      = objectClass.getObjectClassValue();
+        String   identity = probeDatabase();
+        Snapshot snapshot = snapshots.get(key);
+
+        if ((identity != null) && (snapshot != null) && (identity.equals(snapshot.getIdentity()))) {
+            LOG.ok("Database unchanged, using snapshot of {0}", key);
+
+            for (PasswdRow row : snapshot.getRows()) {
+                if (!rowHandler.test(row))
+                    return;
+            }
+
+            return;
+        }
+
+        if (partial) {
+            fetchPrimaryRows(objectClass, rowHandler);
+            return;
+        }
+
+        // Refreshing the snapshots of all object classes at once if the method can
+        Map<ObjectClass, List<PasswdRow>> allRows = (identity != null) ? fetchAllRows() : null;
+
+        if (allRows != null) {
+            allRows.forEach((rowsClass, classRows) -> snapshots.put(rowsClass.getObjectClassValue(), new Snapshot(identity, classRows)));
+
+            for (PasswdRow row : allRows.getOrDefault(objectClass, Collections.emptyList())) {
+                if (!rowHandler.test(row))
+                    return;
+            }
+
+            return;
+        }
+
+        List<PasswdRow> rows     = new ArrayList<>();
+        boolean[]       complete = {true};
+
+        fetchRows(objectClass, row -> {
+            if (row != null)
+                rows.add(row);
+
+            if (rowHandler.test(row))
+                return true;
+
+            complete[0] = false;
+
+            return false;
+        });
+
+        // An aborted iteration did not see all rows
+        if ((identity != null) && (complete[0]))
+            snapshots.put(key, new Snapshot(identity, rows));
+    }
+
+    /**
+     * Probing the database files for changes.
+     *
+     * @return Returns a string identifying the state of the files, or null if the probe failed.
+     */
+    private String probeDatabase() {
+        String[] files = getDatabaseFiles();
+        String[] args;
+
+        if (configuration.getSnapshotChecksum()) {
+            try (CommandResult result = becomeMethod.execute(connection, null, COMMAND_CKSUM, files)) {
+                return getProbeOutput(result);
+            }
+        }
+
+        // Modification time, size and inode, the latter changes when a file is replaced
+        if (hasGnuStat()) {
+            args = Stream.concat(Stream.of(COMMAND_STAT, "-c", "%Y:%s:%i:%n"), Stream.of(files)).toArray(String[]::new);
+        } else {
+            args = Stream.concat(Stream.of(COMMAND_STAT, "-f", "%m:%z:%i:%N"), Stream.of(files)).toArray(String[]::new);
+        }
+
+        try (CommandResult result = connection.execute(null, args)) {
+            return getProbeOutput(result);
+        }
+    }
+
+    /**
+     * Retrieving the output of a probe command.
+     *
+     * @param result            The result of the probe command.
+     *
+     * @return Returns the output, or null if the probe failed.
+     */
+    private String getProbeOutput(CommandResult result) {
+        if ((result.getExitCode() != 0) || (!result.getStdErr().isEmpty())) {
+            LOG.warn("Could not probe database files, not using snapshots: {0}", result.getStdErr());
+            return null;
+        }
+
+        return String.join("\n", result.getStdOut());
     }
 }
@@ -0,0 +1,76 @@
+package de.rheinwolf.iam.connid.connectors.passwd.method.passwd;
+
+import de.rheinwolf.iam.connid.connectors.passwd.util.GuardedStringAccessor;
+
+import org.identityconnectors.common.security.GuardedString;
+import org.identityconnectors.framework.common.exceptions.InvalidAttributeValueException;
+import org.identityconnectors.framework.common.objects.Attribute;
+import org.identityconnectors.framework.common.objects.AttributeDelta;
+
+/**
+ * Helper methods for reading the values of attributes and attribute deltas,
+ * shared by the methods building commands or rows from them.
+ */
+final class AttributeValues {
+    private AttributeValues() {
+    }
+
+    /**
+     * Retrieving the value of an attribute.
+     *
+     * @param attribute         The attribute.
+     *
+     * @return Returns the first value, or null if the attribute has no value.
+     */
+    static Object getValue(Attribute attribute) {
+        if ((attribute.getValue() == null) || (attribute.getValue().isEmpty()))
+            return null;
+
+        return attribute.getValue().get(0);
+    }
+
+    /**
+     * Retrieving the new value from an AttributeDelta.
+     *
+     * @param attributeDelta    The attribute delta.
+     *
+     * @return Returns the first value to add or replace, or null if the value should be removed.
+     */
+    static Object getValue(AttributeDelta attributeDelta) {
+        if ((attributeDelta.getValuesToAdd() != null) && (!attributeDelta.getValuesToAdd().isEmpty()))
+            return attributeDelta.getValuesToAdd().get(0);
+
+        if ((attributeDelta.getValuesToReplace() != null) && (!attributeDelta.getValuesToReplace().isEmpty()))
+            return attributeDelta.getValuesToReplace().get(0);
+
+        return null;
+    }
+
+    /**
+     * Retrieving the password bytes from an attribute value. The password is passed
+     * to the tools line by line, so line breaks and NUL characters are rejected.
+     *
+     * @param value             The attribute value.
+     *
+     * @return Returns the password, or null if no password is set.
+     */
+    static byte[] getPassword(Object value) {
+        if (value == null)
+            return null;
+
+        if (!(value instanceof GuardedString))
+            throw new InvalidAttributeValueException("Password attribute is not a GuardedString instance");
+
+        byte[] password = GuardedStringAccessor.asByteArray((GuardedString) value);
+
+        if (password == null)
+            return null;
+
+        for (byte b : password) {
+            if ((b == '\n') || (b == '\r') || (b == 0))
+                throw new InvalidAttributeValueException("The password must not contain line breaks or NUL characters");
+        }
+
+        return (password.length == 0) ? null : password;
+    }
+}
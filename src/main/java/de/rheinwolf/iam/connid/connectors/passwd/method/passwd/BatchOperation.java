@@ -0,0 +1,128 @@
+package de.rheinwolf.iam.connid.connectors.passwd.method.passwd;
+
+import org.identityconnectors.framework.common.objects.Attribute;
+import org.identityconnectors.framework.common.objects.AttributeDelta;
+import org.identityconnectors.framework.common.objects.ObjectClass;
+import org.identityconnectors.framework.common.objects.Uid;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * A single create, update or delete operation of a batch.
+ */
+public final class BatchOperation {
+    /**
+     * The kind of operation.
+     */
+    public enum Type {
+        CREATE,
+        UPDATE,
+        DELETE
+    }
+
+    private final Type                type;
+    private final ObjectClass         objectClass;
+    private final Uid                 uid;
+    private final Set<Attribute>      attributes;
+    private final Set<AttributeDelta> attributeDeltas;
+
+    /**
+     * Constructing the operation.
+     *
+     * @param type              The kind of operation.
+     * @param objectClass       The object class.
+     * @param uid               The UID of the object. Null for create operations.
+     * @param attributes        The attributes of a new object.
+     * @param attributeDeltas   The changed attributes of an existing object.
+     */
+    private BatchOperation(Type type, ObjectClass objectClass, Uid uid, Set<Attribute> attributes, Set<AttributeDelta> attributeDeltas) {
+        this.type            = type;
+        this.objectClass     = objectClass;
+        this.uid             = uid;
+        this.attributes      = attributes;
+        this.attributeDeltas = attributeDeltas;
+    }
+
+    /**
+     * Creating an operation for a new object.
+     *
+     * @param objectClass       The object class.
+     * @param attributes        The attributes for the object.
+     *
+     * @return Returns a BatchOperation instance.
+     */
+    public static BatchOperation create(ObjectClass objectClass, Set<Attribute> attributes) {
+        return new BatchOperation(Type.CREATE, objectClass, null, attributes, Collections.emptySet());
+    }
+
+    /**
+     * Creating an operation updating an object.
+     *
+     * @param objectClass       The object class.
+     * @param uid               The UID of the object.
+     * @param attributeDeltas   The changed attributes.
+     *
+     * @return Returns a BatchOperation instance.
+     */
+    public static BatchOperation update(ObjectClass objectClass, Uid uid, Set<AttributeDelta> attributeDeltas) {
+        return new BatchOperation(Type.UPDATE, objectClass, uid, Collections.emptySet(), attributeDeltas);
+    }
+
+    /**
+     * Creating an operation deleting an object.
+     *
+     * @param objectClass       The object class.
+     * @param uid               The UID of the object.
+     *
+     * @return Returns a BatchOperation instance.
+     */
+    public static BatchOperation delete(ObjectClass objectClass, Uid uid) {
+        return new BatchOperation(Type.DELETE, objectClass, uid, Collections.emptySet(), Collections.emptySet());
+    }
+
+    /**
+     * Retrieving the kind of operation.
+     *
+     * @return Returns the type.
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Retrieving the object class.
+     *
+     * @return Returns the object class.
+     */
+    public ObjectClass getObjectClass() {
+        return objectClass;
+    }
+
+    /**
+     * Retrieving the UID of the object.
+     *
+     * @return Returns the UID, or null for create operations.
+     */
+    public Uid getUid() {
+        return uid;
+    }
+
+    /**
+     * Retrieving the attributes of a new object.
+     *
+     * @return Returns the attributes.
+     */
+    public Set<Attribute> getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * Retrieving the changed attributes of an existing object.
+     *
+     * @return Returns the attribute deltas.
+     */
+    public Set<AttributeDelta> getAttributeDeltas() {
+        return attributeDeltas;
+    }
+}
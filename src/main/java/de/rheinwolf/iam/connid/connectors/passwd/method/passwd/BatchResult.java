@@ -0,0 +1,72 @@
+package de.rheinwolf.iam.connid.connectors.passwd.method.passwd;
+
+import org.identityconnectors.framework.common.objects.Uid;
+
+/**
+ * The outcome of a single operation of a batch.
+ */
+public final class BatchResult {
+    private final Uid              uid;
+    private final RuntimeException error;
+
+    /**
+     * Constructing the result.
+     *
+     * @param uid               The (possibly changed) UID of the object.
+     * @param error             The error of a failed operation. Null on success.
+     */
+    private BatchResult(Uid uid, RuntimeException error) {
+        this.uid   = uid;
+        this.error = error;
+    }
+
+    /**
+     * Creating the result of a successful operation.
+     *
+     * @param uid               The (possibly changed) UID of the object.
+     *
+     * @return Returns a BatchResult instance.
+     */
+    public static BatchResult success(Uid uid) {
+        return new BatchResult(uid, null);
+    }
+
+    /**
+     * Creating the result of a failed operation.
+     *
+     * @param uid               The UID of the object. Can be null.
+     * @param error             The error.
+     *
+     * @return Returns a BatchResult instance.
+     */
+    public static BatchResult failure(Uid uid, RuntimeException error) {
+        return new BatchResult(uid, error);
+    }
+
+    /**
+     * Retrieving the UID of the object.
+     *
+     * @return Returns the UID. Can be null for failed create operations.
+     */
+    public Uid getUid() {
+        return uid;
+    }
+
+    /**
+     * Retrieving the error of a failed operation.
+     *
+     * @return Returns the error, or null on success.
+     */
+    public RuntimeException getError() {
+        return error;
+    }
+
+    /**
+     * Checking whether the operation succeeded.
+     *
+     * @return Returns true on success.
+     */
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
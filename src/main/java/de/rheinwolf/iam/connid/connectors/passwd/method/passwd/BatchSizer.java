@@ -0,0 +1,82 @@
+package de.rheinwolf.iam.connid.connectors.passwd.method.passwd;
+
+/**
+ * Choosing the number of operations per batch.
+ *
+ * A batch is bounded by the size of the rendered script, a conservative cap
+ * rather than an exec limit as the script is read from stdin, and by a
+ * latency target: the time per operation is tracked as moving average over
+ * the previous batches, and the next batch gets as many operations as fit
+ * into the target. The first batch is small, so a slow target system is
+ * noticed early.
+ */
+final class BatchSizer {
+    private static final int    INITIAL_SIZE = 16;
+    private static final double SMOOTHING    = 0.3;
+
+    private final long maxBytes;
+    private final long latencyTarget;
+
+    private double millisPerOperation = -1;
+    private int    size               = INITIAL_SIZE;
+
+    /**
+     * Constructing the sizer.
+     *
+     * @param maxBytes          The maximum size of a rendered batch in bytes.
+     * @param latencyTarget     The targeted duration of a batch in milliseconds.
+     */
+    BatchSizer(long maxBytes, long latencyTarget) {
+        this.maxBytes      = maxBytes;
+        this.latencyTarget = latencyTarget;
+    }
+
+    /**
+     * Checking whether another operation fits into the current batch.
+     *
+     * @param operations        The number of operations already in the batch.
+     * @param bytes             The size of the batch including the next operation.
+     *
+     * @return Returns true if the operation can be added.
+     */
+    boolean fits(int operations, long bytes) {
+        // A single operation always fits, it could not be run otherwise
+        if (operations == 0)
+            return true;
+
+        return (operations < size) && (bytes <= maxBytes);
+    }
+
+    /**
+     * Recording the duration of a finished batch and adapting the size of the next one.
+     *
+     * @param operations        The number of operations in the batch.
+     * @param millis            The duration of the batch in milliseconds.
+     */
+    void record(int operations, long millis) {
+        if (operations == 0)
+            return;
+
+        double sample = Math.max(millis, 1) / (double) operations;
+
+        if (millisPerOperation < 0) {
+            millisPerOperation = sample;
+        } else {
+            millisPerOperation = (SMOOTHING * sample) + ((1 - SMOOTHING) * millisPerOperation);
+        }
+
+        // Grow at most by factor two per batch, so a single fast batch cannot overshoot
+        long target = (long) (latencyTarget / millisPerOperation);
+
+        size = (int) Math.max(1, Math.min(Math.min(target, size * 2L), Integer.MAX_VALUE));
+    }
+
+    /**
+     * Retrieving the maximum number of operations of the next batch.
+     *
+     * @return Returns the size.
+     */
+    int getSize() {
+        return size;
+    }
+}
@@ -0,0 +1,119 @@
+package de.rheinwolf.iam.connid.connectors.passwd.method.passwd;
+
+import de.rheinwolf.iam.connid.connectors.passwd.util.CommandBuilder;
+
+import org.identityconnectors.framework.common.objects.Uid;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The commands implementing a single operation, rendered into a fragment
+ * of a shell script.
+ *
+ * The commands run in a subshell, one after another, and the first failing
+ * command ends the fragment. Its exit code is reported in a status line
+ * starting with a sentinel, so several fragments can share one script and
+ * one round trip. Input of a command is passed as quoted here-document.
+ */
+final class CommandScript {
+    /**
+     * The exit code reported when a follow-up command fails.
+     */
+    static final int EXIT_CODE_FOLLOW_UP = 100;
+
+    private final List<String[]> commands = new ArrayList<>();
+    private final List<byte[]>   inputs   = new ArrayList<>();
+    private final Uid            uid;
+
+    /**
+     * Constructing an empty script.
+     *
+     * @param uid               The UID of the object after the operation.
+     */
+    CommandScript(Uid uid) {
+        this.uid = uid;
+    }
+
+    /**
+     * Appending a command. The exit code of the first command is reported as is,
+     * later commands report EXIT_CODE_FOLLOW_UP.
+     *
+     * @param input             The input for the command. Can be null.
+     * @param command           The command and its arguments.
+     *
+     * @return Returns the script.
+     */
+    CommandScript add(byte[] input, String... command) {
+        commands.add(command);
+        inputs.add(((input != null) && (input.length > 0)) ? input : null);
+
+        return this;
+    }
+
+    /**
+     * Retrieving the UID of the object after the operation.
+     *
+     * @return Returns the UID.
+     */
+    Uid getUid() {
+        return uid;
+    }
+
+    /**
+     * Checking whether the script has no commands.
+     *
+     * @return Returns true if nothing has to be run.
+     */
+    boolean isEmpty() {
+        return commands.isEmpty();
+    }
+
+    /**
+     * Rendering the commands into a fragment of a script. Stderr is merged
+     * into stdout, so the output of a fragment precedes its status line.
+     *
+     * @param sentinel          The sentinel, also used as here-document delimiter.
+     * @param position          The position of the operation in the batch.
+     *
+     * @return Returns the fragment as byte array.
+     */
+    byte[] render(String sentinel, int position) {
+        ByteArrayOutputStream fragment = new ByteArrayOutputStream();
+
+        write(fragment, "(\n");
+
+        for (int i = 0; i < commands.size(); ++i) {
+            String exit = (i == 0) ? "$?" : String.valueOf(EXIT_CODE_FOLLOW_UP);
+
+            write(fragment, CommandBuilder.asShellLine(commands.get(i)));
+
+            if (inputs.get(i) != null) {
+                write(fragment, " <<'" + sentinel + "' || exit " + exit + "\n");
+                fragment.write(inputs.get(i), 0, inputs.get(i).length);
+                write(fragment, "\n" + sentinel + "\n");
+            } else {
+                write(fragment, " </dev/null || exit " + exit + "\n");
+            }
+        }
+
+        write(fragment, ") 2>&1\n"
+                + "printf '%s %d %d\\n' '" + sentinel + "' " + position + " \"$?\"\n");
+
+        return fragment.toByteArray();
+    }
+
+    /**
+     * Writing a string to a fragment.
+     *
+     * @param fragment          The fragment.
+     * @param value             The string.
+     */
+    private static void write(ByteArrayOutputStream fragment, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+        fragment.write(bytes, 0, bytes.length);
+    }
+}
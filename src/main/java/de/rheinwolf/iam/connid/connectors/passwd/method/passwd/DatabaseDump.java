@@ -0,0 +1,145 @@
+package de.rheinwolf.iam.connid.connectors.passwd.method.passwd;
+
+import de.rheinwolf.iam.connid.connectors.passwd.connection.CommandResult;
+import de.rheinwolf.iam.connid.connectors.passwd.connection.Connection;
+import de.rheinwolf.iam.connid.connectors.passwd.connection.LineHandler;
+import de.rheinwolf.iam.connid.connectors.passwd.file.PasswdFile;
+import de.rheinwolf.iam.connid.connectors.passwd.file.PasswdRow;
+import de.rheinwolf.iam.connid.connectors.passwd.method.become.BecomeMethod;
+import de.rheinwolf.iam.connid.connectors.passwd.util.CommandBuilder;
+
+import org.identityconnectors.framework.common.exceptions.ConnectionBrokenException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.function.BiPredicate;
+
+/**
+ * A consistent copy of several database files of a GNU/Linux system,
+ * transferred in a single command.
+ *
+ * The files are read into shell variables between two stat calls, and the
+ * read is repeated if any file was changed or replaced in between. Thus the
+ * rows of different files always belong to the same state of the database,
+ * without taking one of the exclusive locks of the shadow tools.
+ */
+final class DatabaseDump {
+    private static final String COMMAND_SH = "sh";
+
+    private static final String SENTINEL_PREFIX = "__connector_passwd_";
+
+    private static final int EXIT_CODE_CHANGING = 75;
+    private static final int READ_ATTEMPTS      = 5;
+
+    /**
+     * Utility class.
+     */
+    private DatabaseDump() {
+    }
+
+    /**
+     * Reading the files and passing their rows to a handler, file by file in the given order.
+     *
+     * @param connection        The connection to the target system.
+     * @param becomeMethod      The become method.
+     * @param rowHandler        The handler for the file name and the row, rows can be null for empty lines.
+     *                          Reading stops as soon as the handler returns false.
+     * @param files             The absolute file names.
+     */
+    static void read(Connection connection, BecomeMethod becomeMethod, BiPredicate<String, PasswdRow> rowHandler, String... files) {
+        String        sentinel = SENTINEL_PREFIX + UUID.randomUUID().toString().replace("-", "");
+        String        stat     = "stat -c '%Y:%s:%i' -- " + CommandBuilder.asShellLine(files);
+        StringBuilder script   = new StringBuilder();
+
+        script.append("i=0\n")
+                .append("while :; do\n")
+                .append("    a=$(").append(stat).append(") || exit 1\n");
+
+        for (int i = 0; i < files.length; ++i)
+            script.append("    f").append(i).append("=$(cat -- ").append(CommandBuilder.asShellLine(new String[] {files[i]})).append(") || exit 1\n");
+
+        script.append("    b=$(").append(stat).append(") || exit 1\n")
+                .append("    [ \"$a\" = \"$b\" ] && break\n")
+                .append("    i=$((i + 1))\n")
+                .append("    [ \"$i\" -lt ").append(READ_ATTEMPTS).append(" ] || exit ").append(EXIT_CODE_CHANGING).append("\n")
+                .append("    sleep 1\n")
+                .append("done\n");
+
+        // Each file is preceded by its position, the content cannot contain the sentinel
+        for (int i = 0; i < files.length; ++i) {
+            script.append("printf '%s %d\\n' '").append(sentinel).append("' ").append(i).append("\n")
+                    .append("printf '%s\\n' \"$f").append(i).append("\"\n");
+        }
+
+        String   prefix      = sentinel + " ";
+        byte[]   prefixBytes = prefix.getBytes(StandardCharsets.UTF_8);
+        String[] current     = {null};
+
+        LineHandler lineHandler = new LineHandler() {
+            /**
+             * Handling a decoded line, either a sentinel line or a row.
+             *
+             * @param line              The line.
+             *
+             * @return Returns false if the row handler stopped reading.
+             */
+            @Override
+            public boolean handle(String line) {
+                if (line.startsWith(prefix)) {
+                    current[0] = files[Integer.parseInt(line.substring(prefix.length()))];
+                    return true;
+                }
+
+                return (current[0] == null) || (rowHandler.test(current[0], PasswdFile.tokenize(line)));
+            }
+
+            /**
+             * Handling a raw line, rows are tokenized without decoding them.
+             *
+             * @param buffer            The buffer containing the line.
+             * @param offset            The offset of the line in the buffer.
+             * @param length            The length of the line.
+             *
+             * @return Returns false if the row handler stopped reading.
+             */
+            @Override
+            public boolean handle(byte[] buffer, int offset, int length) {
+                if (startsWith(buffer, offset, length, prefixBytes))
+                    return handle(new String(buffer, offset, length, StandardCharsets.UTF_8));
+
+                return (current[0] == null) || (rowHandler.test(current[0], PasswdFile.tokenize(buffer, offset, length)));
+            }
+        };
+
+        try (CommandResult result = becomeMethod.read(connection, script.toString().getBytes(StandardCharsets.UTF_8), lineHandler, COMMAND_SH, "-s")) {
+            if ((!result.isAborted()) && (result.getExitCode() == EXIT_CODE_CHANGING))
+                throw new ConnectionBrokenException("The database files kept changing while being read");
+
+            result
+                    .expect(0)
+                    .expectStdErrIsEmpty();
+        }
+    }
+
+    /**
+     * Checking whether a raw line starts with a prefix.
+     *
+     * @param buffer            The buffer containing the line.
+     * @param offset            The offset of the line in the buffer.
+     * @param length            The length of the line.
+     * @param prefix            The prefix.
+     *
+     * @return Returns true if the line starts with the prefix.
+     */
+    private static boolean startsWith(byte[] buffer, int offset, int length, byte[] prefix) {
+        if (length < prefix.length)
+            return false;
+
+        for (int i = 0; i < prefix.length; ++i) {
+            if (buffer[offset + i] != prefix[i])
+                return false;
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,141 @@
+package de.rheinwolf.iam.connid.connectors.passwd.method.passwd;
+
+import de.rheinwolf.iam.connid.connectors.passwd.file.PasswdRow;
+
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compact state of an object class for computing sync deltas: the name of
+ * each entry mapped to a 64 bit hash of its row, plus a digest over all
+ * entries identifying the state as a whole.
+ */
+class Fingerprints {
+    /**
+     * The state without any entries, used as baseline for unknown sync tokens.
+     */
+    static final Fingerprints EMPTY = new Fingerprints();
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME        = 0x100000001b3L;
+
+    static {
+        // Sealing the shared instance
+        EMPTY.getIdentity();
+    }
+
+    private final MessageDigest     digest;
+    private final Map<String, Long> hashes = new HashMap<>();
+
+    private String identity = null;
+
+    /**
+     * Constructing an empty state.
+     */
+    Fingerprints() {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new ConnectorException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Adding a row. Rows with a name that was already added are ignored,
+     * like the system ignores duplicate entries.
+     *
+     * @param row               The row.
+     *
+     * @return Returns whether the row was added.
+     */
+    boolean add(PasswdRow row) {
+        String name = row.getField(0);
+
+        if ((identity != null) || (name == null) || (name.isEmpty()) || (hashes.containsKey(name)))
+            return false;
+
+        long hash = hash(row);
+
+        hashes.put(name, hash);
+
+        digest.update(name.getBytes(StandardCharsets.UTF_8));
+
+        for (int shift = 0; shift < 64; shift += 8)
+            digest.update((byte) (hash >>> shift));
+
+        return true;
+    }
+
+    /**
+     * Retrieving the hash of an entry.
+     *
+     * @param name              The name of the entry.
+     *
+     * @return Returns the hash, or null if there is no such entry.
+     */
+    Long get(String name) {
+        return hashes.get(name);
+    }
+
+    /**
+     * Retrieving the identity of the state. No rows can be added afterwards.
+     *
+     * @return Returns the identity as hex string.
+     */
+    String getIdentity() {
+        if (identity == null) {
+            StringBuilder result = new StringBuilder();
+            byte[]        bytes  = digest.digest();
+
+            for (int i = 0; i < 16; ++i)
+                result.append(String.format("%02x", bytes[i]));
+
+            identity = result.toString();
+        }
+
+        return identity;
+    }
+
+    /**
+     * Retrieving the names of all entries.
+     *
+     * @return Returns the names as set.
+     */
+    Set<String> getNames() {
+        return hashes.keySet();
+    }
+
+    /**
+     * Hashing all fields of a row using FNV-1a.
+     *
+     * @param row               The row.
+     *
+     * @return Returns the hash.
+     */
+    static long hash(PasswdRow row) {
+        long hash = FNV_OFFSET_BASIS;
+
+        for (int i = 0; i < row.getFieldCount(); ++i) {
+            String field = row.getField(i);
+
+            if (field != null) {
+                for (int j = 0; j < field.length(); ++j) {
+                    hash ^= field.charAt(j);
+                    hash *= FNV_PRIME;
+                }
+            }
+
+            // Separator, so moving characters between fields changes the hash
+            hash ^= 0x100;
+            hash *= FNV_PRIME;
+        }
+
+        return hash;
+    }
+}
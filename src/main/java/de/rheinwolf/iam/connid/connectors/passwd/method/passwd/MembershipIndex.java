@@ -0,0 +1,107 @@
+package de.rheinwolf.iam.connid.connectors.passwd.method.passwd;
+
+import de.rheinwolf.iam.connid.connectors.passwd.file.ArrayRow;
+import de.rheinwolf.iam.connid.connectors.passwd.file.JoinedRow;
+import de.rheinwolf.iam.connid.connectors.passwd.file.PasswdRow;
+import de.rheinwolf.iam.connid.connectors.passwd.model.FieldLayout;
+import de.rheinwolf.iam.connid.connectors.passwd.model.GroupField;
+import de.rheinwolf.iam.connid.connectors.passwd.model.PasswdField;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An inverted index of the group file, mapping member names to the names of
+ * their groups and gids to group names. It is built in a single pass over
+ * the group rows, so the membership of each account is resolved by two hash
+ * lookups instead of scanning the members of all groups. The groups of a
+ * member are collected in file order without repeats and joined once per
+ * account.
+ */
+final class MembershipIndex {
+    private final Map<String, String>      groupNames   = new HashMap<>();
+    private final Map<String, Set<String>> memberGroups = new HashMap<>();
+
+    private final int accountGid;
+    private final int groupGid;
+    private final int groupMembers;
+    private final int membershipOffset;
+
+    /**
+     * Constructing an empty index.
+     *
+     * @param accountLayout     The field layout of the account rows.
+     * @param groupLayout       The field layout of the group rows.
+     */
+    MembershipIndex(FieldLayout accountLayout, FieldLayout groupLayout) {
+        this.accountGid       = accountLayout.getFieldIndex(accountLayout.find(PasswdField.GID.getAttributes().getAttributeName()));
+        this.groupGid         = groupLayout.getFieldIndex(groupLayout.find(GroupField.GID.getAttributes().getAttributeName()));
+        this.groupMembers     = groupLayout.getFieldIndex(groupLayout.find(GroupField.MEMBERS.getAttributes().getAttributeName()));
+        this.membershipOffset = accountLayout.getMembershipOffset();
+    }
+
+    /**
+     * Adding a group row to the index. If a gid is shared, the first group is the primary group.
+     *
+     * @param row               The group row.
+     */
+    void add(PasswdRow row) {
+        String name    = trim(row.getField(0));
+        String gid     = trim(row.getField(groupGid));
+        String members = row.getField(groupMembers);
+
+        if (name == null)
+            return;
+
+        if (gid != null)
+            groupNames.putIfAbsent(gid, name);
+
+        if (members == null)
+            return;
+
+        for (String member : members.split(",")) {
+            member = member.trim();
+
+            if (member.isEmpty())
+                continue;
+
+            memberGroups.computeIfAbsent(member, key -> new LinkedHashSet<>()).add(name);
+        }
+    }
+
+    /**
+     * Appending the group membership to an account row.
+     *
+     * @param row               The account row.
+     *
+     * @return Returns the joined row with the membership fields behind the account fields.
+     */
+    PasswdRow join(PasswdRow row) {
+        String      name   = trim(row.getField(0));
+        String      gid    = trim(row.getField(accountGid));
+        Set<String> groups = (name == null) ? null : memberGroups.get(name);
+
+        return new JoinedRow(row, membershipOffset, new ArrayRow(new String[] {
+                (groups == null) ? null : String.join(",", groups),
+                (gid == null) ? null : groupNames.get(gid)
+        }));
+    }
+
+    /**
+     * Trimming a raw field.
+     *
+     * @param value             The raw field. Can be null.
+     *
+     * @return Returns the trimmed field, or null if it is missing or empty.
+     */
+    private static String trim(String value) {
+        if (value == null)
+            return null;
+
+        value = value.trim();
+
+        return value.isEmpty() ? null : value;
+    }
+}
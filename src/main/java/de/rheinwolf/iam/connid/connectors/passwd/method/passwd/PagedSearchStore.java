@@ -0,0 +1,175 @@
+package de.rheinwolf.iam.connid.connectors.passwd.method.passwd;
+
+import de.rheinwolf.iam.connid.connectors.passwd.file.PasswdRow;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * JVM-wide store for the matching rows of paged searches, so all pooled
+ * connector instances of a target system can serve the following pages.
+ * Searches are dropped when they were not used within their timeout. The
+ * least recently used searches of a scope are evicted if the scope has too
+ * many, so busy target systems do not evict the searches of others, and the
+ * least recently used searches overall are evicted if too many rows are kept.
+ */
+final class PagedSearchStore {
+    /**
+     * The maximum number of searches per scope.
+     */
+    static final int MAX_SEARCHES_PER_SCOPE = 32;
+
+    /**
+     * The maximum number of rows kept by all searches. The rows are shared with
+     * the snapshots, so this mostly bounds the lists referencing them.
+     */
+    static final int MAX_ROWS = 1000000;
+
+    private static final Map<String, PagedSearch> SEARCHES = new LinkedHashMap<>(16, 0.75f, true);
+
+    private static long rowCount = 0;
+
+    private PagedSearchStore() {
+    }
+
+    /**
+     * Retrieving the rows of a search.
+     *
+     * @param scope             The scope, identifying target system and object class.
+     * @param searchId          The ID of the search.
+     *
+     * @return Returns the rows, or null if the search is unknown or expired.
+     */
+    static synchronized List<PasswdRow> get(String scope, String searchId) {
+        long        now    = System.currentTimeMillis();
+        PagedSearch search;
+
+        expire(now);
+
+        search = SEARCHES.get(searchId);
+
+        if ((search == null) || (!search.scope.equals(scope)))
+            return null;
+
+        search.expiresAt = now + search.timeout;
+
+        return search.rows;
+    }
+
+    /**
+     * Storing the rows of a new search.
+     *
+     * @param scope             The scope, identifying target system and object class.
+     * @param rows              The matching rows.
+     * @param timeout           The time in milliseconds the search is kept without being used.
+     *
+     * @return Returns the ID of the search.
+     */
+    static synchronized String put(String scope, List<PasswdRow> rows, long timeout) {
+        long   now      = System.currentTimeMillis();
+        String searchId = UUID.randomUUID().toString().replace("-", "");
+
+        expire(now);
+
+        SEARCHES.put(searchId, new PagedSearch(scope, rows, timeout, now + timeout));
+        rowCount += rows.size();
+
+        evict(searchId, scope);
+
+        return searchId;
+    }
+
+    /**
+     * Removing a search after its last page was returned.
+     *
+     * @param searchId          The ID of the search.
+     */
+    static synchronized void remove(String searchId) {
+        PagedSearch search = SEARCHES.remove(searchId);
+
+        if (search != null)
+            rowCount -= search.rows.size();
+    }
+
+    /**
+     * Evicting the least recently used searches while the scope has too many
+     * searches or the store has too many rows. The new search is kept in any case.
+     *
+     * @param searchId          The ID of the new search.
+     * @param scope             The scope of the new search.
+     */
+    private static void evict(String searchId, String scope) {
+        int                                      searches = 0;
+        Iterator<Map.Entry<String, PagedSearch>> iterator;
+
+        for (PagedSearch search : SEARCHES.values()) {
+            if (search.scope.equals(scope))
+                ++searches;
+        }
+
+        iterator = SEARCHES.entrySet().iterator();
+
+        while ((iterator.hasNext()) && ((searches > MAX_SEARCHES_PER_SCOPE) || (rowCount > MAX_ROWS))) {
+            Map.Entry<String, PagedSearch> entry = iterator.next();
+
+            if (entry.getKey().equals(searchId))
+                continue;
+
+            if (entry.getValue().scope.equals(scope)) {
+                --searches;
+            } else if (rowCount <= MAX_ROWS) {
+                continue;
+            }
+
+            rowCount -= entry.getValue().rows.size();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Removing all expired searches.
+     *
+     * @param now               The current time.
+     */
+    private static void expire(long now) {
+        Iterator<PagedSearch> iterator = SEARCHES.values().iterator();
+
+        while (iterator.hasNext()) {
+            PagedSearch search = iterator.next();
+
+            if (search.expiresAt < now) {
+                rowCount -= search.rows.size();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * The state of a single paged search.
+     */
+    private static final class PagedSearch {
+        private final String          scope;
+        private final List<PasswdRow> rows;
+        private final long            timeout;
+
+        private long expiresAt;
+
+        /**
+         * Constructing the search state.
+         *
+         * @param scope             The scope, identifying target system and object class.
+         * @param rows              The matching rows.
+         * @param timeout           The time in milliseconds the search is kept without being used.
+         * @param expiresAt         The time the search expires.
+         */
+        private PagedSearch(String scope, List<PasswdRow> rows, long timeout, long expiresAt) {
+            this.scope     = scope;
+            this.rows      = rows;
+            this.timeout   = timeout;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -29,6 +29,17 @@ public interface PasswdMethod {
      */
     void delete(ObjectClass objectClass, Uid uid);
 
+    /**
+     * Executing a list of create, update and delete operations. Implementations
+     * may run several operations in a single round trip to the target system.
+     * A failed operation does not stop the following ones.
+     *
+     * @param operations        The operations, executed in the given order.
+     *
+     * @return Returns one result per operation, in the same order.
+     */
+    List<BatchResult> execute(List<BatchOperation> operations);
+
     /**
      * Updating an object.
      *
@@ -41,14 +52,47 @@ public interface PasswdMethod {
     Uid update(ObjectClass objectClass, Uid uid, Set<AttributeDelta> attributes);
 
     /**
-     * Searching for objects.
+     * Searching for objects, passing each match to the handler. Paged searches
+     * keep the matches on the connector side between the pages, so a page only
+     * costs the objects it returns.
      *
      * @param objectClass       The object class.
      * @param query             The search filter.
+     * @param options           The operation options, honoring ATTRS_TO_GET, SORT_KEYS, PAGE_SIZE,
+     *                          PAGED_RESULTS_OFFSET and PAGED_RESULTS_COOKIE. Can be null.
+     * @param handler           The handler for the found objects. The search stops as soon
+     *                          as the handler returns false.
+     *
+     * @return Returns a SearchResult for paged searches, with the cookie for the next page
+     *         or null after the last page. Returns null for searches without a page size.
+     */
+    SearchResult search(ObjectClass objectClass, PasswdQuery query, OperationOptions options, ResultsHandler handler);
+
+    /**
+     * Reporting the changes since the state identified by a sync token.
+     *
+     * @param objectClass       The object class.
+     * @param token             The token from the last sync. Can be null.
+     * @param handler           The handler for the deltas. The sync stops as soon
+     *                          as the handler returns false.
+     */
+    void sync(ObjectClass objectClass, SyncToken token, SyncResultsHandler handler);
+
+    /**
+     * Retrieving the token for the current state of an object class.
+     *
+     * @param objectClass       The object class.
+     *
+     * @return Returns a SyncToken instance.
+     */
+    SyncToken getLatestSyncToken(ObjectClass objectClass);
+
+    /**
+     * Retrieving the name of the method.
      *
-     * @return Returns a list of ConnectorObject instances.
+     * @return Returns the configured or detected method, e.g. "useradd:linux".
      */
-    List<ConnectorObject> search(ObjectClass objectClass, PasswdQuery query);
+    String getMethodName();
 
     /**
      * Testing the connection and method.
@@ -1,21 +1,21 @@
 package de.rheinwolf.iam.connid.connectors.passwd.method.passwd;
 
-import de.rheinwolf.iam.connid.connectors.passwd.PasswdQuery;
 import de.rheinwolf.iam.connid.connectors.passwd.connection.CommandResult;
 import de.rheinwolf.iam.connid.connectors.passwd.file.PasswdFile;
-import de.rheinwolf.iam.connid.connectors.passwd.model.MasterPasswdField;
+import de.rheinwolf.iam.connid.connectors.passwd.file.PasswdRow;
+import de.rheinwolf.iam.connid.connectors.passwd.model.FieldLayout;
 import de.rheinwolf.iam.connid.connectors.passwd.util.CommandBuilder;
-import de.rheinwolf.iam.connid.connectors.passwd.util.GuardedStringAccessor;
 
 import org.identityconnectors.common.StringUtil;
-import org.identityconnectors.common.security.GuardedString;
 import org.identityconnectors.framework.common.exceptions.AlreadyExistsException;
 import org.identityconnectors.framework.common.exceptions.ConnectionBrokenException;
 import org.identityconnectors.framework.common.exceptions.InvalidAttributeValueException;
 import org.identityconnectors.framework.common.objects.*;
 
 import java.util.*;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static de.rheinwolf.iam.connid.connectors.passwd.model.MasterPasswdField.*;
 import static de.rheinwolf.iam.connid.connectors.passwd.model.GroupField.MEMBERS;
@@ -27,6 +27,11 @@ public class PwPasswdMethod extends AbstractPasswdMethod {
     private static final String COMMAND_PW      = "pw";
     private static final String COMMAND_WHEREIS = "whereis";
 
+    private static final int EXIT_CODE_EXISTS  = 65;
+    private static final int EXIT_CODE_UNKNOWN = 67;
+
+    private static final String[] DATABASE_FILES = {"/etc/group", "/etc/master.passwd"};
+
     private static final Map<String, String> SWITCHES_MAP_ACCOUNT = new HashMap<>();
     private static final Map<String, String> SWITCHES_MAP_GROUP   = new HashMap<>();
 
@@ -56,6 +61,230 @@ public class PwPasswdMethod extends AbstractPasswdMethod {
      */
     @Override
     public Uid create(ObjectClass objectClass, Set<Attribute> attributes) {
+        return execute(getCreateCall(objectClass, attributes));
+    }
+
+    /**
+     * Deleting an object.
+     *
+     * @param objectClass       The object class.
+     * @param uid               The UID of the object.
+     */
+    @Override
+    public void delete(ObjectClass objectClass, Uid uid) {
+        execute(getDeleteCall(objectClass, uid));
+    }
+
+    /**
+     * Executing a list of create, update and delete operations. Each operation
+     * is a single pw call, and many calls share one script and round trip.
+     *
+     * @param operations        The operations, executed in the given order.
+     *
+     * @return Returns one result per operation, in the same order.
+     */
+    @Override
+    public List<BatchResult> execute(List<BatchOperation> operations) {
+        return executeScripts(operations);
+    }
+
+    /**
+     * Updating an object.
+     *
+     * @param objectClass       The object class.
+     * @param uid               The UID of the object.
+     * @param attributes        The changed attributes.
+     *
+     * @return Returns the (possibly changed) UID of the object.
+     */
+    @Override
+    public Uid update(ObjectClass objectClass, Uid uid, Set<AttributeDelta> attributes) {
+        return execute(getUpdateCall(objectClass, uid, attributes));
+    }
+
+    /**
+     * Fetching all rows of an object class from the target system.
+     *
+     * @param objectClass       The object class.
+     * @param rowHandler        The handler for the rows.
+     */
+    @Override
+    protected void fetchRows(ObjectClass objectClass, Predicate<PasswdRow> rowHandler) {
+        List<String> args = getPwArgs(objectClass, "show", null, Collections.emptySet(), Collections.emptySet());
+
+        args.add("-a");
+
+        try (CommandResult result = becomeMethod.read(connection, null, PasswdFile.lineHandler(rowHandler), COMMAND_PW, args.toArray(new String[0]))) {
+            result
+                    .expect(0)
+                    .expectStdErrIsEmpty();
+        }
+    }
+
+    /**
+     * Fetching the row with a name, uid or gid by pw usershow or pw groupshow.
+     *
+     * @param objectClass       The object class.
+     * @param fieldIndex        The index of the key field in the row.
+     * @param value             The value of the key field.
+     * @param rowHandler        The handler for the rows.
+     *
+     * @return Returns false if the field is not the name, uid or gid.
+     */
+    @Override
+    protected boolean lookupRows(ObjectClass objectClass, int fieldIndex, String value, Predicate<PasswdRow> rowHandler) {
+        List<String> args = getPwArgs(objectClass, "show", null, Collections.emptySet(), Collections.emptySet());
+
+        if (fieldIndex == 0) {
+            args.add("-n");
+        } else if ((fieldIndex == 2) && (value.matches("[0-9]+"))) {
+            args.add(objectClass.is(ObjectClass.ACCOUNT_NAME) ? "-u" : "-g");
+        } else {
+            return false;
+        }
+
+        args.add(value);
+
+        try (CommandResult result = becomeMethod.execute(connection, null, COMMAND_PW, args.toArray(new String[0]))) {
+            if (result.getExitCode() == EXIT_CODE_UNKNOWN)
+                return true;
+
+            result
+                    .expect(0)
+                    .expectStdErrIsEmpty()
+                    .forEachStdOut(line -> rowHandler.test(PasswdFile.tokenize(line)));
+        }
+
+        return true;
+    }
+
+    /**
+     * Retrieving the field layout of the rows of an object class.
+     *
+     * @param objectClass       The object class.
+     *
+     * @return Returns a FieldLayout instance.
+     */
+    @Override
+    protected FieldLayout getLayout(ObjectClass objectClass) {
+        if (objectClass.is(ObjectClass.ACCOUNT_NAME))
+            return FieldLayout.MASTER_PASSWD;
+
+        if (objectClass.is(ObjectClass.GROUP_NAME))
+            return FieldLayout.GROUP;
+
+        throw new ConnectionBrokenException("Invalid object class: " + objectClass.getObjectClassValue());
+    }
+
+    /**
+     * Retrieving the database files the objects are read from.
+     *
+     * @return Returns the absolute file names.
+     */
+    @Override
+    protected String[] getDatabaseFiles() {
+        return DATABASE_FILES;
+    }
+
+    /**
+     * Testing the connection and method.
+     */
+    @Override
+    public void test() {
+        if (probe != null) {
+            probe.requireTool(COMMAND_PW);
+            return;
+        }
+
+        try (CommandResult result = becomeMethod.execute(connection, null, COMMAND_WHEREIS, COMMAND_PW)) {
+            result
+                    .expect(0)
+                    .expectStdErrIsEmpty();
+        }
+    }
+
+    /**
+     * Executing a single pw call.
+     *
+     * @param call              The call.
+     *
+     * @return Returns the (possibly changed) UID of the object.
+     */
+    private Uid execute(PwCall call) {
+        invalidateSnapshots();
+
+        try (CommandResult commandResult = becomeMethod.execute(connection, call.password, COMMAND_PW, call.args.toArray(new String[0]))) {
+            commandResult.expect(call.isCreate() ? new int[]{0, EXIT_CODE_EXISTS} : new int[]{0});
+
+            if (commandResult.getExitCode() == EXIT_CODE_EXISTS)
+                throw new AlreadyExistsException();
+
+            commandResult.expectStdErrIsEmpty();
+        }
+
+        return call.uid;
+    }
+
+    /**
+     * Retrieving the commands implementing an operation of a batch.
+     *
+     * @param operation         The operation.
+     *
+     * @return Returns a CommandScript instance with a single pw call.
+     */
+    @Override
+    protected CommandScript getScript(BatchOperation operation) {
+        PwCall   call    = getCall(operation);
+        String[] command = Stream.concat(Stream.of(COMMAND_PW), call.args.stream()).toArray(String[]::new);
+
+        return new CommandScript(call.uid).add(call.password, command);
+    }
+
+    /**
+     * Mapping the exit code of an operation of a batch to a result.
+     *
+     * @param operation         The operation.
+     * @param script            The commands of the operation.
+     * @param exitCode          The exit code.
+     * @param output            The output of the commands.
+     *
+     * @return Returns a BatchResult instance.
+     */
+    @Override
+    protected BatchResult getScriptResult(BatchOperation operation, CommandScript script, int exitCode, List<String> output) {
+        if ((exitCode == EXIT_CODE_EXISTS) && (operation.getType() == BatchOperation.Type.CREATE))
+            return BatchResult.failure(null, new AlreadyExistsException());
+
+        return super.getScriptResult(operation, script, exitCode, output);
+    }
+
+    /**
+     * Building the pw call for an operation of a batch.
+     *
+     * @param operation         The operation.
+     *
+     * @return Returns a PwCall instance.
+     */
+    private PwCall getCall(BatchOperation operation) {
+        switch (operation.getType()) {
+            case CREATE:
+                return getCreateCall(operation.getObjectClass(), operation.getAttributes());
+            case UPDATE:
+                return getUpdateCall(operation.getObjectClass(), operation.getUid(), operation.getAttributeDeltas());
+            default:
+                return getDeleteCall(operation.getObjectClass(), operation.getUid());
+        }
+    }
+
+    /**
+     * Building the pw call creating a new object.
+     *
+     * @param objectClass       The object class.
+     * @param attributes        The attributes for the object.
+     *
+     * @return Returns a PwCall instance.
+     */
+    private PwCall getCreateCall(ObjectClass objectClass, Set<Attribute> attributes) {
         String loginName = getName(attributes);
 
         if (loginName == null)
@@ -79,46 +308,36 @@ public class PwPasswdMethod extends AbstractPasswdMethod {
             args.add("0");
         }
 
-        CommandResult commandResult = becomeMethod.execute(connection, password, COMMAND_PW, args.toArray(new String[0]))
-                .expect(0, 65);
-
-        if (commandResult.getExitCode() == 65)
-            throw new AlreadyExistsException();
-
-        commandResult.expectStdErrIsEmpty();
-
-        return new Uid(loginName);
+        return new PwCall(args, password, new Uid(loginName));
     }
 
     /**
-     * Deleting an object.
+     * Building the pw call deleting an object.
      *
      * @param objectClass       The object class.
      * @param uid               The UID of the object.
+     *
+     * @return Returns a PwCall instance.
      */
-    @Override
-    public void delete(ObjectClass objectClass, Uid uid) {
+    private PwCall getDeleteCall(ObjectClass objectClass, Uid uid) {
         List<String> args = getPwArgs(objectClass, "del", uid, Collections.emptySet(), Collections.emptySet());
 
         if ((objectClass.is(ObjectClass.ACCOUNT_NAME)) && (configuration.getDeleteHomeDirectory()))
             args.add("-r");
 
-        becomeMethod.execute(connection, null, COMMAND_PW, args.toArray(new String[0]))
-                .expect(0)
-                .expectStdErrIsEmpty();
+        return new PwCall(args, null, uid);
     }
 
     /**
-     * Updating an object.
+     * Building the pw call updating an object.
      *
      * @param objectClass       The object class.
      * @param uid               The UID of the object.
      * @param attributes        The changed attributes.
      *
-     * @return Returns the (possibly changed) UID of the object.
+     * @return Returns a PwCall instance.
      */
-    @Override
-    public Uid update(ObjectClass objectClass, Uid uid, Set<AttributeDelta> attributes) {
+    private PwCall getUpdateCall(ObjectClass objectClass, Uid uid, Set<AttributeDelta> attributes) {
         Set<Attribute> attributesToRemove  = new HashSet<>(0);
         Set<Attribute> attributesToReplace = new HashSet<>(attributes.size());
         AttributeDelta newMembers          = null;
@@ -127,11 +346,11 @@ public class PwPasswdMethod extends AbstractPasswdMethod {
 
         for (AttributeDelta attributeDelta : attributes) {
             if (attributeDelta.is(Name.NAME)) {
-                newName = getValue(attributeDelta);
+                newName = (String) AttributeValues.getValue(attributeDelta);
             } else if (attributeDelta.is(MEMBERS.getAttributes().getAttributeName())) {
                 newMembers = attributeDelta;
             } else if (attributeDelta.is(PASSWORD.getAttributes().getAttributeName())) {
-                password = GuardedStringAccessor.asByteArray(getValue(attributeDelta));
+                password = AttributeValues.getPassword(AttributeValues.getValue(attributeDelta));
             } else {
                 if ((attributeDelta.getValuesToRemove() != null) && (!attributeDelta.getValuesToRemove().isEmpty())) {
                     attributesToRemove.add(AttributeBuilder.build(
@@ -141,7 +360,7 @@ public class PwPasswdMethod extends AbstractPasswdMethod {
                 } else {
                     attributesToReplace.add(AttributeBuilder.build(
                             attributeDelta.getName(),
-                            (Object) getValue(attributeDelta)
+                            AttributeValues.getValue(attributeDelta)
                     ));
                 }
             }
@@ -180,49 +399,7 @@ public class PwPasswdMethod extends AbstractPasswdMethod {
             args.add("0");
         }
 
-        becomeMethod.execute(connection, password, COMMAND_PW, args.toArray(new String[0]))
-                .expect(0)
-                .expectStdErrIsEmpty();
-
-        if (newName != null)
-            return new Uid(newName);
-
-        return uid;
-    }
-
-    /**
-     * Searching for objects.
-     *
-     * @param objectClass       The object class.
-     * @param query             The search filter.
-     *
-     * @return Returns a list of ConnectorObject instances.
-     */
-    @Override
-    public List<ConnectorObject> search(ObjectClass objectClass, PasswdQuery query) {
-        List<String> args = getPwArgs(objectClass, "show", null, Collections.emptySet(), Collections.emptySet());
-
-        args.add("-a");
-
-        return becomeMethod.execute(connection, null, COMMAND_PW, args.toArray(new String[0]))
-                .expect(0)
-                .expectStdErrIsEmpty()
-                .getStdOut()
-                .stream()
-                .map(line -> PasswdFile.toConnectorObject(objectClass, line, MasterPasswdField.values()))
-                .filter(Objects::nonNull)
-                .filter(query::matches)
-                .collect(Collectors.toList());
-    }
-
-    /**
-     * Testing the connection and method.
-     */
-    @Override
-    public void test() {
-        becomeMethod.execute(connection, null, COMMAND_WHEREIS, COMMAND_PW)
-                .expect(0)
-                .expectStdErrIsEmpty();
+        return new PwCall(args, password, (newName != null) ? new Uid(newName) : uid);
     }
 
     /**
@@ -283,23 +460,12 @@ public class PwPasswdMethod extends AbstractPasswdMethod {
      * @return Returns an byte array containing the password if found, null otherwise.
      */
     private byte[] getPassword(Set<Attribute> attributes) {
-        List<Object> value = null;
-
         for (Attribute attribute : attributes) {
-            if (!OperationalAttributeInfos.PASSWORD.is(attribute.getName()))
-                continue;
-
-            value = attribute.getValue();
-            break;
+            if (OperationalAttributeInfos.PASSWORD.is(attribute.getName()))
+                return AttributeValues.getPassword(AttributeValues.getValue(attribute));
         }
 
-        if ((value == null) || (value.isEmpty()))
-            return null;
-
-        if (!(value.get(0) instanceof GuardedString))
-            throw new InvalidAttributeValueException("Password attribute is not a GuardedString instance");
-
-        return GuardedStringAccessor.asByteArray((GuardedString) value.get(0));
+        return null;
     }
 
     /**
@@ -347,20 +513,33 @@ public class PwPasswdMethod extends AbstractPasswdMethod {
     }
 
     /**
-     * Retrieving a string value from an AttributeDelta.
-     *
-     * @param attributeDelta    The attribute delta.
-     *
-     * @return Returns a single string from the delta, or null if no value should be added or replaced.
+     * A single call to pw, with the password passed on stdin.
      */
-    @SuppressWarnings("unchecked")
-    private <T> T getValue(AttributeDelta attributeDelta) {
-        if ((attributeDelta.getValuesToAdd() != null) && (!attributeDelta.getValuesToAdd().isEmpty()))
-            return (T) attributeDelta.getValuesToAdd().get(0);
-
-        if ((attributeDelta.getValuesToReplace() != null) && (!attributeDelta.getValuesToReplace().isEmpty()))
-            return (T) attributeDelta.getValuesToReplace().get(0);
+    private static final class PwCall {
+        private final List<String> args;
+        private final byte[]       password;
+        private final Uid          uid;
+
+        /**
+         * Constructing the call.
+         *
+         * @param args              The arguments for pw.
+         * @param password          The password passed on stdin. Can be null.
+         * @param uid               The UID of the object after the call.
+         */
+        PwCall(List<String> args, byte[] password, Uid uid) {
+            this.args     = args;
+            this.password = ((password != null) && (password.length > 0)) ? password : null;
+            this.uid      = uid;
+        }
 
-        return null;
+        /**
+         * Checking whether the call creates an object.
+         *
+         * @return Returns true for pw user add and pw group add.
+         */
+        boolean isCreate() {
+            return "add".equals(args.get(1));
+        }
     }
 }
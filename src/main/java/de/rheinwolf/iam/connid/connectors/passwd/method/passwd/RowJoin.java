@@ -0,0 +1,161 @@
+package de.rheinwolf.iam.connid.connectors.passwd.method.passwd;
+
+import de.rheinwolf.iam.connid.connectors.passwd.file.JoinedRow;
+import de.rheinwolf.iam.connid.connectors.passwd.file.PasswdRow;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Joining the rows of a file with the rows of a second file by name, e.g.
+ * passwd and shadow on GNU/Linux.
+ *
+ * The shadow tools keep both files in the same order, so the right rows are
+ * matched by a merge cursor which simply advances with every left row. Only
+ * if a name is not found at the cursor, it is looked up in a compact open
+ * addressing index of row positions, and the cursor continues behind the
+ * found row. If a name occurs more than once, the first right row wins, so
+ * the index is built before the first join to mark the later rows of a name,
+ * which the cursor must not return.
+ */
+final class RowJoin {
+    private final List<PasswdRow> rightRows = new ArrayList<>();
+    private final int             width;
+
+    private int       cursor     = 0;
+    private boolean[] duplicates = null;
+    private int[]     index      = null;
+    private String[]  names      = null;
+
+    /**
+     * Constructing an empty join.
+     *
+     * @param width             The index at which the fields of the right rows start.
+     */
+    RowJoin(int width) {
+        this.width = width;
+    }
+
+    /**
+     * Adding a row of the right file. All right rows have to be added before the left rows are joined.
+     *
+     * @param row               The right row.
+     */
+    void addRight(PasswdRow row) {
+        rightRows.add(row);
+
+        duplicates = null;
+        index      = null;
+        names      = null;
+    }
+
+    /**
+     * Joining a row of the left file with its right row.
+     *
+     * @param row               The left row.
+     *
+     * @return Returns the joined row, without right fields if there is no right row with the same name.
+     */
+    PasswdRow join(PasswdRow row) {
+        return new JoinedRow(row, width, find(row.getField(0)));
+    }
+
+    /**
+     * Finding the right row with a name.
+     *
+     * @param name              The name. Can be null.
+     *
+     * @return Returns the right row, or null if there is none.
+     */
+    private PasswdRow find(String name) {
+        if (name == null)
+            return null;
+
+        if (index == null)
+            buildIndex();
+
+        if ((cursor < rightRows.size()) && (isMergeMatch(name)))
+            return rightRows.get(cursor++);
+
+        int position = lookup(name);
+
+        if (position < 0)
+            return null;
+
+        cursor = position + 1;
+
+        return rightRows.get(position);
+    }
+
+    /**
+     * Checking whether the right row at the cursor has a name. Later rows of
+     * a duplicate name are left to the index, which returns the first one.
+     *
+     * @param name              The name.
+     *
+     * @return Returns true if the row at the cursor is the right row.
+     */
+    private boolean isMergeMatch(String name) {
+        return (!duplicates[cursor]) && (name.equals(names[cursor]));
+    }
+
+    /**
+     * Building the index of the right rows by name, keeping the first row of each name.
+     */
+    private void buildIndex() {
+        int capacity = Integer.highestOneBit(Math.max(rightRows.size(), 1) * 2) * 2;
+
+        index      = new int[capacity];
+        names      = new String[rightRows.size()];
+        duplicates = new boolean[names.length];
+
+        for (int position = 0; position < names.length; ++position) {
+            String name = rightRows.get(position).getField(0);
+
+            names[position] = name;
+
+            if ((name == null) || (lookup(name) >= 0)) {
+                duplicates[position] = true;
+                continue;
+            }
+
+            int slot = hash(name) & (capacity - 1);
+
+            while (index[slot] != 0)
+                slot = (slot + 1) & (capacity - 1);
+
+            index[slot] = position + 1;
+        }
+    }
+
+    /**
+     * Looking up a name in the index.
+     *
+     * @param name              The name.
+     *
+     * @return Returns the position of the right row, or -1 if there is none.
+     */
+    private int lookup(String name) {
+        int mask = index.length - 1;
+
+        for (int slot = hash(name) & mask; index[slot] != 0; slot = (slot + 1) & mask) {
+            if (name.equals(names[index[slot] - 1]))
+                return index[slot] - 1;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Hashing a name, spreading the upper bits like HashMap.
+     *
+     * @param name              The name.
+     *
+     * @return Returns the hash code.
+     */
+    private static int hash(String name) {
+        int hash = name.hashCode();
+
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,211 @@
+package de.rheinwolf.iam.connid.connectors.passwd.method.passwd;
+
+import de.rheinwolf.iam.connid.connectors.passwd.file.PasswdRow;
+import de.rheinwolf.iam.connid.connectors.passwd.model.FieldLayout;
+import de.rheinwolf.iam.connid.connectors.passwd.model.SchemaUtil;
+
+import org.identityconnectors.common.security.GuardedString;
+import org.identityconnectors.framework.common.exceptions.InvalidAttributeValueException;
+import org.identityconnectors.framework.common.objects.SortKey;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sorting rows by SORT_KEYS before they are converted to connector objects.
+ *
+ * The sort keys are extracted from the raw fields once per row, into long
+ * arrays for Integer and Long attributes (e.g. gid and the shadow dates) and
+ * into string arrays otherwise, so the order does not depend on the values
+ * of other rows. Values that are not numbers are sorted like missing values.
+ * A stable merge sort then orders an array of
+ * row indexes, so rows with equal keys keep the order of the database file
+ * and sorted pages are stable.
+ */
+final class RowSorter {
+    /**
+     * Utility class.
+     */
+    private RowSorter() {
+    }
+
+    /**
+     * Sorting rows.
+     *
+     * @param rows              The rows, not containing null.
+     * @param layout            The field layout of the rows.
+     * @param sortKeys          The sort keys. Can be null or empty.
+     *
+     * @return Returns the sorted rows, or the given list if there are no sort keys.
+     */
+    static List<PasswdRow> sort(List<PasswdRow> rows, FieldLayout layout, SortKey[] sortKeys) {
+        if ((sortKeys == null) || (sortKeys.length == 0) || (rows.size() < 2))
+            return rows;
+
+        KeyColumn[] columns = new KeyColumn[sortKeys.length];
+
+        for (int i = 0; i < sortKeys.length; ++i)
+            columns[i] = new KeyColumn(rows, layout, sortKeys[i]);
+
+        int[] indexes = new int[rows.size()];
+
+        for (int i = 0; i < indexes.length; ++i)
+            indexes[i] = i;
+
+        mergeSort(indexes, new int[indexes.length], columns);
+
+        List<PasswdRow> result = new ArrayList<>(indexes.length);
+
+        for (int index : indexes)
+            result.add(rows.get(index));
+
+        return result;
+    }
+
+    /**
+     * Sorting row indexes by a bottom-up merge sort, which is stable.
+     *
+     * @param indexes           The row indexes, sorted in place.
+     * @param buffer            A buffer of the same length.
+     * @param columns           The extracted sort keys.
+     */
+    private static void mergeSort(int[] indexes, int[] buffer, KeyColumn[] columns) {
+        int[] source = indexes;
+        int[] target = buffer;
+
+        for (int width = 1; width < indexes.length; width *= 2) {
+            for (int start = 0; start < indexes.length; start += 2 * width) {
+                int middle = Math.min(start + width, indexes.length);
+                int end    = Math.min(start + 2 * width, indexes.length);
+                int left   = start;
+                int right  = middle;
+
+                for (int i = start; i < end; ++i) {
+                    if ((left < middle) && ((right >= end) || (compare(source[left], source[right], columns) <= 0))) {
+                        target[i] = source[left++];
+                    } else {
+                        target[i] = source[right++];
+                    }
+                }
+            }
+
+            int[] swap = source;
+
+            source = target;
+            target = swap;
+        }
+
+        if (source != indexes)
+            System.arraycopy(source, 0, indexes, 0, indexes.length);
+    }
+
+    /**
+     * Comparing two rows by all sort keys.
+     *
+     * @param left              The index of the left row.
+     * @param right             The index of the right row.
+     * @param columns           The extracted sort keys.
+     *
+     * @return Returns a negative value, zero or a positive value like a Comparator.
+     */
+    private static int compare(int left, int right, KeyColumn[] columns) {
+        for (KeyColumn column : columns) {
+            int result = column.compare(left, right);
+
+            if (result != 0)
+                return result;
+        }
+
+        return 0;
+    }
+
+    /**
+     * The values of a single sort key for all rows. Missing values are sorted last.
+     */
+    private static final class KeyColumn {
+        private final boolean   ascending;
+        private final boolean[] missing;
+        private final boolean   numeric;
+        private final long[]    numbers;
+        private final String[]  strings;
+
+        /**
+         * Extracting the values of a sort key.
+         *
+         * @param rows              The rows.
+         * @param layout            The field layout of the rows.
+         * @param sortKey           The sort key.
+         */
+        private KeyColumn(List<PasswdRow> rows, FieldLayout layout, SortKey sortKey) {
+            int position = layout.find(sortKey.getField());
+
+            if (position < 0)
+                throw new InvalidAttributeValueException("Cannot sort by attribute " + sortKey.getField());
+
+            SchemaUtil.SchemaFieldAttributes attributes = layout.getSchemaField(position).getAttributes();
+            int                              fieldIndex = layout.getFieldIndex(position);
+
+            if (GuardedString.class.equals(attributes.getClazz()))
+                throw new InvalidAttributeValueException("Cannot sort by attribute " + sortKey.getField());
+
+            String[] values = new String[rows.size()];
+
+            for (int i = 0; i < values.length; ++i) {
+                String value = rows.get(i).getField(fieldIndex);
+
+                values[i] = ((value == null) || (value.trim().isEmpty())) ? null : value.trim();
+            }
+
+            this.ascending = sortKey.isAscendingOrder();
+            this.missing   = new boolean[values.length];
+            this.numeric   = (Integer.class.equals(attributes.getClazz())) || (Long.class.equals(attributes.getClazz()));
+            this.numbers   = numeric ? new long[values.length] : null;
+            this.strings   = numeric ? null : values;
+
+            for (int i = 0; i < values.length; ++i) {
+                missing[i] = (values[i] == null) || ((numeric) && (!isNumber(values[i])));
+
+                if ((numeric) && (!missing[i]))
+                    numbers[i] = Long.parseLong(values[i]);
+            }
+        }
+
+        /**
+         * Checking whether a value is a number that fits into a long.
+         *
+         * @param value             The value.
+         *
+         * @return Returns true for up to 18 digits with an optional minus sign.
+         */
+        private static boolean isNumber(String value) {
+            int start = value.startsWith("-") ? 1 : 0;
+
+            if ((value.length() == start) || (value.length() - start > 18))
+                return false;
+
+            for (int i = start; i < value.length(); ++i) {
+                if ((value.charAt(i) < '0') || (value.charAt(i) > '9'))
+                    return false;
+            }
+
+            return true;
+        }
+
+        /**
+         * Comparing the values of two rows.
+         *
+         * @param left              The index of the left row.
+         * @param right             The index of the right row.
+         *
+         * @return Returns a negative value, zero or a positive value like a Comparator.
+         */
+        private int compare(int left, int right) {
+            if ((missing[left]) || (missing[right]))
+                return Boolean.compare(missing[left], missing[right]);
+
+            int result = numeric ? Long.compare(numbers[left], numbers[right]) : strings[left].compareTo(strings[right]);
+
+            return ascending ? result : -result;
+        }
+    }
+}
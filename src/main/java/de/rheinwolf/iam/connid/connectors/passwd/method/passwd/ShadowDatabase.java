@@ -0,0 +1,861 @@
+package de.rheinwolf.iam.connid.connectors.passwd.method.passwd;
+
+import de.rheinwolf.iam.connid.connectors.passwd.PasswdConfiguration;
+import de.rheinwolf.iam.connid.connectors.passwd.connection.CommandResult;
+import de.rheinwolf.iam.connid.connectors.passwd.connection.Connection;
+import de.rheinwolf.iam.connid.connectors.passwd.file.DatabaseFile;
+import de.rheinwolf.iam.connid.connectors.passwd.method.become.BecomeMethod;
+import de.rheinwolf.iam.connid.connectors.passwd.model.FieldLayout;
+import de.rheinwolf.iam.connid.connectors.passwd.model.PasswdField;
+import de.rheinwolf.iam.connid.connectors.passwd.util.CommandBuilder;
+
+import org.identityconnectors.common.StringUtil;
+import org.identityconnectors.common.logging.Log;
+import org.identityconnectors.framework.common.exceptions.AlreadyExistsException;
+import org.identityconnectors.framework.common.exceptions.ConnectionBrokenException;
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
+import org.identityconnectors.framework.common.exceptions.InvalidAttributeValueException;
+import org.identityconnectors.framework.common.exceptions.UnknownUidException;
+import org.identityconnectors.framework.common.objects.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static de.rheinwolf.iam.connid.connectors.passwd.model.GroupField.MEMBERS;
+
+/**
+ * The passwd, shadow, group and gshadow files of a GNU/Linux system, read in
+ * a single command and edited in memory.
+ *
+ * All changes are written back by a single script, which locks the files
+ * like lckpwdf(3) users do with .lock files, verifies that no file was
+ * changed since it was read, keeps a backup of each file (e.g. /etc/passwd-)
+ * and replaces the files by renaming the new versions. Passwords are hashed
+ * by chpasswd and chgpasswd on the target system after the files are unlocked.
+ */
+class ShadowDatabase {
+    private static final Log LOG = Log.getLog(ShadowDatabase.class);
+
+    private static final String COMMAND_SH = "sh";
+
+    private static final String FILE_GROUP   = "/etc/group";
+    private static final String FILE_GSHADOW = "/etc/gshadow";
+    private static final String FILE_PASSWD  = "/etc/passwd";
+    private static final String FILE_SHADOW  = "/etc/shadow";
+
+    /**
+     * The files in the lock order of the shadow tools, and their number of fields.
+     */
+    private static final String[] FILES        = {FILE_PASSWD, FILE_SHADOW, FILE_GROUP, FILE_GSHADOW};
+    private static final int[]    FIELD_COUNTS = {7, 9, 4, 4};
+
+    private static final int LOCK_ATTEMPTS = 15;
+
+    private static final int EXIT_CODE_LOCKED  = 73;
+    private static final int EXIT_CODE_CHANGED = 75;
+
+    private static final String SENTINEL_PREFIX = "__connector_passwd_";
+
+    private static final String DEFAULT_HOME_PERMISSIONS = "0700";
+
+    private final PasswdConfiguration configuration;
+    private final String              sentinel;
+
+    private final Map<String, DatabaseFile> files = new LinkedHashMap<>();
+
+    private final ByteArrayOutputStream accountPasswords   = new ByteArrayOutputStream();
+    private final List<Integer>         accountPasswordOps = new ArrayList<>();
+    private final ByteArrayOutputStream groupPasswords     = new ByteArrayOutputStream();
+    private final List<Integer>         groupPasswordOps   = new ArrayList<>();
+    private final Map<Integer, String>  homeCommands       = new LinkedHashMap<>();
+
+    /**
+     * Constructing an empty database.
+     *
+     * @param configuration     The connector configuration.
+     */
+    private ShadowDatabase(PasswdConfiguration configuration) {
+        this.configuration = configuration;
+        this.sentinel      = SENTINEL_PREFIX + UUID.randomUUID().toString().replace("-", "");
+    }
+
+    /**
+     * Reading all files from the target system in a single command.
+     *
+     * @param connection        The connection to the target system.
+     * @param becomeMethod      The become method.
+     * @param configuration     The connector configuration.
+     *
+     * @return Returns a ShadowDatabase instance.
+     */
+    static ShadowDatabase read(Connection connection, BecomeMethod becomeMethod, PasswdConfiguration configuration) {
+        ShadowDatabase database = new ShadowDatabase(configuration);
+        DatabaseFile[] current  = {null};
+
+        // Each file is preceded by its name and followed by its checksum
+        String script = "for f in " + CommandBuilder.asShellLine(FILES) + "; do\n"
+                + "    [ -f \"$f\" ] || continue\n"
+                + "    printf '%s file %s\\n' '" + database.sentinel + "' \"$f\"\n"
+                + "    cat \"$f\" || exit 1\n"
+                + "    [ -z \"$(tail -c 1 \"$f\")\" ] || echo\n"
+                + "    printf '%s cksum %s\\n' '" + database.sentinel + "' \"$(cksum < \"$f\")\"\n"
+                + "done\n";
+
+        String filePrefix  = database.sentinel + " file ";
+        String cksumPrefix = database.sentinel + " cksum ";
+
+        try (CommandResult result = becomeMethod.execute(connection, script.getBytes(StandardCharsets.UTF_8), COMMAND_SH, "-s")) {
+            result
+                    .expect(0)
+                    .expectStdErrIsEmpty()
+                    .forEachStdOut(line -> {
+                        if (line.startsWith(filePrefix)) {
+                            String fileName = line.substring(filePrefix.length());
+
+                            current[0] = new DatabaseFile(fileName, FIELD_COUNTS[Arrays.asList(FILES).indexOf(fileName)]);
+                            database.files.put(fileName, current[0]);
+                        } else if (line.startsWith(cksumPrefix)) {
+                            current[0].setChecksum(line.substring(cksumPrefix.length()));
+                        } else if (current[0] != null) {
+                            current[0].addLine(line);
+                        }
+
+                        return true;
+                    });
+        }
+
+        for (String fileName : Arrays.asList(FILE_PASSWD, FILE_SHADOW, FILE_GROUP)) {
+            if (!database.files.containsKey(fileName))
+                throw new ConnectionBrokenException("Missing database file " + fileName);
+        }
+
+        return database;
+    }
+
+    /**
+     * Creating an account. Unlike useradd, no ids are allocated, so uid and gid are mandatory.
+     *
+     * @param operation         The position of the operation, for reporting the results.
+     * @param attributes        The attributes of the account.
+     *
+     * @return Returns the UID of the new account.
+     */
+    Uid createAccount(int operation, Set<Attribute> attributes) {
+        String[] passwdFields = {"", "x", "", "", "", "", ""};
+        String[] shadowFields = {"", "!", String.valueOf(TimeUnit.MILLISECONDS.toDays(System.currentTimeMillis())), "", "", "", "", "", ""};
+        String   name         = null;
+        byte[]   password     = null;
+
+        for (Attribute attribute : attributes) {
+            Object value = AttributeValues.getValue(attribute);
+
+            if (attribute.is(Name.NAME)) {
+                name = (value == null) ? null : value.toString();
+            } else if (OperationalAttributeInfos.PASSWORD.is(attribute.getName())) {
+                password = AttributeValues.getPassword(value);
+            } else {
+                setAccountField(passwdFields, shadowFields, attribute.getName(), value);
+            }
+        }
+
+        if (StringUtil.isBlank(name))
+            throw new InvalidAttributeValueException("Missing attribute loginName");
+
+        name = CommandBuilder.toCommandValue(name);
+
+        if (passwd().contains(name))
+            throw new AlreadyExistsException("Account " + name + " already exists");
+        if (passwdFields[2].isEmpty())
+            throw new InvalidAttributeValueException("Missing attribute uid");
+        if (passwdFields[3].isEmpty())
+            throw new InvalidAttributeValueException("Missing attribute gid");
+
+        passwdFields[0] = name;
+        shadowFields[0] = name;
+
+        passwd().add(passwdFields);
+
+        if (shadow().contains(name)) {
+            shadow().set(name, shadowFields);
+        } else {
+            shadow().add(shadowFields);
+        }
+
+        if (password != null)
+            addPassword(accountPasswords, accountPasswordOps, operation, name, password);
+
+        if ((configuration.getCreateHomeDirectory()) && (isRemovableHome(passwdFields[5])))
+            homeCommands.put(operation, getCreateHomeCommand(passwdFields[5], passwdFields[2], passwdFields[3]));
+
+        return new Uid(name);
+    }
+
+    /**
+     * Updating an account.
+     *
+     * @param operation         The position of the operation, for reporting the results.
+     * @param uid               The UID of the account.
+     * @param attributeDeltas   The changed attributes.
+     *
+     * @return Returns the (possibly changed) UID of the account.
+     */
+    Uid updateAccount(int operation, Uid uid, Set<AttributeDelta> attributeDeltas) {
+        String   name         = uid.getUidValue();
+        String[] passwdFields = passwd().get(name);
+        String[] shadowFields = shadow().get(name);
+        String   newName      = name;
+        byte[]   password     = null;
+
+        if (passwdFields == null)
+            throw new UnknownUidException("Account " + name + " does not exist");
+
+        if (shadowFields == null)
+            shadowFields = new String[]{name, "!", "", "", "", "", "", "", ""};
+
+        for (AttributeDelta attributeDelta : attributeDeltas) {
+            Object value = AttributeValues.getValue(attributeDelta);
+
+            if (attributeDelta.is(Name.NAME)) {
+                if (StringUtil.isBlank((String) value))
+                    throw new InvalidAttributeValueException("The attribute loginName must not be empty");
+
+                newName = CommandBuilder.toCommandValue(value);
+            } else if (OperationalAttributeInfos.PASSWORD.is(attributeDelta.getName())) {
+                password = AttributeValues.getPassword(value);
+            } else {
+                setAccountField(passwdFields, shadowFields, attributeDelta.getName(), value);
+            }
+        }
+
+        if ((!newName.equals(name)) && (passwd().contains(newName)))
+            throw new AlreadyExistsException("Account " + newName + " already exists");
+
+        passwdFields[0] = newName;
+        shadowFields[0] = newName;
+
+        passwd().set(name, passwdFields);
+
+        if (shadow().contains(name)) {
+            shadow().set(name, shadowFields);
+        } else {
+            shadow().add(shadowFields);
+        }
+
+        if (!newName.equals(name))
+            renameMember(name, newName);
+
+        if (password != null)
+            addPassword(accountPasswords, accountPasswordOps, operation, newName, password);
+
+        return new Uid(newName);
+    }
+
+    /**
+     * Deleting an account, including its group memberships.
+     *
+     * @param operation         The position of the operation, for reporting the results.
+     * @param uid               The UID of the account.
+     */
+    void deleteAccount(int operation, Uid uid) {
+        String   name         = uid.getUidValue();
+        String[] passwdFields = passwd().get(name);
+
+        if (passwdFields == null)
+            throw new UnknownUidException("Account " + name + " does not exist");
+
+        passwd().remove(name);
+        shadow().remove(name);
+
+        renameMember(name, null);
+
+        if ((configuration.getDeleteHomeDirectory()) && (isRemovableHome(passwdFields[5])))
+            homeCommands.put(operation, "rm -rf -- " + CommandBuilder.asShellLine(new String[]{passwdFields[5]}));
+    }
+
+    /**
+     * Creating a group. Unlike groupadd, no id is allocated, so the gid is mandatory.
+     *
+     * @param operation         The position of the operation, for reporting the results.
+     * @param attributes        The attributes of the group.
+     *
+     * @return Returns the UID of the new group.
+     */
+    Uid createGroup(int operation, Set<Attribute> attributes) {
+        String[]    groupFields = {"", "x", "", ""};
+        Set<String> members     = new LinkedHashSet<>();
+        String      name        = null;
+        byte[]      password    = null;
+
+        for (Attribute attribute : attributes) {
+            Object value = AttributeValues.getValue(attribute);
+
+            if (attribute.is(Name.NAME)) {
+                name = (value == null) ? null : value.toString();
+            } else if (OperationalAttributeInfos.PASSWORD.is(attribute.getName())) {
+                password = AttributeValues.getPassword(value);
+            } else if (attribute.is(MEMBERS.getAttributes().getAttributeName())) {
+                addMembers(members, attribute.getValue());
+            } else {
+                setGroupField(groupFields, attribute.getName(), value);
+            }
+        }
+
+        if (StringUtil.isBlank(name))
+            throw new InvalidAttributeValueException("Missing attribute groupName");
+
+        name = CommandBuilder.toCommandValue(name);
+
+        if (group().contains(name))
+            throw new AlreadyExistsException("Group " + name + " already exists");
+        if (groupFields[2].isEmpty())
+            throw new InvalidAttributeValueException("Missing attribute gid");
+
+        groupFields[0] = name;
+        groupFields[3] = String.join(",", members);
+
+        group().add(groupFields);
+
+        if (gshadow() != null) {
+            String[] gshadowFields = {name, "!", "", groupFields[3]};
+
+            if (gshadow().contains(name)) {
+                gshadow().set(name, gshadowFields);
+            } else {
+                gshadow().add(gshadowFields);
+            }
+        }
+
+        if (password != null)
+            addPassword(groupPasswords, groupPasswordOps, operation, name, password);
+
+        return new Uid(name);
+    }
+
+    /**
+     * Updating a group.
+     *
+     * @param operation         The position of the operation, for reporting the results.
+     * @param uid               The UID of the group.
+     * @param attributeDeltas   The changed attributes.
+     *
+     * @return Returns the (possibly changed) UID of the group.
+     */
+    Uid updateGroup(int operation, Uid uid, Set<AttributeDelta> attributeDeltas) {
+        String   name        = uid.getUidValue();
+        String[] groupFields = group().get(name);
+        String   newName     = name;
+        byte[]   password    = null;
+
+        if (groupFields == null)
+            throw new UnknownUidException("Group " + name + " does not exist");
+
+        Set<String> members = new LinkedHashSet<>(splitMembers(groupFields[3]));
+
+        for (AttributeDelta attributeDelta : attributeDeltas) {
+            Object value = AttributeValues.getValue(attributeDelta);
+
+            if (attributeDelta.is(Name.NAME)) {
+                if (StringUtil.isBlank((String) value))
+                    throw new InvalidAttributeValueException("The attribute groupName must not be empty");
+
+                newName = CommandBuilder.toCommandValue(value);
+            } else if (OperationalAttributeInfos.PASSWORD.is(attributeDelta.getName())) {
+                password = AttributeValues.getPassword(value);
+            } else if (attributeDelta.is(MEMBERS.getAttributes().getAttributeName())) {
+                if (attributeDelta.getValuesToReplace() != null) {
+                    members.clear();
+                    addMembers(members, attributeDelta.getValuesToReplace());
+                } else {
+                    addMembers(members, attributeDelta.getValuesToAdd());
+
+                    if (attributeDelta.getValuesToRemove() != null) {
+                        for (Object member : attributeDelta.getValuesToRemove())
+                            members.remove(CommandBuilder.toCommandValue(member));
+                    }
+                }
+            } else {
+                setGroupField(groupFields, attributeDelta.getName(), value);
+            }
+        }
+
+        if ((!newName.equals(name)) && (group().contains(newName)))
+            throw new AlreadyExistsException("Group " + newName + " already exists");
+
+        groupFields[0] = newName;
+        groupFields[3] = String.join(",", members);
+
+        group().set(name, groupFields);
+
+        if (gshadow() != null) {
+            String[] gshadowFields = gshadow().get(name);
+
+            if (gshadowFields == null) {
+                gshadow().add(new String[]{newName, "!", "", groupFields[3]});
+            } else {
+                gshadowFields[0] = newName;
+                gshadowFields[3] = groupFields[3];
+
+                gshadow().set(name, gshadowFields);
+            }
+        }
+
+        if (password != null)
+            addPassword(groupPasswords, groupPasswordOps, operation, newName, password);
+
+        return new Uid(newName);
+    }
+
+    /**
+     * Deleting a group. Like groupdel, the primary group of an account cannot be deleted.
+     *
+     * @param operation         The position of the operation, for reporting the results.
+     * @param uid               The UID of the group.
+     */
+    void deleteGroup(int operation, Uid uid) {
+        String   name        = uid.getUidValue();
+        String[] groupFields = group().get(name);
+
+        if (groupFields == null)
+            throw new UnknownUidException("Group " + name + " does not exist");
+
+        for (String accountName : passwd().getNames()) {
+            if (groupFields[2].equals(passwd().get(accountName)[3]))
+                throw new ConnectorException("Cannot remove the primary group of account " + accountName);
+        }
+
+        group().remove(name);
+
+        if (gshadow() != null)
+            gshadow().remove(name);
+    }
+
+    /**
+     * Checking whether anything has to be written.
+     *
+     * @return Returns true if a file was changed or passwords or home directories are pending.
+     */
+    boolean isChanged() {
+        for (DatabaseFile file : files.values()) {
+            if (file.isChanged())
+                return true;
+        }
+
+        return (!accountPasswordOps.isEmpty()) || (!groupPasswordOps.isEmpty()) || (!homeCommands.isEmpty());
+    }
+
+    /**
+     * Writing all changes to the target system in a single command.
+     *
+     * @param connection        The connection to the target system.
+     * @param becomeMethod      The become method.
+     *
+     * @return Returns the errors of single operations by position, or null if the
+     *         files were changed by someone else since they were read.
+     */
+    Map<Integer, RuntimeException> write(Connection connection, BecomeMethod becomeMethod) {
+        Map<Integer, RuntimeException> errors = new HashMap<>();
+        String                         prefix = sentinel + " ";
+
+        try (CommandResult result = becomeMethod.execute(connection, renderWriteScript(), COMMAND_SH, "-s")) {
+            if (result.getExitCode() == EXIT_CODE_CHANGED) {
+                LOG.info("Database was changed concurrently: {0}", result.getStdErr());
+                return null;
+            }
+
+            if (result.getExitCode() == EXIT_CODE_LOCKED)
+                throw new ConnectionBrokenException("The database is locked: " + result.getStdErr());
+
+            result
+                    .expect(0)
+                    .forEachStdOut(line -> {
+                        if (!line.startsWith(prefix))
+                            return true;
+
+                        String[] status   = line.substring(prefix.length()).split(" ");
+                        int      exitCode = Integer.parseInt(status[status.length - 1]);
+
+                        if (exitCode == 0)
+                            return true;
+
+                        if ("passwords".equals(status[0])) {
+                            for (Integer operation : accountPasswordOps)
+                                errors.put(operation, new ConnectionBrokenException("chpasswd failed with exit code " + exitCode));
+                        } else if ("groupPasswords".equals(status[0])) {
+                            for (Integer operation : groupPasswordOps)
+                                errors.put(operation, new ConnectionBrokenException("chgpasswd failed with exit code " + exitCode));
+                        } else if ("home".equals(status[0])) {
+                            errors.put(Integer.parseInt(status[1]), new ConnectionBrokenException("Managing the home directory failed with exit code " + exitCode));
+                        }
+
+                        return true;
+                    });
+
+            if (!errors.isEmpty())
+                LOG.warn("Database written, but some operations failed: {0}", result.getStdErr());
+        }
+
+        return errors;
+    }
+
+    /**
+     * Rendering the script writing all changes.
+     *
+     * @return Returns the script as byte array.
+     */
+    private byte[] renderWriteScript() {
+        ByteArrayOutputStream script  = new ByteArrayOutputStream();
+        List<DatabaseFile>    changed = new ArrayList<>();
+
+        for (DatabaseFile file : files.values()) {
+            if (file.isChanged())
+                changed.add(file);
+        }
+
+        write(script, "umask 077\n"
+                + "__connector_passwd_locked=\n"
+                + "__connector_passwd_unlock() {\n"
+                + "    for __connector_passwd_file in $__connector_passwd_locked; do rm -f \"$__connector_passwd_file.lock\"; done\n"
+                + "    __connector_passwd_locked=\n"
+                + "}\n"
+                + "__connector_passwd_lock() {\n"
+                + "    echo $$ > \"$1.$$\" || exit 1\n"
+                + "    __connector_passwd_try=0\n"
+                + "    until ln \"$1.$$\" \"$1.lock\" 2>/dev/null; do\n"
+                + "        __connector_passwd_pid=$(cat \"$1.lock\" 2>/dev/null)\n"
+                + "        if [ -n \"$__connector_passwd_pid\" ] && ! kill -0 \"$__connector_passwd_pid\" 2>/dev/null; then\n"
+                + "            rm -f \"$1.lock\"\n"
+                + "        elif [ $((__connector_passwd_try += 1)) -ge " + LOCK_ATTEMPTS + " ]; then\n"
+                + "            rm -f \"$1.$$\"\n"
+                + "            echo \"$1 is locked\" >&2\n"
+                + "            exit " + EXIT_CODE_LOCKED + "\n"
+                + "        else\n"
+                + "            sleep 1\n"
+                + "        fi\n"
+                + "    done\n"
+                + "    rm -f \"$1.$$\"\n"
+                + "    __connector_passwd_locked=\"$__connector_passwd_locked $1\"\n"
+                + "}\n"
+                + "trap __connector_passwd_unlock EXIT\n");
+
+        // Locking and verifying all files before touching any of them
+        for (DatabaseFile file : changed) {
+            String fileName = quote(file.getFileName());
+
+            write(script, "__connector_passwd_lock " + fileName + "\n"
+                    + "[ \"$(cksum < " + fileName + ")\" = " + quote(file.getChecksum()) + " ] || { echo " + fileName + "' was changed' >&2; exit " + EXIT_CODE_CHANGED + "; }\n");
+        }
+
+        // Writing the new versions next to the files, so a failure leaves the files untouched
+        for (DatabaseFile file : changed) {
+            String fileName = quote(file.getFileName());
+            String newName  = quote(file.getFileName() + "+");
+
+            write(script, "cp -p " + fileName + " " + quote(file.getFileName() + "-") + " || exit 1\n"
+                    + "cat > " + newName + " <<'" + sentinel + "' || exit 1\n");
+
+            for (String line : file.getLines())
+                write(script, line + "\n");
+
+            write(script, sentinel + "\n"
+                    + "chmod --reference=" + fileName + " " + newName + " || exit 1\n"
+                    + "chown --reference=" + fileName + " " + newName + " || exit 1\n");
+        }
+
+        for (DatabaseFile file : changed) {
+            String fileName = quote(file.getFileName());
+
+            write(script, "mv -f " + quote(file.getFileName() + "+") + " " + fileName + " || exit 1\n"
+                    + "! command -v restorecon >/dev/null 2>&1 || restorecon " + fileName + "\n");
+        }
+
+        write(script, "__connector_passwd_unlock\n");
+
+        // Hashing the passwords on the target system, chpasswd takes its own locks
+        renderPasswords(script, "chpasswd", "passwords", accountPasswords);
+        renderPasswords(script, "chgpasswd", "groupPasswords", groupPasswords);
+
+        for (Map.Entry<Integer, String> homeCommand : homeCommands.entrySet()) {
+            write(script, "( " + homeCommand.getValue() + " ) >&2\n"
+                    + "printf '%s home %d %d\\n' '" + sentinel + "' " + homeCommand.getKey() + " \"$?\"\n");
+        }
+
+        return script.toByteArray();
+    }
+
+    /**
+     * Rendering a password tool call reading name:password lines from a here-document.
+     *
+     * @param script            The script.
+     * @param command           The password tool.
+     * @param status            The name of the status line.
+     * @param passwords         The name:password lines.
+     */
+    private void renderPasswords(ByteArrayOutputStream script, String command, String status, ByteArrayOutputStream passwords) {
+        if (passwords.size() == 0)
+            return;
+
+        write(script, command + " <<'" + sentinel + "' >&2\n");
+        script.write(passwords.toByteArray(), 0, passwords.size());
+        write(script, sentinel + "\n"
+                + "printf '%s " + status + " %d\\n' '" + sentinel + "' \"$?\"\n");
+    }
+
+    /**
+     * Retrieving the command creating a home directory from /etc/skel.
+     *
+     * @param home              The home directory.
+     * @param uid               The numeric user id.
+     * @param gid               The numeric group id.
+     *
+     * @return Returns the command as string.
+     */
+    private String getCreateHomeCommand(String home, String uid, String gid) {
+        String permissions = StringUtil.isBlank(configuration.getHomeDirectoryPermissions())
+                ? DEFAULT_HOME_PERMISSIONS
+                : configuration.getHomeDirectoryPermissions();
+
+        String quotedHome = quote(home);
+
+        return "[ -e " + quotedHome + " ] || { mkdir -p " + quotedHome
+                + " && { [ ! -d /etc/skel ] || cp -a /etc/skel/. " + quotedHome + "; }"
+                + " && chown -R " + quote(uid + ":" + gid) + " " + quotedHome
+                + " && chmod " + quote(permissions) + " " + quotedHome + "; }";
+    }
+
+    /**
+     * Setting an account field in the passwd or shadow fields.
+     *
+     * @param passwdFields      The passwd fields.
+     * @param shadowFields      The shadow fields.
+     * @param attributeName     The attribute name.
+     * @param value             The new value. Can be null to clear the field.
+     */
+    private void setAccountField(String[] passwdFields, String[] shadowFields, String attributeName, Object value) {
+        FieldLayout layout     = FieldLayout.PASSWD_SHADOW;
+        int         shadowBase = layout.getSourceOffset(1);
+        int         position   = layout.find(attributeName);
+
+        if ((position < 0) || (layout.isComputed(position)) || (Uid.NAME.equals(attributeName)))
+            throw new InvalidAttributeValueException("Invalid attribute " + attributeName);
+
+        String stringValue = (value == null) ? "" : CommandBuilder.toCommandValue(value);
+        int    fieldIndex  = layout.getFieldIndex(position);
+
+        if ((layout.getSchemaField(position) == PasswdField.UID) || (layout.getSchemaField(position) == PasswdField.GID))
+            requireNumber(attributeName, stringValue);
+
+        if (fieldIndex < shadowBase) {
+            passwdFields[fieldIndex] = stringValue;
+        } else {
+            shadowFields[fieldIndex - shadowBase] = stringValue;
+        }
+    }
+
+    /**
+     * Setting a group field.
+     *
+     * @param groupFields       The group fields.
+     * @param attributeName     The attribute name.
+     * @param value             The new value. Can be null to clear the field.
+     */
+    private void setGroupField(String[] groupFields, String attributeName, Object value) {
+        int position = FieldLayout.GROUP.find(attributeName);
+
+        if ((position < 0) || (Uid.NAME.equals(attributeName)))
+            throw new InvalidAttributeValueException("Invalid attribute " + attributeName);
+
+        String stringValue = (value == null) ? "" : CommandBuilder.toCommandValue(value);
+        int    fieldIndex  = FieldLayout.GROUP.getFieldIndex(position);
+
+        if (fieldIndex == 2)
+            requireNumber(attributeName, stringValue);
+
+        groupFields[fieldIndex] = stringValue;
+    }
+
+    /**
+     * Renaming or removing an account in the member lists of all groups.
+     *
+     * @param name              The current name of the account.
+     * @param newName           The new name of the account, or null to remove it.
+     */
+    private void renameMember(String name, String newName) {
+        group().replaceAll(fields -> {
+            fields[3] = renameInList(fields[3], name, newName);
+            return fields;
+        });
+
+        if (gshadow() != null) {
+            gshadow().replaceAll(fields -> {
+                fields[2] = renameInList(fields[2], name, newName);
+                fields[3] = renameInList(fields[3], name, newName);
+                return fields;
+            });
+        }
+    }
+
+    /**
+     * Renaming or removing a name in a comma separated list.
+     *
+     * @param list              The list.
+     * @param name              The current name.
+     * @param newName           The new name, or null to remove the name.
+     *
+     * @return Returns the new list.
+     */
+    private static String renameInList(String list, String name, String newName) {
+        List<String> result = new ArrayList<>();
+
+        for (String member : splitMembers(list)) {
+            if (!member.equals(name)) {
+                result.add(member);
+            } else if (newName != null) {
+                result.add(newName);
+            }
+        }
+
+        return String.join(",", result);
+    }
+
+    /**
+     * Splitting a comma separated member list.
+     *
+     * @param list              The list.
+     *
+     * @return Returns the non-empty members.
+     */
+    private static List<String> splitMembers(String list) {
+        List<String> result = new ArrayList<>();
+
+        for (String member : list.split(",")) {
+            if (!member.trim().isEmpty())
+                result.add(member.trim());
+        }
+
+        return result;
+    }
+
+    /**
+     * Adding attribute values to a member set.
+     *
+     * @param members           The member set.
+     * @param values            The values. Can be null.
+     */
+    private static void addMembers(Set<String> members, List<Object> values) {
+        if (values == null)
+            return;
+
+        for (Object value : values) {
+            if (value != null)
+                members.add(CommandBuilder.toCommandValue(value));
+        }
+    }
+
+    /**
+     * Queueing a password for the password tool.
+     *
+     * @param passwords         The name:password lines.
+     * @param operations        The positions of the operations with passwords.
+     * @param operation         The position of the operation.
+     * @param name              The account or group name.
+     * @param password          The password.
+     */
+    private static void addPassword(ByteArrayOutputStream passwords, List<Integer> operations, int operation, String name, byte[] password) {
+        write(passwords, name + ":");
+        passwords.write(password, 0, password.length);
+        write(passwords, "\n");
+
+        operations.add(operation);
+    }
+
+    /**
+     * Checking that a numeric id is valid.
+     *
+     * @param attributeName     The attribute name.
+     * @param value             The value.
+     */
+    private static void requireNumber(String attributeName, String value) {
+        if ((!value.isEmpty()) && (!value.matches("[0-9]+")))
+            throw new InvalidAttributeValueException("The attribute " + attributeName + " must be numeric");
+    }
+
+    /**
+     * Checking whether a home directory can be created or removed by the connector.
+     *
+     * @param home              The home directory.
+     *
+     * @return Returns true for absolute paths other than the root directory.
+     */
+    private static boolean isRemovableHome(String home) {
+        return (home.startsWith("/")) && (!home.replace("/", "").isEmpty());
+    }
+
+    /**
+     * Quoting a value for the shell.
+     *
+     * @param value             The value.
+     *
+     * @return Returns the quoted value.
+     */
+    private static String quote(String value) {
+        return CommandBuilder.asShellLine(new String[]{value});
+    }
+
+    /**
+     * Writing a string to the script.
+     *
+     * @param script            The script.
+     * @param value             The string.
+     */
+    private static void write(ByteArrayOutputStream script, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+        script.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Retrieving the passwd file.
+     *
+     * @return Returns a DatabaseFile instance.
+     */
+    private DatabaseFile passwd() {
+        return files.get(FILE_PASSWD);
+    }
+
+    /**
+     * Retrieving the shadow file.
+     *
+     * @return Returns a DatabaseFile instance.
+     */
+    private DatabaseFile shadow() {
+        return files.get(FILE_SHADOW);
+    }
+
+    /**
+     * Retrieving the group file.
+     *
+     * @return Returns a DatabaseFile instance.
+     */
+    private DatabaseFile group() {
+        return files.get(FILE_GROUP);
+    }
+
+    /**
+     * Retrieving the gshadow file.
+     *
+     * @return Returns a DatabaseFile instance, or null if the system has no gshadow file.
+     */
+    private DatabaseFile gshadow() {
+        return files.get(FILE_GSHADOW);
+    }
+}
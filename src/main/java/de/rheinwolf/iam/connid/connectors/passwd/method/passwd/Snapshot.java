@@ -0,0 +1,44 @@
+package de.rheinwolf.iam.connid.connectors.passwd.method.passwd;
+
+import de.rheinwolf.iam.connid.connectors.passwd.file.PasswdRow;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parsed rows of an object class, together with the identity of the
+ * database files they were read from.
+ */
+class Snapshot {
+    private final String          identity;
+    private final List<PasswdRow> rows;
+
+    /**
+     * Constructing the snapshot.
+     *
+     * @param identity          The probe output identifying the state of the database files.
+     * @param rows              The rows of the object class.
+     */
+    Snapshot(String identity, List<PasswdRow> rows) {
+        this.identity = identity;
+        this.rows     = Collections.unmodifiableList(rows);
+    }
+
+    /**
+     * Retrieving the identity of the database state.
+     *
+     * @return Returns the identity as string.
+     */
+    String getIdentity() {
+        return identity;
+    }
+
+    /**
+     * Retrieving the rows.
+     *
+     * @return Returns an unmodifiable list of rows.
+     */
+    List<PasswdRow> getRows() {
+        return rows;
+    }
+}
@@ -0,0 +1,51 @@
+package de.rheinwolf.iam.connid.connectors.passwd.method.passwd;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * JVM-wide store for the fingerprints behind the sync tokens, so all pooled
+ * connector instances of a target system can resolve the tokens. Only the
+ * most recent states of each scope are kept.
+ */
+final class SyncStateStore {
+    private static final int MAX_STATES_PER_SCOPE = 8;
+
+    private static final Map<String, Map<String, Fingerprints>> STATES = new HashMap<>();
+
+    private SyncStateStore() {
+    }
+
+    /**
+     * Retrieving the state for a token.
+     *
+     * @param scope             The scope, identifying target system and object class.
+     * @param identity          The identity from the sync token.
+     *
+     * @return Returns the Fingerprints instance, or null if the state is unknown.
+     */
+    static synchronized Fingerprints get(String scope, String identity) {
+        if (Fingerprints.EMPTY.getIdentity().equals(identity))
+            return Fingerprints.EMPTY;
+
+        Map<String, Fingerprints> states = STATES.get(scope);
+
+        return (states == null) ? null : states.get(identity);
+    }
+
+    /**
+     * Storing a state.
+     *
+     * @param scope             The scope, identifying target system and object class.
+     * @param fingerprints      The state.
+     */
+    static synchronized void put(String scope, Fingerprints fingerprints) {
+        STATES.computeIfAbsent(scope, key -> new LinkedHashMap<String, Fingerprints>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Fingerprints> eldest) {
+                return size() > MAX_STATES_PER_SCOPE;
+            }
+        }).put(fingerprints.getIdentity(), fingerprints);
+    }
+}
@@ -1,34 +1,92 @@
 package de.rheinwolf.iam.connid.connectors.passwd.method.passwd;
 
 import de.rheinwolf.iam.connid.connectors.passwd.PasswdConfiguration;
-import de.rheinwolf.iam.connid.connectors.passwd.PasswdQuery;
+import de.rheinwolf.iam.connid.connectors.passwd.connection.CommandResult;
 import de.rheinwolf.iam.connid.connectors.passwd.connection.Connection;
+import de.rheinwolf.iam.connid.connectors.passwd.connection.LineHandler;
+import de.rheinwolf.iam.connid.connectors.passwd.file.JoinedRow;
 import de.rheinwolf.iam.connid.connectors.passwd.file.PasswdFile;
+import de.rheinwolf.iam.connid.connectors.passwd.file.PasswdRow;
+import de.rheinwolf.iam.connid.connectors.passwd.method.SystemProbe;
 import de.rheinwolf.iam.connid.connectors.passwd.method.become.BecomeMethod;
-import de.rheinwolf.iam.connid.connectors.passwd.model.MasterPasswdField;
+import de.rheinwolf.iam.connid.connectors.passwd.model.FieldLayout;
+import de.rheinwolf.iam.connid.connectors.passwd.model.GroupField;
 import de.rheinwolf.iam.connid.connectors.passwd.model.PasswdField;
-import de.rheinwolf.iam.connid.connectors.passwd.model.SchemaUtil;
 import de.rheinwolf.iam.connid.connectors.passwd.model.ShadowField;
+import de.rheinwolf.iam.connid.connectors.passwd.util.CommandBuilder;
 
+import org.identityconnectors.common.StringUtil;
+import org.identityconnectors.common.logging.Log;
+import org.identityconnectors.framework.common.exceptions.AlreadyExistsException;
+import org.identityconnectors.framework.common.exceptions.ConnectionBrokenException;
 import org.identityconnectors.framework.common.exceptions.ConnectionFailedException;
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
+import org.identityconnectors.framework.common.exceptions.InvalidAttributeValueException;
+import org.identityconnectors.framework.common.exceptions.UnknownUidException;
 import org.identityconnectors.framework.common.objects.*;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
+import java.util.UUID;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
+import static de.rheinwolf.iam.connid.connectors.passwd.model.GroupField.MEMBERS;
+
 public class UserAddPasswdMethod extends AbstractPasswdMethod {
-    private static final String COMMAND_CAT     = "cat";
-    private static final String COMMAND_USERADD = "useradd";
-    private static final String COMMAND_WHEREIS = "whereis";
+    private static final Log LOG = Log.getLog(UserAddPasswdMethod.class);
+
+    private static final String COMMAND_AWK       = "awk";
+    private static final String COMMAND_CAT       = "cat";
+    private static final String COMMAND_CHAGE     = "chage";
+    private static final String COMMAND_CHGPASSWD = "chgpasswd";
+    private static final String COMMAND_CHPASSWD  = "chpasswd";
+    private static final String COMMAND_GPASSWD   = "gpasswd";
+    private static final String COMMAND_GROUPADD  = "groupadd";
+    private static final String COMMAND_GROUPDEL  = "groupdel";
+    private static final String COMMAND_GROUPMOD  = "groupmod";
+    private static final String COMMAND_SH        = "sh";
+    private static final String COMMAND_USERADD   = "useradd";
+    private static final String COMMAND_USERDEL   = "userdel";
+    private static final String COMMAND_USERMOD   = "usermod";
+    private static final String COMMAND_WHEREIS   = "whereis";
+
+    private static final String SENTINEL_PREFIX = "__connector_passwd_";
 
     private static final String FILE_GROUP        = "/etc/group";
     private static final String FILE_PASSWD       = "/etc/passwd";
     private static final String FILE_MASTERPASSWD = "/etc/master.passwd";
     private static final String FILE_SHADOW       = "/etc/shadow";
 
+    private static final int EXIT_CODE_EXISTS  = 9;
+    private static final int EXIT_CODE_UNKNOWN = 6;
+
+    private static final int WRITE_ATTEMPTS = 3;
+
+    private static final Map<String, String> SWITCHES_CHAGE   = new HashMap<>();
+    private static final Map<String, String> SWITCHES_USERMOD = new HashMap<>();
+
+    static {
+        SWITCHES_USERMOD.put(PasswdField.COMMENT.getAttributes().getAttributeName(),                "-c");
+        SWITCHES_USERMOD.put(PasswdField.GID.getAttributes().getAttributeName(),                    "-g");
+        SWITCHES_USERMOD.put(PasswdField.HOME_DIRECTORY.getAttributes().getAttributeName(),         "-d");
+        SWITCHES_USERMOD.put(PasswdField.LOGIN_SHELL.getAttributes().getAttributeName(),            "-s");
+        SWITCHES_USERMOD.put(PasswdField.UID.getAttributes().getAttributeName(),                    "-u");
+        SWITCHES_USERMOD.put(ShadowField.ACCOUNT_EXPIRATION_TIME.getAttributes().getAttributeName(),    "-e");
+        SWITCHES_USERMOD.put(ShadowField.PASSWORD_INACTIVITY_PERIOD.getAttributes().getAttributeName(), "-f");
+
+        SWITCHES_CHAGE.put(ShadowField.LAST_PASSWORD_CHANGE.getAttributes().getAttributeName(),    "-d");
+        SWITCHES_CHAGE.put(ShadowField.MAXIMUM_PASSWORD_AGE.getAttributes().getAttributeName(),    "-M");
+        SWITCHES_CHAGE.put(ShadowField.MINIMUM_PASSWORD_AGE.getAttributes().getAttributeName(),    "-m");
+        SWITCHES_CHAGE.put(ShadowField.PASSWORD_WARNING_PERIOD.getAttributes().getAttributeName(), "-W");
+    }
+
     private String masterPasswdFile = null;
 
     /**
@@ -41,7 +99,7 @@ public class UserAddPasswdMethod extends AbstractPasswdMethod {
      */
     @Override
     public Uid create(ObjectClass objectClass, Set<Attribute> attributes) {
-        return null;
+        return executeSingle(BatchOperation.create(objectClass, attributes)).getUid();
     }
 
     /**
@@ -52,7 +110,80 @@ public class UserAddPasswdMethod extends AbstractPasswdMethod {
      */
     @Override
     public void delete(ObjectClass objectClass, Uid uid) {
+        executeSingle(BatchOperation.delete(objectClass, uid));
+    }
+
+    /**
+     * Executing a list of create, update and delete operations. On GNU/Linux,
+     * each operation is compiled into a minimal set of tool calls, and the
+     * calls of many operations share one round trip. In the files write mode,
+     * all operations are applied to the database files in memory instead.
+     *
+     * @param operations        The operations, executed in the given order.
+     *
+     * @return Returns one result per operation, in the same order.
+     */
+    @Override
+    public List<BatchResult> execute(List<BatchOperation> operations) {
+        if (!FILE_SHADOW.equals(masterPasswdFile))
+            return super.execute(operations);
+
+        if (PasswdConfiguration.WRITE_MODE_TOOLS.equals(configuration.getWriteMode()))
+            return executeScripts(operations);
 
+        return executeFiles(operations);
+    }
+
+    /**
+     * Applying operations to the database files in memory and writing them
+     * back with a single lock acquisition and a single transfer. If a file was
+     * changed concurrently, the operations are applied again to a fresh read.
+     * Any other write failure fails all operations, as the files may already
+     * have been replaced.
+     *
+     * @param operations        The operations, executed in the given order.
+     *
+     * @return Returns one result per operation, in the same order.
+     */
+    private List<BatchResult> executeFiles(List<BatchOperation> operations) {
+        for (int attempt = 1; ; ++attempt) {
+            ShadowDatabase database = ShadowDatabase.read(connection, becomeMethod, configuration);
+            BatchResult[]  results  = new BatchResult[operations.size()];
+
+            for (int position = 0; position < operations.size(); ++position) {
+                try {
+                    results[position] = BatchResult.success(apply(database, position, operations.get(position)));
+                } catch (RuntimeException e) {
+                    results[position] = BatchResult.failure(operations.get(position).getUid(), e);
+                }
+            }
+
+            if (!database.isChanged())
+                return Arrays.asList(results);
+
+            Map<Integer, RuntimeException> errors;
+
+            invalidateSnapshots();
+
+            // Only a concurrent change is retried, as nothing was written in that case
+            try {
+                errors = database.write(connection, becomeMethod);
+            } catch (RuntimeException e) {
+                return failAll(results, e);
+            }
+
+            if (errors != null) {
+                for (Map.Entry<Integer, RuntimeException> error : errors.entrySet())
+                    results[error.getKey()] = BatchResult.failure(results[error.getKey()].getUid(), error.getValue());
+
+                return Arrays.asList(results);
+            }
+
+            if (attempt >= WRITE_ATTEMPTS)
+                return failAll(results, new ConnectionBrokenException("The database was changed concurrently " + WRITE_ATTEMPTS + " times"));
+
+            LOG.info("Retrying write of {0} operations, attempt {1}", operations.size(), attempt + 1);
+        }
     }
 
     /**
@@ -61,12 +192,12 @@ public class UserAddPasswdMethod extends AbstractPasswdMethod {
      * @param connection        The current target system connection.
      * @param configuration     The current configuration.
      * @param becomeMethod      The current become method.
+     * @param methodName        The name of the method, e.g. "useradd:linux".
+     * @param probe             The capabilities of the target system. Can be null if not probed.
      */
     @Override
-    public void init(Connection connection, PasswdConfiguration configuration, BecomeMethod becomeMethod) {
-        String methodName = configuration.getMethod();
-
-        super.init(connection, configuration, becomeMethod);
+    public void init(Connection connection, PasswdConfiguration configuration, BecomeMethod becomeMethod, String methodName, SystemProbe probe) {
+        super.init(connection, configuration, becomeMethod, methodName, probe);
 
         if (methodName.endsWith(":" + PasswdConfiguration.SUBMETHOD_BSD)) {
             masterPasswdFile = FILE_MASTERPASSWD;
@@ -88,63 +219,240 @@ public class UserAddPasswdMethod extends AbstractPasswdMethod {
      */
     @Override
     public Uid update(ObjectClass objectClass, Uid uid, Set<AttributeDelta> attributes) {
-        return null;
+        return executeSingle(BatchOperation.update(objectClass, uid, attributes)).getUid();
     }
 
     /**
-     * Searching for objects.
+     * Fetching all rows of an object class from the target system.
      *
      * @param objectClass       The object class.
-     * @param query             The search filter.
-     *
-     * @return Returns a list of ConnectorObject instances.
+     * @param rowHandler        The handler for the rows.
      */
     @Override
-    public List<ConnectorObject> search(ObjectClass objectClass, PasswdQuery query) {
+    protected void fetchRows(ObjectClass objectClass, Predicate<PasswdRow> rowHandler) {
+        FieldLayout layout = getLayout(objectClass);
+
         // Read the file in a single go if we have master.passwd or group file
-        if ((objectClass.is(ObjectClass.GROUP_NAME)) || (FILE_MASTERPASSWD.equals(masterPasswdFile))) {
-            String fileName = masterPasswdFile;
+        if (layout != FieldLayout.PASSWD_SHADOW) {
+            String fileName = objectClass.is(ObjectClass.GROUP_NAME) ? FILE_GROUP : masterPasswdFile;
+
+            try (CommandResult result = becomeMethod.read(connection, null, PasswdFile.lineHandler(rowHandler), COMMAND_CAT, fileName)) {
+                result
+                        .expect(0)
+                        .expectStdErrIsEmpty();
+            }
+
+            return;
+        }
+
+        // Merge passwd and shadow for account details on GNU/Linux, both read in one command
+        RowJoin shadowJoin = new RowJoin(layout.getSourceOffset(1));
+
+        DatabaseDump.read(connection, becomeMethod, (fileName, row) -> {
+            if (FILE_SHADOW.equals(fileName)) {
+                if (row != null)
+                    shadowJoin.addRight(row);
+
+                return true;
+            }
+
+            return rowHandler.test((row == null) ? null : shadowJoin.join(row));
+        }, FILE_SHADOW, FILE_PASSWD);
+    }
+
+    /**
+     * Fetching the accounts from /etc/passwd without joining /etc/shadow on GNU/Linux.
+     *
+     * @param objectClass       The object class.
+     * @param rowHandler        The handler for the rows.
+     */
+    @Override
+    protected void fetchPrimaryRows(ObjectClass objectClass, Predicate<PasswdRow> rowHandler) {
+        FieldLayout layout = getLayout(objectClass);
+
+        if (layout != FieldLayout.PASSWD_SHADOW) {
+            fetchRows(objectClass, rowHandler);
+            return;
+        }
 
-            if (objectClass.is(ObjectClass.GROUP_NAME))
-                fileName = FILE_GROUP;
+        int         shadowBase  = layout.getSourceOffset(1);
+        LineHandler lineHandler = PasswdFile.lineHandler(row -> rowHandler.test((row == null) ? null : new JoinedRow(row, shadowBase, null)));
 
-            return becomeMethod.execute(connection, null, COMMAND_CAT, fileName)
+        try (CommandResult result = becomeMethod.read(connection, null, lineHandler, COMMAND_CAT, FILE_PASSWD)) {
+            result
                     .expect(0)
-                    .expectStdErrIsEmpty()
-                    .getStdOut()
-                    .stream()
-                    .map(line -> PasswdFile.toConnectorObject(objectClass, line, MasterPasswdField.values()))
-                    .filter(Objects::nonNull)
-                    .filter(query::matches)
-                    .collect(Collectors.toList());
-        }
-
-        // Merge passwd and shadow for account details on GNU/Linux
-        Map<String, ConnectorObject> shadowObjects = becomeMethod.execute(connection, null, COMMAND_CAT, FILE_PASSWD)
-                .expect(0)
-                .expectStdErrIsEmpty()
-                .getStdOut()
-                .stream()
-                .map(line -> PasswdFile.toConnectorObject(objectClass, line, ShadowField.values()))
-                .filter(Objects::nonNull)
-                .filter(query::matches)
-                .collect(Collectors.toMap(
-                        connectorObject -> connectorObject.getUid().getUidValue(),
-                        connectorObject -> connectorObject
-                ));
-
-        return becomeMethod.execute(connection, null, COMMAND_CAT, FILE_PASSWD)
-                .expect(0)
-                .expectStdErrIsEmpty()
-                .getStdOut()
-                .stream()
-                .map(line -> SchemaUtil.join(
-                        PasswdFile.toConnectorObject(objectClass, line, PasswdField.values()),
-                        shadowObjects,
-                        Name.NAME))
-                .filter(Objects::nonNull)
-                .filter(query::matches)
-                .collect(Collectors.toList());
+                    .expectStdErrIsEmpty();
+        }
+    }
+
+    /**
+     * Fetching the rows with a name, uid or gid by awk on the target system.
+     * On GNU/Linux, the shadow rows of the found accounts are joined.
+     *
+     * Unlike getent, awk reads the local files only, and it also returns
+     * accounts and groups sharing a non-unique uid or gid.
+     *
+     * @param objectClass       The object class.
+     * @param fieldIndex        The index of the key field in the row.
+     * @param value             The value of the key field.
+     * @param rowHandler        The handler for the rows.
+     *
+     * @return Returns false if the field is not the name, uid or gid.
+     */
+    @Override
+    protected boolean lookupRows(ObjectClass objectClass, int fieldIndex, String value, Predicate<PasswdRow> rowHandler) {
+        if ((fieldIndex != 0) && ((fieldIndex != 2) || (!value.matches("[0-9]+"))))
+            return false;
+
+        FieldLayout layout   = getLayout(objectClass);
+        String      fileName = objectClass.is(ObjectClass.GROUP_NAME) ? FILE_GROUP : (FILE_SHADOW.equals(masterPasswdFile) ? FILE_PASSWD : masterPasswdFile);
+        String      lookup   = getLookupCommand(fieldIndex, value, fileName);
+
+        if (layout != FieldLayout.PASSWD_SHADOW) {
+            byte[] script = (lookup + "\n").getBytes(StandardCharsets.UTF_8);
+
+            try (CommandResult result = becomeMethod.stream(connection, script, PasswdFile.lineHandler(rowHandler), COMMAND_SH, "-s")) {
+                result
+                        .expect(0)
+                        .expectStdErrIsEmpty();
+            }
+
+            return true;
+        }
+
+        // The shadow rows of the found accounts, followed by the passwd rows
+        String sentinel = SENTINEL_PREFIX + UUID.randomUUID().toString().replace("-", "");
+        String script   = "p=$(" + lookup + ") || exit 1\n"
+                + "printf '%s\\n' \"$p\" | awk -F: 'NR == FNR { n[$1]; next } ($1 in n)' - '" + FILE_SHADOW + "' || exit 1\n"
+                + "printf '%s\\n' '" + sentinel + "'\n"
+                + "printf '%s\\n' \"$p\"\n";
+
+        RowJoin   shadowJoin = new RowJoin(layout.getSourceOffset(1));
+        boolean[] passwd     = {false};
+
+        LineHandler lineHandler = line -> {
+            if (line.equals(sentinel)) {
+                passwd[0] = true;
+                return true;
+            }
+
+            PasswdRow row = PasswdFile.tokenize(line);
+
+            if (!passwd[0]) {
+                if (row != null)
+                    shadowJoin.addRight(row);
+
+                return true;
+            }
+
+            return rowHandler.test((row == null) ? null : shadowJoin.join(row));
+        };
+
+        try (CommandResult result = becomeMethod.stream(connection, script.getBytes(StandardCharsets.UTF_8), lineHandler, COMMAND_SH, "-s")) {
+            result
+                    .expect(0)
+                    .expectStdErrIsEmpty();
+        }
+
+        return true;
+    }
+
+    /**
+     * Retrieving the awk call printing the rows of a file with a key field value, as a line of a shell script.
+     * The program is quoted, so the shell neither expands the field reference nor splits the comparison.
+     *
+     * @param fieldIndex        The index of the key field in the row.
+     * @param value             The value of the key field.
+     * @param fileName          The file to search.
+     *
+     * @return Returns the awk call.
+     */
+    static String getLookupCommand(int fieldIndex, String value, String fileName) {
+        String[] awk = {"-F:", "-v", "k=" + value.replace("\\", "\\\\"), "$" + (fieldIndex + 1) + " == k", fileName};
+
+        return COMMAND_AWK + " " + CommandBuilder.asShellLine(awk);
+    }
+
+    /**
+     * Fetching the accounts and groups from the target system. On GNU/Linux,
+     * passwd, shadow and group are transferred in a single command.
+     *
+     * @return Returns the rows by object class, or null if each object class is read separately.
+     */
+    @Override
+    protected Map<ObjectClass, List<PasswdRow>> fetchAllRows() {
+        if (!FILE_SHADOW.equals(masterPasswdFile))
+            return null;
+
+        RowJoin         shadowJoin = new RowJoin(getLayout(ObjectClass.ACCOUNT).getSourceOffset(1));
+        List<PasswdRow> accounts   = new ArrayList<>();
+        List<PasswdRow> groups     = new ArrayList<>();
+
+        DatabaseDump.read(connection, becomeMethod, (fileName, row) -> {
+            if (row == null)
+                return true;
+
+            if (FILE_SHADOW.equals(fileName)) {
+                shadowJoin.addRight(row);
+            } else if (FILE_PASSWD.equals(fileName)) {
+                accounts.add(shadowJoin.join(row));
+            } else {
+                groups.add(row);
+            }
+
+            return true;
+        }, FILE_SHADOW, FILE_PASSWD, FILE_GROUP);
+
+        Map<ObjectClass, List<PasswdRow>> rows = new HashMap<>();
+
+        rows.put(ObjectClass.ACCOUNT, accounts);
+        rows.put(ObjectClass.GROUP,   groups);
+
+        return rows;
+    }
+
+    /**
+     * Retrieving the field layout of the rows of an object class.
+     *
+     * @param objectClass       The object class.
+     *
+     * @return Returns a FieldLayout instance.
+     */
+    @Override
+    protected FieldLayout getLayout(ObjectClass objectClass) {
+        if (objectClass.is(ObjectClass.GROUP_NAME))
+            return FieldLayout.GROUP;
+
+        if (!objectClass.is(ObjectClass.ACCOUNT_NAME))
+            throw new ConnectionBrokenException("Invalid object class: " + objectClass.getObjectClassValue());
+
+        if (FILE_MASTERPASSWD.equals(masterPasswdFile))
+            return FieldLayout.MASTER_PASSWD;
+
+        return FieldLayout.PASSWD_SHADOW;
+    }
+
+    /**
+     * Retrieving the database files the objects are read from.
+     *
+     * @return Returns the absolute file names.
+     */
+    @Override
+    protected String[] getDatabaseFiles() {
+        if (FILE_MASTERPASSWD.equals(masterPasswdFile))
+            return new String[]{FILE_GROUP, FILE_MASTERPASSWD};
+
+        return new String[]{FILE_GROUP, FILE_PASSWD, FILE_SHADOW};
+    }
+
+    /**
+     * Checking whether the target system has the GNU version of stat.
+     *
+     * @return Returns true on GNU/Linux.
+     */
+    @Override
+    protected boolean hasGnuStat() {
+        return FILE_SHADOW.equals(masterPasswdFile);
     }
 
     /**
@@ -152,8 +460,419 @@ public class UserAddPasswdMethod extends AbstractPasswdMethod {
      */
     @Override
     public void test() {
-        becomeMethod.execute(connection, null, COMMAND_WHEREIS, COMMAND_USERADD)
-                .expect(0)
-                .expectStdErrIsEmpty();
+        if (probe != null) {
+            probe.requireTool(COMMAND_USERADD);
+            return;
+        }
+
+        try (CommandResult result = becomeMethod.execute(connection, null, COMMAND_WHEREIS, COMMAND_USERADD)) {
+            result
+                    .expect(0)
+                    .expectStdErrIsEmpty();
+        }
+    }
+
+    /**
+     * Retrieving the tool calls implementing an operation.
+     *
+     * @param operation         The operation.
+     *
+     * @return Returns a CommandScript instance.
+     */
+    @Override
+    protected CommandScript getScript(BatchOperation operation) {
+        ObjectClass objectClass = operation.getObjectClass();
+
+        if (objectClass.is(ObjectClass.ACCOUNT_NAME)) {
+            switch (operation.getType()) {
+                case CREATE:
+                    return getCreateAccountScript(operation.getAttributes());
+                case UPDATE:
+                    return getUpdateAccountScript(operation.getUid(), operation.getAttributeDeltas());
+                default:
+                    return getDeleteAccountScript(operation.getUid());
+            }
+        }
+
+        if (objectClass.is(ObjectClass.GROUP_NAME)) {
+            switch (operation.getType()) {
+                case CREATE:
+                    return getCreateGroupScript(operation.getAttributes());
+                case UPDATE:
+                    return getUpdateGroupScript(operation.getUid(), operation.getAttributeDeltas());
+                default:
+                    return new CommandScript(operation.getUid()).add(null, COMMAND_GROUPDEL, operation.getUid().getUidValue());
+            }
+        }
+
+        throw new ConnectionBrokenException("Invalid object class: " + objectClass.getObjectClassValue());
+    }
+
+    /**
+     * Mapping the exit code of the tool calls to a result.
+     *
+     * @param operation         The operation.
+     * @param script            The tool calls of the operation.
+     * @param exitCode          The exit code.
+     * @param output            The output of the tool calls.
+     *
+     * @return Returns a BatchResult instance.
+     */
+    @Override
+    protected BatchResult getScriptResult(BatchOperation operation, CommandScript script, int exitCode, List<String> output) {
+        if (exitCode == EXIT_CODE_EXISTS)
+            return BatchResult.failure(operation.getUid(), new AlreadyExistsException(String.join(" ", output)));
+
+        if ((exitCode == EXIT_CODE_UNKNOWN) && (operation.getType() != BatchOperation.Type.CREATE))
+            return BatchResult.failure(operation.getUid(), new UnknownUidException(String.join(" ", output)));
+
+        return super.getScriptResult(operation, script, exitCode, output);
+    }
+
+    /**
+     * Building the tool calls creating an account: useradd, followed by chage
+     * for the password aging fields and chpasswd for the password if needed.
+     *
+     * @param attributes        The attributes for the account.
+     *
+     * @return Returns a CommandScript instance.
+     */
+    private CommandScript getCreateAccountScript(Set<Attribute> attributes) {
+        List<String> useradd  = new ArrayList<>(Collections.singletonList(COMMAND_USERADD));
+        List<String> chage    = new ArrayList<>(Collections.singletonList(COMMAND_CHAGE));
+        String       name     = null;
+        byte[]       password = null;
+
+        for (Attribute attribute : attributes) {
+            Object value = AttributeValues.getValue(attribute);
+
+            if (attribute.is(Name.NAME)) {
+                name = (value == null) ? null : value.toString();
+            } else if (OperationalAttributeInfos.PASSWORD.is(attribute.getName())) {
+                password = AttributeValues.getPassword(value);
+            } else if (value != null) {
+                addSwitch(useradd, chage, attribute.getName(), CommandBuilder.toCommandValue(value));
+            }
+        }
+
+        if ((name == null) || (name.trim().isEmpty()))
+            throw new InvalidAttributeValueException("Missing attribute loginName");
+
+        name = CommandBuilder.toCommandValue(name);
+
+        useradd.add(configuration.getCreateHomeDirectory() ? "-m" : "-M");
+
+        if ((configuration.getCreateHomeDirectory()) && (!StringUtil.isBlank(configuration.getHomeDirectoryPermissions()))) {
+            useradd.add("-K");
+            useradd.add("HOME_MODE=" + configuration.getHomeDirectoryPermissions());
+        }
+
+        useradd.add(name);
+
+        return addFollowUps(new CommandScript(new Uid(name)).add(null, useradd.toArray(new String[0])), chage, name, COMMAND_CHPASSWD, password);
+    }
+
+    /**
+     * Building the tool calls updating an account: a single usermod carrying all
+     * changed switches, followed by chage and chpasswd if needed.
+     *
+     * @param uid               The UID of the account.
+     * @param attributeDeltas   The changed attributes.
+     *
+     * @return Returns a CommandScript instance.
+     */
+    private CommandScript getUpdateAccountScript(Uid uid, Set<AttributeDelta> attributeDeltas) {
+        List<String> usermod  = new ArrayList<>(Collections.singletonList(COMMAND_USERMOD));
+        List<String> chage    = new ArrayList<>(Collections.singletonList(COMMAND_CHAGE));
+        String       name     = uid.getUidValue();
+        String       newName  = name;
+        byte[]       password = null;
+
+        for (AttributeDelta attributeDelta : attributeDeltas) {
+            Object value = AttributeValues.getValue(attributeDelta);
+
+            if (attributeDelta.is(Name.NAME)) {
+                if ((value == null) || (value.toString().trim().isEmpty()))
+                    throw new InvalidAttributeValueException("The attribute loginName must not be empty");
+
+                newName = CommandBuilder.toCommandValue(value);
+                usermod.add("-l");
+                usermod.add(newName);
+            } else if (OperationalAttributeInfos.PASSWORD.is(attributeDelta.getName())) {
+                password = AttributeValues.getPassword(value);
+            } else {
+                addSwitch(usermod, chage, attributeDelta.getName(), (value == null) ? null : CommandBuilder.toCommandValue(value));
+            }
+        }
+
+        CommandScript script = new CommandScript(new Uid(newName));
+
+        if (usermod.size() > 1) {
+            usermod.add(name);
+            script.add(null, usermod.toArray(new String[0]));
+        }
+
+        return addFollowUps(script, chage, newName, COMMAND_CHPASSWD, password);
+    }
+
+    /**
+     * Building the tool call deleting an account.
+     *
+     * @param uid               The UID of the account.
+     *
+     * @return Returns a CommandScript instance.
+     */
+    private CommandScript getDeleteAccountScript(Uid uid) {
+        if (configuration.getDeleteHomeDirectory())
+            return new CommandScript(uid).add(null, COMMAND_USERDEL, "-r", uid.getUidValue());
+
+        return new CommandScript(uid).add(null, COMMAND_USERDEL, uid.getUidValue());
+    }
+
+    /**
+     * Building the tool calls creating a group: groupadd, followed by gpasswd
+     * for the members and chgpasswd for the password if needed.
+     *
+     * @param attributes        The attributes for the group.
+     *
+     * @return Returns a CommandScript instance.
+     */
+    private CommandScript getCreateGroupScript(Set<Attribute> attributes) {
+        List<String> groupadd = new ArrayList<>(Collections.singletonList(COMMAND_GROUPADD));
+        List<Object> members  = null;
+        String       name     = null;
+        byte[]       password = null;
+
+        for (Attribute attribute : attributes) {
+            Object value = AttributeValues.getValue(attribute);
+
+            if (attribute.is(Name.NAME)) {
+                name = (value == null) ? null : value.toString();
+            } else if (OperationalAttributeInfos.PASSWORD.is(attribute.getName())) {
+                password = AttributeValues.getPassword(value);
+            } else if (attribute.is(MEMBERS.getAttributes().getAttributeName())) {
+                members = attribute.getValue();
+            } else if ((attribute.is(GroupField.GID.getAttributes().getAttributeName())) && (value != null)) {
+                groupadd.add("-g");
+                groupadd.add(CommandBuilder.toCommandValue(value));
+            } else if (value != null) {
+                throw new InvalidAttributeValueException("Invalid attribute " + attribute.getName());
+            }
+        }
+
+        if ((name == null) || (name.trim().isEmpty()))
+            throw new InvalidAttributeValueException("Missing attribute groupName");
+
+        name = CommandBuilder.toCommandValue(name);
+        groupadd.add(name);
+
+        CommandScript script = new CommandScript(new Uid(name)).add(null, groupadd.toArray(new String[0]));
+
+        if ((members != null) && (!members.isEmpty()))
+            script.add(null, COMMAND_GPASSWD, "-M", joinMembers(members), name);
+
+        return addFollowUps(script, Collections.emptyList(), name, COMMAND_CHGPASSWD, password);
+    }
+
+    /**
+     * Building the tool calls updating a group: a single groupmod for name and
+     * gid, gpasswd -M for a full member replacement or gpasswd -a/-d for single
+     * members, and chgpasswd for the password.
+     *
+     * @param uid               The UID of the group.
+     * @param attributeDeltas   The changed attributes.
+     *
+     * @return Returns a CommandScript instance.
+     */
+    private CommandScript getUpdateGroupScript(Uid uid, Set<AttributeDelta> attributeDeltas) {
+        List<String>   groupmod   = new ArrayList<>(Collections.singletonList(COMMAND_GROUPMOD));
+        AttributeDelta newMembers = null;
+        String         name       = uid.getUidValue();
+        String         newName    = name;
+        byte[]         password   = null;
+
+        for (AttributeDelta attributeDelta : attributeDeltas) {
+            Object value = AttributeValues.getValue(attributeDelta);
+
+            if (attributeDelta.is(Name.NAME)) {
+                if ((value == null) || (value.toString().trim().isEmpty()))
+                    throw new InvalidAttributeValueException("The attribute groupName must not be empty");
+
+                newName = CommandBuilder.toCommandValue(value);
+                groupmod.add("-n");
+                groupmod.add(newName);
+            } else if (OperationalAttributeInfos.PASSWORD.is(attributeDelta.getName())) {
+                password = AttributeValues.getPassword(value);
+            } else if (attributeDelta.is(MEMBERS.getAttributes().getAttributeName())) {
+                newMembers = attributeDelta;
+            } else if ((attributeDelta.is(GroupField.GID.getAttributes().getAttributeName())) && (value != null)) {
+                groupmod.add("-g");
+                groupmod.add(CommandBuilder.toCommandValue(value));
+            } else {
+                throw new InvalidAttributeValueException("Invalid attribute " + attributeDelta.getName());
+            }
+        }
+
+        CommandScript script = new CommandScript(new Uid(newName));
+
+        if (groupmod.size() > 1) {
+            groupmod.add(name);
+            script.add(null, groupmod.toArray(new String[0]));
+        }
+
+        if ((newMembers != null) && (newMembers.getValuesToReplace() != null)) {
+            script.add(null, COMMAND_GPASSWD, "-M", joinMembers(newMembers.getValuesToReplace()), newName);
+        } else if (newMembers != null) {
+            if (newMembers.getValuesToAdd() != null) {
+                for (Object member : newMembers.getValuesToAdd())
+                    script.add(null, COMMAND_GPASSWD, "-a", CommandBuilder.toCommandValue(member), newName);
+            }
+
+            if (newMembers.getValuesToRemove() != null) {
+                for (Object member : newMembers.getValuesToRemove())
+                    script.add(null, COMMAND_GPASSWD, "-d", CommandBuilder.toCommandValue(member), newName);
+            }
+        }
+
+        return addFollowUps(script, Collections.emptyList(), newName, COMMAND_CHGPASSWD, password);
+    }
+
+    /**
+     * Adding the switch for an account attribute to the useradd/usermod or chage arguments.
+     *
+     * @param userArgs          The useradd or usermod arguments.
+     * @param chageArgs         The chage arguments.
+     * @param attributeName     The attribute name.
+     * @param value             The new value, or null to clear the attribute.
+     */
+    private static void addSwitch(List<String> userArgs, List<String> chageArgs, String attributeName, String value) {
+        String userSwitch  = SWITCHES_USERMOD.get(attributeName);
+        String chageSwitch = SWITCHES_CHAGE.get(attributeName);
+
+        if (userSwitch != null) {
+            userArgs.add(userSwitch);
+            userArgs.add(((value == null) && ("-f".equals(userSwitch))) ? "-1" : ((value == null) ? "" : value));
+        } else if (chageSwitch != null) {
+            chageArgs.add(chageSwitch);
+            chageArgs.add((value == null) ? "-1" : value);
+        } else {
+            throw new InvalidAttributeValueException("Invalid attribute " + attributeName);
+        }
+    }
+
+    /**
+     * Adding the chage and password calls following the main tool call.
+     *
+     * @param script            The script.
+     * @param chage             The chage arguments, only the command if nothing changed.
+     * @param name              The account or group name after the main call.
+     * @param passwordCommand   The command setting the password from stdin.
+     * @param password          The password. Can be null.
+     *
+     * @return Returns the script.
+     */
+    private static CommandScript addFollowUps(CommandScript script, List<String> chage, String name, String passwordCommand, byte[] password) {
+        if (chage.size() > 1) {
+            List<String> args = new ArrayList<>(chage);
+
+            args.add(name);
+            script.add(null, args.toArray(new String[0]));
+        }
+
+        if (password != null) {
+            byte[] prefix = (name + ":").getBytes(StandardCharsets.UTF_8);
+            byte[] input  = new byte[prefix.length + password.length];
+
+            System.arraycopy(prefix, 0, input, 0, prefix.length);
+            System.arraycopy(password, 0, input, prefix.length, password.length);
+
+            script.add(input, passwordCommand);
+        }
+
+        return script;
+    }
+
+    /**
+     * Joining members into a comma separated list.
+     *
+     * @param members           The members.
+     *
+     * @return Returns the list as string.
+     */
+    private static String joinMembers(List<Object> members) {
+        return members.stream()
+                .map(CommandBuilder::toCommandValue)
+                .collect(Collectors.joining(","));
+    }
+
+    /**
+     * Applying an operation to the database in memory.
+     *
+     * @param database          The database.
+     * @param position          The position of the operation in the batch.
+     * @param operation         The operation.
+     *
+     * @return Returns the (possibly changed) UID of the object.
+     */
+    private Uid apply(ShadowDatabase database, int position, BatchOperation operation) {
+        boolean account = operation.getObjectClass().is(ObjectClass.ACCOUNT_NAME);
+
+        if ((!account) && (!operation.getObjectClass().is(ObjectClass.GROUP_NAME)))
+            throw new ConnectionBrokenException("Invalid object class: " + operation.getObjectClass().getObjectClassValue());
+
+        switch (operation.getType()) {
+            case CREATE:
+                return account
+                        ? database.createAccount(position, operation.getAttributes())
+                        : database.createGroup(position, operation.getAttributes());
+            case UPDATE:
+                return account
+                        ? database.updateAccount(position, operation.getUid(), operation.getAttributeDeltas())
+                        : database.updateGroup(position, operation.getUid(), operation.getAttributeDeltas());
+            default:
+                if (account) {
+                    database.deleteAccount(position, operation.getUid());
+                } else {
+                    database.deleteGroup(position, operation.getUid());
+                }
+
+                return operation.getUid();
+        }
+    }
+
+    /**
+     * Executing a single operation and throwing its error.
+     *
+     * @param operation         The operation.
+     *
+     * @return Returns the result of the operation.
+     */
+    private BatchResult executeSingle(BatchOperation operation) {
+        if (!FILE_SHADOW.equals(masterPasswdFile))
+            throw new ConnectorException("Updates are not supported by " + methodName);
+
+        BatchResult result = execute(Collections.singletonList(operation)).get(0);
+
+        if (!result.isSuccess())
+            throw result.getError();
+
+        return result;
+    }
+
+    /**
+     * Marking all successful operations as failed, because the database could not be written.
+     *
+     * @param results           The results of the operations in memory.
+     * @param error             The error writing the database.
+     *
+     * @return Returns the results as list.
+     */
+    private static List<BatchResult> failAll(BatchResult[] results, RuntimeException error) {
+        for (int position = 0; position < results.length; ++position) {
+            if (results[position].isSuccess())
+                results[position] = BatchResult.failure(results[position].getUid(), error);
+        }
+
+        return Arrays.asList(results);
     }
 }
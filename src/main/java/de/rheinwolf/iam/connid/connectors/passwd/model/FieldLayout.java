@@ -0,0 +1,275 @@
+package de.rheinwolf.iam.connid.connectors.passwd.model;
+
+import org.identityconnectors.framework.common.objects.Name;
+import org.identityconnectors.framework.common.objects.Uid;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Mapping the schema fields of an object class to the field indexes of a
+ * (possibly joined) passwd row. Account rows may carry the computed group
+ * membership behind the fields of the source files.
+ */
+public class FieldLayout {
+    public static final FieldLayout GROUP         = new FieldLayout(false, GroupField.values());
+    public static final FieldLayout MASTER_PASSWD = new FieldLayout(true, MasterPasswdField.values());
+    public static final FieldLayout PASSWD_SHADOW = new FieldLayout(true, PasswdField.values(), ShadowField.values());
+
+    private static final int MAX_DECODERS = 64;
+
+    private final Map<BitSet, RowDecoder>  decoders  = new ConcurrentHashMap<>();
+    private final int[]                    fieldIndexes;
+    private final RowDecoder               fullDecoder;
+    private final int                      membershipOffset;
+    private final Map<String, Integer>     positions = new HashMap<>();
+    private final SchemaUtil.SchemaField[] schemaFields;
+    private final int[]                    sourceOffsets;
+
+    /**
+     * Constructing the layout.
+     *
+     * @param membership    Whether the computed group membership of accounts is appended
+     *                      behind the fields of the sources.
+     * @param sources       The schema fields for each joined source file. If an attribute
+     *                      occurs in multiple sources, the first occurrence is used.
+     */
+    private FieldLayout(boolean membership, SchemaUtil.SchemaField[]... sources) {
+        List<SchemaUtil.SchemaField> fields  = new ArrayList<>();
+        List<Integer>                indexes = new ArrayList<>();
+        int                          offset  = 0;
+
+        sourceOffsets = new int[sources.length];
+
+        for (int source = 0; source < sources.length; ++source) {
+            sourceOffsets[source] = offset;
+            offset                = addFields(fields, indexes, offset, sources[source]);
+        }
+
+        membershipOffset = membership ? offset : -1;
+
+        if (membership)
+            addFields(fields, indexes, offset, MembershipField.values());
+
+        schemaFields = fields.toArray(new SchemaUtil.SchemaField[0]);
+        fieldIndexes = indexes.stream().mapToInt(Integer::intValue).toArray();
+        fullDecoder  = new RowDecoder(this, null);
+    }
+
+    /**
+     * Adding the schema fields of a source to the layout.
+     *
+     * @param fields        The schema fields of the layout.
+     * @param indexes       The row field indexes of the layout.
+     * @param offset        The row field index at which the source starts.
+     * @param source        The schema fields of the source.
+     *
+     * @return Returns the row field index behind the source.
+     */
+    private int addFields(List<SchemaUtil.SchemaField> fields, List<Integer> indexes, int offset, SchemaUtil.SchemaField[] source) {
+        int width = 0;
+
+        for (SchemaUtil.SchemaField field : source) {
+            SchemaUtil.SchemaFieldAttributes attributes = field.getAttributes();
+
+            width = Math.max(width, attributes.getOffset() + 1);
+
+            if (positions.containsKey(attributes.getAttributeName()))
+                continue;
+
+            positions.put(attributes.getAttributeName(), fields.size());
+            fields.add(field);
+            indexes.add(offset + attributes.getOffset());
+        }
+
+        return offset + width;
+    }
+
+    /**
+     * Retrieving the position of an attribute in the layout.
+     *
+     * @param attributeName     The ConnID attribute name. The UID is treated as the name.
+     *
+     * @return Returns the position of the attribute, or -1 if the layout has no such attribute.
+     */
+    public int find(String attributeName) {
+        if (Uid.NAME.equals(attributeName))
+            attributeName = Name.NAME;
+
+        Integer position = positions.get(attributeName);
+
+        if (position == null)
+            return -1;
+
+        return position;
+    }
+
+    /**
+     * Selecting the attributes to decode, e.g. for ATTRS_TO_GET. The name is
+     * always selected, as it is required for the UID.
+     *
+     * @param attributeNames    The ConnID attribute names, or null for all attributes.
+     *
+     * @return Returns the selection flags by position, or null if all attributes are selected.
+     */
+    public boolean[] select(Collection<String> attributeNames) {
+        if (attributeNames == null)
+            return null;
+
+        boolean[] selection = new boolean[schemaFields.length];
+        int       name      = find(Name.NAME);
+
+        if (name >= 0)
+            selection[name] = true;
+
+        for (String attributeName : attributeNames) {
+            int position = find(attributeName);
+
+            if (position >= 0)
+                selection[position] = true;
+        }
+
+        return selection;
+    }
+
+    /**
+     * Retrieving the decoder plan for a selection of attributes. Plans are
+     * compiled once per selection, as the same ATTRS_TO_GET are usually
+     * requested over and over again.
+     *
+     * @param selection     The selection flags by position. Can be null for all attributes.
+     *
+     * @return Returns a RowDecoder instance.
+     */
+    public RowDecoder getDecoder(boolean[] selection) {
+        if (selection == null)
+            return fullDecoder;
+
+        BitSet key = new BitSet(selection.length);
+
+        for (int position = 0; position < selection.length; ++position)
+            key.set(position, selection[position]);
+
+        RowDecoder decoder = decoders.get(key);
+
+        if (decoder == null) {
+            decoder = new RowDecoder(this, selection);
+
+            if (decoders.size() < MAX_DECODERS)
+                decoders.putIfAbsent(key, decoder);
+        }
+
+        return decoder;
+    }
+
+    /**
+     * Retrieving the number of joined sources, which have to be read for the selected attributes.
+     *
+     * @param selection     The selection flags by position. Can be null for all attributes.
+     *
+     * @return Returns the number of leading sources to read.
+     */
+    public int getSourceCount(boolean[] selection) {
+        if (selection == null)
+            return sourceOffsets.length;
+
+        int count = 1;
+
+        for (int position = 0; position < selection.length; ++position) {
+            if ((!selection[position]) || (isComputed(position)))
+                continue;
+
+            while ((count < sourceOffsets.length) && (fieldIndexes[position] >= sourceOffsets[count]))
+                ++count;
+        }
+
+        return count;
+    }
+
+    /**
+     * Checking whether the group membership has to be computed for a selection of attributes.
+     *
+     * @param selection     The selection flags by position. Can be null for all attributes,
+     *                      which does not include the membership as it is not returned by default.
+     *
+     * @return Returns true if a membership attribute is selected.
+     */
+    public boolean needsMembership(boolean[] selection) {
+        if ((membershipOffset < 0) || (selection == null))
+            return false;
+
+        for (int position = 0; position < selection.length; ++position) {
+            if ((selection[position]) && (isComputed(position)))
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Checking whether the attribute at a position is computed instead of read from a source file.
+     *
+     * @param position      The position in the layout.
+     *
+     * @return Returns true for the group membership attributes.
+     */
+    public boolean isComputed(int position) {
+        return (membershipOffset >= 0) && (fieldIndexes[position] >= membershipOffset);
+    }
+
+    /**
+     * Retrieving the row field index at which the computed group membership starts.
+     *
+     * @return Returns the offset of the membership in the row, or -1 if the layout has none.
+     */
+    public int getMembershipOffset() {
+        return membershipOffset;
+    }
+
+    /**
+     * Retrieving the row field index for a position in the layout.
+     *
+     * @param position      The position in the layout.
+     *
+     * @return Returns the index of the field in the row.
+     */
+    public int getFieldIndex(int position) {
+        return fieldIndexes[position];
+    }
+
+    /**
+     * Retrieving the schema field for a position in the layout.
+     *
+     * @param position      The position in the layout.
+     *
+     * @return Returns a SchemaField instance.
+     */
+    public SchemaUtil.SchemaField getSchemaField(int position) {
+        return schemaFields[position];
+    }
+
+    /**
+     * Retrieving the row field index at which the fields of a joined source start.
+     *
+     * @param source        The index of the source.
+     *
+     * @return Returns the offset of the source in the row.
+     */
+    public int getSourceOffset(int source) {
+        return sourceOffsets[source];
+    }
+
+    /**
+     * Retrieving the number of attributes in the layout.
+     *
+     * @return Returns the number of attributes as integer.
+     */
+    public int size() {
+        return schemaFields.length;
+    }
+}
@@ -0,0 +1,41 @@
+package de.rheinwolf.iam.connid.connectors.passwd.model;
+
+import org.identityconnectors.framework.common.objects.AttributeInfo;
+
+import static org.identityconnectors.framework.common.objects.AttributeInfo.Flags.MULTIVALUED;
+import static org.identityconnectors.framework.common.objects.AttributeInfo.Flags.NOT_CREATABLE;
+import static org.identityconnectors.framework.common.objects.AttributeInfo.Flags.NOT_RETURNED_BY_DEFAULT;
+import static org.identityconnectors.framework.common.objects.AttributeInfo.Flags.NOT_UPDATEABLE;
+
+/**
+ * Enumeration of the computed group membership fields in the account object
+ * class. They are resolved from the group file and are read-only, the groups
+ * are the groups listing the account as member.
+ */
+public enum MembershipField implements SchemaUtil.SchemaField {
+    GROUPS("groups", null, String.class, 0, MULTIVALUED, NOT_CREATABLE, NOT_UPDATEABLE, NOT_RETURNED_BY_DEFAULT),
+    PRIMARY_GROUP_NAME("primaryGroupName", null, String.class, 1, NOT_CREATABLE, NOT_UPDATEABLE, NOT_RETURNED_BY_DEFAULT);
+
+    private final SchemaUtil.SchemaFieldAttributes attributes;
+
+    /**
+     * Constructing the field.
+     *
+     * @param attributeName     The ConnID attribute name.
+     * @param nativeName        The native attribute name or null.
+     * @param clazz             The Java class for the attribute.
+     * @param offset            The offset in the membership row.
+     * @param flags             The flags for the attribute.
+     */
+    MembershipField(String attributeName, String nativeName, Class<?> clazz, int offset, AttributeInfo.Flags... flags) {
+        this.attributes = new SchemaUtil.SchemaFieldAttributes(attributeName, nativeName, clazz, offset, flags);
+    }
+
+    /**
+     * Retrieving the attributes.
+     */
+    @Override
+    public SchemaUtil.SchemaFieldAttributes getAttributes() {
+        return attributes;
+    }
+}
@@ -16,11 +16,11 @@ public class PasswdAccount {
     /**
      * Retrieving the schema for the account object class.
      *
+     * @param methodName        The configured or detected method, e.g. "useradd:linux".
      * @param schemaBuilder     A schema builder instance where the schema will be stored.
      */
-    public static void schema(PasswdConfiguration configuration, SchemaBuilder schemaBuilder) {
+    public static void schema(String methodName, SchemaBuilder schemaBuilder) {
         ObjectClassInfoBuilder objectClassInfoBuilder = new ObjectClassInfoBuilder();
-        String                 methodName             = configuration.getMethod();
 
         // Use the master.passwd fields on BSDs
         if ((PasswdConfiguration.METHOD_PW.equals(methodName)) || (methodName.endsWith(":" + PasswdConfiguration.SUBMETHOD_BSD))) {
@@ -42,6 +42,10 @@ public class PasswdAccount {
             }
         }
 
+        for (MembershipField field : MembershipField.values()) {
+            SchemaUtil.buildAttributeInfo(objectClassInfoBuilder, field);
+        }
+
         objectClassInfoBuilder.setType(ObjectClass.ACCOUNT_NAME);
         schemaBuilder.defineObjectClass(objectClassInfoBuilder.build());
     }
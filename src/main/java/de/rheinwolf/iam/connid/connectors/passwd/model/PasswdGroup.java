@@ -1,12 +1,12 @@
 package de.rheinwolf.iam.connid.connectors.passwd.model;
 
+import de.rheinwolf.iam.connid.connectors.passwd.file.PasswdRow;
+
 import org.identityconnectors.framework.common.objects.ConnectorObject;
 import org.identityconnectors.framework.common.objects.ObjectClass;
 import org.identityconnectors.framework.common.objects.ObjectClassInfoBuilder;
 import org.identityconnectors.framework.common.objects.SchemaBuilder;
 
-import java.util.List;
-
 /**
  * The group object class.
  */
@@ -28,14 +28,15 @@ public class PasswdGroup {
     }
 
     /**
-     * Converting fields from a passwd file to a connector object.
+     * Converting a row from a group file to a connector object.
      *
      * @param objectClass       The object class instance.
-     * @param fields            The passwd fields.
+     * @param row               The group row.
+     * @param selection         The selection flags by layout position. Can be null for all attributes.
      *
      * @return Returns a ConnectorObject, or null if the field information is incomplete.
      */
-    public static ConnectorObject toConnectorObject(ObjectClass objectClass, List<String> fields) {
-        return SchemaUtil.toConnectorObject(objectClass, GroupField.values(), fields);
+    public static ConnectorObject toConnectorObject(ObjectClass objectClass, PasswdRow row, boolean[] selection) {
+        return SchemaUtil.toConnectorObject(objectClass, FieldLayout.GROUP, row, selection);
     }
 }
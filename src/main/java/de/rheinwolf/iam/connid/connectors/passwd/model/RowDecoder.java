@@ -0,0 +1,191 @@
+package de.rheinwolf.iam.connid.connectors.passwd.model;
+
+import de.rheinwolf.iam.connid.connectors.passwd.file.PasswdRow;
+
+import org.identityconnectors.framework.common.objects.Attribute;
+import org.identityconnectors.framework.common.objects.AttributeBuilder;
+import org.identityconnectors.framework.common.objects.ConnectorObject;
+import org.identityconnectors.framework.common.objects.ConnectorObjectBuilder;
+import org.identityconnectors.framework.common.objects.Name;
+import org.identityconnectors.framework.common.objects.ObjectClass;
+import org.identityconnectors.framework.common.objects.OperationalAttributeInfos;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * An immutable plan for converting the rows of a field layout to connector
+ * objects, compiled once per layout and selection of attributes.
+ *
+ * The schema fields are resolved into a flat array of field decoders with
+ * the row field index, the value parser and the multi-value handling of the
+ * attribute. Unselected attributes and the password are left out, as are the
+ * attributes not returned by default if no attributes are selected. So the
+ * conversion of a row only loops over the fields that are returned.
+ */
+public final class RowDecoder {
+    private static final Function<String, Object> PARSE_INTEGER = Integer::valueOf;
+    private static final Function<String, Object> PARSE_LONG    = RowDecoder::parseLong;
+    private static final Function<String, Object> PARSE_STRING  = value -> value;
+
+    private final FieldDecoder[] fieldDecoders;
+    private final int            nameIndex;
+
+    /**
+     * Compiling the plan.
+     *
+     * @param layout            The field layout.
+     * @param selection         The selection flags by layout position. Can be null for all attributes.
+     */
+    RowDecoder(FieldLayout layout, boolean[] selection) {
+        List<FieldDecoder> decoders = new ArrayList<>();
+        int                name     = layout.find(Name.NAME);
+
+        for (int position = 0; position < layout.size(); ++position) {
+            SchemaUtil.SchemaFieldAttributes attributes = layout.getSchemaField(position).getAttributes();
+
+            // The name is decoded for the UID anyway
+            if ((position == name) || ((selection != null) && (!selection[position])))
+                continue;
+
+            if ((OperationalAttributeInfos.PASSWORD.is(attributes.getAttributeName())) || ((selection == null) && (!attributes.isReturnedByDefault())))
+                continue;
+
+            decoders.add(new FieldDecoder(
+                    attributes.getAttributeName(),
+                    layout.getFieldIndex(position),
+                    getParser(attributes.getClazz()),
+                    attributes.isMultiValued()
+            ));
+        }
+
+        this.fieldDecoders = decoders.toArray(new FieldDecoder[0]);
+        this.nameIndex     = (name < 0) ? -1 : layout.getFieldIndex(name);
+    }
+
+    /**
+     * Converting a row to a connector object.
+     *
+     * @param objectClass       The object class instance.
+     * @param row               The passwd row.
+     *
+     * @return Returns a ConnectorObject, or null if the field information is incomplete.
+     */
+    public ConnectorObject decode(ObjectClass objectClass, PasswdRow row) {
+        String name = (nameIndex < 0) ? null : row.getField(nameIndex);
+
+        if (name == null)
+            return null;
+
+        name = name.trim();
+
+        if (name.isEmpty())
+            return null;
+
+        ConnectorObjectBuilder objectBuilder = new ConnectorObjectBuilder();
+
+        objectBuilder.setObjectClass(objectClass);
+        objectBuilder.setUid(name);
+        objectBuilder.setName(name);
+
+        for (FieldDecoder fieldDecoder : fieldDecoders) {
+            String rawValue = row.getField(fieldDecoder.fieldIndex);
+
+            if (rawValue == null)
+                continue;
+
+            String stringValue = rawValue.trim();
+
+            if (!stringValue.isEmpty())
+                objectBuilder.addAttribute(fieldDecoder.decode(stringValue));
+        }
+
+        return objectBuilder.build();
+    }
+
+    /**
+     * Retrieving the value parser for the class of an attribute.
+     *
+     * @param targetClass       The target class for the attribute.
+     *
+     * @return Returns the parser.
+     */
+    private static Function<String, Object> getParser(Class<?> targetClass) {
+        if (Long.class.equals(targetClass))
+            return PARSE_LONG;
+
+        if (Integer.class.equals(targetClass))
+            return PARSE_INTEGER;
+
+        return PARSE_STRING;
+    }
+
+    /**
+     * Parsing a long value. Zero means that the value is not set, e.g. for
+     * the expiry dates.
+     *
+     * @param stringValue       The string value.
+     *
+     * @return Returns the value, or null for zero.
+     */
+    private static Object parseLong(String stringValue) {
+        long result = Long.parseLong(stringValue);
+
+        return (result == 0L) ? null : result;
+    }
+
+    /**
+     * The decoder of a single attribute.
+     */
+    private static final class FieldDecoder {
+        private final String                   attributeName;
+        private final int                      fieldIndex;
+        private final boolean                  multiValued;
+        private final Function<String, Object> parser;
+
+        /**
+         * Constructing the decoder.
+         *
+         * @param attributeName     The ConnID attribute name.
+         * @param fieldIndex        The index of the field in the row.
+         * @param parser            The value parser.
+         * @param multiValued       Whether the field is a comma separated list.
+         */
+        private FieldDecoder(String attributeName, int fieldIndex, Function<String, Object> parser, boolean multiValued) {
+            this.attributeName = attributeName;
+            this.fieldIndex    = fieldIndex;
+            this.multiValued   = multiValued;
+            this.parser        = parser;
+        }
+
+        /**
+         * Decoding the attribute from a trimmed, non-empty field.
+         *
+         * @param stringValue       The field value.
+         *
+         * @return Returns the attribute.
+         */
+        private Attribute decode(String stringValue) {
+            if (!multiValued)
+                return AttributeBuilder.build(attributeName, Collections.singletonList(parser.apply(stringValue)));
+
+            List<Object> values = new ArrayList<>();
+
+            for (String mvStringValue : stringValue.split(",")) {
+                mvStringValue = mvStringValue.trim();
+
+                if (mvStringValue.isEmpty())
+                    continue;
+
+                Object value = parser.apply(mvStringValue);
+
+                if (value != null)
+                    values.add(value);
+            }
+
+            return values.isEmpty() ? AttributeBuilder.build(attributeName) : AttributeBuilder.build(attributeName, values);
+        }
+    }
+}
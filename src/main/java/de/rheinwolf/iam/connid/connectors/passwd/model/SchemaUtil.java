@@ -1,5 +1,7 @@
 package de.rheinwolf.iam.connid.connectors.passwd.model;
 
+import de.rheinwolf.iam.connid.connectors.passwd.file.PasswdRow;
+
 import org.identityconnectors.framework.common.objects.*;
 import org.identityconnectors.framework.common.objects.AttributeInfo.Flags;
 
@@ -26,6 +28,7 @@ public class SchemaUtil {
         private String                attributeName;
         private Class<?>              clazz;
         private AttributeInfo.Flags[] flags;
+        private boolean               multiValued;
         private String                nativeName;
         private int                   offset;
 
@@ -42,6 +45,7 @@ public class SchemaUtil {
             this.attributeName = attributeName;
             this.clazz         = clazz;
             this.flags         = flags;
+            this.multiValued   = Arrays.asList(flags).contains(Flags.MULTIVALUED);
             this.nativeName    = nativeName;
             this.offset        = offset;
         }
@@ -60,7 +64,7 @@ public class SchemaUtil {
          *
          * @return Returns a Class instance.
          */
-        Class<?> getClazz() {
+        public Class<?> getClazz() {
             return clazz;
         }
 
@@ -73,6 +77,24 @@ public class SchemaUtil {
             return flags;
         }
 
+        /**
+         * Checking whether the attribute is multi-valued.
+         *
+         * @return Returns whether the attribute has the MULTIVALUED flag.
+         */
+        public boolean isMultiValued() {
+            return multiValued;
+        }
+
+        /**
+         * Checking whether the attribute is returned if no attributes are requested.
+         *
+         * @return Returns whether the attribute lacks the NOT_RETURNED_BY_DEFAULT flag.
+         */
+        public boolean isReturnedByDefault() {
+            return !Arrays.asList(flags).contains(Flags.NOT_RETURNED_BY_DEFAULT);
+        }
+
         /**
          * Retrieving the native name for the attribute.
          *
@@ -125,127 +147,31 @@ public class SchemaUtil {
     }
 
     /**
-     * Joining a connector object with another one from a source map.
-     *
-     * @param connectorObject       The connector object.
-     * @param source                The source map.
-     * @param keyAttributeName      The name of the attribute on which the merge should happen.
-     *
-     * @return Returns a ConnectorObject instance with attributes from both instances.
-     */
-    public static ConnectorObject join(ConnectorObject connectorObject, Map<String, ConnectorObject> source, String keyAttributeName) {
-        if (connectorObject == null)
-            return null;
-
-        ConnectorObjectBuilder objectBuilder  = new ConnectorObjectBuilder();
-        ConnectorObject        objectToMerge  = null;
-        Set<String>            attributeNames = new HashSet<>();
-
-        objectBuilder.setObjectClass(connectorObject.getObjectClass());
-
-        for (Attribute attribute : connectorObject.getAttributes()) {
-            objectBuilder.addAttribute(attribute);
-            attributeNames.add(attribute.getName());
-
-            if (attribute.is(keyAttributeName))
-                objectToMerge = source.get(attribute.getValue().get(0).toString());
-        }
-
-        if (objectToMerge != null) {
-            for (Attribute attribute : objectToMerge.getAttributes()) {
-                if (!attributeNames.contains(attribute.getName()))
-                    objectBuilder.addAttribute(attribute);
-            }
-        }
-
-        return objectBuilder.build();
-    }
-
-
-    /**
-     * Converting fields from a passwd file to a connector object.
+     * Converting a passwd row to a connector object.
      *
      * @param objectClass       The object class instance.
-     * @param schemaFields      The schema fields for the object class.
-     * @param fields            The passwd fields.
+     * @param layout            The field layout for the object class.
+     * @param row               The passwd row.
      *
      * @return Returns a ConnectorObject, or null if the field information is incomplete.
      */
-    public static ConnectorObject toConnectorObject(ObjectClass objectClass, SchemaField[] schemaFields, List<String> fields) {
-        ConnectorObjectBuilder objectBuilder = new ConnectorObjectBuilder();
-
-        objectBuilder.setObjectClass(objectClass);
-
-        for (SchemaField schemaField : schemaFields) {
-            buildAttribute(objectBuilder, schemaField, fields);
-        }
-
-        return objectBuilder.build();
-    }
-
-    /**
-     * Adding an attribute to a connector object.
-     *
-     * @param connectorObjectBuilder        The connector object builder.
-     * @param schemaField                   The schema field.
-     * @param values                        The input values.
-     */
-    private static void buildAttribute(ConnectorObjectBuilder connectorObjectBuilder, SchemaField schemaField, List<String> values) {
-        SchemaFieldAttributes attributes = schemaField.getAttributes();
-
-        if ((values.size() <= attributes.getOffset()) || (OperationalAttributeInfos.PASSWORD.is(attributes.getAttributeName())))
-            return;
-
-        String stringValue = values.get(attributes.getOffset()).trim();
-
-        if (stringValue.isEmpty())
-            return;
-
-        AttributeBuilder attributeBuilder = new AttributeBuilder();
-
-        if (Arrays.asList(attributes.getFlags()).contains(Flags.MULTIVALUED)) {
-            String[] stringValues = stringValue.split(",");
-
-            for (String mvStringValue : stringValues) {
-                mvStringValue = mvStringValue.trim();
-
-                if (mvStringValue.isEmpty())
-                    continue;
-
-                Object value = getAttributeValue(attributes.getClazz(), mvStringValue);
-
-                if (value != null)
-                    attributeBuilder.addValue(value);
-            }
-        } else {
-            attributeBuilder.addValue(getAttributeValue(attributes.getClazz(), stringValue));
-        }
-
-        attributeBuilder.setName(attributes.getAttributeName());
-        connectorObjectBuilder.addAttribute(attributeBuilder.build());
+    public static ConnectorObject toConnectorObject(ObjectClass objectClass, FieldLayout layout, PasswdRow row) {
+        return toConnectorObject(objectClass, layout, row, null);
     }
 
     /**
-     * Retrieving the attribute value for the given string value and target class.
+     * Converting a passwd row to a connector object with the selected attributes
+     * only. Fields of unselected attributes are not decoded at all. Callers
+     * converting many rows should retrieve the RowDecoder from the layout once.
      *
-     * @param targetClass       The target class for the attribute.
-     * @param stringValue       The string value.
+     * @param objectClass       The object class instance.
+     * @param layout            The field layout for the object class.
+     * @param row               The passwd row.
+     * @param selection         The selection flags by layout position. Can be null for all attributes.
      *
-     * @return Returns the real value of the attribute.
+     * @return Returns a ConnectorObject, or null if the field information is incomplete.
      */
-    private static Object getAttributeValue(Class<?> targetClass, String stringValue) {
-        if (Long.class.equals(targetClass)) {
-            Long result = Long.valueOf(stringValue);
-
-            if (result.equals(0L))
-                return null;
-
-            return result;
-        }
-
-        if (Integer.class.equals(targetClass))
-            return Integer.valueOf(stringValue);
-
-        return stringValue;
+    public static ConnectorObject toConnectorObject(ObjectClass objectClass, FieldLayout layout, PasswdRow row, boolean[] selection) {
+        return layout.getDecoder(selection).decode(objectClass, row);
     }
 }
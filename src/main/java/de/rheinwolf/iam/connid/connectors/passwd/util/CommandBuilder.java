@@ -1,5 +1,7 @@
 package de.rheinwolf.iam.connid.connectors.passwd.util;
 
+import org.identityconnectors.framework.common.exceptions.InvalidAttributeValueException;
+
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
@@ -47,18 +49,41 @@ public class CommandBuilder {
         return result.toArray(new String[0]);
     }
 
+    /**
+     * Retrieving the command as a line of a shell script. Each argument
+     * is quoted, so the shell does not expand or split any of them.
+     *
+     * @param args      The input.
+     *
+     * @return Returns the command as single string.
+     */
+    public static String asShellLine(String[] args) {
+        List<String> result = new ArrayList<>(args.length);
+
+        for (String arg : args)
+            result.add("'" + arg.replace("'", "'\\''") + "'");
+
+        return String.join(" ", result);
+    }
+
     /**
      * Converting an object to a command value suitable to be used in
-     * passwd files. Replacing any characters that are not allowed to
-     * be used with an underscore.
+     * passwd files. Replacing the field and list separators with an
+     * underscore. Line breaks and NUL characters would split or cut
+     * the row, so they are rejected.
      *
      * @param value     The input value.
      *
      * @return Returns the value as string.
+     *
+     * @throws InvalidAttributeValueException If the value contains a line break or NUL character.
      */
     public static String toCommandValue(Object value) {
         String stringValue = Objects.toString(value);
 
+        if ((stringValue.indexOf('\n') >= 0) || (stringValue.indexOf('\r') >= 0) || (stringValue.indexOf('\0') >= 0))
+            throw new InvalidAttributeValueException("The value must not contain line breaks or NUL characters");
+
         return stringValue
                 .replace(",", "_")
                 .replace(":", "_");
@@ -0,0 +1,79 @@
+package de.rheinwolf.iam.connid.connectors.passwd;
+
+import de.rheinwolf.iam.connid.connectors.passwd.init.ConnectorFactory;
+
+import org.assertj.core.api.Assertions;
+
+import org.identityconnectors.framework.common.objects.ConnectorObject;
+import org.identityconnectors.framework.common.objects.Name;
+import org.identityconnectors.framework.common.objects.ObjectClass;
+import org.identityconnectors.framework.common.objects.OperationOptions;
+import org.identityconnectors.framework.common.objects.ScriptContext;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Testing the batch script on the local system.
+ */
+public class BatchTest {
+    private static final String LOGIN_NAME = "connidbatch";
+    private static final String UNKNOWN    = "connidunknown";
+
+    @Test
+    public void testMixedBatchReportsEachOperation() {
+        PasswdConnector  connector        = ConnectorFactory.newInstance();
+        OperationOptions operationOptions = new OperationOptions(new HashMap<>(0));
+
+        Map<String, Object> create = new LinkedHashMap<>();
+        Map<String, Object> update = new LinkedHashMap<>();
+        Map<String, Object> fail   = new LinkedHashMap<>();
+        Map<String, Object> delete = new LinkedHashMap<>();
+
+        create.put("operation",  "create");
+        create.put("attributes", Collections.singletonMap(Name.NAME, LOGIN_NAME));
+
+        update.put("operation",  "update");
+        update.put("uid",        LOGIN_NAME);
+        update.put("attributes", Collections.singletonMap("comment", "Batch Test"));
+
+        fail.put("operation",  "update");
+        fail.put("uid",        UNKNOWN);
+        fail.put("attributes", Collections.singletonMap("comment", "Unknown"));
+
+        delete.put("operation", "delete");
+        delete.put("uid",       LOGIN_NAME);
+
+        Map<String, Object> scriptArguments = Collections.singletonMap("operations", Arrays.asList(create, update, fail, delete));
+
+        Object result = connector.runScriptOnResource(new ScriptContext(BatchScript.SCRIPT_LANGUAGE, "", scriptArguments), operationOptions);
+
+        Assertions.assertThat(result).isInstanceOf(List.class);
+
+        List<?> results = (List<?>) result;
+
+        // A failing operation does not stop the following ones
+        Assertions.assertThat(results).hasSize(4);
+        Assertions.assertThat(((Map<?, ?>) results.get(0)).get("success")).isEqualTo(true);
+        Assertions.assertThat(((Map<?, ?>) results.get(0)).get("uid")).isEqualTo(LOGIN_NAME);
+        Assertions.assertThat(((Map<?, ?>) results.get(1)).get("success")).isEqualTo(true);
+        Assertions.assertThat(((Map<?, ?>) results.get(2)).get("success")).isEqualTo(false);
+        Assertions.assertThat(((Map<?, ?>) results.get(2)).get("error")).isNotNull();
+        Assertions.assertThat(((Map<?, ?>) results.get(3)).get("success")).isEqualTo(true);
+
+        List<ConnectorObject> accounts = new ArrayList<>();
+
+        connector.executeQuery(new ObjectClass(ObjectClass.ACCOUNT_NAME), null, accounts::add, operationOptions);
+
+        Assertions.assertThat(accounts)
+                .extracting(account -> account.getName().getNameValue())
+                .doesNotContain(LOGIN_NAME, UNKNOWN);
+    }
+}
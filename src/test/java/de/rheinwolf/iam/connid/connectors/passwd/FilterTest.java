@@ -1,12 +1,18 @@
 package de.rheinwolf.iam.connid.connectors.passwd;
 
+import de.rheinwolf.iam.connid.connectors.passwd.file.PasswdFile;
 import de.rheinwolf.iam.connid.connectors.passwd.init.ConnectorFactory;
+import de.rheinwolf.iam.connid.connectors.passwd.model.FieldLayout;
 
 import org.assertj.core.api.Assertions;
 
+import org.identityconnectors.framework.common.objects.AttributeBuilder;
+import org.identityconnectors.framework.common.objects.Name;
 import org.identityconnectors.framework.common.objects.ObjectClass;
 import org.identityconnectors.framework.common.objects.OperationOptions;
+import org.identityconnectors.framework.common.objects.Uid;
 import org.identityconnectors.framework.common.objects.filter.Filter;
+import org.identityconnectors.framework.common.objects.filter.FilterBuilder;
 import org.identityconnectors.framework.common.objects.filter.FilterTranslator;
 
 import org.mockito.Mockito;
@@ -36,4 +42,63 @@ public class FilterTest {
 
         Assertions.assertThat(queries).hasSize(0);
     }
+
+    @Test
+    public void testAccountFilter() {
+        PasswdConnector  connector        = ConnectorFactory.newInstance();
+        ObjectClass      objectClass      = new ObjectClass(ObjectClass.ACCOUNT_NAME);
+        OperationOptions operationOptions = new OperationOptions(new HashMap<>(0));
+        Filter           filter           = FilterBuilder.and(
+                FilterBuilder.startsWith(new Name("ro")),
+                FilterBuilder.not(FilterBuilder.greaterThan(AttributeBuilder.build("gid", 0)))
+        );
+
+        List<PasswdQuery> queries = connector.createFilterTranslator(objectClass, operationOptions).translate(filter);
+
+        Assertions.assertThat(queries).hasSize(1);
+
+        PasswdQuery query = queries.get(0);
+
+        Assertions.assertThat(query.matches(FieldLayout.MASTER_PASSWD, PasswdFile.tokenize("root:*:0:0::0:0:Charlie &:/root:/bin/csh"))).isTrue();
+        Assertions.assertThat(query.matches(FieldLayout.MASTER_PASSWD, PasswdFile.tokenize("toor:*:0:0::0:0:Bourne-again Superuser:/root:"))).isFalse();
+        Assertions.assertThat(query.matches(FieldLayout.MASTER_PASSWD, PasswdFile.tokenize("rob:*:1001:1001::0:0:Rob:/home/rob:/bin/sh"))).isFalse();
+    }
+
+    @Test
+    public void testGroupMembersFilter() {
+        PasswdConnector  connector        = ConnectorFactory.newInstance();
+        ObjectClass      objectClass      = new ObjectClass(ObjectClass.GROUP_NAME);
+        OperationOptions operationOptions = new OperationOptions(new HashMap<>(0));
+        Filter           filter           = FilterBuilder.containsAllValues(AttributeBuilder.build("members", "root", "alice"));
+
+        List<PasswdQuery> queries = connector.createFilterTranslator(objectClass, operationOptions).translate(filter);
+
+        Assertions.assertThat(queries).hasSize(1);
+        Assertions.assertThat(queries.get(0).matches(FieldLayout.GROUP, PasswdFile.tokenize("wheel:*:0:alice,root,bob"))).isTrue();
+        Assertions.assertThat(queries.get(0).matches(FieldLayout.GROUP, PasswdFile.tokenize("operator:*:5:root"))).isFalse();
+        Assertions.assertThat(queries.get(0).matches(FieldLayout.GROUP, PasswdFile.tokenize("nogroup:*:65533:"))).isFalse();
+    }
+
+    @Test
+    public void testEqualityCondition() {
+        PasswdConnector  connector        = ConnectorFactory.newInstance();
+        ObjectClass      objectClass      = new ObjectClass(ObjectClass.ACCOUNT_NAME);
+        OperationOptions operationOptions = new OperationOptions(new HashMap<>(0));
+        Filter           filter           = FilterBuilder.and(
+                FilterBuilder.greaterThan(AttributeBuilder.build("gid", 0)),
+                FilterBuilder.equalTo(new Uid("rob"))
+        );
+
+        PasswdQuery condition = connector.createFilterTranslator(objectClass, operationOptions).translate(filter).get(0).getEqualityCondition();
+
+        Assertions.assertThat(condition).isNotNull();
+        Assertions.assertThat(condition.getAttributeName()).isEqualTo(Uid.NAME);
+        Assertions.assertThat(condition.getValue()).isEqualTo("rob");
+
+        Filter notFilter = FilterBuilder.not(FilterBuilder.equalTo(new Name("rob")));
+        Filter orFilter  = FilterBuilder.or(FilterBuilder.equalTo(new Name("rob")), FilterBuilder.equalTo(new Name("root")));
+
+        Assertions.assertThat(connector.createFilterTranslator(objectClass, operationOptions).translate(notFilter).get(0).getEqualityCondition()).isNull();
+        Assertions.assertThat(connector.createFilterTranslator(objectClass, operationOptions).translate(orFilter).get(0).getEqualityCondition()).isNull();
+    }
 }
@@ -1,14 +1,22 @@
 package de.rheinwolf.iam.connid.connectors.passwd;
 
+import de.rheinwolf.iam.connid.connectors.passwd.file.JoinedRow;
+import de.rheinwolf.iam.connid.connectors.passwd.file.PasswdFile;
+import de.rheinwolf.iam.connid.connectors.passwd.file.PasswdRow;
 import de.rheinwolf.iam.connid.connectors.passwd.init.ConnectorFactory;
+import de.rheinwolf.iam.connid.connectors.passwd.model.FieldLayout;
+import de.rheinwolf.iam.connid.connectors.passwd.model.SchemaUtil;
 
 import org.assertj.core.api.Assertions;
 import org.assertj.core.api.Condition;
 
 import org.identityconnectors.framework.common.objects.*;
+import org.identityconnectors.framework.spi.operations.SearchOp;
 
 import org.testng.annotations.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Set;
 
 /**
@@ -54,4 +62,43 @@ public class SchemaTest {
             Assertions.assertThat(attributeInfos).haveExactly(1, isUidAttribute);
         }
     }
+
+    @Test
+    public void testOperationOptions() {
+        Schema schema = ConnectorFactory.newInstance().schema();
+
+        Assertions.assertThat(schema.getSupportedOptionsByOperation(SearchOp.class))
+                .extracting(OperationOptionInfo::getName)
+                .contains(OperationOptions.OP_PAGE_SIZE, OperationOptions.OP_PAGED_RESULTS_OFFSET, OperationOptions.OP_PAGED_RESULTS_COOKIE, OperationOptions.OP_SORT_KEYS);
+    }
+
+    @Test
+    public void testProjection() {
+        FieldLayout     layout    = FieldLayout.PASSWD_SHADOW;
+        boolean[]       selection = layout.select(Arrays.asList(Name.NAME, "uid"));
+        PasswdRow       row       = new JoinedRow(PasswdFile.tokenize("rob:x:1001:1001:Rob:/home/rob:/bin/sh"), layout.getSourceOffset(1), null);
+        ConnectorObject object    = SchemaUtil.toConnectorObject(ObjectClass.ACCOUNT, layout, row, selection);
+
+        Assertions.assertThat(layout.getSourceCount(selection)).isEqualTo(1);
+        Assertions.assertThat(layout.getSourceCount(layout.select(Collections.singletonList("maximumPasswordAge")))).isEqualTo(2);
+        Assertions.assertThat(layout.getSourceCount(null)).isEqualTo(2);
+
+        Assertions.assertThat(object.getName().getNameValue()).isEqualTo("rob");
+        Assertions.assertThat(object.getAttributeByName("uid").getValue()).containsExactly("1001");
+        Assertions.assertThat(object.getAttributeByName("homeDirectory")).isNull();
+    }
+
+    @Test
+    public void testDecoderPlan() {
+        FieldLayout     layout    = FieldLayout.GROUP;
+        boolean[]       selection = layout.select(Collections.singletonList("members"));
+        ConnectorObject object    = layout.getDecoder(selection).decode(ObjectClass.GROUP, PasswdFile.tokenize("wheel:*:0: root , ,alice"));
+
+        Assertions.assertThat(layout.getDecoder(selection)).isSameAs(layout.getDecoder(selection.clone()));
+        Assertions.assertThat(layout.getDecoder(null)).isSameAs(layout.getDecoder(null));
+
+        Assertions.assertThat(object.getUid().getUidValue()).isEqualTo("wheel");
+        Assertions.assertThat(object.getAttributeByName("members").getValue()).containsExactly("root", "alice");
+        Assertions.assertThat(object.getAttributeByName("gid")).isNull();
+    }
 }
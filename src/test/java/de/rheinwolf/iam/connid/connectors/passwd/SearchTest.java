@@ -5,16 +5,26 @@ import de.rheinwolf.iam.connid.connectors.passwd.init.ConnectorFactory;
 import org.assertj.core.api.Assertions;
 
 import org.identityconnectors.common.logging.Log;
+import org.identityconnectors.framework.common.objects.Attribute;
+import org.identityconnectors.framework.common.objects.ConnectorObject;
+import org.identityconnectors.framework.common.objects.Name;
 import org.identityconnectors.framework.common.objects.ObjectClass;
 import org.identityconnectors.framework.common.objects.OperationOptions;
 import org.identityconnectors.framework.common.objects.ResultsHandler;
+import org.identityconnectors.framework.common.objects.SearchResult;
+import org.identityconnectors.framework.common.objects.filter.Filter;
+import org.identityconnectors.framework.common.objects.filter.FilterBuilder;
+import org.identityconnectors.framework.spi.SearchResultsHandler;
 
 import org.mockito.ArgumentMatchers;
 import org.mockito.Mockito;
 
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Testing the search operations.
@@ -32,12 +42,191 @@ public class SearchTest {
         testObjectClassSearch(ObjectClass.GROUP_NAME);
     }
 
+    @Test
+    public void testSearchStopsWhenHandlerReturnsFalse() {
+        PasswdConnector  connector        = ConnectorFactory.newInstance();
+        ResultsHandler   resultsHandler   = Mockito.mock(ResultsHandler.class);
+        ObjectClass      objectClass      = new ObjectClass(ObjectClass.ACCOUNT_NAME);
+        OperationOptions operationOptions = new OperationOptions(new HashMap<>(0));
+
+        Mockito.when(resultsHandler.handle(ArgumentMatchers.any())).thenReturn(false);
+
+        connector.executeQuery(objectClass, null, resultsHandler, operationOptions);
+
+        Mockito.verify(resultsHandler, Mockito.times(1)).handle(ArgumentMatchers.any());
+    }
+
+    @Test
+    public void testRepeatedSearchReturnsSameObjects() {
+        PasswdConnector       connector        = ConnectorFactory.newInstance();
+        ObjectClass           objectClass      = new ObjectClass(ObjectClass.ACCOUNT_NAME);
+        OperationOptions      operationOptions = new OperationOptions(new HashMap<>(0));
+        List<ConnectorObject> firstResults     = new ArrayList<>();
+        List<ConnectorObject> secondResults    = new ArrayList<>();
+
+        // The second search is served from the snapshot, as the database did not change
+        connector.executeQuery(objectClass, null, firstResults::add, operationOptions);
+        connector.executeQuery(objectClass, null, secondResults::add, operationOptions);
+
+        Assertions.assertThat(firstResults).isNotEmpty();
+        Assertions.assertThat(secondResults).isEqualTo(firstResults);
+    }
+
+    @Test
+    public void testPagedSearchReturnsAllObjects() {
+        PasswdConnector       connector     = ConnectorFactory.newInstance();
+        ObjectClass           objectClass   = new ObjectClass(ObjectClass.ACCOUNT_NAME);
+        List<ConnectorObject> allResults    = new ArrayList<>();
+        List<ConnectorObject> pagedResults  = new ArrayList<>();
+        List<SearchResult>    searchResults = new ArrayList<>();
+        String                cookie        = null;
+
+        connector.executeQuery(objectClass, null, allResults::add, new OperationOptions(new HashMap<>(0)));
+
+        do {
+            Map<String, Object> options = new HashMap<>();
+
+            options.put(OperationOptions.OP_PAGE_SIZE, 5);
+
+            if (cookie != null)
+                options.put(OperationOptions.OP_PAGED_RESULTS_COOKIE, cookie);
+
+            connector.executeQuery(objectClass, null, new SearchResultsHandler() {
+                @Override
+                public boolean handle(ConnectorObject connectorObject) {
+                    return pagedResults.add(connectorObject);
+                }
+
+                @Override
+                public void handleResult(SearchResult result) {
+                    searchResults.add(result);
+                }
+            }, new OperationOptions(options));
+
+            cookie = searchResults.get(searchResults.size() - 1).getPagedResultsCookie();
+        } while (cookie != null);
+
+        Assertions.assertThat(searchResults).hasSize((allResults.size() + 4) / 5);
+        Assertions.assertThat(searchResults.get(0).getTotalPagedResults()).isEqualTo(allResults.size());
+        Assertions.assertThat(pagedResults).isEqualTo(allResults);
+    }
+
+    @Test
+    public void testOffsetPagedSearchReturnsAllObjects() {
+        PasswdConnector       connector     = ConnectorFactory.newInstance();
+        ObjectClass           objectClass   = new ObjectClass(ObjectClass.ACCOUNT_NAME);
+        List<ConnectorObject> allResults    = new ArrayList<>();
+        List<ConnectorObject> pagedResults  = new ArrayList<>();
+        List<SearchResult>    searchResults = new ArrayList<>();
+
+        connector.executeQuery(objectClass, null, allResults::add, new OperationOptions(new HashMap<>(0)));
+
+        for (int offset = 1; offset <= allResults.size(); offset += 5) {
+            Map<String, Object> options = new HashMap<>();
+
+            options.put(OperationOptions.OP_PAGE_SIZE, 5);
+            options.put(OperationOptions.OP_PAGED_RESULTS_OFFSET, offset);
+
+            connector.executeQuery(objectClass, null, new SearchResultsHandler() {
+                @Override
+                public boolean handle(ConnectorObject connectorObject) {
+                    return pagedResults.add(connectorObject);
+                }
+
+                @Override
+                public void handleResult(SearchResult result) {
+                    searchResults.add(result);
+                }
+            }, new OperationOptions(options));
+
+            Assertions.assertThat(searchResults.get(searchResults.size() - 1).getRemainingPagedResults())
+                    .isEqualTo(Math.max(allResults.size() - offset - 4, 0));
+        }
+
+        Assertions.assertThat(searchResults).hasSize((allResults.size() + 4) / 5);
+        Assertions.assertThat(pagedResults).isEqualTo(allResults);
+    }
+
+    @Test
+    public void testMembershipOnLaterPages() {
+        PasswdConnector       connector     = ConnectorFactory.newInstance();
+        ObjectClass           objectClass   = new ObjectClass(ObjectClass.ACCOUNT_NAME);
+        List<ConnectorObject> allResults    = new ArrayList<>();
+        List<ConnectorObject> pagedResults  = new ArrayList<>();
+        List<SearchResult>    searchResults = new ArrayList<>();
+        String                cookie        = null;
+
+        connector.executeQuery(objectClass, null, allResults::add, withMembership(new HashMap<>()));
+
+        // The first page does not ask for the membership, the later pages do
+        do {
+            Map<String, Object> options = new HashMap<>();
+
+            options.put(OperationOptions.OP_PAGE_SIZE, 5);
+
+            if (cookie != null)
+                options.put(OperationOptions.OP_PAGED_RESULTS_COOKIE, cookie);
+
+            connector.executeQuery(objectClass, null, new SearchResultsHandler() {
+                @Override
+                public boolean handle(ConnectorObject connectorObject) {
+                    return pagedResults.add(connectorObject);
+                }
+
+                @Override
+                public void handleResult(SearchResult result) {
+                    searchResults.add(result);
+                }
+            }, (cookie == null) ? new OperationOptions(options) : withMembership(options));
+
+            cookie = searchResults.get(searchResults.size() - 1).getPagedResultsCookie();
+        } while (cookie != null);
+
+        Assertions.assertThat(pagedResults).hasSameSizeAs(allResults);
+
+        for (int i = 5; i < pagedResults.size(); ++i) {
+            Assertions.assertThat(pagedResults.get(i).getAttributeByName("primaryGroupName"))
+                    .isEqualTo(allResults.get(i).getAttributeByName("primaryGroupName"))
+                    .isNotNull();
+            Assertions.assertThat(pagedResults.get(i).getAttributeByName("groups"))
+                    .isEqualTo(allResults.get(i).getAttributeByName("groups"));
+        }
+    }
+
+    @Test
+    public void testPrimaryGroupNameFilter() {
+        PasswdConnector       connector   = ConnectorFactory.newInstance();
+        ObjectClass           objectClass = new ObjectClass(ObjectClass.ACCOUNT_NAME);
+        List<ConnectorObject> allResults  = new ArrayList<>();
+        List<ConnectorObject> results     = new ArrayList<>();
+
+        connector.executeQuery(objectClass, null, allResults::add, withMembership(new HashMap<>()));
+
+        Attribute primaryGroupName = allResults.get(0).getAttributeByName("primaryGroupName");
+        Filter    filter           = FilterBuilder.equalTo(primaryGroupName);
+
+        for (PasswdQuery query : connector.createFilterTranslator(objectClass, withMembership(new HashMap<>())).translate(filter))
+            connector.executeQuery(objectClass, query, results::add, withMembership(new HashMap<>()));
+
+        Assertions.assertThat(results).contains(allResults.get(0));
+        Assertions.assertThat(results).allSatisfy(connectorObject ->
+                Assertions.assertThat(connectorObject.getAttributeByName("primaryGroupName")).isEqualTo(primaryGroupName));
+    }
+
+    private static OperationOptions withMembership(Map<String, Object> options) {
+        options.put(OperationOptions.OP_ATTRIBUTES_TO_GET, new String[] {Name.NAME, "groups", "primaryGroupName"});
+
+        return new OperationOptions(options);
+    }
+
     private void testObjectClassSearch(String className) {
         PasswdConnector  connector        = ConnectorFactory.newInstance();
         ResultsHandler   resultsHandler   = Mockito.mock(ResultsHandler.class);
         ObjectClass      objectClass      = new ObjectClass(className);
         OperationOptions operationOptions = new OperationOptions(new HashMap<>(0));
 
+        Mockito.when(resultsHandler.handle(ArgumentMatchers.any())).thenReturn(true);
+
         connector.executeQuery(objectClass, null, resultsHandler, operationOptions);
 
         Mockito.verify(resultsHandler, Mockito.atLeast(26)).handle(ArgumentMatchers.argThat(connectorObject -> {
@@ -0,0 +1,62 @@
+package de.rheinwolf.iam.connid.connectors.passwd;
+
+import de.rheinwolf.iam.connid.connectors.passwd.init.ConnectorFactory;
+
+import org.assertj.core.api.Assertions;
+
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
+import org.identityconnectors.framework.common.objects.ObjectClass;
+import org.identityconnectors.framework.common.objects.OperationOptions;
+import org.identityconnectors.framework.common.objects.SyncDelta;
+import org.identityconnectors.framework.common.objects.SyncDeltaType;
+import org.identityconnectors.framework.common.objects.SyncToken;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Testing the sync operations.
+ */
+public class SyncTest {
+    @Test
+    public void testSyncWithoutTokenReportsAllObjects() {
+        PasswdConnector  connector        = ConnectorFactory.newInstance();
+        ObjectClass      objectClass      = new ObjectClass(ObjectClass.ACCOUNT_NAME);
+        OperationOptions operationOptions = new OperationOptions(new HashMap<>(0));
+        List<SyncDelta>  syncDeltas       = new ArrayList<>();
+
+        connector.sync(objectClass, null, syncDeltas::add, operationOptions);
+
+        Assertions.assertThat(syncDeltas).isNotEmpty();
+        Assertions.assertThat(syncDeltas).allMatch(syncDelta -> syncDelta.getDeltaType() == SyncDeltaType.CREATE_OR_UPDATE);
+        Assertions.assertThat(syncDeltas.get(syncDeltas.size() - 1).getToken()).isEqualTo(connector.getLatestSyncToken(objectClass));
+    }
+
+    @Test
+    public void testSyncWithLatestTokenReportsNothing() {
+        PasswdConnector  connector        = ConnectorFactory.newInstance();
+        ObjectClass      objectClass      = new ObjectClass(ObjectClass.GROUP_NAME);
+        OperationOptions operationOptions = new OperationOptions(new HashMap<>(0));
+        List<SyncDelta>  syncDeltas       = new ArrayList<>();
+        SyncToken        syncToken        = connector.getLatestSyncToken(objectClass);
+
+        connector.sync(objectClass, syncToken, syncDeltas::add, operationOptions);
+
+        Assertions.assertThat(syncDeltas).isEmpty();
+    }
+
+    @Test
+    public void testSyncOfAllObjectClassesIsRejected() {
+        PasswdConnector  connector        = ConnectorFactory.newInstance();
+        OperationOptions operationOptions = new OperationOptions(new HashMap<>(0));
+
+        Assertions.assertThatThrownBy(() -> connector.sync(ObjectClass.ALL, null, syncDelta -> true, operationOptions))
+                .isInstanceOf(ConnectorException.class)
+                .hasMessageContaining(ObjectClass.ALL_NAME);
+        Assertions.assertThatThrownBy(() -> connector.getLatestSyncToken(ObjectClass.ALL))
+                .isInstanceOf(ConnectorException.class);
+    }
+}
@@ -0,0 +1,100 @@
+package de.rheinwolf.iam.connid.connectors.passwd.benchmark;
+
+import de.rheinwolf.iam.connid.connectors.passwd.connection.CommandResult;
+import de.rheinwolf.iam.connid.connectors.passwd.connection.LocalConnection;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measuring the throughput of the command execution with large outputs on
+ * stdout and stderr. The command is a shell script writing passwd-like lines
+ * to both streams, interleaved according to the stderr share.
+ *
+ * The benchmark is not part of the test run, start main() from the test classpath.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+public class CommandOutputBenchmark {
+    @Param({"10000", "200000"})
+    private int lineCount;
+
+    @Param({"0", "10", "50"})
+    private int stdErrPercent;
+
+    private final LocalConnection connection = new LocalConnection();
+
+    private Path script;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        int stdErrLines = lineCount * stdErrPercent / 100;
+        int stdOutLines = lineCount - stdErrLines;
+
+        script = Files.createTempFile("connector-passwd-benchmark-", ".sh");
+
+        Files.write(script, (
+                "awk 'BEGIN {\n"
+                        + "  for (i = 0; i < " + Math.max(stdOutLines, stdErrLines) + "; i++) {\n"
+                        + "    if (i < " + stdOutLines + ") print \"user\" i \":*:\" 1000 + i \":1000:User \" i \":/home/user\" i \":/bin/sh\"\n"
+                        + "    if (i < " + stdErrLines + ") print \"warning: line \" i > \"/dev/stderr\"\n"
+                        + "  }\n"
+                        + "}'\n"
+        ).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(script);
+    }
+
+    @Benchmark
+    public void execute(Blackhole blackhole) {
+        try (CommandResult result = connection.execute(null, "sh", script.toString())) {
+            blackhole.consume(result.expect(0).forEachStdOut(line -> {
+                blackhole.consume(line);
+                return true;
+            }));
+        }
+    }
+
+    @Benchmark
+    public void stream(Blackhole blackhole) {
+        connection.stream(null, line -> {
+            blackhole.consume(line);
+            return true;
+        }, "sh", script.toString()).expect(0);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CommandOutputBenchmark.class.getSimpleName())
+                .build()
+        ).run();
+    }
+}
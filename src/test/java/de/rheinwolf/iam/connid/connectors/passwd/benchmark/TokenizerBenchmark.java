@@ -0,0 +1,98 @@
+package de.rheinwolf.iam.connid.connectors.passwd.benchmark;
+
+import de.rheinwolf.iam.connid.connectors.passwd.file.PasswdFile;
+import de.rheinwolf.iam.connid.connectors.passwd.file.PasswdRow;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Comparing the tokenization of decoded lines with the tokenization of the
+ * raw bytes, as done for the output of a command. Each operation is a single
+ * row of which only the name is used, like a search with a name filter.
+ *
+ * Run with the GC profiler, gc.alloc.rate.norm is the allocation per row.
+ *
+ * The benchmark is not part of the test run, start main() from the test classpath.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+public class TokenizerBenchmark {
+    private static final int ROW_COUNT = 10000;
+
+    private byte[] lines;
+    private int[]  lineEnds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        lineEnds = new int[ROW_COUNT];
+
+        for (int i = 0; i < ROW_COUNT; ++i) {
+            byte[] line = ("user" + i + ":x:" + (1000 + i) + ":1000:User " + i + ",,,:/home/user" + i + ":/bin/sh").getBytes(StandardCharsets.UTF_8);
+
+            output.write(line, 0, line.length);
+            lineEnds[i] = output.size();
+        }
+
+        lines = output.toByteArray();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROW_COUNT)
+    public void decodeAndSplit(Blackhole blackhole) {
+        int start = 0;
+
+        for (int end : lineEnds) {
+            PasswdRow row = PasswdFile.tokenize(new String(lines, start, end - start, StandardCharsets.UTF_8));
+
+            blackhole.consume(row.getField(0));
+            start = end;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROW_COUNT)
+    public void tokenizeBytes(Blackhole blackhole) {
+        int start = 0;
+
+        for (int end : lineEnds) {
+            PasswdRow row = PasswdFile.tokenize(lines, start, end - start);
+
+            blackhole.consume(row.getField(0));
+            start = end;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TokenizerBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()
+        ).run();
+    }
+}
@@ -0,0 +1,198 @@
+package de.rheinwolf.iam.connid.connectors.passwd.benchmark;
+
+import de.rheinwolf.iam.connid.connectors.passwd.file.PasswdFile;
+import de.rheinwolf.iam.connid.connectors.passwd.file.PasswdRow;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Comparing the transfer profiles for a bulk read of a synthetic master.passwd.
+ * The file is encoded as it travels over the SSH channel: as is with the default
+ * profile, deflated per SSH packet with the zlib compression of the wan profile,
+ * or as gzip stream with remote compression. The benchmark measures the local
+ * side, decoding the channel data and tokenizing the rows.
+ *
+ * The network is not part of the measurement. main() prints the size on the
+ * wire and the resulting transfer time for some link speeds, which dominates
+ * on slow links and has to be weighed against the decoding time.
+ *
+ * The benchmark is not part of the test run, start main() from the test classpath.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+public class TransferBenchmark {
+    private static final String ENCODING_GZIP  = "gzip";
+    private static final String ENCODING_PLAIN = "plain";
+    private static final String ENCODING_ZLIB  = "zlib";
+
+    /**
+     * The maximum payload of an SSH packet, JSch compresses each packet on its own.
+     */
+    private static final int PACKET_SIZE = 32 * 1024;
+
+    private static final int[] LINK_SPEEDS = {10, 100, 1000};
+
+    @Param({ENCODING_PLAIN, ENCODING_ZLIB, ENCODING_GZIP})
+    private String encoding;
+
+    @Param({"10000", "200000"})
+    private int lineCount;
+
+    private byte[] wire;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        wire = encode(newFile(lineCount), encoding);
+    }
+
+    @Benchmark
+    public void receive(Blackhole blackhole) throws IOException {
+        InputStream input = new ByteArrayInputStream(wire);
+
+        if (ENCODING_GZIP.equals(encoding)) {
+            input = new GZIPInputStream(input, 64 * 1024);
+        } else if (ENCODING_ZLIB.equals(encoding)) {
+            input = new InflaterInputStream(input);
+        }
+
+        byte[] buffer = new byte[64 * 1024];
+        int    start  = 0;
+        int    end    = 0;
+        int    length;
+
+        // Splitting lines like the connection, a partial line is moved to the front
+        while ((length = input.read(buffer, end, buffer.length - end)) >= 0) {
+            end += length;
+
+            for (int i = start; i < end; ++i) {
+                if (buffer[i] == '\n') {
+                    PasswdRow row = PasswdFile.tokenize(buffer, start, i - start);
+
+                    blackhole.consume(row.getField(0));
+                    start = i + 1;
+                }
+            }
+
+            System.arraycopy(buffer, start, buffer, 0, end - start);
+            end  -= start;
+            start = 0;
+        }
+    }
+
+    /**
+     * Creating a synthetic master.passwd.
+     *
+     * @param lineCount         The number of rows.
+     *
+     * @return Returns the file content.
+     */
+    private static byte[] newFile(int lineCount) {
+        StringBuilder file = new StringBuilder();
+
+        for (int i = 0; i < lineCount; ++i) {
+            file.append("user").append(i)
+                    .append(":$6$rounds=5000$").append(Integer.toHexString(i * 0x9e3779b1)).append("$hash")
+                    .append(":").append(1000 + i)
+                    .append(":1000::0:0:User ").append(i).append(",,,")
+                    .append(":/home/user").append(i)
+                    .append(":/bin/sh\n");
+        }
+
+        return file.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Encoding a file as it is transferred over the channel.
+     *
+     * @param file              The file content.
+     * @param encoding          The encoding.
+     *
+     * @return Returns the channel data.
+     *
+     * @throws IOException      Never, the data is written to memory.
+     */
+    private static byte[] encode(byte[] file, String encoding) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        if (ENCODING_GZIP.equals(encoding)) {
+            try (GZIPOutputStream gzip = new GZIPOutputStream(output)) {
+                gzip.write(file);
+            }
+        } else if (ENCODING_ZLIB.equals(encoding)) {
+            Deflater deflater = new Deflater(6);
+            byte[]   buffer   = new byte[2 * PACKET_SIZE];
+
+            // Each packet is flushed, so it can be decompressed on arrival
+            for (int offset = 0; offset < file.length; offset += PACKET_SIZE) {
+                deflater.setInput(file, offset, Math.min(PACKET_SIZE, file.length - offset));
+
+                int length;
+
+                while ((length = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH)) > 0)
+                    output.write(buffer, 0, length);
+            }
+
+            deflater.finish();
+
+            while (!deflater.finished())
+                output.write(buffer, 0, deflater.deflate(buffer));
+
+            deflater.end();
+        } else {
+            output.write(file);
+        }
+
+        return output.toByteArray();
+    }
+
+    public static void main(String[] args) throws IOException, RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TransferBenchmark.class.getSimpleName())
+                .build()
+        ).run();
+
+        for (int lineCount : new int[] {10000, 200000}) {
+            byte[] file = newFile(lineCount);
+
+            for (String encoding : new String[] {ENCODING_PLAIN, ENCODING_ZLIB, ENCODING_GZIP}) {
+                int           size   = encode(file, encoding).length;
+                StringBuilder report = new StringBuilder(String.format("%7d rows, %-5s: %10d bytes on the wire", lineCount, encoding, size));
+
+                for (int speed : LINK_SPEEDS)
+                    report.append(String.format(", %8.1f ms at %d Mbit/s", size * 8.0 / (speed * 1000.0), speed));
+
+                System.out.println(report);
+            }
+        }
+    }
+}
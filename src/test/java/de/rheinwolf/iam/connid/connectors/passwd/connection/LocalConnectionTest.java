@@ -0,0 +1,39 @@
+package de.rheinwolf.iam.connid.connectors.passwd.connection;
+
+import org.assertj.core.api.Assertions;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Testing the command execution on the local system.
+ */
+public class LocalConnectionTest {
+    @Test(timeOut = 30000)
+    public void testLargeStdErrDoesNotStall() throws IOException {
+        Path script = Files.createTempFile("connector-passwd-test-", ".sh");
+
+        try {
+            // Far more stderr than a pipe buffer holds, written before any stdout
+            Files.write(script, (
+                    "cat\n"
+                            + "awk 'BEGIN { for (i = 0; i < 50000; i++) print \"error \" i > \"/dev/stderr\" }'\n"
+                            + "echo done\n"
+                            + "exit 3\n"
+            ).getBytes(StandardCharsets.UTF_8));
+
+            try (CommandResult result = new LocalConnection().execute("input\n".getBytes(StandardCharsets.UTF_8), "sh", script.toString())) {
+                Assertions.assertThat(result.getExitCode()).isEqualTo(3);
+                Assertions.assertThat(result.getStdOut()).containsExactly("input", "done");
+                Assertions.assertThat(result.getStdErr()).hasSize(50000);
+                Assertions.assertThat(result.getStdErr().get(49999)).isEqualTo("error 49999");
+            }
+        } finally {
+            Files.deleteIfExists(script);
+        }
+    }
+}
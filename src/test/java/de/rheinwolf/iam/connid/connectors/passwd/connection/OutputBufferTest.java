@@ -0,0 +1,63 @@
+package de.rheinwolf.iam.connid.connectors.passwd.connection;
+
+import org.assertj.core.api.Assertions;
+
+import org.testng.annotations.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Testing the buffering of command output.
+ */
+public class OutputBufferTest {
+    @Test
+    public void testInMemory() {
+        try (OutputBuffer buffer = new OutputBuffer()) {
+            buffer.handle("prompt");
+            buffer.handle("root:*:0:0");
+            buffer.removeFirst();
+
+            Assertions.assertThat(buffer.getSpillFile()).isNull();
+            Assertions.assertThat(buffer.size()).isEqualTo(1);
+            Assertions.assertThat(buffer.toList()).containsExactly("root:*:0:0");
+        }
+    }
+
+    @Test
+    public void testSpillToFile() {
+        String line  = String.format("%01000d", 0);
+        int    count = OutputBuffer.MEMORY_THRESHOLD / line.length() + 100;
+        Path   spillFile;
+
+        try (OutputBuffer buffer = new OutputBuffer()) {
+            buffer.handle("prompt");
+
+            for (int i = 0; i < count; ++i)
+                buffer.handle(i + line);
+
+            buffer.removeFirst();
+
+            spillFile = buffer.getSpillFile();
+
+            Assertions.assertThat(spillFile).isNotNull();
+            Assertions.assertThat(Files.exists(spillFile)).isTrue();
+            Assertions.assertThat(buffer.size()).isEqualTo(count);
+
+            List<String> lines = new ArrayList<>();
+
+            Assertions.assertThat(buffer.forEach(lines::add)).isTrue();
+            Assertions.assertThat(lines).hasSize(count);
+            Assertions.assertThat(lines.get(0)).isEqualTo("0" + line);
+            Assertions.assertThat(lines.get(count - 1)).isEqualTo((count - 1) + line);
+
+            // Stopping early, and reading again from the start
+            Assertions.assertThat(buffer.forEach(value -> false)).isFalse();
+            Assertions.assertThat(buffer.toList()).hasSize(count);
+        }
+
+        Assertions.assertThat(Files.exists(spillFile)).isFalse();
+    }
+}
@@ -0,0 +1,138 @@
+package de.rheinwolf.iam.connid.connectors.passwd.connection;
+
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.Session;
+
+import org.assertj.core.api.Assertions;
+
+import org.identityconnectors.framework.common.exceptions.ConnectionBrokenException;
+import org.identityconnectors.framework.common.exceptions.ConnectionFailedException;
+
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Testing the persistent shell against a local /bin/sh.
+ */
+public class PersistentShellTest {
+    @Test(timeOut = 30000)
+    public void testSentinelFraming() throws Exception {
+        List<Process> processes = new ArrayList<>();
+
+        try (PersistentShell shell = PersistentShell.open(newSession(processes, "/bin/sh"), "exec /bin/sh", false, null)) {
+            try (CommandResult result = execute(shell, null, "sh", "-c", "printf 'first\\nsecond'")) {
+                // Output without a final line break still ends before the sentinel
+                Assertions.assertThat(result.getExitCode()).isEqualTo(0);
+                Assertions.assertThat(result.getStdOut()).containsExactly("first", "second");
+                Assertions.assertThat(result.getStdErr()).isEmpty();
+            }
+
+            try (CommandResult result = execute(shell, "line 1\nline 2".getBytes(StandardCharsets.UTF_8), "cat")) {
+                Assertions.assertThat(result.getExitCode()).isEqualTo(0);
+                Assertions.assertThat(result.getStdOut()).containsExactly("line 1", "line 2");
+            }
+
+            try (CommandResult result = execute(shell, null, "echo", "__connector_passwd_")) {
+                Assertions.assertThat(result.getStdOut()).containsExactly("__connector_passwd_");
+            }
+        }
+
+        Assertions.assertThat(processes).hasSize(1);
+    }
+
+    @Test(timeOut = 30000)
+    public void testExitCodeAndStdErr() throws Exception {
+        try (PersistentShell shell = PersistentShell.open(newSession(new ArrayList<>(), "/bin/sh"), "exec /bin/sh", false, null)) {
+            try (CommandResult result = execute(shell, null, "sh", "-c", "echo out; echo err >&2; exit 3")) {
+                Assertions.assertThat(result.getExitCode()).isEqualTo(3);
+                Assertions.assertThat(result.getStdOut()).containsExactly("out");
+                Assertions.assertThat(result.getStdErr()).containsExactly("err");
+            }
+
+            // The shell survives a failed command
+            try (CommandResult result = execute(shell, null, "true")) {
+                Assertions.assertThat(result.getExitCode()).isEqualTo(0);
+                Assertions.assertThat(result.getStdErr()).isEmpty();
+            }
+        }
+    }
+
+    @Test(timeOut = 30000)
+    public void testReopenAfterBreak() throws Exception {
+        List<Process>   processes = new ArrayList<>();
+        Session         session   = newSession(processes, "/bin/sh");
+        PersistentShell shell     = PersistentShell.open(session, "exec /bin/sh", false, null);
+
+        Assertions.assertThatThrownBy(() -> execute(shell, null, "exit", "0")).isInstanceOf(ConnectionBrokenException.class);
+        Assertions.assertThat(shell.isOpen()).isFalse();
+        Assertions.assertThatThrownBy(() -> execute(shell, null, "true")).isInstanceOf(ConnectionBrokenException.class);
+
+        try (PersistentShell reopened = PersistentShell.open(session, "exec /bin/sh", false, null)) {
+            try (CommandResult result = execute(reopened, null, "echo", "again")) {
+                Assertions.assertThat(result.getExitCode()).isEqualTo(0);
+                Assertions.assertThat(result.getStdOut()).containsExactly("again");
+            }
+        }
+
+        Assertions.assertThat(processes).hasSize(2);
+    }
+
+    @Test(timeOut = 30000)
+    public void testPasswordBeforeStart() throws Exception {
+        // Stands in for sudo -S, which reads the password from stdin before starting the shell
+        String sudo = "read -r p && [ \"$p\" = secret ] && exec /bin/sh";
+
+        try (PersistentShell shell = PersistentShell.open(newSession(new ArrayList<>(), sudo), "exec sudo -k -S -p '' /bin/sh", false, "secret".getBytes(StandardCharsets.UTF_8))) {
+            try (CommandResult result = execute(shell, null, "echo", "privileged")) {
+                // The password never ends up as input of the shell
+                Assertions.assertThat(result.getExitCode()).isEqualTo(0);
+                Assertions.assertThat(result.getStdOut()).containsExactly("privileged");
+            }
+        }
+
+        Assertions.assertThatThrownBy(() -> PersistentShell.open(newSession(new ArrayList<>(), sudo), "exec sudo -k -S -p '' /bin/sh", false, "wrong".getBytes(StandardCharsets.UTF_8)))
+                .isInstanceOf(ConnectionFailedException.class);
+    }
+
+    private static CommandResult execute(PersistentShell shell, byte[] stdin, String... args) {
+        CommandResult result = new CommandResult();
+
+        return shell.execute(stdin, result, result::appendStdOut, args);
+    }
+
+    private static Session newSession(List<Process> processes, String command) throws Exception {
+        Session session = Mockito.mock(Session.class);
+
+        Mockito.when(session.openChannel("exec")).thenAnswer(invocation -> newChannel(processes, command));
+
+        return session;
+    }
+
+    private static ChannelExec newChannel(List<Process> processes, String command) throws IOException {
+        Process     process = new ProcessBuilder("/bin/sh", "-c", command).start();
+        ChannelExec channel = Mockito.mock(ChannelExec.class);
+
+        processes.add(process);
+
+        // The channel command is ignored, the local command stands in for it
+        Mockito.when(channel.getInputStream()).thenReturn(process.getInputStream());
+        Mockito.when(channel.getErrStream()).thenReturn(process.getErrorStream());
+        Mockito.when(channel.getOutputStream()).thenReturn(process.getOutputStream());
+        Mockito.when(channel.isClosed()).thenAnswer(invocation -> !process.isAlive());
+        Mockito.when(channel.isConnected()).thenAnswer(invocation -> process.isAlive());
+        Mockito.doAnswer(invocation -> {
+            process.destroy();
+            return null;
+        }).when(channel).disconnect();
+        Mockito.doNothing().when(channel).connect(ArgumentMatchers.anyInt());
+
+        return channel;
+    }
+}
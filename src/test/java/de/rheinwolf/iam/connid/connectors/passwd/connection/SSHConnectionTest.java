@@ -0,0 +1,108 @@
+package de.rheinwolf.iam.connid.connectors.passwd.connection;
+
+import de.rheinwolf.iam.connid.connectors.passwd.PasswdConfiguration;
+
+import org.assertj.core.api.Assertions;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Testing the command lines and reconnect delays of SSH connections.
+ */
+public class SSHConnectionTest {
+    @Test(timeOut = 30000)
+    public void testCompressedOutput() throws IOException, InterruptedException {
+        String  command = SSHConnection.withCompressedOutput("cat; printf 'root:*:0:0\\n'; exit 3");
+        Process process = new ProcessBuilder("sh", "-c", command).start();
+
+        try (OutputStream stdIn = process.getOutputStream()) {
+            stdIn.write("user:*:1000:1000\n".getBytes(StandardCharsets.UTF_8));
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        try (InputStream stdOut = new GZIPInputStream(process.getInputStream())) {
+            byte[] buffer = new byte[4096];
+            int    length;
+
+            while ((length = stdOut.read(buffer)) >= 0)
+                output.write(buffer, 0, length);
+        }
+
+        Assertions.assertThat(process.waitFor()).isEqualTo(3);
+        Assertions.assertThat(new String(output.toByteArray(), StandardCharsets.UTF_8)).isEqualTo("user:*:1000:1000\nroot:*:0:0\n");
+    }
+
+    @Test(timeOut = 30000)
+    public void testCompressedOutputWithoutGzip() throws IOException, InterruptedException {
+        Path bin = Files.createTempDirectory("bin");
+
+        try {
+            Files.createSymbolicLink(bin.resolve("sh"), Paths.get("/bin/sh"));
+            Files.createSymbolicLink(bin.resolve("cat"), Paths.get("/bin/cat"));
+
+            ProcessBuilder builder = new ProcessBuilder("sh", "-c", SSHConnection.withCompressedOutput("cat /etc/passwd"));
+
+            builder.environment().put("PATH", bin.toString());
+
+            Process process = builder.start();
+
+            process.getOutputStream().close();
+
+            // Instead of a gzip header, the error output reports the missing gzip, the exit code depends on timing
+            Assertions.assertThat(readAll(process.getInputStream())).isEmpty();
+            Assertions.assertThat(new String(readAll(process.getErrorStream()), StandardCharsets.UTF_8)).contains("gzip");
+
+            process.waitFor();
+        } finally {
+            Files.deleteIfExists(bin.resolve("sh"));
+            Files.deleteIfExists(bin.resolve("cat"));
+            Files.delete(bin);
+        }
+    }
+
+    @Test
+    public void testShellCommand() {
+        Assertions.assertThat(SSHConnection.getShellCommand(null, true)).isEqualTo("exec /bin/sh");
+
+        // Without a password, the become method must not prompt
+        Assertions.assertThat(SSHConnection.getShellCommand(PasswdConfiguration.BECOME_METHOD_SUDO, true)).isEqualTo("exec sudo -n /bin/sh");
+        Assertions.assertThat(SSHConnection.getShellCommand(PasswdConfiguration.BECOME_METHOD_DOAS, true)).isEqualTo("exec doas -n /bin/sh");
+
+        // sudo reads the password from stdin without a prompt, doas from the terminal
+        Assertions.assertThat(SSHConnection.getShellCommand(PasswdConfiguration.BECOME_METHOD_SUDO, false)).isEqualTo("exec sudo -k -S -p '' /bin/sh");
+        Assertions.assertThat(SSHConnection.getShellCommand(PasswdConfiguration.BECOME_METHOD_DOAS, false)).isEqualTo("exec doas /bin/sh");
+    }
+
+    @Test
+    public void testBackoffDelay() {
+        for (int i = 0; i < 1000; ++i) {
+            Assertions.assertThat(SSHConnection.getBackoffDelay(1)).isBetween(125L, 250L);
+            Assertions.assertThat(SSHConnection.getBackoffDelay(2)).isBetween(250L, 500L);
+            Assertions.assertThat(SSHConnection.getBackoffDelay(3)).isBetween(500L, 1000L);
+            Assertions.assertThat(SSHConnection.getBackoffDelay(6)).isBetween(4000L, 8000L);
+            Assertions.assertThat(SSHConnection.getBackoffDelay(100)).isBetween(4000L, 8000L);
+        }
+    }
+
+    private static byte[] readAll(InputStream input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[]                buffer = new byte[4096];
+        int                   length;
+
+        while ((length = input.read(buffer)) >= 0)
+            output.write(buffer, 0, length);
+
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,206 @@
+package de.rheinwolf.iam.connid.connectors.passwd.connection;
+
+import com.jcraft.jsch.HostKeyRepository;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+
+import de.rheinwolf.iam.connid.connectors.passwd.PasswdConfiguration;
+
+import org.assertj.core.api.Assertions;
+
+import org.identityconnectors.common.security.GuardedString;
+import org.identityconnectors.framework.common.exceptions.ConnectionBrokenException;
+
+import org.mockito.Mockito;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Testing the keys and the leasing of the shared SSH sessions.
+ */
+public class SessionPoolTest {
+    @Test
+    public void testKey() {
+        String key = SessionPool.getKey(newConfiguration("root", "secret"));
+
+        Assertions.assertThat(key).startsWith("root@example.org:22#");
+        Assertions.assertThat(key).doesNotContain("secret");
+        Assertions.assertThat(SessionPool.getKey(newConfiguration("root", "secret"))).isEqualTo(key);
+        Assertions.assertThat(SessionPool.getKey(newConfiguration("root", "other"))).isNotEqualTo(key);
+        Assertions.assertThat(SessionPool.getKey(newConfiguration("admin", "secret"))).isNotEqualTo(key);
+    }
+
+    @Test
+    public void testPinnedHostKey() {
+        String              pinned        = "AAAAC3NzaC1lZDI1NTE5AAAAIOMqqnkVzrm0SdG6UOoqKLsabgH5C9okWi0dh2l9GKJl";
+        String              other         = "AAAAC3NzaC1lZDI1NTE5AAAAIFmsm5bsWIyK2Ibv0/kIYhFkHQAjXFzHH4SpoWd/jS3v";
+        PasswdConfiguration configuration = newConfiguration("root", "secret");
+
+        configuration.setHostKey("ssh-ed25519 " + pinned);
+
+        // The authentication of other users checks the same host key as the pooled sessions
+        HostKeyRepository repository = SessionPool.newJSch(configuration).getHostKeyRepository();
+
+        Assertions.assertThat(repository.check("example.org", Base64.getDecoder().decode(pinned))).isEqualTo(HostKeyRepository.OK);
+        Assertions.assertThat(repository.check("example.org", Base64.getDecoder().decode(other))).isEqualTo(HostKeyRepository.CHANGED);
+    }
+
+    @Test
+    public void testLeaseSharesSessions() throws JSchException {
+        List<Session>    connected = new ArrayList<>();
+        SessionPool.Host host      = newHost(2, 2, connected);
+
+        SessionPool.PooledSession first  = host.lease();
+        SessionPool.PooledSession second = host.lease();
+        SessionPool.PooledSession third  = host.lease();
+
+        Assertions.assertThat(second).isSameAs(first);
+        Assertions.assertThat(third).isNotSameAs(first);
+        Assertions.assertThat(connected).hasSize(2);
+        Assertions.assertThat(first.getAvailableChannels()).isEqualTo(0);
+
+        host.release(second);
+
+        Assertions.assertThat(host.lease()).isSameAs(first);
+        Assertions.assertThat(connected).hasSize(2);
+    }
+
+    @Test(timeOut = 30000)
+    public void testLeaseWaitsAtCapacity() throws Exception {
+        SessionPool.Host          host     = newHost(1, 1, new ArrayList<>());
+        SessionPool.PooledSession session  = host.lease();
+        ExecutorService           executor = Executors.newSingleThreadExecutor();
+
+        try {
+            Future<SessionPool.PooledSession> waiting = executor.submit(host::lease);
+
+            Assertions.assertThatThrownBy(() -> waiting.get(200, TimeUnit.MILLISECONDS)).isInstanceOf(TimeoutException.class);
+
+            host.release(session);
+
+            Assertions.assertThat(waiting.get(10, TimeUnit.SECONDS)).isSameAs(session);
+            Assertions.assertThat(host.size()).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(timeOut = 30000)
+    public void testLeaseTimesOut() throws JSchException {
+        PasswdConfiguration configuration = newConfiguration("root", "secret");
+
+        configuration.setMaxSessions(1);
+        configuration.setMaxConnections(1);
+
+        SessionPool.Host          host    = new SessionPool.Host("test", configuration, SessionPoolTest::newSession, 200);
+        SessionPool.PooledSession session = host.lease();
+
+        // A persistent shell holds the only channel, a second lease must not block forever
+        Assertions.assertThatThrownBy(host::lease).isInstanceOf(ConnectionBrokenException.class);
+
+        host.release(session);
+
+        Assertions.assertThat(host.lease()).isSameAs(session);
+    }
+
+    @Test
+    public void testExpire() throws JSchException {
+        List<Session>             connected = new ArrayList<>();
+        SessionPool.Host          host      = newHost(1, 2, connected);
+        SessionPool.PooledSession idle      = host.lease();
+        SessionPool.PooledSession busy      = host.lease();
+        long                      later     = System.currentTimeMillis() + 60000;
+
+        host.release(idle);
+
+        // Sessions with open channels are never expired
+        Assertions.assertThat(host.expire(later)).isFalse();
+        Assertions.assertThat(host.size()).isEqualTo(1);
+        Mockito.verify(idle.getSession()).disconnect();
+        Mockito.verify(busy.getSession(), Mockito.never()).disconnect();
+
+        host.release(busy);
+
+        Assertions.assertThat(host.expire(later)).isTrue();
+        Assertions.assertThat(host.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void testLeaseReconnects() throws JSchException {
+        List<Session>             connected = new ArrayList<>();
+        SessionPool.Host          host      = newHost(1, 1, connected);
+        SessionPool.PooledSession session   = host.lease();
+
+        host.release(session);
+        Mockito.when(session.getSession().isConnected()).thenReturn(false);
+
+        Assertions.assertThat(host.lease()).isNotSameAs(session);
+        Assertions.assertThat(connected).hasSize(2);
+        Assertions.assertThat(host.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void testFailedConnectReleasesSlot() throws JSchException {
+        PasswdConfiguration configuration = newConfiguration("root", "secret");
+        boolean[]           failed        = {false};
+
+        configuration.setMaxConnections(1);
+
+        SessionPool.Host host = new SessionPool.Host("test", configuration, () -> {
+            if (!failed[0]) {
+                failed[0] = true;
+                throw new JSchException("Connection refused");
+            }
+
+            return newSession();
+        }, SessionPool.LEASE_TIMEOUT);
+
+        Assertions.assertThatThrownBy(host::lease).isInstanceOf(JSchException.class);
+        Assertions.assertThat(host.lease()).isNotNull();
+        Assertions.assertThat(host.size()).isEqualTo(1);
+    }
+
+    private static SessionPool.Host newHost(int maxSessions, int maxConnections, List<Session> connected) {
+        PasswdConfiguration configuration = newConfiguration("root", "secret");
+
+        configuration.setMaxSessions(maxSessions);
+        configuration.setMaxConnections(maxConnections);
+        configuration.setConnectionIdleTimeout(1000);
+
+        return new SessionPool.Host("test", configuration, () -> {
+            Session session = newSession();
+
+            connected.add(session);
+
+            return session;
+        }, SessionPool.LEASE_TIMEOUT);
+    }
+
+    private static Session newSession() {
+        Session session = Mockito.mock(Session.class);
+
+        Mockito.when(session.isConnected()).thenReturn(true);
+
+        return session;
+    }
+
+    private static PasswdConfiguration newConfiguration(String userName, String password) {
+        PasswdConfiguration configuration = new PasswdConfiguration();
+
+        configuration.setConnectionType(PasswdConfiguration.CONNECTION_TYPE_SSH);
+        configuration.setHostName("example.org");
+        configuration.setUserName(userName);
+        configuration.setPassword(new GuardedString(password.toCharArray()));
+
+        return configuration;
+    }
+}
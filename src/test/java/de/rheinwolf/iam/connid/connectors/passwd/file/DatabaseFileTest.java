@@ -0,0 +1,40 @@
+package de.rheinwolf.iam.connid.connectors.passwd.file;
+
+import org.assertj.core.api.Assertions;
+
+import org.testng.annotations.Test;
+
+/**
+ * Testing the in-memory editing of database files.
+ */
+public class DatabaseFileTest {
+    @Test
+    public void testEditsKeepCommentsAndOrder() {
+        DatabaseFile databaseFile = new DatabaseFile("/etc/group", 4);
+
+        databaseFile.addLine("# comment");
+        databaseFile.addLine("wheel:x:0:root");
+        databaseFile.addLine("users:x:100");
+        databaseFile.addLine("staff:x:50:alice,bob");
+
+        // Missing trailing fields are padded
+        Assertions.assertThat(databaseFile.get("users")).containsExactly("users", "x", "100", "");
+
+        databaseFile.set("users", new String[]{"people", "x", "100", "alice"});
+        databaseFile.remove("wheel");
+        databaseFile.add(new String[]{"devs", "x", "2000", ""});
+        databaseFile.replaceAll(fields -> {
+            fields[3] = fields[3].replace("alice", "alicia");
+            return fields;
+        });
+
+        Assertions.assertThat(databaseFile.isChanged()).isTrue();
+        Assertions.assertThat(databaseFile.contains("users")).isFalse();
+        Assertions.assertThat(databaseFile.getLines()).containsExactly(
+                "# comment",
+                "people:x:100:alicia",
+                "staff:x:50:alicia,bob",
+                "devs:x:2000:"
+        );
+    }
+}
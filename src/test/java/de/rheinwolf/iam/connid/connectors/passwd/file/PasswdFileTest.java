@@ -0,0 +1,41 @@
+package de.rheinwolf.iam.connid.connectors.passwd.file;
+
+import org.assertj.core.api.Assertions;
+
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Testing the tokenization of passwd rows.
+ */
+public class PasswdFileTest {
+    @Test
+    public void testByteTokenizerMatchesStringTokenizer() {
+        String[] lines = {
+                "root:x:0:0:root:/root:/bin/bash",
+                "nogroup:*:65533:",
+                ":x::",
+                "jürgen:x:1001:1001:Jürgen Müller,,,:/home/jürgen:",
+                "  # comment",
+                " ",
+                ":::"
+        };
+
+        for (String line : lines) {
+            byte[]    bytes     = ("\n" + line + "\n").getBytes(StandardCharsets.UTF_8);
+            PasswdRow expected = PasswdFile.tokenize(line);
+            PasswdRow actual   = PasswdFile.tokenize(bytes, 1, bytes.length - 2);
+
+            if (expected == null) {
+                Assertions.assertThat(actual).as(line).isNull();
+                continue;
+            }
+
+            Assertions.assertThat(actual.getFieldCount()).as(line).isEqualTo(expected.getFieldCount());
+
+            for (int i = 0; i <= expected.getFieldCount(); ++i)
+                Assertions.assertThat(actual.getField(i)).as(line).isEqualTo(expected.getField(i));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package de.rheinwolf.iam.connid.connectors.passwd.method;
+
+import de.rheinwolf.iam.connid.connectors.passwd.PasswdConfiguration;
+import de.rheinwolf.iam.connid.connectors.passwd.connection.CommandResult;
+import de.rheinwolf.iam.connid.connectors.passwd.connection.Connection;
+
+import org.assertj.core.api.Assertions;
+
+import org.identityconnectors.framework.common.exceptions.ConnectionFailedException;
+
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+/**
+ * Testing the detection of the target system capabilities.
+ */
+public class SystemProbeTest {
+    @Test
+    public void testLinux() {
+        SystemProbe probe = probe(
+                "os=Linux",
+                "argMax=2097152",
+                "gnuStat=true",
+                "tool.chpasswd=/usr/sbin/chpasswd",
+                "tool.pw=",
+                "tool.sudo=/usr/bin/sudo",
+                "tool.useradd=/usr/sbin/useradd",
+                "file./etc/passwd=1700000000:1234:42",
+                "file./etc/shadow=1700000000:987:43"
+        );
+
+        Assertions.assertThat(probe.getMethod()).isEqualTo("useradd:linux");
+        Assertions.assertThat(probe.getArgMax()).isEqualTo(2097152);
+        Assertions.assertThat(probe.getOperatingSystem()).isEqualTo("Linux");
+        Assertions.assertThat(probe.getToolPath("sudo")).isEqualTo("/usr/bin/sudo");
+        Assertions.assertThat(probe.hasGnuStat()).isTrue();
+        Assertions.assertThat(probe.hasTool("pw")).isFalse();
+        Assertions.assertThatThrownBy(() -> probe.requireTool("doas")).isInstanceOf(ConnectionFailedException.class);
+    }
+
+    @Test
+    public void testBsd() {
+        SystemProbe freeBsd = probe("os=FreeBSD", "argMax=", "tool.pw=/usr/sbin/pw", "tool.useradd=", "file./etc/master.passwd=1700000000:1234:42");
+        SystemProbe openBsd = probe("os=OpenBSD", "tool.useradd=/usr/sbin/useradd", "file./etc/master.passwd=1700000000:1234:42");
+        SystemProbe unknown = probe("os=Darwin", "tool.pw=", "tool.useradd=");
+
+        Assertions.assertThat(freeBsd.getMethod()).isEqualTo("pw");
+        Assertions.assertThat(freeBsd.getArgMax()).isEqualTo(-1);
+        Assertions.assertThat(openBsd.getMethod()).isEqualTo("useradd:bsd");
+        Assertions.assertThatThrownBy(unknown::getMethod).isInstanceOf(ConnectionFailedException.class);
+    }
+
+    @Test
+    public void testGzipForRemoteCompression() {
+        PasswdConfiguration configuration = new PasswdConfiguration();
+
+        configuration.setMethod(PasswdConfiguration.METHOD_AUTO);
+        configuration.setBecomeMethod(PasswdConfiguration.BECOME_METHOD_NONE);
+        configuration.setRemoteCompression(PasswdConfiguration.REMOTE_COMPRESSION_GZIP);
+
+        Connection connection = mockConnection("os=Linux", "tool.gzip=", "tool.useradd=/usr/sbin/useradd", "file./etc/shadow=1700000000:987:43");
+
+        // Every compressed read would fail, so the connector does not start
+        Assertions.assertThat(probe("tool.gzip=/bin/gzip").hasTool("gzip")).isTrue();
+        Assertions.assertThatThrownBy(() -> MethodFactory.newInstance(connection, configuration))
+                .isInstanceOf(ConnectionFailedException.class)
+                .hasMessageContaining("gzip");
+    }
+
+    private static SystemProbe probe(String... lines) {
+        return SystemProbe.run(mockConnection(lines));
+    }
+
+    private static Connection mockConnection(String... lines) {
+        Connection    connection = Mockito.mock(Connection.class);
+        CommandResult result     = Mockito.mock(CommandResult.class);
+
+        Mockito.when(result.getStdOut()).thenReturn(Arrays.asList(lines));
+        Mockito.when(connection.execute(ArgumentMatchers.any(byte[].class), ArgumentMatchers.<String>any())).thenReturn(result);
+
+        return connection;
+    }
+}
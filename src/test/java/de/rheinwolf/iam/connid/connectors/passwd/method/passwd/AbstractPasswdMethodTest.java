@@ -0,0 +1,66 @@
+package de.rheinwolf.iam.connid.connectors.passwd.method.passwd;
+
+import de.rheinwolf.iam.connid.connectors.passwd.file.PasswdFile;
+import de.rheinwolf.iam.connid.connectors.passwd.file.PasswdRow;
+
+import org.assertj.core.api.Assertions;
+
+import org.identityconnectors.framework.common.exceptions.ConnectionBrokenException;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Testing the retries of reads on broken connections.
+ */
+public class AbstractPasswdMethodTest {
+    @Test
+    public void testRetryBeforeFirstRow() {
+        List<PasswdRow> rows     = new ArrayList<>();
+        int[]           attempts = {0};
+
+        boolean result = AbstractPasswdMethod.retryRead(rows::add, handler -> {
+            if (++attempts[0] < AbstractPasswdMethod.READ_ATTEMPTS)
+                throw new ConnectionBrokenException("Channel closed");
+
+            handler.test(PasswdFile.tokenize("root:x:0:0::/root:/bin/sh"));
+
+            return true;
+        });
+
+        Assertions.assertThat(result).isTrue();
+        Assertions.assertThat(attempts[0]).isEqualTo(AbstractPasswdMethod.READ_ATTEMPTS);
+        Assertions.assertThat(rows).hasSize(1);
+    }
+
+    @Test
+    public void testNoRetryAfterFirstRow() {
+        List<PasswdRow> rows     = new ArrayList<>();
+        int[]           attempts = {0};
+
+        Assertions.assertThatThrownBy(() -> AbstractPasswdMethod.retryRead(rows::add, handler -> {
+            ++attempts[0];
+            handler.test(PasswdFile.tokenize("root:x:0:0::/root:/bin/sh"));
+
+            throw new ConnectionBrokenException("Channel closed");
+        })).isInstanceOf(ConnectionBrokenException.class);
+
+        Assertions.assertThat(attempts[0]).isEqualTo(1);
+        Assertions.assertThat(rows).hasSize(1);
+    }
+
+    @Test
+    public void testAttemptsExhausted() {
+        int[] attempts = {0};
+
+        Assertions.assertThatThrownBy(() -> AbstractPasswdMethod.retryRead(row -> true, handler -> {
+            ++attempts[0];
+
+            throw new ConnectionBrokenException("Channel closed");
+        })).isInstanceOf(ConnectionBrokenException.class);
+
+        Assertions.assertThat(attempts[0]).isEqualTo(AbstractPasswdMethod.READ_ATTEMPTS);
+    }
+}
@@ -0,0 +1,35 @@
+package de.rheinwolf.iam.connid.connectors.passwd.method.passwd;
+
+import org.assertj.core.api.Assertions;
+
+import org.testng.annotations.Test;
+
+/**
+ * Testing the adaptive sizing of batches.
+ */
+public class BatchSizerTest {
+    @Test
+    public void testSizeFollowsLatencyTarget() {
+        BatchSizer batchSizer = new BatchSizer(1024 * 1024, 1000);
+
+        // Fast operations let the batches grow, but by no more than factor two
+        batchSizer.record(16, 16);
+        Assertions.assertThat(batchSizer.getSize()).isEqualTo(32);
+
+        // Slow operations shrink the next batch to what fits into the target
+        for (int i = 0; i < 20; ++i)
+            batchSizer.record(batchSizer.getSize(), batchSizer.getSize() * 100L);
+
+        Assertions.assertThat(batchSizer.getSize()).isEqualTo(10);
+    }
+
+    @Test
+    public void testSizeIsBoundedByBytes() {
+        BatchSizer batchSizer = new BatchSizer(1024, 1000);
+
+        Assertions.assertThat(batchSizer.fits(0, 4096)).isTrue();
+        Assertions.assertThat(batchSizer.fits(1, 1024)).isTrue();
+        Assertions.assertThat(batchSizer.fits(1, 1025)).isFalse();
+        Assertions.assertThat(batchSizer.fits(batchSizer.getSize(), 10)).isFalse();
+    }
+}
@@ -0,0 +1,59 @@
+package de.rheinwolf.iam.connid.connectors.passwd.method.passwd;
+
+import de.rheinwolf.iam.connid.connectors.passwd.connection.CommandResult;
+import de.rheinwolf.iam.connid.connectors.passwd.connection.LocalConnection;
+
+import org.assertj.core.api.Assertions;
+
+import org.identityconnectors.framework.common.objects.Uid;
+
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Testing the rendering of the commands of an operation.
+ */
+public class CommandScriptTest {
+    @Test
+    public void testRender() {
+        CommandScript script = new CommandScript(new Uid("jdoe"))
+                .add(null, "usermod", "-c", "John's", "jdoe")
+                .add("jdoe:secret".getBytes(StandardCharsets.UTF_8), "chpasswd");
+
+        Assertions.assertThat(new String(script.render("S", 3), StandardCharsets.UTF_8)).isEqualTo("(\n"
+                + "'usermod' '-c' 'John'\\''s' 'jdoe' </dev/null || exit $?\n"
+                + "'chpasswd' <<'S' || exit 100\n"
+                + "jdoe:secret\n"
+                + "S\n"
+                + ") 2>&1\n"
+                + "printf '%s %d %d\\n' 'S' 3 \"$?\"\n");
+    }
+
+    @Test(timeOut = 30000)
+    public void testFirstCommandFails() {
+        CommandScript script = new CommandScript(new Uid("jdoe"))
+                .add(null, "sh", "-c", "echo out; echo err >&2; exit 9")
+                .add(null, "echo", "not reached");
+
+        Assertions.assertThat(run(script, 0)).containsExactly("out", "err", "S 0 9");
+    }
+
+    @Test(timeOut = 30000)
+    public void testFollowUpFails() {
+        CommandScript script = new CommandScript(new Uid("jdoe"))
+                .add("jdoe:secret".getBytes(StandardCharsets.UTF_8), "cat")
+                .add(null, "false");
+
+        Assertions.assertThat(run(script, 1)).containsExactly("jdoe:secret", "S 1 " + CommandScript.EXIT_CODE_FOLLOW_UP);
+    }
+
+    private static List<String> run(CommandScript script, int position) {
+        try (CommandResult result = new LocalConnection().execute(script.render("S", position), "sh", "-s")) {
+            Assertions.assertThat(result.getExitCode()).isEqualTo(0);
+
+            return result.getStdOut();
+        }
+    }
+}
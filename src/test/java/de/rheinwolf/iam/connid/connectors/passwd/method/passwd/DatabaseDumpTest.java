@@ -0,0 +1,105 @@
+package de.rheinwolf.iam.connid.connectors.passwd.method.passwd;
+
+import de.rheinwolf.iam.connid.connectors.passwd.connection.LocalConnection;
+import de.rheinwolf.iam.connid.connectors.passwd.method.become.NoneBecomeMethod;
+
+import org.assertj.core.api.Assertions;
+
+import org.identityconnectors.framework.common.exceptions.ConnectionBrokenException;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Testing the combined read of several database files on the local system.
+ */
+public class DatabaseDumpTest {
+    @Test(timeOut = 30000)
+    public void testSections() throws IOException {
+        Path directory = Files.createTempDirectory("connector-passwd-test-");
+        Path passwd    = directory.resolve("passwd");
+        Path shadow    = directory.resolve("shadow");
+        Path group     = directory.resolve("group");
+
+        try {
+            Files.write(passwd, "root:x:0:0::/root:/bin/sh\nbin:x:1:1::/:\n".getBytes(StandardCharsets.UTF_8));
+            Files.write(shadow, "root:!:19000::::::".getBytes(StandardCharsets.UTF_8));
+            Files.write(group, new byte[0]);
+
+            List<String> rows = new ArrayList<>();
+
+            DatabaseDump.read(new LocalConnection(), new NoneBecomeMethod(), (fileName, row) -> {
+                rows.add(Paths.get(fileName).getFileName() + " " + ((row == null) ? null : row.getField(0)));
+                return true;
+            }, shadow.toString(), passwd.toString(), group.toString());
+
+            // The rows keep their files with or without a final line break, an empty file is a single empty line
+            Assertions.assertThat(rows).containsExactly("shadow root", "passwd root", "passwd bin", "group null");
+        } finally {
+            Files.deleteIfExists(passwd);
+            Files.deleteIfExists(shadow);
+            Files.deleteIfExists(group);
+            Files.delete(directory);
+        }
+    }
+
+    @Test(timeOut = 30000)
+    public void testHandlerStopsReading() throws IOException {
+        Path passwd = Files.createTempFile("connector-passwd-test-", ".passwd");
+
+        try {
+            Files.write(passwd, "root:x:0:0::/root:/bin/sh\nbin:x:1:1::/:\n".getBytes(StandardCharsets.UTF_8));
+
+            List<String> rows = new ArrayList<>();
+
+            DatabaseDump.read(new LocalConnection(), new NoneBecomeMethod(), (fileName, row) -> {
+                rows.add(row.getField(0));
+                return false;
+            }, passwd.toString());
+
+            Assertions.assertThat(rows).containsExactly("root");
+        } finally {
+            Files.deleteIfExists(passwd);
+        }
+    }
+
+    @Test(timeOut = 30000)
+    public void testChangingFilesFail() throws Exception {
+        Path          passwd = Files.createTempFile("connector-passwd-test-", ".passwd");
+        AtomicBoolean stop   = new AtomicBoolean();
+        Thread        writer = new Thread(() -> {
+            try (OutputStream output = Files.newOutputStream(passwd, StandardOpenOption.APPEND)) {
+                // The size grows between any two stat calls
+                while (!stop.get()) {
+                    output.write("x:x:1:1::/:\n".getBytes(StandardCharsets.UTF_8));
+                    LockSupport.parkNanos(100000);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        writer.start();
+
+        try {
+            Assertions.assertThatThrownBy(() -> DatabaseDump.read(new LocalConnection(), new NoneBecomeMethod(), (fileName, row) -> true, passwd.toString()))
+                    .isInstanceOf(ConnectionBrokenException.class)
+                    .hasMessageContaining("kept changing");
+        } finally {
+            stop.set(true);
+            writer.join();
+            Files.deleteIfExists(passwd);
+        }
+    }
+}
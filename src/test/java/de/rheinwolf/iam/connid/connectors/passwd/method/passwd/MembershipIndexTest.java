@@ -0,0 +1,41 @@
+package de.rheinwolf.iam.connid.connectors.passwd.method.passwd;
+
+import de.rheinwolf.iam.connid.connectors.passwd.file.PasswdFile;
+import de.rheinwolf.iam.connid.connectors.passwd.file.PasswdRow;
+import de.rheinwolf.iam.connid.connectors.passwd.model.FieldLayout;
+
+import org.assertj.core.api.Assertions;
+
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+
+/**
+ * Testing the group membership of accounts.
+ */
+public class MembershipIndexTest {
+    @Test
+    public void testMembership() {
+        FieldLayout     layout          = FieldLayout.PASSWD_SHADOW;
+        MembershipIndex membershipIndex = new MembershipIndex(layout, FieldLayout.GROUP);
+        int             groups          = layout.getFieldIndex(layout.find("groups"));
+        int             primaryGroup    = layout.getFieldIndex(layout.find("primaryGroupName"));
+
+        membershipIndex.add(PasswdFile.tokenize("wheel:x:10:root, alice"));
+        membershipIndex.add(PasswdFile.tokenize("users:x:100:alice,bob,alice"));
+        membershipIndex.add(PasswdFile.tokenize("staff:x:100:"));
+
+        PasswdRow alice = membershipIndex.join(PasswdFile.tokenize("alice:x:1000:100::/home/alice:/bin/sh"));
+        PasswdRow carol = membershipIndex.join(PasswdFile.tokenize("carol:x:1002:4711::/home/carol:/bin/sh"));
+
+        Assertions.assertThat(layout.needsMembership(layout.select(Collections.singletonList("groups")))).isTrue();
+        Assertions.assertThat(layout.needsMembership(null)).isFalse();
+
+        Assertions.assertThat(alice.getField(0)).isEqualTo("alice");
+        // A member listed twice still gets the group once
+        Assertions.assertThat(alice.getField(groups)).isEqualTo("wheel,users");
+        Assertions.assertThat(alice.getField(primaryGroup)).isEqualTo("users");
+        Assertions.assertThat(carol.getField(groups)).isNull();
+        Assertions.assertThat(carol.getField(primaryGroup)).isNull();
+    }
+}
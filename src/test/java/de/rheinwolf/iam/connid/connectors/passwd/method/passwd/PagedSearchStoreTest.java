@@ -0,0 +1,55 @@
+package de.rheinwolf.iam.connid.connectors.passwd.method.passwd;
+
+import de.rheinwolf.iam.connid.connectors.passwd.file.PasswdFile;
+import de.rheinwolf.iam.connid.connectors.passwd.file.PasswdRow;
+
+import org.assertj.core.api.Assertions;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Testing the eviction of paged searches.
+ */
+public class PagedSearchStoreTest {
+    private static final long TIMEOUT = 60000;
+
+    @Test
+    public void testScopesAreEvictedSeparately() {
+        List<PasswdRow> rows     = Collections.singletonList(PasswdFile.tokenize("root:x:0:0::/root:/bin/sh"));
+        String          other    = PagedSearchStore.put("other", rows, TIMEOUT);
+        List<String>    searches = new ArrayList<>();
+
+        for (int i = 0; i <= PagedSearchStore.MAX_SEARCHES_PER_SCOPE; ++i)
+            searches.add(PagedSearchStore.put("busy", rows, TIMEOUT));
+
+        // Only the oldest search of the busy scope is evicted
+        Assertions.assertThat(PagedSearchStore.get("busy", searches.get(0))).isNull();
+        Assertions.assertThat(PagedSearchStore.get("busy", searches.get(1))).isSameAs(rows);
+        Assertions.assertThat(PagedSearchStore.get("busy", searches.get(searches.size() - 1))).isSameAs(rows);
+        Assertions.assertThat(PagedSearchStore.get("other", other)).isSameAs(rows);
+
+        searches.forEach(PagedSearchStore::remove);
+        PagedSearchStore.remove(other);
+    }
+
+    @Test
+    public void testRowsAreBounded() {
+        List<PasswdRow> large = Collections.nCopies(PagedSearchStore.MAX_ROWS, null);
+        List<PasswdRow> small = Collections.singletonList(PasswdFile.tokenize("root:x:0:0::/root:/bin/sh"));
+        String          first = PagedSearchStore.put("large", large, TIMEOUT);
+
+        Assertions.assertThat(PagedSearchStore.get("large", first)).isSameAs(large);
+
+        // The new search is kept, the least recently used one makes room for it
+        String second = PagedSearchStore.put("small", small, TIMEOUT);
+
+        Assertions.assertThat(PagedSearchStore.get("large", first)).isNull();
+        Assertions.assertThat(PagedSearchStore.get("small", second)).isSameAs(small);
+
+        PagedSearchStore.remove(second);
+    }
+}
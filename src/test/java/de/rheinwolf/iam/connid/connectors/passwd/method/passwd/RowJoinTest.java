@@ -0,0 +1,59 @@
+package de.rheinwolf.iam.connid.connectors.passwd.method.passwd;
+
+import de.rheinwolf.iam.connid.connectors.passwd.file.PasswdFile;
+import de.rheinwolf.iam.connid.connectors.passwd.file.PasswdRow;
+
+import org.assertj.core.api.Assertions;
+
+import org.testng.annotations.Test;
+
+/**
+ * Testing the join of passwd and shadow rows.
+ */
+public class RowJoinTest {
+    @Test
+    public void testJoinInAndOutOfOrder() {
+        RowJoin rowJoin = new RowJoin(7);
+
+        rowJoin.addRight(PasswdFile.tokenize("root:!:1::::::"));
+        rowJoin.addRight(PasswdFile.tokenize("bin:*:2::::::"));
+        rowJoin.addRight(PasswdFile.tokenize("alice:$6$a:3::::::"));
+        rowJoin.addRight(PasswdFile.tokenize("bob:$6$b:4::::::"));
+        rowJoin.addRight(PasswdFile.tokenize("alice:$6$c:5::::::"));
+
+        Assertions.assertThat(join(rowJoin, "root")).isEqualTo("1");
+        Assertions.assertThat(join(rowJoin, "bin")).isEqualTo("2");
+        Assertions.assertThat(join(rowJoin, "bob")).isEqualTo("4");
+        Assertions.assertThat(join(rowJoin, "carol")).isNull();
+        Assertions.assertThat(join(rowJoin, "alice")).isEqualTo("3");
+        Assertions.assertThat(join(rowJoin, "root")).isEqualTo("1");
+    }
+
+    @Test
+    public void testFirstDuplicateWinsInOrder() {
+        RowJoin rowJoin = new RowJoin(7);
+
+        rowJoin.addRight(PasswdFile.tokenize("alice:$6$a:3::::::"));
+        rowJoin.addRight(PasswdFile.tokenize("bob:$6$b:4::::::"));
+        rowJoin.addRight(PasswdFile.tokenize("alice:$6$c:5::::::"));
+
+        // All rows are in order, the cursor reaches the second alice without a miss
+        Assertions.assertThat(join(rowJoin, "alice")).isEqualTo("3");
+        Assertions.assertThat(join(rowJoin, "bob")).isEqualTo("4");
+        Assertions.assertThat(join(rowJoin, "alice")).isEqualTo("3");
+    }
+
+    /**
+     * Joining a passwd row for a name.
+     *
+     * @param rowJoin           The join.
+     * @param name              The name.
+     *
+     * @return Returns the last change date from the joined shadow row.
+     */
+    private static String join(RowJoin rowJoin, String name) {
+        PasswdRow row = rowJoin.join(PasswdFile.tokenize(name + ":x:1000:1000::/home/" + name + ":/bin/sh"));
+
+        return row.getField(9);
+    }
+}
@@ -0,0 +1,57 @@
+package de.rheinwolf.iam.connid.connectors.passwd.method.passwd;
+
+import de.rheinwolf.iam.connid.connectors.passwd.file.PasswdFile;
+import de.rheinwolf.iam.connid.connectors.passwd.file.PasswdRow;
+import de.rheinwolf.iam.connid.connectors.passwd.model.FieldLayout;
+
+import org.assertj.core.api.Assertions;
+
+import org.identityconnectors.framework.common.objects.Name;
+import org.identityconnectors.framework.common.objects.SortKey;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Testing the sorting of rows by SORT_KEYS.
+ */
+public class RowSorterTest {
+    private static final List<PasswdRow> ROWS = new ArrayList<>();
+
+    static {
+        ROWS.add(PasswdFile.tokenize("b:x:1000:50::/:"));
+        ROWS.add(PasswdFile.tokenize("a:x:999:50::/:"));
+        ROWS.add(PasswdFile.tokenize("c:x:1000:100::/:"));
+        ROWS.add(PasswdFile.tokenize("d:x::100::/:"));
+        ROWS.add(PasswdFile.tokenize("e:x:20:7::/:"));
+        ROWS.add(PasswdFile.tokenize("f:x:abc:x7::/:"));
+    }
+
+    @Test
+    public void testNumericSort() {
+        // Integer attributes are compared numerically, equal keys keep their order and
+        // missing values as well as values that are not numbers come last
+        Assertions.assertThat(sort(new SortKey("gid", true))).isEqualTo("ebacdf");
+        Assertions.assertThat(sort(new SortKey("gid", false))).isEqualTo("cdbaef");
+    }
+
+    @Test
+    public void testStringSort() {
+        // The uid is a string attribute, so it is compared as string whatever the values look like
+        Assertions.assertThat(sort(new SortKey("uid", true))).isEqualTo("bceafd");
+    }
+
+    @Test
+    public void testMultipleSortKeys() {
+        Assertions.assertThat(sort(new SortKey("gid", true), new SortKey(Name.NAME, false))).isEqualTo("ebadcf");
+    }
+
+    private static String sort(SortKey... sortKeys) {
+        return RowSorter.sort(ROWS, FieldLayout.PASSWD_SHADOW, sortKeys).stream()
+                .map(row -> row.getField(0))
+                .collect(Collectors.joining());
+    }
+}
@@ -0,0 +1,137 @@
+package de.rheinwolf.iam.connid.connectors.passwd.method.passwd;
+
+import de.rheinwolf.iam.connid.connectors.passwd.PasswdConfiguration;
+import de.rheinwolf.iam.connid.connectors.passwd.connection.CommandResult;
+import de.rheinwolf.iam.connid.connectors.passwd.connection.LocalConnection;
+
+import org.assertj.core.api.Assertions;
+
+import org.identityconnectors.common.security.GuardedString;
+import org.identityconnectors.framework.common.exceptions.InvalidAttributeValueException;
+import org.identityconnectors.framework.common.objects.*;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+/**
+ * Testing the tool calls of the useradd method.
+ */
+public class UserAddPasswdMethodTest {
+    @Test
+    public void testCreateAccountScript() {
+        CommandScript script = newMethod().getScript(BatchOperation.create(ObjectClass.ACCOUNT, new LinkedHashSet<>(Arrays.asList(
+                new Name("jdoe"),
+                AttributeBuilder.build("uid", 1001),
+                AttributeBuilder.build("gid", 100),
+                AttributeBuilder.build("maximumPasswordAge", 90L)
+        ))));
+
+        Assertions.assertThat(script.getUid().getUidValue()).isEqualTo("jdoe");
+        Assertions.assertThat(render(script)).isEqualTo("(\n"
+                + "'useradd' '-u' '1001' '-g' '100' '-M' 'jdoe' </dev/null || exit $?\n"
+                + "'chage' '-M' '90' 'jdoe' </dev/null || exit 100\n"
+                + ") 2>&1\n"
+                + "printf '%s %d %d\\n' 'S' 0 \"$?\"\n");
+    }
+
+    @Test
+    public void testUpdateAccountScript() {
+        CommandScript script = newMethod().getScript(BatchOperation.update(ObjectClass.ACCOUNT, new Uid("jdoe"), new LinkedHashSet<>(Arrays.asList(
+                AttributeDeltaBuilder.build(Name.NAME, "john"),
+                AttributeDeltaBuilder.build("comment", "John Doe"),
+                AttributeDeltaBuilder.build("maximumPasswordAge", 90L),
+                AttributeDeltaBuilder.build(OperationalAttributes.PASSWORD_NAME, new GuardedString("secret".toCharArray()))
+        ))));
+
+        // The follow-up calls use the new name
+        Assertions.assertThat(script.getUid().getUidValue()).isEqualTo("john");
+        Assertions.assertThat(render(script)).isEqualTo("(\n"
+                + "'usermod' '-l' 'john' '-c' 'John Doe' 'jdoe' </dev/null || exit $?\n"
+                + "'chage' '-M' '90' 'john' </dev/null || exit 100\n"
+                + "'chpasswd' <<'S' || exit 100\n"
+                + "john:secret\n"
+                + "S\n"
+                + ") 2>&1\n"
+                + "printf '%s %d %d\\n' 'S' 0 \"$?\"\n");
+    }
+
+    @Test
+    public void testUpdateGroupScript() {
+        CommandScript script = newMethod().getScript(BatchOperation.update(ObjectClass.GROUP, new Uid("staff"), new LinkedHashSet<>(Arrays.asList(
+                AttributeDeltaBuilder.build(Name.NAME, "team"),
+                AttributeDeltaBuilder.build("members", Arrays.asList("jdoe"), Arrays.asList("root"))
+        ))));
+
+        Assertions.assertThat(script.getUid().getUidValue()).isEqualTo("team");
+        Assertions.assertThat(render(script)).isEqualTo("(\n"
+                + "'groupmod' '-n' 'team' 'staff' </dev/null || exit $?\n"
+                + "'gpasswd' '-a' 'jdoe' 'team' </dev/null || exit 100\n"
+                + "'gpasswd' '-d' 'root' 'team' </dev/null || exit 100\n"
+                + ") 2>&1\n"
+                + "printf '%s %d %d\\n' 'S' 0 \"$?\"\n");
+    }
+
+    @Test
+    public void testLineBreaksAreRejected() {
+        UserAddPasswdMethod method = newMethod();
+
+        Assertions.assertThatThrownBy(() -> method.getScript(BatchOperation.update(ObjectClass.ACCOUNT, new Uid("jdoe"), new LinkedHashSet<>(Arrays.asList(
+                AttributeDeltaBuilder.build("comment", "John\nroot::0:0::/:/bin/sh")
+        ))))).isInstanceOf(InvalidAttributeValueException.class);
+
+        Assertions.assertThatThrownBy(() -> method.getScript(BatchOperation.update(ObjectClass.ACCOUNT, new Uid("jdoe"), new LinkedHashSet<>(Arrays.asList(
+                AttributeDeltaBuilder.build(OperationalAttributes.PASSWORD_NAME, new GuardedString("secret\nS".toCharArray()))
+        ))))).isInstanceOf(InvalidAttributeValueException.class);
+    }
+
+    @Test(timeOut = 30000)
+    public void testLookupThroughShell() throws IOException {
+        Path group = Files.createTempFile("connector-passwd-test-", ".group");
+
+        try {
+            Files.write(group, "wheel:x:10:root\nwheels:x:11:\nstaff:x:50:wheel\n".getBytes(StandardCharsets.UTF_8));
+
+            // The shell reading the script must pass the awk program on unchanged
+            try (CommandResult result = lookup(0, "wheel", group)) {
+                Assertions.assertThat(result.getExitCode()).isEqualTo(0);
+                Assertions.assertThat(result.getStdOut()).containsExactly("wheel:x:10:root");
+                Assertions.assertThat(result.getStdErr()).isEmpty();
+            }
+
+            try (CommandResult result = lookup(2, "50", group)) {
+                Assertions.assertThat(result.getStdOut()).containsExactly("staff:x:50:wheel");
+            }
+
+            try (CommandResult result = lookup(0, "unknown", group)) {
+                Assertions.assertThat(result.getExitCode()).isEqualTo(0);
+                Assertions.assertThat(result.getStdOut()).isEmpty();
+            }
+        } finally {
+            Files.deleteIfExists(group);
+        }
+    }
+
+    private static CommandResult lookup(int fieldIndex, String value, Path file) {
+        byte[] script = (UserAddPasswdMethod.getLookupCommand(fieldIndex, value, file.toString()) + "\n").getBytes(StandardCharsets.UTF_8);
+
+        return new LocalConnection().execute(script, "sh", "-s");
+    }
+
+    private static UserAddPasswdMethod newMethod() {
+        UserAddPasswdMethod method = new UserAddPasswdMethod();
+
+        method.init(null, new PasswdConfiguration(), null, "useradd:" + PasswdConfiguration.SUBMETHOD_LINUX, null);
+
+        return method;
+    }
+
+    private static String render(CommandScript script) {
+        return new String(script.render("S", 0), StandardCharsets.UTF_8);
+    }
+}
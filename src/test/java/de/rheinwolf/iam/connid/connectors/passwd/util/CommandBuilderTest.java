@@ -0,0 +1,32 @@
+package de.rheinwolf.iam.connid.connectors.passwd.util;
+
+import org.assertj.core.api.Assertions;
+
+import org.identityconnectors.framework.common.exceptions.InvalidAttributeValueException;
+
+import org.testng.annotations.Test;
+
+/**
+ * Testing the helper methods for building commands.
+ */
+public class CommandBuilderTest {
+    @Test
+    public void testToCommandValue() {
+        Assertions.assertThat(CommandBuilder.toCommandValue("John Doe,Room 1:2")).isEqualTo("John Doe_Room 1_2");
+        Assertions.assertThat(CommandBuilder.toCommandValue(1000)).isEqualTo("1000");
+    }
+
+    @Test
+    public void testToCommandValueRejectsLineBreaks() {
+        for (String value : new String[] {"user\nroot::0:0::/:/bin/sh", "user\r", "user\0"}) {
+            Assertions.assertThatThrownBy(() -> CommandBuilder.toCommandValue(value))
+                    .isInstanceOf(InvalidAttributeValueException.class);
+        }
+    }
+
+    @Test
+    public void testAsShellLine() {
+        Assertions.assertThat(CommandBuilder.asShellLine(new String[] {"echo", "it's", "$HOME"}))
+                .isEqualTo("'echo' 'it'\\''s' '$HOME'");
+    }
+}